@@ -24,6 +24,9 @@ public interface Context extends Container<Host, Wrapper> {
 	
 	//ĬSession ID
 	public static final String DEFAULT_SESSION_NAME = "JSESSIONID";
+	
+	//web.xmlеĸóʼΪtrueʱWebӦòʹSession
+	public static final String STATELESS_PARAM = "lzf.webserver.stateless";
 
 	/**
 	 * ȡWebӦöӦServletContext
@@ -100,6 +103,16 @@ public interface Context extends Container<Host, Wrapper> {
 	 */
 	public void setSessionTimeout(int timeout);
 	
+	/**
+	 * @return webӦǷʹSessionΪtrueʱgetSessionʼշnull
+	 */
+	public boolean isStateless();
+	
+	/**
+	 * @param stateless webӦǷʹSession
+	 */
+	public void setStateless(boolean stateless);
+	
 	/**
 	 * @param webappVersion webapp汾ţweb.xmlļ
 	 */
@@ -156,4 +169,28 @@ public interface Context extends Container<Host, Wrapper> {
 	 * @return webӦӦ뷽ʽ
 	 */
 	public String getResponseCharacterEncoding();
+	
+	/**
+	 * Ǽһʼ󣬸WebӦڱ滻(ſ)ʱǼʧ
+	 * @return ǼǳɹʱtrueʱɺrequestFinished
+	 */
+	public boolean requestStarted();
+	
+	/**
+	 * Ǽһɵ첽ڽʱ
+	 */
+	public void requestFinished();
+	
+	/**
+	 * @return WebӦڴ
+	 */
+	public int getActiveRequests();
+	
+	/**
+	 * ٽµ󣬲ȴڴȫ
+	 * @param timeout ȴʱ()
+	 * @return ɷtrueʱfalse
+	 * @throws InterruptedException ȴʱ̱߳ж
+	 */
+	public boolean drain(long timeout) throws InterruptedException;
 }
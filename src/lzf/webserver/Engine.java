@@ -10,4 +10,15 @@ public interface Engine extends Container<Void, Host> {
 	public void setService(Service service) throws LifecycleException;
 	
 	public Service getService();
+	
+	/**
+	 * Ĭ޷ƥκHostʱɸ
+	 * @param hostName Ĭserver.xmlEngineڵdefaultHost
+	 */
+	public void setDefaultHost(String hostName);
+	
+	/**
+	 * @return Ĭû򷵻null
+	 */
+	public String getDefaultHost();
 }
@@ -9,6 +9,19 @@ import java.io.File;
 * @Description ΪEngine
 */
 public interface Host extends Container<Engine, Context> {
+	
+	/**
+	 * ¼
+	 */
+	public static final String ADD_ALIAS_EVENT = "add_alias";
+	/**
+	 * Ƴ¼
+	 */
+	public static final String REMOVE_ALIAS_EVENT = "remove_alias";
+	/**
+	 * °汾Context滻·ɱͬContext¼¼ΪµContext
+	 */
+	public static final String REPLACE_CONTEXT_EVENT = "replace_context";
 
 	/**
 	 * @return ӦwebӦĿ¼
@@ -19,4 +32,28 @@ public interface Host extends Container<Engine, Context> {
 	 * @param folder ӦwebӦĿ¼
 	 */
 	public void setWebappBaseFolder(File folder);
+	
+	/**
+	 * ͬʱͬ·ɵ
+	 * Ϊͨʽ*.example.com
+	 * @param alias server.xmlHostڵµAliasڵ
+	 */
+	public void addAlias(String alias);
+	
+	/**
+	 * @param alias ҪƳı
+	 */
+	public void removeAlias(String alias);
+	
+	/**
+	 * @return еı
+	 */
+	public String[] getAliases();
+	
+	/**
+	 * WebӦã°汾ɺ滻ɰ汾ɰ汾ڴɺֹͣ
+	 * °汾ʧʱɰ汾ṩ
+	 * @param context ҪContext
+	 */
+	public void reloadContext(Context context);
 }
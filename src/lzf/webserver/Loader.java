@@ -14,9 +14,10 @@ public interface Loader {
 	public ClassLoader getClassLoader();
 	
 	/**
-	 * @return webӦõJSP
+	 * ÿJSPServletʵʹõJSP±ʹµ
+	 * @return µJSPΪwebӦõ
 	 */
-	public ClassLoader getJspClassLoader();
+	public ClassLoader createJspClassLoader();
 	
 	/**
 	 * @return ӦContext
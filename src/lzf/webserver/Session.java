@@ -40,7 +40,7 @@ public interface Session {
 	public void updateLastAccessedTime();
 	
 	/**
-	 * Session UUID
+	 * SessionID
 	 * @return ɵID
 	 */
 	public String changeId();
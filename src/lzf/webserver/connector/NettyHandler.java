@@ -21,19 +21,29 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import lzf.webserver.Context;
 import lzf.webserver.LifecycleException;
 import lzf.webserver.LifecycleState;
+import lzf.webserver.core.ApplicationAsyncContext;
 import lzf.webserver.core.LifecycleBase;
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
 import lzf.webserver.mapper.GlobelMapper;
+import lzf.webserver.util.DefaultServletInputStream;
 
 /**
  * @author ӷ
@@ -46,6 +56,18 @@ public final class NettyHandler extends LifecycleBase implements Handler {
 	private static final StringManager sm = StringManager.getManager(NettyHandler.class);
 	
 	private static final Log log = LogFactory.getLog(NettyHandler.class);
+	
+	//ͨԣǷδύӦ(紦첽ģʽ)ʱӦжر
+	static final AttributeKey<Boolean> REQUEST_PROCESSING = AttributeKey.valueOf("REQUEST_PROCESSING");
+	
+	//ͨԣԷʽдӦͨд״̬仯ʱ֪ͨWriteListener
+	static final AttributeKey<NettyResponse> STREAMING_RESPONSE = AttributeKey.valueOf("STREAMING_RESPONSE");
+	
+	//ͨԣڽյһݿ
+	static final AttributeKey<DefaultServletInputStream> REQUEST_BODY = AttributeKey.valueOf("REQUEST_BODY");
+	
+	//ͨԣһֱӴļӦд֮ǰӦжر
+	static final AttributeKey<ChannelFuture> FILE_TRANSFER = AttributeKey.valueOf("FILE_TRANSFER");
 
 	private int port = Connector.DEFAULT_PORT;
 	
@@ -116,7 +138,7 @@ public final class NettyHandler extends LifecycleBase implements Handler {
 						ch.pipeline().addLast(new HttpResponseEncoder());
 						ch.pipeline().addLast(new HttpRequestDecoder());
 						//ch.pipeline().addLast(new HttpServerCodec());
-						ch.pipeline().addLast(new HttpObjectAggregator(512 * 1024));
+						//岻پۺϣHttpServerInboundHandler
 						ch.pipeline().addLast(new HttpServerInboundHandler());
 					}
 				}).option(ChannelOption.SO_BACKLOG, connector.getMaxConnection())
@@ -156,21 +178,26 @@ public final class NettyHandler extends LifecycleBase implements Handler {
 	 */
 	protected class RequestProcesser implements Runnable {
 		
-		private final FullHttpRequest fullRequest;
+		private final HttpRequest httpRequest;
+		
+		private final DefaultServletInputStream body;
 		
 		private final ChannelHandlerContext ctx;
 		
-		public RequestProcesser(final FullHttpRequest request, final ChannelHandlerContext ctx) {
-			this.fullRequest = request;
+		public RequestProcesser(final HttpRequest request, final DefaultServletInputStream body, 
+				final ChannelHandlerContext ctx) {
+			this.httpRequest = request;
+			this.body = body;
 			this.ctx = ctx;
 		}
 		
 		@Override
 		public void run() {
 			
-			Request request = NettyRequest.newRequest(fullRequest, ctx);
-			Response response = NettyResponse.newResponse(ctx);
+			Request request = NettyRequest.newRequest(httpRequest, body, ctx);
+			Response response = NettyResponse.newResponse(ctx, executor, body);
 			request.response = response;
+			request.connector = connector;
 			
 			//ctx.writeAndFlush(resp).addListener(ChannelFutureListener.CLOSE);
 			try {
@@ -184,56 +211,148 @@ public final class NettyHandler extends LifecycleBase implements Handler {
 				
 				String reqUri = request.getRequestURI();
 				
-				request.context = gm.getContext(request.host.getName(), reqUri);
+				request.context = mapContext(gm, request.host.getName(), reqUri);
 				
 				if(request.context == null) {
 					response.sendError(HttpServletResponse.SC_NOT_FOUND);
 					return;
-					
-				} else if(reqUri.equals("/" + request.context.getName())) {
-					
-					response.sendRedirect("http://"+ request.getServerName() + ":" 
-								+ request.getServerPort() + "/" + request.context.getName() + "/");
-					return;
 				}
-
-				request.wrapper = request.context.getMapper().getWrapper(request.getRequestURI());
 				
-				if(request.wrapper == null) {
+				try {
+					if(reqUri.equals("/" + request.context.getName())) {
+						
+						response.sendRedirect("http://"+ request.getServerName() + ":" 
+									+ request.getServerPort() + "/" + request.context.getName() + "/");
+						return;
+					}
+	
+					request.wrapper = request.context.getMapper().getWrapper(request.getRequestURI());
 					
-					response.sendError(HttpServletResponse.SC_NOT_FOUND);
-					return;
+					if(request.wrapper == null) {
+						
+						response.sendError(HttpServletResponse.SC_NOT_FOUND);
+						return;
+					}
+					
+					connector.getService().getEngine().getPipeline().getFirst().invoke(request, response);
+					
+				} finally {
+					finishRequest(request, request.context);
 				}
 				
-				connector.getService().getEngine().getPipeline().getFirst().invoke(request, response);
-				
 			} catch (IOException | ServletException e) {
 				log.error("", e);
 			}
 		}
+		
+		/**
+		 * ӦContextǼΪContextڴ
+		 * ҵContextڱ滻(ſ)ʱ·ɱѾָ°汾²һ
+		 * @return ǼǳɹContextûҵȻ޷Ǽʱnull
+		 */
+		private Context mapContext(GlobelMapper gm, String hostName, String uri) {
+			
+			Context context = gm.getContext(hostName, uri);
+			
+			if(context == null || context.requestStarted())
+				return context;
+			
+			context = gm.getContext(hostName, uri);
+			
+			if(context == null || context.requestStarted())
+				return context;
+			
+			return null;
+		}
+		
+		/**
+		 * ɺȡǼǣ첽ģʽ첽ʱȡǼ
+		 */
+		private void finishRequest(Request request, final Context context) {
+			
+			ApplicationAsyncContext asyncContext = request.getApplicationAsyncContext();
+			
+			if(asyncContext == null || !asyncContext.addCompletionTask(() -> context.requestFinished()))
+				context.requestFinished();
+		}
 	}
 	
 	/**
 	 * ҵ߼߳
-	 * @param request FullHttpRequest
+	 * @param request HttpRequest
+	 * @param body 
 	 * @param ctx ChannelHandlerContextʵ
 	 */
-	protected void runRequestProcesser(FullHttpRequest request, ChannelHandlerContext ctx) {
-		executor.execute(new RequestProcesser(request, ctx));
+	protected void runRequestProcesser(HttpRequest request, DefaultServletInputStream body, ChannelHandlerContext ctx) {
+		executor.execute(new RequestProcesser(request, body, ctx));
 	}
 	
 	/**
-	 * FullHttpRequestվתRequestӵҵ߼̳߳вִ
+	 * HTTPվյͷӵҵ߼ִ̳߳У
+	 * ֮յݿصȴ
 	 */
 	class HttpServerInboundHandler extends ChannelInboundHandlerAdapter {
 		
 		@Override
 		public void channelRead(final ChannelHandlerContext ctx, Object msg) {
-			if(msg instanceof FullHttpRequest) {
-				FullHttpRequest request = (FullHttpRequest) msg;
-				runRequestProcesser(request, ctx);
+			
+			if(msg instanceof HttpRequest) {
+				HttpRequest request = (HttpRequest) msg;
+				
+				//ͻ˵ȴ100 Continueŷ
+				if(HttpHeaders.is100ContinueExpected(request))
+					ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+				
+				DefaultServletInputStream body = new DefaultServletInputStream(executor, ctx.channel().config());
+				ctx.channel().attr(REQUEST_BODY).set(body);
+				ctx.channel().attr(REQUEST_PROCESSING).set(Boolean.TRUE);
+				runRequestProcesser(request, body, ctx);
+			}
+			
+			if(msg instanceof HttpContent) {
+				DefaultServletInputStream body = ctx.channel().attr(REQUEST_BODY).get();
+				
+				if(body == null) {
+					ReferenceCountUtil.release(msg);
+					return;
+				}
+				
+				body.offer(((HttpContent) msg).content());
+				
+				if(msg instanceof LastHttpContent) {
+					ctx.channel().attr(REQUEST_BODY).set(null);
+					body.finish();
+				}
 			}
 		}
+		
+		/**
+		 * ӹرʱδϣ֪ͨڶȡ
+		 */
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			
+			DefaultServletInputStream body = ctx.channel().attr(REQUEST_BODY).getAndSet(null);
+			
+			if(body != null)
+				body.abort();
+			
+			super.channelInactive(ctx);
+		}
+		
+		/**
+		 * ͨд״̬仯ʱ֪ͨڷдӦ
+		 */
+		@Override
+		public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+			
+			NettyResponse response = ctx.channel().attr(STREAMING_RESPONSE).get();
+			
+			if(response != null)
+				response.writabilityChanged();
+			
+			super.channelWritabilityChanged(ctx);
+		}
 	}
 }
 
@@ -248,6 +367,20 @@ class TimeOutHandler extends ChannelInboundHandlerAdapter {
 		if(evt instanceof IdleStateEvent) {
 			IdleStateEvent event = (IdleStateEvent)evt;
 			if(event.state() == IdleState.READER_IDLE) {
+				
+				//ڽ嵫ͻֹͣʱرӣδȡͣʱ
+				boolean stalled = ctx.channel().attr(NettyHandler.REQUEST_BODY).get() != null 
+						&& ctx.channel().config().isAutoRead();
+				
+				if(!stalled && Boolean.TRUE.equals(ctx.channel().attr(NettyHandler.REQUEST_PROCESSING).get()))
+					return;
+				
+				//ӦѾύļڷͣͻشļʱᷢ
+				ChannelFuture transfer = ctx.channel().attr(NettyHandler.FILE_TRANSFER).get();
+				
+				if(transfer != null && !transfer.isDone())
+					return;
+				
 				ctx.channel().close();
 			}
 		} else {
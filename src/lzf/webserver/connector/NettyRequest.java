@@ -1,18 +1,15 @@
 package lzf.webserver.connector;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Map;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
 import lzf.webserver.util.DefaultServletInputStream;
 import lzf.webserver.util.StringManager;
 
@@ -28,21 +25,22 @@ public final class NettyRequest extends Request {
 
 	private final ChannelHandlerContext ctx;
 	
-	private final FullHttpRequest req;
+	private final HttpRequest req;
 	
 	private final HttpHeaders header;
 	
-	private final ByteBuf contentBuf;
+	//յݿʱ
+	private final DefaultServletInputStream body;
 	
-	private NettyRequest(FullHttpRequest request, ChannelHandlerContext ctx) {
+	private NettyRequest(HttpRequest request, DefaultServletInputStream body, ChannelHandlerContext ctx) {
 		this.req = request;
 		this.header = req.headers();
 		this.ctx = ctx;
-		this.contentBuf = req.content();
+		this.body = body;
 	}
 	
 	/**
-	 * FullHttpRequestݽ
+	 * HttpRequestкͷ룬
 	 */
 	private void decode() {
 		
@@ -69,16 +67,11 @@ public final class NettyRequest extends Request {
 			//System.out.println(entry.getKey() + ": " + entry.getValue());
 		}
 		
-		byte[] content = new byte[contentBuf.capacity()];
-		
-		contentBuf.readBytes(content);
-		
-		InputStream is = new ByteArrayInputStream(content);
-		super.sis = new DefaultServletInputStream(is);
+		super.sis = body;
 		
 		InputStreamReader isr;
 		try {
-			isr = new InputStreamReader(new ByteArrayInputStream(content), characterEncoding);
+			isr = new InputStreamReader(body, characterEncoding);
 			super.contentReader = new BufferedReader(isr);
 		} catch (UnsupportedEncodingException e) {
 			e.printStackTrace();
@@ -98,16 +91,17 @@ public final class NettyRequest extends Request {
 	}
 	
 	/**
-	 * һװHTTPNettyRequest
-	 * @param request NettyHTTPFullHttpRequest
+	 * һװHTTPNettyRequest
+	 * @param request Netty HTTPͷHttpRequest
+	 * @param body 
 	 * @param ctx ChannelHandlerContextʵ
-	 * @return װHTTPRequest
+	 * @return װHTTPRequest
 	 */
-	static Request newRequest(FullHttpRequest request, ChannelHandlerContext ctx) {
-		if(request == null || ctx == null)
+	static Request newRequest(HttpRequest request, DefaultServletInputStream body, ChannelHandlerContext ctx) {
+		if(request == null || body == null || ctx == null)
 			throw new IllegalArgumentException(sm.getString("NettyRequest.newRequest.e0"));
 		
-		NettyRequest req = new NettyRequest(request, ctx);
+		NettyRequest req = new NettyRequest(request, body, ctx);
 		req.decode();
 		return req;
 	}
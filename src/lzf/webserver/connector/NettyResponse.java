@@ -1,15 +1,27 @@
 package lzf.webserver.connector;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.servlet.WriteListener;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
 import lzf.webserver.util.ByteBufOutputStream;
 import lzf.webserver.util.ByteBufPrintWriter;
+import lzf.webserver.util.DefaultServletInputStream;
 
 /**
  * @author ӷ
@@ -25,18 +37,35 @@ public final class NettyResponse extends Response {
 			HttpResponseStatus.OK);
 	
 	private ByteBuf content = response.content();
+	
+	//ִWriteListenerصҵ߼̳߳
+	private final Executor executor;
+	
+	//ӦӦͺδȡ
+	private final DefaultServletInputStream requestBody;
+	
+	//WriteListenerдģʽӦ尴д
+	private volatile WriteListener writeListener = null;
+	
+	//дģʽӦͷǷѾ
+	private boolean headerSent = false;
+	
+	//isReadyfalseΪtrueָͨдʱصonWritePossible
+	private volatile boolean writePossiblePending = false;
 
-	private NettyResponse(ChannelHandlerContext ctx) {
+	private NettyResponse(ChannelHandlerContext ctx, Executor executor, DefaultServletInputStream requestBody) {
 		super();
-		ByteBufOutputStream bbos = new ByteBufOutputStream(content);
+		ByteBufOutputStream bbos = new NettyOutputStream(content);
 		
 		super.sos = bbos;
 		super.pw = new ByteBufPrintWriter(bbos, content, getCharacterEncoding());
 		this.ctx = ctx;
+		this.executor = executor;
+		this.requestBody = requestBody;
 	}
 
-	static Response newResponse(ChannelHandlerContext ctx) {
-		return new NettyResponse(ctx);
+	static Response newResponse(ChannelHandlerContext ctx, Executor executor, DefaultServletInputStream requestBody) {
+		return new NettyResponse(ctx, executor, requestBody);
 	}
 
 	@Override
@@ -45,13 +74,26 @@ public final class NettyResponse extends Response {
 		if(committed)
 			return;
 		
+		//дģʽѾӦͷֻдʣӦͽ
+		if(headerSent) {
+			writeChunk();
+			responseFinished();
+			ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+			super.committed = true;
+			return;
+		}
+		
 		response.setStatus(HttpResponseStatus.valueOf(status)); //ӦRequestлȡstatus
 		
+		if(commitListener != null)
+			commitListener.beforeCommit(this, content.nioBuffer().asReadOnlyBuffer());
+		
 		for(Map.Entry<String, String> entry : headerMap.entrySet()) {
 			if(entry.getKey() != null && entry.getValue() != null)
 				response.headers().add(entry.getKey(), entry.getValue());
 		}
 		
+		responseFinished();
 		ctx.writeAndFlush(response);
 		super.committed = true;
 	}
@@ -77,15 +119,36 @@ public final class NettyResponse extends Response {
 	@Override
 	protected void sendError0(int sc, String msg) {
 		response.setStatus(HttpResponseStatus.valueOf(sc));
+		responseFinished();
 		ctx.writeAndFlush(response);
 	}
 
 	@Override
 	protected void sendError0(int sc) {
 		response.setStatus(HttpResponseStatus.valueOf(sc));
+		response.content().clear();
+		
+		//õӦͷRetry-AfterContent-Length
+		for(Map.Entry<String, String> entry : headerMap.entrySet()) {
+			if(entry.getKey() != null && entry.getValue() != null)
+				response.headers().set(entry.getKey(), entry.getValue());
+		}
+		
+		responseFinished();
 		ctx.writeAndFlush(response);
 	}
 	
+	/**
+	 * ӦϣӲڴ󣬶δȡԱһ
+	 */
+	private void responseFinished() {
+		ctx.channel().attr(NettyHandler.STREAMING_RESPONSE).set(null);
+		ctx.channel().attr(NettyHandler.REQUEST_PROCESSING).set(Boolean.FALSE);
+		
+		if(requestBody != null)
+			requestBody.discard();
+	}
+	
 	/**
 	 * @param size ûĴС
 	 */
@@ -104,6 +167,220 @@ public final class NettyResponse extends Response {
 		return content.capacity();
 	}
 	
+	/**
+	 * дģʽ߷ļʱеΪһдһдǰȷӦͷ
+	 */
+	private synchronized void writeChunk() {
+		
+		if(committed)
+			return;
+		
+		if(!headerSent) {
+			
+			HttpResponseStatus respStatus = status == 0 ? HttpResponseStatus.OK : HttpResponseStatus.valueOf(status);
+			HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, respStatus);
+			
+			for(Map.Entry<String, String> entry : headerMap.entrySet()) {
+				if(entry.getKey() != null && entry.getValue() != null)
+					head.headers().add(entry.getKey(), entry.getValue());
+			}
+			
+			//Ӧ峤δ֪ʹ÷ֿ鴫
+			if(!headerMap.containsKey("Content-Length"))
+				HttpHeaders.setTransferEncodingChunked(head);
+			
+			ctx.write(head);
+			headerSent = true;
+		}
+		
+		if(content.isReadable()) {
+			ctx.write(new DefaultHttpContent(content.copy()));
+			content.clear();
+		}
+		
+		ctx.flush();
+	}
+	
+	/**
+	 * дģʽֱӴļӦһ֣ȷӦͷͻе
+	 * ļNetty I/O߳ͨдʱ㿽дڴ棬֮дΪĿ鷢
+	 */
+	private synchronized void writeFile(File file, long position, long count) {
+		
+		if(committed)
+			return;
+		
+		writeChunk();
+		
+		if(count > 0)
+			ctx.channel().attr(NettyHandler.FILE_TRANSFER).set(ctx.writeAndFlush(new DefaultFileRegion(file, position, count)));
+	}
+	
+	/**
+	 * дģʽ»ﵽCHUNK_SIZEʱдһ飬ͨдʱڻУָдд
+	 * @param force ǷۻСд(flush)
+	 */
+	private synchronized void writeChunkIfWritable(boolean force) {
+		
+		if((force || content.readableBytes() >= NettyOutputStream.CHUNK_SIZE) && ctx.channel().isWritable())
+			writeChunk();
+	}
+	
+	/**
+	 * ͨд״̬仯ʱNetty I/O̵߳ãдͨдڼ۵֪ͨWriteListener
+	 */
+	void writabilityChanged() {
+		
+		if(!ctx.channel().isWritable())
+			return;
+		
+		synchronized(this) {
+			if(writeListener != null && content.isReadable())
+				writeChunk();
+		}
+		
+		if(writePossiblePending && ctx.channel().isWritable()) {
+			writePossiblePending = false;
+			notifyWritePossible();
+		}
+	}
+	
+	/**
+	 * ҵ߼̳߳лصWriteListeneronWritePossible
+	 */
+	private void notifyWritePossible() {
+		
+		final WriteListener listener = writeListener;
+		
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					listener.onWritePossible();
+				} catch (IOException | RuntimeException e) {
+					listener.onError(e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * ַ֧дӦWriteListener󻺳CHUNK_SIZEߵflushʱͨдд
+	 * дģʽдNetty I/O߳дNettyResponseͬ
+	 */
+	private final class NettyOutputStream extends ByteBufOutputStream {
+		
+		//дģʽ»ﵽôСʱдһ
+		private static final int CHUNK_SIZE = 8192;
+		
+		NettyOutputStream(ByteBuf buf) {
+			super(buf);
+		}
+		
+		/**
+		 * @return ͨǷдfalseָͨдʱصonWritePossible
+		 */
+		@Override
+		public boolean isReady() {
+			
+			if(writeListener == null)
+				return true;
+			
+			if(ctx.channel().isWritable())
+				return true;
+			
+			writePossiblePending = true;
+			
+			//ֹñ־֮ǰͨѾָд֪ͨ
+			if(ctx.channel().isWritable()) {
+				writePossiblePending = false;
+				return true;
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public void setWriteListener(WriteListener listener) {
+			
+			if(listener == null)
+				throw new NullPointerException("WriteListener is null");
+			
+			synchronized(NettyResponse.this) {
+				if(writeListener != null)
+					throw new IllegalStateException("WriteListener has been set");
+				
+				writeListener = listener;
+			}
+			
+			ctx.channel().attr(NettyHandler.STREAMING_RESPONSE).set(NettyResponse.this);
+			notifyWritePossible();
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			
+			if(writeListener == null) {
+				super.write(b);
+				return;
+			}
+			
+			synchronized(NettyResponse.this) {
+				super.write(b);
+				writeChunkIfWritable(false);
+			}
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			
+			if(writeListener == null) {
+				super.write(b, off, len);
+				return;
+			}
+			
+			synchronized(NettyResponse.this) {
+				super.write(b, off, len);
+				writeChunkIfWritable(false);
+			}
+		}
+		
+		@Override
+		public void write(ByteBuffer src) throws IOException {
+			
+			if(writeListener == null) {
+				super.write(src);
+				return;
+			}
+			
+			synchronized(NettyResponse.this) {
+				super.write(src);
+				writeChunkIfWritable(false);
+			}
+		}
+		
+		/**
+		 * дģʽ²ֱӴļ
+		 */
+		@Override
+		public void write(File file, long position, long count) throws IOException {
+			
+			if(writeListener != null) {
+				super.write(file, position, count);
+				return;
+			}
+			
+			writeFile(file, position, count);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			
+			if(writeListener != null)
+				writeChunkIfWritable(true);
+		}
+	}
+	
 	/**
 	 * 
 	 */
@@ -5,13 +5,9 @@ import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.nio.charset.Charset;
 import java.security.Principal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Collection;
-import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.AsyncContext;
@@ -29,10 +25,12 @@ import javax.servlet.http.HttpUpgradeHandler;
 import javax.servlet.http.Part;
 
 import lzf.webserver.util.IteratorEnumeration;
+import lzf.webserver.util.TimeUtil;
 import lzf.webserver.Context;
 import lzf.webserver.Host;
 import lzf.webserver.LifecycleException;
 import lzf.webserver.Wrapper;
+import lzf.webserver.core.ApplicationAsyncContext;
 import lzf.webserver.core.ApplicationRequestDispatcher;
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
@@ -45,7 +43,6 @@ import lzf.webserver.log.LogFactory;
 */
 public abstract class Request extends RequestBase {
 	
-	public static final SimpleDateFormat HTTP_DATE_FORMAT = new SimpleDateFormat("EEE MMM ddHH:mm:ss 'GMT' yyyy",Locale.US);
 	
 	private static final Log log = LogFactory.getLog(Request.class);
 	
@@ -88,6 +85,12 @@ public abstract class Request extends RequestBase {
 	//ôתͣûʹתʱΪREQUEST
 	private DispatcherType dispatcherType = DispatcherType.REQUEST;
 	
+	//ո
+	protected Connector connector = null;
+	
+	//startAsync󴴽첽
+	private volatile ApplicationAsyncContext asyncContext = null;
+	
 	/**
 	 * ȡֵ
 	 * @param 
@@ -199,28 +202,70 @@ public abstract class Request extends RequestBase {
 
 	@Override
 	public AsyncContext startAsync() throws IllegalStateException {
-		throw new UnsupportedOperationException();
+		return startAsync(new RequestFacade(this), new ResponseFacade(response), true);
 	}
 
 	@Override
 	public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse)
 			throws IllegalStateException {
-		throw new UnsupportedOperationException();
+		return startAsync(servletRequest, servletResponse, false);
+	}
+	
+	/**
+	 * 첽ģʽdispatchٴεԭеAsyncContext
+	 * @param servletRequest 첽ĳе
+	 * @param servletResponse 첽ĳеӦ
+	 * @param original ǷΪԭʼӦ
+	 * @return AsyncContext
+	 */
+	synchronized AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse, 
+			boolean original) throws IllegalStateException {
+		
+		if(!isAsyncSupported())
+			throw new IllegalStateException(sm.getString("Request.startAsync.e0"));
+		
+		if(asyncContext == null)
+			asyncContext = new ApplicationAsyncContext(this, servletRequest, servletResponse, original);
+		else
+			asyncContext.restart(servletRequest, servletResponse, original);
+		
+		return asyncContext;
 	}
 
 	@Override
 	public boolean isAsyncStarted() {
-		throw new UnsupportedOperationException();
+		return asyncContext != null && asyncContext.isStarted();
 	}
 
 	@Override
 	public boolean isAsyncSupported() {
-		return false;
+		return true;
 	}
 
+	/**
+	 * @throws IllegalStateException ûд첽ģʽ
+	 */
 	@Override
 	public AsyncContext getAsyncContext() {
-		throw new UnsupportedOperationException();
+		
+		if(!isAsyncStarted())
+			throw new IllegalStateException(sm.getString("Request.getAsyncContext.e0"));
+		
+		return asyncContext;
+	}
+	
+	/**
+	 * @return 첽ģûеùstartAsyncʱnull
+	 */
+	public ApplicationAsyncContext getApplicationAsyncContext() {
+		return asyncContext;
+	}
+	
+	/**
+	 * @return ո
+	 */
+	public Connector getConnector() {
+		return connector;
 	}
 
 	/**
@@ -252,13 +297,12 @@ public abstract class Request extends RequestBase {
 			return -1;
 		}
 		
-		try {
-			Date d = HTTP_DATE_FORMAT.parse(date);
-			return d.getTime();
-		} catch (ParseException e) {
-			log.warn("Request.getDateHeader.w0", e);
-			return -1;
-		}
+		long time = TimeUtil.parseHttpDate(date);
+		
+		if(time == -1)
+			log.warn(sm.getString("Request.getDateHeader.w0", name, date));
+		
+		return time;
 	}
 
 	/**
@@ -423,6 +467,13 @@ public abstract class Request extends RequestBase {
 		if(create)
 			return getSession();
 		
+		//ѾȡߴSession
+		if(session != null)
+			return session;
+		
+		if(context.isStateless())
+			return null;
+		
 		//URLCookieвSessionID
 		if(this.sessionId == null)
 			this.sessionId = getRequestedSessionId();
@@ -442,8 +493,9 @@ public abstract class Request extends RequestBase {
 	}
 
 	/**
-	 * еSessionֶλȡSessionûҵ򴴽һµSession
-	 * ͬgetSession(true)
+	 * еSessionֶλȡSessionûҵ򴴽һµSessionͨCookieSessionID
+	 * ͬgetSession(true)WebӦòʹSessionʱnull
+	 * @throws IllegalStateException ҪSessionӦѾύ
 	 */
 	@Override
 	public HttpSession getSession() {
@@ -451,16 +503,27 @@ public abstract class Request extends RequestBase {
 		if(session != null)
 			return session;
 		
+		if(context.isStateless())
+			return null;
+		
 		if(this.sessionId == null)
 			this.sessionId = getRequestedSessionId();
 		
 		try {
-			if(sessionId == null) {
-				session = context.getSessionManager().getHttpSession(null, true);
-			} else {
-				session = context.getSessionManager().getHttpSession(sessionId, true);
+			if(sessionId != null) {
+				session = context.getSessionManager().getHttpSession(sessionId, false);
+				
+				if(session != null)
+					return session;
 			}
 			
+			//ӦѾύʱ޷Cookie
+			if(response.isCommitted())
+				throw new IllegalStateException(sm.getString("Request.getSession.e1"));
+			
+			session = context.getSessionManager().getHttpSession(null, true);
+			response.addCookie(context.createSessionCookie(session.getId()));
+			
 			return this.session;
 			
 		} catch (LifecycleException e) {
@@ -471,11 +534,19 @@ public abstract class Request extends RequestBase {
 
 	@Override
 	public String changeSessionId() {
+		
+		HttpSession session = getSession(false);
+		
+		if(session == null)
+			throw new IllegalStateException(sm.getString("Request.changeSessionId.e0"));
+		
 		try {
-			if(session != null)
-				return context.getSessionManager().changeSessionId(session.getId());
+			String newId = context.getSessionManager().changeSessionId(session.getId());
+			
+			if(newId != null && !response.isCommitted())
+				response.addCookie(context.createSessionCookie(newId));
 			
-			return context.getSessionManager().changeSessionId(getSession().getId());
+			return newId;
 			
 		} catch(LifecycleException e) {
 			log.error(sm.getString("Request.getSession.e0", context.getName()), e);
@@ -85,20 +85,36 @@ public abstract class RequestBase implements HttpServletRequest {
 
 	/**
 	 * ȡHTTPֶγ
-	 * @return ֶγ(int)
+	 * @return ֶγ(int)ûContent-Lengthͷʽʱ-1
 	 */
 	@Override
 	public final int getContentLength() {
-		return Integer.valueOf(getHeader("Content-Length"));
+		
+		long length = getContentLengthLong();
+		
+		if(length > Integer.MAX_VALUE)
+			return -1;
+		
+		return (int) length;
 	}
 
 	/**
 	 * ȡHTTPֶγ
-	 * @return ֶγ(long)
+	 * @return ֶγ(long)ûContent-Lengthͷʽʱ-1
 	 */
 	@Override
 	public final long getContentLengthLong() {
-		return Long.valueOf(getHeader("Content-Length"));
+		
+		String length = getHeader("Content-Length");
+		
+		if(length == null)
+			return -1;
+		
+		try {
+			return Long.parseLong(length.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
 	}
 
 	/**
@@ -227,7 +227,7 @@ public class RequestFacade implements HttpServletRequest {
 	@Override
 	public AsyncContext startAsync() throws IllegalStateException {
 		//System.out.println("startAsync");
-		return request.startAsync();
+		return request.startAsync(this, new ResponseFacade(request.getResponse()), true);
 	}
 
 	@Override
@@ -246,7 +246,7 @@ public class RequestFacade implements HttpServletRequest {
 	@Override
 	public boolean isAsyncSupported() {
 		//System.out.println("isAsyncSupported");
-		return request.isAsyncStarted();
+		return request.isAsyncSupported();
 	}
 
 	@Override
@@ -19,6 +19,9 @@ public abstract class Response extends ResponseBase {
 	
 	protected Locale locale;
 	
+	//Ӧύǰļ
+	protected ResponseCommitListener commitListener = null;
+	
 	public Response() {
 		super();
 	}
@@ -35,6 +38,7 @@ public abstract class Response extends ResponseBase {
 	@Override
 	public synchronized final void sendError(int sc, String msg) throws IOException {
 		committed = true;
+		status = sc;
 		sendError0(sc, msg);
 	}
 	
@@ -50,6 +54,7 @@ public abstract class Response extends ResponseBase {
 	@Override
 	public synchronized final void sendError(int sc) throws IOException {
 		committed = true;
+		status = sc;
 		setIntHeader("Content-Length", 0);
 		sendError0(sc);
 	}
@@ -79,7 +84,7 @@ public abstract class Response extends ResponseBase {
 			throw new IllegalStateException(sm.getString("Response.reset.w0"));
 		
 		headerMap.clear();
-		status = 0;
+		status = SC_OK;
 	}
 
 	/**
@@ -90,6 +95,17 @@ public abstract class Response extends ResponseBase {
 		return committed;
 	}
 	
+	/**
+	 * @param listener ӦύǰõļΪnullʱƳ
+	 */
+	public void setCommitListener(ResponseCommitListener listener) {
+		this.commitListener = listener;
+	}
+	
+	public ResponseCommitListener getCommitListener() {
+		return commitListener;
+	}
+	
 	@Override
 	public void setLocale(Locale loc) {
 		this.locale = loc;
@@ -2,12 +2,10 @@ package lzf.webserver.connector;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.ServletOutputStream;
@@ -15,6 +13,7 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
 import lzf.webserver.util.StringManager;
+import lzf.webserver.util.TimeUtil;
 
 
 /**
@@ -25,11 +24,9 @@ import lzf.webserver.util.StringManager;
 */
 public abstract class ResponseBase implements HttpServletResponse {
 	
-	public static final SimpleDateFormat HTTP_DATE_FORMAT = new SimpleDateFormat("EEE MMM dd HH:mm:ss 'GMT' yyyy",Locale.US);
-	
 	protected static final StringManager sm = StringManager.getManager(ResponseBase.class);
 	
-	protected int status;
+	protected int status = SC_OK;
 	
 	protected final Map<String, String> headerMap = new LinkedHashMap<>();
 	
@@ -130,7 +127,7 @@ public abstract class ResponseBase implements HttpServletResponse {
 		//תΪ׼HTTPʽGMTʱ
 		int maxAge = cookie.getMaxAge();
 		if(maxAge > 0)
-			sb.append("; Expires=" + HTTP_DATE_FORMAT.format(System.currentTimeMillis() + cookie.getMaxAge() * 1000));
+			sb.append("; Expires=" + TimeUtil.formatHttpDate(System.currentTimeMillis() + cookie.getMaxAge() * 1000));
 		
 		String domain = cookie.getDomain();
 		if(domain != null)
@@ -189,7 +186,7 @@ public abstract class ResponseBase implements HttpServletResponse {
 	 */
 	@Override
 	public final void setDateHeader(String name, long date) {
-		headerMap.put(name, HTTP_DATE_FORMAT.format(date));
+		headerMap.put(name, TimeUtil.formatHttpDate(date));
 	}
 
 	/**
@@ -203,7 +200,7 @@ public abstract class ResponseBase implements HttpServletResponse {
 		String val = headerMap.get(name);
 		
 		if(val != null) {
-			val += "; " + HTTP_DATE_FORMAT.format(date);
+			val += "; " + TimeUtil.formatHttpDate(date);
 			headerMap.put(name, val);
 			return;
 		}
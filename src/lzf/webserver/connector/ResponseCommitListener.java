@@ -0,0 +1,20 @@
+package lzf.webserver.connector;
+
+import java.nio.ByteBuffer;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201888 10:12:37
+* @Description ӦύӦдͻ֮ǰ
+* ӦҪȡӦͷӦԷдģʽдͨsendError͵Ӧᴥü
+*/
+public interface ResponseCommitListener {
+
+	/**
+	 * Ӧύʱ״̬ӦͷѾȷ
+	 * @param response Ӧ
+	 * @param content Ӧֻͼڸ÷ִڼЧҪʱӦ
+	 */
+	public void beforeCommit(Response response, ByteBuffer content);
+}
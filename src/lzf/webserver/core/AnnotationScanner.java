@@ -0,0 +1,633 @@
+package lzf.webserver.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018813 2:05:18
+* @Description ɨWebӦWEB-INF/classesĿ¼WEB-INF/libJARе@WebServlet@WebFilter@WebListenerע
+* ֱӽļĳأκࣺûעʱʣಿ֣
+* עʱżRuntimeVisibleAnnotations
+* classesĿ¼ļ顢JARForkJoin̳߳вɨ裬
+* JARɨJARݵժҪڹĿ¼£JARûб仯ʱҪɨ裬ͬWebӦҲԹ
+*/
+final class AnnotationScanner {
+
+	private static final StringManager sm = StringManager.getManager(AnnotationScanner.class);
+
+	private static final Log log = LogFactory.getLog(AnnotationScanner.class);
+
+	private static final String WEB_SERVLET = "Ljavax/servlet/annotation/WebServlet;";
+
+	private static final String WEB_FILTER = "Ljavax/servlet/annotation/WebFilter;";
+
+	private static final String WEB_LISTENER = "Ljavax/servlet/annotation/WebListener;";
+
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+	private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+	private static final int CACHE_MAGIC = 0x4C5A4153;
+
+	//ʽ汾ʽ仯ʱӣɰ汾Ļᱻ
+	private static final int CACHE_VERSION = 1;
+
+	//classesĿ¼ÿɨļ
+	private static final int CLASSES_PER_TASK = 256;
+
+	private final String contextName;
+
+	//JARɨĻĿ¼
+	private final File cacheFolder;
+
+	private final JarScanFilter filter;
+
+	//JAR
+	private final AtomicInteger skippedJars = new AtomicInteger();
+
+	//ʹûJAR
+	private final AtomicInteger cachedJars = new AtomicInteger();
+
+	/**
+	 * @param contextName WebӦƣ־
+	 * @param cacheFolder JARɨĻĿ¼
+	 * @param filter JARΪnullʱɨJAR
+	 */
+	AnnotationScanner(String contextName, File cacheFolder, JarScanFilter filter) {
+		this.contextName = contextName;
+		this.cacheFolder = cacheFolder;
+		this.filter = filter;
+	}
+
+	/**
+	 * ɨclassesĿ¼JARForkJoin߳еʱʹø̳߳߳أʹù̳߳
+	 * @param classesFolder WEB-INF/classesĿ¼
+	 * @param jars WEB-INF/libеJAR
+	 * @return ɨclassesĿ¼еJAR֮ǰJARе˳ظʱǰ
+	 */
+	DeploymentDescriptor scan(File classesFolder, List<File> jars) {
+
+		List<ForkJoinTask<DeploymentDescriptor>> tasks = new ArrayList<>();
+
+		List<File> classFiles = new ArrayList<>();
+		listClassFiles(classesFolder, classFiles);
+
+		for(int i = 0; i < classFiles.size(); i += CLASSES_PER_TASK) {
+
+			List<File> group = classFiles.subList(i, Math.min(i + CLASSES_PER_TASK, classFiles.size()));
+			tasks.add(ForkJoinTask.adapt(() -> scanClassFiles(group)));
+		}
+
+		for(File jar : jars) {
+
+			if(filter != null && !filter.check(jar.getName())) {
+				skippedJars.incrementAndGet();
+				continue;
+			}
+
+			tasks.add(ForkJoinTask.adapt(() -> scanJar(jar)));
+		}
+
+		ForkJoinTask.invokeAll(tasks);
+
+		DeploymentDescriptor result = new DeploymentDescriptor();
+
+		for(ForkJoinTask<DeploymentDescriptor> task : tasks)
+			result.merge(task.join());
+
+		return result;
+	}
+
+	int getSkippedJars() {
+		return skippedJars.get();
+	}
+
+	int getCachedJars() {
+		return cachedJars.get();
+	}
+
+	private static void listClassFiles(File folder, List<File> classFiles) {
+
+		File[] files = folder.listFiles();
+
+		if(files == null)
+			return;
+
+		for(File file : files) {
+			if(file.isDirectory())
+				listClassFiles(file, classFiles);
+			else if(file.getName().endsWith(".class"))
+				classFiles.add(file);
+		}
+	}
+
+	private DeploymentDescriptor scanClassFiles(List<File> classFiles) {
+
+		DeploymentDescriptor result = new DeploymentDescriptor();
+
+		for(File file : classFiles) {
+
+			try(InputStream is = new FileInputStream(file)) {
+				scanClass(is, result);
+			} catch (IOException | RuntimeException e) {
+				log.warn(sm.getString("AnnotationScanner.scanClass.w0", contextName, file.getAbsolutePath()), e);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * ɨ赥JARJARĿ¼ժҪ뻺һʱֱʹû
+	 */
+	private DeploymentDescriptor scanJar(File jar) {
+
+		try(ZipFile zipFile = new ZipFile(jar)) {
+
+			File cache = new File(cacheFolder, digest(zipFile) + ".scan");
+			DeploymentDescriptor result = loadCache(cache);
+
+			if(result != null) {
+				cachedJars.incrementAndGet();
+				return result;
+			}
+
+			result = new DeploymentDescriptor();
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while(entries.hasMoreElements()) {
+
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+
+				//META-INFµ(汾JARе)module-infoWeb
+				if(entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/")
+						|| name.endsWith("module-info.class"))
+					continue;
+
+				try(InputStream is = zipFile.getInputStream(entry)) {
+					scanClass(is, result);
+				} catch (IOException | RuntimeException e) {
+					log.warn(sm.getString("AnnotationScanner.scanClass.w0", contextName, jar.getName() + "!/" + name), e);
+				}
+			}
+
+			saveCache(cache, result);
+			return result;
+
+		} catch (IOException e) {
+			log.warn(sm.getString("AnnotationScanner.scanJar.w0", contextName, jar.getAbsolutePath()), e);
+			return new DeploymentDescriptor();
+		}
+	}
+
+	/**
+	 * JARĿ¼ÿĿơCRC32ʹСժҪ
+	 * һļݱ仯ıժҪҪȡJARеļ
+	 */
+	private static String digest(ZipFile zipFile) throws IOException {
+
+		MessageDigest md;
+
+		try {
+			md = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+
+		byte[] b = new byte[16];
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+		while(entries.hasMoreElements()) {
+
+			ZipEntry entry = entries.nextElement();
+			md.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+
+			long crc = entry.getCrc();
+			long size = entry.getSize();
+
+			for(int i = 0; i < 8; i++) {
+				b[i] = (byte) (crc >>> (i * 8));
+				b[i + 8] = (byte) (size >>> (i * 8));
+			}
+
+			md.update(b);
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for(byte v : md.digest())
+			sb.append(Character.forDigit((v >> 4) & 0xF, 16)).append(Character.forDigit(v & 0xF, 16));
+
+		return sb.toString();
+	}
+
+	/**
+	 * @return ɨ治ڡʽ汾ͬļʱnull
+	 */
+	private static DeploymentDescriptor loadCache(File cache) {
+
+		if(!cache.isFile())
+			return null;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+
+			if(in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION)
+				return null;
+
+			return DeploymentDescriptor.readFrom(in);
+
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * дʱļ滻WebӦͬʱɨͬһJARʱĻ
+	 */
+	private void saveCache(File cache, DeploymentDescriptor result) {
+
+		File temp = null;
+
+		try {
+			if(!cacheFolder.exists())
+				cacheFolder.mkdirs();
+
+			temp = File.createTempFile(cache.getName(), ".tmp", cacheFolder);
+
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(CACHE_VERSION);
+				result.writeTo(out);
+			}
+
+			Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException e) {
+			log.warn(sm.getString("AnnotationScanner.saveCache.w0", cache.getAbsolutePath()), e);
+
+			if(temp != null)
+				temp.delete();
+		}
+	}
+
+	/**
+	 * ļ@WebServlet@WebFilter@WebListenerעӵɨ
+	 * @param is ļ
+	 * @param result ɨ
+	 */
+	private static void scanClass(InputStream is, DeploymentDescriptor result) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+
+		if(in.readInt() != CLASS_MAGIC)
+			return;
+
+		in.readUnsignedShort();
+		in.readUnsignedShort();
+
+		ConstantPool pool = new ConstantPool(in);
+
+		if(!pool.annotated)
+			return;
+
+		in.readUnsignedShort();
+		String className = pool.getClassName(in.readUnsignedShort());
+		in.readUnsignedShort();
+
+		skipFully(in, in.readUnsignedShort() * 2);
+
+		skipMembers(in);
+		skipMembers(in);
+
+		for(int i = in.readUnsignedShort(); i > 0; i--) {
+
+			String name = pool.getUtf8(in.readUnsignedShort());
+			int length = in.readInt();
+
+			if(!RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+				skipFully(in, length);
+				continue;
+			}
+
+			for(int j = in.readUnsignedShort(); j > 0; j--) {
+
+				String type = pool.getUtf8(in.readUnsignedShort());
+				Map<String, Object> elements = readElements(in, pool);
+
+				if(WEB_SERVLET.equals(type))
+					addServlet(className, elements, result);
+				else if(WEB_FILTER.equals(type))
+					addFilter(className, elements, result);
+				else if(WEB_LISTENER.equals(type) && !result.listeners.contains(className))
+					result.listeners.add(className);
+			}
+
+			return;
+		}
+	}
+
+	private static void addServlet(String className, Map<String, Object> elements, DeploymentDescriptor result) {
+
+		String name = getString(elements, "name", className);
+
+		if(result.getServlet(name) != null)
+			return;
+
+		DeploymentDescriptor.ServletDef servlet = new DeploymentDescriptor.ServletDef(name, className);
+
+		Object loadOnStartup = elements.get("loadOnStartup");
+
+		if(loadOnStartup instanceof Integer)
+			servlet.loadOnStartup = (Integer) loadOnStartup;
+
+		addInitParams(elements, servlet.initParams);
+		result.servlets.add(servlet);
+
+		for(String urlPattern : getUrlPatterns(elements))
+			result.servletMappings.add(new String[] { name, urlPattern });
+	}
+
+	private static void addFilter(String className, Map<String, Object> elements, DeploymentDescriptor result) {
+
+		String name = getString(elements, "filterName", className);
+
+		if(result.getFilter(name) != null)
+			return;
+
+		DeploymentDescriptor.FilterDef filter = new DeploymentDescriptor.FilterDef(name, className);
+
+		addInitParams(elements, filter.initParams);
+		filter.urlPatterns.addAll(getUrlPatterns(elements));
+		filter.servletNames.addAll(getStrings(elements, "servletNames"));
+
+		result.filters.add(filter);
+	}
+
+	/**
+	 * @return valueurlPatternsеURLӳ
+	 */
+	private static List<String> getUrlPatterns(Map<String, Object> elements) {
+
+		List<String> urlPatterns = new ArrayList<>(getStrings(elements, "value"));
+		urlPatterns.addAll(getStrings(elements, "urlPatterns"));
+		return urlPatterns;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void addInitParams(Map<String, Object> elements, Map<String, String> initParams) {
+
+		Object value = elements.get("initParams");
+
+		if(!(value instanceof List))
+			return;
+
+		//ÿԪΪ@WebInitParamע
+		for(Object param : (List<Object>) value) {
+
+			if(!(param instanceof Map))
+				continue;
+
+			Map<String, Object> map = (Map<String, Object>) param;
+			String name = getString(map, "name", null);
+
+			if(name != null)
+				initParams.put(name, getString(map, "value", ""));
+		}
+	}
+
+	private static String getString(Map<String, Object> elements, String name, String defaultValue) {
+
+		Object value = elements.get(name);
+
+		if(value instanceof String && !((String) value).isEmpty())
+			return (String) value;
+
+		return defaultValue;
+	}
+
+	private static List<String> getStrings(Map<String, Object> elements, String name) {
+
+		Object value = elements.get(name);
+
+		if(value instanceof String)
+			return Collections.singletonList((String) value);
+
+		if(!(value instanceof List))
+			return Collections.emptyList();
+
+		List<String> list = new ArrayList<>();
+
+		for(Object element : (List<?>) value) {
+			if(element instanceof String)
+				list.add((String) element);
+		}
+
+		return list;
+	}
+
+	/**
+	 * ȡעԣעѾȡ
+	 * @return ƺֵֵΪStringIntegerListMap(Ƕ׵ע)ҪΪnull
+	 */
+	private static Map<String, Object> readElements(DataInputStream in, ConstantPool pool) throws IOException {
+
+		Map<String, Object> elements = new HashMap<>();
+
+		for(int i = in.readUnsignedShort(); i > 0; i--) {
+			String name = pool.getUtf8(in.readUnsignedShort());
+			elements.put(name, readElementValue(in, pool));
+		}
+
+		return elements;
+	}
+
+	private static Object readElementValue(DataInputStream in, ConstantPool pool) throws IOException {
+
+		int tag = in.readUnsignedByte();
+
+		switch(tag) {
+		case 's':
+			return pool.getUtf8(in.readUnsignedShort());
+
+		case 'I': case 'S': case 'B': case 'C': case 'Z':
+			return pool.getInt(in.readUnsignedShort());
+
+		case 'J': case 'D': case 'F': case 'c':
+			in.readUnsignedShort();
+			return null;
+
+		case 'e':
+			in.readUnsignedShort();
+			return pool.getUtf8(in.readUnsignedShort());
+
+		case '@':
+			in.readUnsignedShort();
+			return readElements(in, pool);
+
+		case '[':
+			int length = in.readUnsignedShort();
+			List<Object> values = new ArrayList<>(length);
+
+			for(int i = 0; i < length; i++)
+				values.add(readElementValue(in, pool));
+
+			return values;
+
+		default:
+			throw new IOException("Unknown element value tag: " + (char) tag);
+		}
+	}
+
+	/**
+	 * ֶλ򷽷
+	 */
+	private static void skipMembers(DataInputStream in) throws IOException {
+
+		for(int i = in.readUnsignedShort(); i > 0; i--) {
+
+			skipFully(in, 6);
+
+			for(int j = in.readUnsignedShort(); j > 0; j--) {
+				in.readUnsignedShort();
+				skipFully(in, in.readInt());
+			}
+		}
+	}
+
+	private static void skipFully(DataInputStream in, int length) throws IOException {
+
+		while(length > 0) {
+
+			int skipped = in.skipBytes(length);
+
+			if(skipped <= 0)
+				throw new EOFException();
+
+			length -= skipped;
+		}
+	}
+
+	/**
+	 * ļĳأֻUtf8IntegerClass
+	 */
+	private static final class ConstantPool {
+
+		private final String[] utf8;
+
+		//IntegerֵClass
+		private final int[] values;
+
+		//ǷҪע
+		final boolean annotated;
+
+		ConstantPool(DataInputStream in) throws IOException {
+
+			int count = in.readUnsignedShort();
+			boolean annotated = false;
+
+			utf8 = new String[count];
+			values = new int[count];
+
+			for(int i = 1; i < count; i++) {
+
+				int tag = in.readUnsignedByte();
+
+				switch(tag) {
+				case 1: //Utf8
+					String s = in.readUTF();
+					utf8[i] = s;
+
+					if(!annotated && s.startsWith("Ljavax/servlet/annotation/Web"))
+						annotated = s.equals(WEB_SERVLET) || s.equals(WEB_FILTER) || s.equals(WEB_LISTENER);
+					break;
+
+				case 3: //Integer
+					values[i] = in.readInt();
+					break;
+
+				case 4: //Float
+				case 9: //Fieldref
+				case 10: //Methodref
+				case 11: //InterfaceMethodref
+				case 12: //NameAndType
+				case 17: //Dynamic
+				case 18: //InvokeDynamic
+					in.readInt();
+					break;
+
+				case 5: //Long
+				case 6: //Double
+					in.readLong();
+					i++;
+					break;
+
+				case 7: //Class
+					values[i] = in.readUnsignedShort();
+					break;
+
+				case 8: //String
+				case 16: //MethodType
+				case 19: //Module
+				case 20: //Package
+					in.readUnsignedShort();
+					break;
+
+				case 15: //MethodHandle
+					in.readUnsignedByte();
+					in.readUnsignedShort();
+					break;
+
+				default:
+					throw new IOException("Unknown constant pool tag: " + tag);
+				}
+			}
+
+			this.annotated = annotated;
+		}
+
+		String getUtf8(int index) {
+			return utf8[index];
+		}
+
+		int getInt(int index) {
+			return values[index];
+		}
+
+		/**
+		 * @return ClassӦcom.example.Main
+		 */
+		String getClassName(int index) {
+			return utf8[values[index]].replace('/', '.');
+		}
+	}
+}
@@ -0,0 +1,532 @@
+package lzf.webserver.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import lzf.webserver.Context;
+import lzf.webserver.connector.Request;
+import lzf.webserver.connector.Response;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201884 2:16:08
+* @Description Servlet 3.0첽ģstartAsyncServletֱӷزͷҵ߼̣߳
+* Ӧڵcompletedispatchɻ߳ʱŻύͻ
+*/
+public final class ApplicationAsyncContext implements AsyncContext {
+
+	private static final StringManager sm = StringManager.getManager(ApplicationAsyncContext.class);
+
+	private static final Log log = LogFactory.getLog(ApplicationAsyncContext.class);
+
+	//Ĭϳʱʱ()
+	public static final long DEFAULT_TIMEOUT = 30000;
+
+	//ѵstartAsyncServletִ߳
+	private static final int STARTING = 0;
+
+	//Servletδؾ͵complete
+	private static final int COMPLETE_PENDING = 1;
+
+	//Servletδؾ͵dispatch
+	private static final int DISPATCH_PENDING = 2;
+
+	//ServletѾأȴcompletedispatch
+	private static final int STARTED = 3;
+
+	//ִdispatch
+	private static final int DISPATCHING = 4;
+
+	//첽Ѿ
+	private static final int COMPLETED = 5;
+
+	//첽ĳʱ߳
+	private static final ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1,
+			new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "AsyncTimeoutProcesser");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	static {
+		timeoutScheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	//ڲRequest
+	private final Request request;
+
+	//ڲResponse
+	private final Response response;
+
+	//startAsyncʱ
+	private ServletRequest servletRequest;
+
+	//startAsyncʱӦ
+	private ServletResponse servletResponse;
+
+	//ǷʹԭʼӦ
+	private boolean originalRequestAndResponse;
+
+	//עAsyncListener
+	private final List<ListenerHolder> listeners = new ArrayList<>();
+
+	//ʱʱ()Сڵ0ʾʱ
+	private volatile long timeout = DEFAULT_TIMEOUT;
+
+	private ScheduledFuture<?> timeoutFuture = null;
+
+	//첽ִе½첽ģʽʱᱻƳ
+	private final List<Runnable> completionTasks = new ArrayList<>(1);
+
+	//ҪתRequestDispatcherdispatchʱ
+	private RequestDispatcher dispatcher = null;
+
+	private int state = STARTING;
+
+	//ǷѾύӦֻ֪֤ͨһ
+	private final AtomicBoolean finished = new AtomicBoolean(false);
+
+	public ApplicationAsyncContext(Request request, ServletRequest servletRequest, ServletResponse servletResponse,
+			boolean originalRequestAndResponse) {
+
+		this.request = request;
+		this.response = request.getResponse();
+		this.servletRequest = servletRequest;
+		this.servletResponse = servletResponse;
+		this.originalRequestAndResponse = originalRequestAndResponse;
+	}
+
+	/**
+	 * dispatchٴεstartAsync½첽ģʽעļյonStartAsync¼Ƴ
+	 * @throws IllegalStateException ǰ첽ûdispatch
+	 */
+	public void restart(ServletRequest servletRequest, ServletResponse servletResponse,
+			boolean originalRequestAndResponse) {
+
+		List<ListenerHolder> oldListeners;
+
+		synchronized(this) {
+
+			if(state != DISPATCHING)
+				throw new IllegalStateException(sm.getString("ApplicationAsyncContext.restart.e0"));
+
+			this.servletRequest = servletRequest;
+			this.servletResponse = servletResponse;
+			this.originalRequestAndResponse = originalRequestAndResponse;
+			this.timeout = DEFAULT_TIMEOUT;
+			this.dispatcher = null;
+			this.state = STARTING;
+
+			oldListeners = new ArrayList<>(listeners);
+			listeners.clear();
+		}
+
+		for(ListenerHolder holder : oldListeners) {
+			try {
+				holder.listener.onStartAsync(new AsyncEvent(this, holder.request, holder.response));
+			} catch (IOException e) {
+				log.error(sm.getString("ApplicationAsyncContext.listener.e0"), e);
+			}
+		}
+	}
+
+	/**
+	 * @return ServletǷ첽ģʽ(ѵstartAsyncδcompletedispatch)
+	 */
+	public synchronized boolean isStarted() {
+		return state == STARTING || state == STARTED;
+	}
+
+	/**
+	 * StandardWrapperValveServletغã첽״̬˭ύӦ
+	 * @return trueʾӦɸ첽ύ̲߳ӦٴӦ
+	 */
+	boolean containerReturned() {
+
+		synchronized(this) {
+
+			switch(state) {
+			case STARTING:
+				state = STARTED;
+				scheduleTimeout();
+				return true;
+			case COMPLETE_PENDING:
+				state = COMPLETED;
+				break;
+			case DISPATCH_PENDING:
+				state = DISPATCHING;
+				getExecutor().execute(new DispatchProcesser());
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		//ύӦ֪ͨ
+		doComplete();
+		return true;
+	}
+
+	@Override
+	public ServletRequest getRequest() {
+		return servletRequest;
+	}
+
+	@Override
+	public ServletResponse getResponse() {
+		return servletResponse;
+	}
+
+	@Override
+	public boolean hasOriginalRequestAndResponse() {
+		return originalRequestAndResponse;
+	}
+
+	@Override
+	public void dispatch() {
+
+		String uri = request.getRequestURI();
+		Context context = request.getContext();
+
+		//ContextURIǰ׺ҪȥRequestDispatcherֻWebӦõ·
+		if(!context.getName().equals("ROOT"))
+			uri = uri.substring(context.getName().length() + 1);
+
+		dispatch(uri);
+	}
+
+	@Override
+	public void dispatch(String path) {
+		dispatch0(servletRequest.getRequestDispatcher(path));
+	}
+
+	@Override
+	public void dispatch(ServletContext context, String path) {
+		dispatch0(context.getRequestDispatcher(path));
+	}
+
+	private synchronized void dispatch0(RequestDispatcher dispatcher) {
+
+		if(state == STARTING) {
+			this.dispatcher = dispatcher;
+			state = DISPATCH_PENDING;
+
+		} else if(state == STARTED) {
+			this.dispatcher = dispatcher;
+			cancelTimeout();
+			state = DISPATCHING;
+			getExecutor().execute(new DispatchProcesser());
+
+		} else {
+			throw new IllegalStateException(sm.getString("ApplicationAsyncContext.dispatch.e0"));
+		}
+	}
+
+	/**
+	 * 첽ύӦServletûзأServletغύ
+	 */
+	@Override
+	public void complete() {
+
+		synchronized(this) {
+
+			if(state == STARTING) {
+				state = COMPLETE_PENDING;
+				return;
+
+			} else if(state == STARTED) {
+				cancelTimeout();
+				state = COMPLETED;
+
+			} else if(state == COMPLETED) {
+				return;
+
+			} else {
+				throw new IllegalStateException(sm.getString("ApplicationAsyncContext.complete.e0"));
+			}
+		}
+
+		doComplete();
+	}
+
+	/**
+	 * ҵ߼ִִ̳߳ʱ߳ΪWebӦõ
+	 */
+	@Override
+	public void start(final Runnable run) {
+
+		final ClassLoader classLoader = request.getContext().getWebappLoader().getClassLoader();
+
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				Thread.currentThread().setContextClassLoader(classLoader);
+				try {
+					run.run();
+				} catch (RuntimeException e) {
+					log.error(sm.getString("ApplicationAsyncContext.start.e0"), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * ע첽(ͳʱ)ִе
+	 * @return 첽Ѿʱfalse񲻻ᱻִ
+	 */
+	public synchronized boolean addCompletionTask(Runnable task) {
+
+		if(state == COMPLETED)
+			return false;
+
+		completionTasks.add(task);
+		return true;
+	}
+
+	@Override
+	public void addListener(AsyncListener listener) {
+		addListener(listener, servletRequest, servletResponse);
+	}
+
+	@Override
+	public synchronized void addListener(AsyncListener listener, ServletRequest servletRequest,
+			ServletResponse servletResponse) {
+
+		if(listener == null)
+			throw new IllegalArgumentException();
+
+		listeners.add(new ListenerHolder(listener, servletRequest, servletResponse));
+	}
+
+	@Override
+	public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+		try {
+			return clazz.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new ServletException(e);
+		}
+	}
+
+	@Override
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * ύӦ֪ͨǰ״̬ѾΪCOMPLETEDʱܳиö
+	 * ύӦҪIOҲܻصöķ
+	 */
+	private void doComplete() {
+
+		if(!finished.compareAndSet(false, true))
+			return;
+
+		try {
+			StandardWrapperValve.finishResponse(request.getContext(), servletRequest, response);
+		} catch (IOException e) {
+			log.error("", e);
+		}
+
+		fireOnComplete();
+	}
+
+	private void scheduleTimeout() {
+
+		if(timeout <= 0)
+			return;
+
+		timeoutFuture = timeoutScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				getExecutor().execute(new TimeoutProcesser());
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+	}
+
+	private void cancelTimeout() {
+
+		if(timeoutFuture != null) {
+			timeoutFuture.cancel(false);
+			timeoutFuture = null;
+		}
+	}
+
+	private Executor getExecutor() {
+		return request.getConnector().getHandler().getExecutor();
+	}
+
+	private synchronized List<ListenerHolder> copyListeners() {
+		return new ArrayList<>(listeners);
+	}
+
+	private void fireOnComplete() {
+
+		for(ListenerHolder holder : copyListeners()) {
+			try {
+				holder.listener.onComplete(new AsyncEvent(this, holder.request, holder.response));
+			} catch (IOException e) {
+				log.error(sm.getString("ApplicationAsyncContext.listener.e0"), e);
+			}
+		}
+
+		List<Runnable> tasks;
+
+		synchronized(this) {
+			tasks = new ArrayList<>(completionTasks);
+			completionTasks.clear();
+		}
+
+		for(Runnable task : tasks)
+			task.run();
+	}
+
+	private void fireOnError(Throwable t) {
+
+		for(ListenerHolder holder : copyListeners()) {
+			try {
+				holder.listener.onError(new AsyncEvent(this, holder.request, holder.response, t));
+			} catch (IOException e) {
+				log.error(sm.getString("ApplicationAsyncContext.listener.e0"), e);
+			}
+		}
+	}
+
+	/**
+	 * 첽ʱҼûдʱͻ˷500״̬벢첽
+	 */
+	private void sendErrorAndComplete() {
+
+		synchronized(this) {
+
+			if(state == COMPLETED)
+				return;
+
+			state = COMPLETED;
+		}
+
+		if(!finished.compareAndSet(false, true))
+			return;
+
+		//һ¼
+		if(!response.isCommitted())
+			request.getContext().getListenerContainer().runRequestDestroyedEvent(servletRequest);
+
+		try {
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		} catch (IOException e) {
+			log.error("", e);
+		}
+
+		fireOnComplete();
+	}
+
+	/**
+	 * ҵ߼ִ߳dispatchתĿWrapperŻύӦ
+	 */
+	private class DispatchProcesser implements Runnable {
+
+		@Override
+		public void run() {
+
+			try {
+				dispatcher.forward(servletRequest, servletResponse);
+
+			} catch (IOException | ServletException | RuntimeException e) {
+
+				log.error(sm.getString("ApplicationAsyncContext.dispatch.e1"), e);
+				fireOnError(e);
+				sendErrorAndComplete();
+				return;
+			}
+
+			synchronized(ApplicationAsyncContext.this) {
+
+				//תٴεstartAsyncµ첽ڸύ
+				if(state != DISPATCHING)
+					return;
+
+				state = COMPLETED;
+			}
+
+			if(finished.compareAndSet(false, true))
+				fireOnComplete();
+		}
+	}
+
+	/**
+	 * ʱ֪ͨûеcompletedispatch򷵻500״̬
+	 */
+	private class TimeoutProcesser implements Runnable {
+
+		@Override
+		public void run() {
+
+			synchronized(ApplicationAsyncContext.this) {
+				if(state != STARTED)
+					return;
+			}
+
+			for(ListenerHolder holder : copyListeners()) {
+				try {
+					holder.listener.onTimeout(new AsyncEvent(ApplicationAsyncContext.this, holder.request, holder.response));
+				} catch (IOException e) {
+					log.error(sm.getString("ApplicationAsyncContext.listener.e0"), e);
+				}
+			}
+
+			synchronized(ApplicationAsyncContext.this) {
+				if(state != STARTED)
+					return;
+			}
+
+			sendErrorAndComplete();
+		}
+	}
+
+	/**
+	 * עʱӦ
+	 */
+	private static final class ListenerHolder {
+
+		final AsyncListener listener;
+
+		final ServletRequest request;
+
+		final ServletResponse response;
+
+		ListenerHolder(AsyncListener listener, ServletRequest request, ServletResponse response) {
+			this.listener = listener;
+			this.request = request;
+			this.response = response;
+		}
+	}
+}
@@ -1,74 +1,117 @@
 package lzf.webserver.core;
 
-import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import javax.servlet.Filter;
-import javax.servlet.FilterChain;
-import javax.servlet.ServletException;
-import javax.servlet.ServletRequest;
-import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletRequest;
+import lzf.webserver.Wrapper;
 
 /**
  * @author ӷ
  * @version 1.0
  * @date 2018720 13:39:03
- * @Description FilterChainʵ࣬FilterĹ
+ * @Description webӦеFilterΪÿWrapperԤȼƥĹ
+ * ÿWrapperFilterChainи鲢εãServlet
+ * Բ޸ĵĿշʱ滻߳ƥʱҪ
  */
-public class ApplicationFilterChain implements FilterChain {
-
-	public static final int INCR = 8;
-	
-	private ApplicationFilterConfig[] filters = new ApplicationFilterConfig[0];
-	
-	//ǰFilterConfig
-	private int n = 0;
-	
-	
+public class ApplicationFilterChain {
+
+	//ÿWrapper໺URIֱƥ䲻ٻ棬ֹģƥServletľڴ
+	public static final int MAX_CACHED_URI = 256;
+
+	static final ApplicationFilterConfig[] EMPTY = new ApplicationFilterConfig[0];
+
+	//еFilterConfig޸ģӻͷʱ滻
+	private volatile ApplicationFilterConfig[] filters = EMPTY;
+
+	//ǰնӦĹ黺棬ӳ䷢仯ʱ滻
+	private volatile ChainCache chainCache = new ChainCache(EMPTY);
+
 	/**
-	 * ߳˽бʾǰ߳ʵFilters±
+	 * ȡҪĹ飬ûйʹURLƥʱWrapper棬WrapperURI
+	 * ص鲻޸
+	 * @param wrapper ·ɵWrapper
+	 * @param uri URI
+	 * @return ˳еĹ飬ûƥĹ򷵻ؿ
 	 */
-	private ThreadLocal<Integer> pos = new ThreadLocal<Integer>() {
-		//ʼ±Ϊ0
-		@Override
-		protected Integer initialValue() {
-			return 0;
+	ApplicationFilterConfig[] findFilters(Wrapper wrapper, String uri) {
+
+		ChainCache cache = chainCache;
+
+		if(cache.filters.length == 0)
+			return EMPTY;
+
+		ApplicationFilterConfig[] result;
+
+		//ֻServletƥ䣬ͬһWrapperURIͬ
+		if(!cache.matchUri) {
+
+			result = cache.wrapperChains.get(wrapper);
+
+			if(result == null) {
+				result = matchFilters(cache.filters, wrapper, null);
+				cache.wrapperChains.put(wrapper, result);
+			}
+
+			return result;
 		}
-	};
-	
+
+		Map<String, ApplicationFilterConfig[]> uriCache = cache.uriChains.get(wrapper);
+
+		if(uriCache == null) {
+			uriCache = new ConcurrentHashMap<>();
+			Map<String, ApplicationFilterConfig[]> old = cache.uriChains.putIfAbsent(wrapper, uriCache);
+			if(old != null)
+				uriCache = old;
+		}
+
+		result = uriCache.get(uri);
+
+		if(result != null)
+			return result;
+
+		result = matchFilters(cache.filters, wrapper, uri);
+
+		if(uriCache.size() < MAX_CACHED_URI)
+			uriCache.put(uri, result);
+
+		return result;
+	}
+
 	/**
-	 * תһfilter
+	 * գҳURIServletƥĹ
+	 * @param uri URIΪnullʱֻServletƥ
 	 */
-	@Override
-	public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
-		
-		if(pos.get() < n) {
-			
-			ApplicationFilterConfig filterConfig = filters[pos.get()];
-			pos.set(pos.get() + 1);
-			
-			Filter filter = filterConfig.getFilter();
-			String uri = ((HttpServletRequest)request).getRequestURI();
-			
-			for(String pattern : filterConfig.getUrlPatterns()) {
-				
-				if(pattern.indexOf('*') == -1) {
-					if(uri.equals(pattern)) {
-						filter.doFilter(request, response, this);
-						break;
-					}
-						
-				} else {
-					if(uri.matches(pattern.replace("*", ".*?"))) {
-						filter.doFilter(request, response, this);
-						break;
-					}
-				}
-			}
+	private static ApplicationFilterConfig[] matchFilters(ApplicationFilterConfig[] filters, Wrapper wrapper,
+			String uri) {
+
+		ApplicationFilterConfig[] matched = new ApplicationFilterConfig[filters.length];
+		int size = 0;
+
+		String servletName = wrapper.getServletConfig() == null ? null
+				: wrapper.getServletConfig().getServletName();
+
+		for(ApplicationFilterConfig filterConfig : filters) {
+			if((uri != null && filterConfig.matchesUri(uri)) || filterConfig.matchesServletName(servletName))
+				matched[size++] = filterConfig;
 		}
-		
-		pos.set(0);
-		return;
+
+		if(size == 0)
+			return EMPTY;
+
+		if(size == matched.length)
+			return matched;
+
+		ApplicationFilterConfig[] result = new ApplicationFilterConfig[size];
+		System.arraycopy(matched, 0, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * ǰĹؽ棬ӻӳ仯ʱ
+	 */
+	void invalidate() {
+		chainCache = new ChainCache(filters);
 	}
 
 	/**
@@ -76,58 +119,87 @@ public class ApplicationFilterChain implements FilterChain {
 	 * @param filterConfig ApplicationFilterConfig
 	 */
 	synchronized void addFilter(ApplicationFilterConfig filterConfig) {
-		
+
+		ApplicationFilterConfig[] filters = this.filters;
+
 		//Ƿظ
-		for(ApplicationFilterConfig filter : filters)
-			if(filter == filterConfig)
+		for(ApplicationFilterConfig config : filters)
+			if(config == filterConfig)
 				return;
-			
-		if(filters.length == n) {
-			
-			ApplicationFilterConfig[] newFilters = new ApplicationFilterConfig[filters.length + INCR];
-			
-			int i = 0;
-			for(ApplicationFilterConfig config : filters) {
-				newFilters[i++] = config;
-			}
-			
-			newFilters[i] = filterConfig;
-			//System.out.println("i====="+i);
-			this.filters = newFilters;
-			
-		} else {
-			filters[n + 1] = filterConfig;
-		}
-		
-		n++;
+
+		ApplicationFilterConfig[] newFilters = Arrays.copyOf(filters, filters.length + 1);
+		newFilters[filters.length] = filterConfig;
+
+		this.filters = newFilters;
+		invalidate();
 	}
-	
+
 	/**
 	 * FilterƻȡFilterConfig
 	 * @param filterName Filter
 	 * @return FilterConfig
 	 */
 	ApplicationFilterConfig getFilterConfig(String filterName) {
-		
-		for(ApplicationFilterConfig filterConfig : filters) {
-			if(filterConfig.getFilterName().equals(filterName)) {
-				return filterConfig;
+
+		for(ApplicationFilterConfig config : filters) {
+			if(config.getFilterName().equals(filterName)) {
+				return config;
 			}
 		}
-		
+
 		return null;
 	}
-	
+
+	/**
+	 * @return webӦеFilterConfig
+	 */
+	ApplicationFilterConfig[] getFilterConfigs() {
+		return filters.clone();
+	}
+
 	/**
 	 * ͷеFilterConfigFilter
 	 */
 	synchronized void release() {
-		
-		for(int i = 0; i < n; i++) {
-			filters[i].getFilter().destroy();
-			filters[i] = null;
+
+		ApplicationFilterConfig[] filters = this.filters;
+
+		this.filters = EMPTY;
+		invalidate();
+
+		for(ApplicationFilterConfig config : filters)
+			config.getFilter().destroy();
+	}
+
+	/**
+	 * ĳһյƥ
+	 */
+	private static final class ChainCache {
+
+		final ApplicationFilterConfig[] filters;
+
+		//ǷйʹURLƥûʱƥֻWrapperй
+		final boolean matchUri;
+
+		//matchUriΪfalseʱWrapperӦĹ
+		final Map<Wrapper, ApplicationFilterConfig[]> wrapperChains = new ConcurrentHashMap<>();
+
+		//matchUriΪtrueʱWrapperӦURI͹
+		final Map<Wrapper, Map<String, ApplicationFilterConfig[]>> uriChains = new ConcurrentHashMap<>();
+
+		ChainCache(ApplicationFilterConfig[] filters) {
+
+			boolean matchUri = false;
+
+			for(ApplicationFilterConfig config : filters) {
+				if(config.hasUrlPatterns()) {
+					matchUri = true;
+					break;
+				}
+			}
+
+			this.filters = filters;
+			this.matchUri = matchUri;
 		}
-		
-		n = 0;
 	}
 }
@@ -44,6 +44,12 @@ public class ApplicationFilterConfig implements FilterConfig {
 	
 	private String[] urlPatterns = new String[0];
 	
+	//URLƥ'*'ֺƬΣurlPatternsһһӦƥʱʹʽ
+	private volatile String[][] urlSegments = new String[0][];
+	
+	//ͨServletӳĹfilter-mappingеservlet-name
+	private volatile String[] servletNames = new String[0];
+	
 	ApplicationFilterRegistration filterRegistration = new ApplicationFilterRegistration(this);
 
 	// ʼMap
@@ -170,17 +176,112 @@ public class ApplicationFilterConfig implements FilterConfig {
 		return filterClass;
 	}
 	
+	/**
+	 * Servletƥweb.xmlļfilter-mappingеservlet-name
+	 * @return Servlet
+	 */
+	public String[] getServletNames() {
+		return servletNames;
+	}
+	
 	/**
 	 * URLƥweb.xmlļurl-pattern
+	 * ӺContextĹ黺
 	 * @param urlPattern URLƥ
 	 */
-	void addUrlPattern(String urlPattern) {
+	synchronized void addUrlPattern(String urlPattern) {
 		
 		String[] array = Arrays.copyOf(urlPatterns, urlPatterns.length + 1);
-		
 		array[array.length - 1] = urlPattern;
 		
+		String[][] segments = Arrays.copyOf(urlSegments, urlSegments.length + 1);
+		segments[segments.length - 1] = urlPattern.split("\\*", -1);
+		
 		urlPatterns = array;
+		urlSegments = segments;
+		
+		context.getFilterChain().invalidate();
+	}
+	
+	/**
+	 * Servletƥweb.xmlļfilter-mappingеservlet-name
+	 * ӺContextĹ黺
+	 * @param servletName Servletƣ"*"ʾƥServlet
+	 */
+	synchronized void addServletName(String servletName) {
+		
+		String[] array = Arrays.copyOf(servletNames, servletNames.length + 1);
+		array[array.length - 1] = servletName;
+		servletNames = array;
+		
+		context.getFilterChain().invalidate();
+	}
+	
+	/**
+	 * @return ǷURLƥ
+	 */
+	boolean hasUrlPatterns() {
+		return urlSegments.length > 0;
+	}
+	
+	/**
+	 * жURIǷFilterһURLƥƥ䣬'*'ƥⳤȵַ
+	 * @param uri URI
+	 * @return ƥ䷵true
+	 */
+	boolean matchesUri(String uri) {
+		
+		for(String[] segments : urlSegments) {
+			if(matches(uri, segments))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @param servletName Servlet
+	 * @return FilterǷͨServletӳ䵽Servlet
+	 */
+	boolean matchesServletName(String servletName) {
+		
+		if(servletName == null)
+			return false;
+		
+		for(String name : servletNames) {
+			if(name.equals("*") || name.equals(servletName))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * URIв'*'ָĸƬΣβƬαֱλURIĿͷͽβ
+	 */
+	private static boolean matches(String uri, String[] segments) {
+		
+		if(segments.length == 1)
+			return uri.equals(segments[0]);
+		
+		String first = segments[0];
+		String last = segments[segments.length - 1];
+		
+		if(!uri.startsWith(first))
+			return false;
+		
+		int pos = first.length();
+		
+		for(int i = 1; i < segments.length - 1; i++) {
+			
+			int index = uri.indexOf(segments[i], pos);
+			if(index == -1)
+				return false;
+			
+			pos = index + segments[i].length();
+		}
+		
+		return uri.length() - last.length() >= pos && uri.endsWith(last);
 	}
 	
 }
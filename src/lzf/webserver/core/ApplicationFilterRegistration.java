@@ -93,23 +93,50 @@ public class ApplicationFilterRegistration implements FilterRegistration.Dynamic
 		return filterConfig.parameters;
 	}
 
+	/**
+	 * ͨServletӳ䣬ӺContextĹ黺ʧЧ
+	 * @param servletNames Servlet
+	 */
 	@Override
 	public void addMappingForServletNames(EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter,
 			String... servletNames) {
-		// TODO Auto-generated method stub
-
+		
+		if(servletNames == null || servletNames.length == 0)
+			return;
+		
+		filterConfig.getContext().getFilterChain().addFilter(filterConfig);
+		
+		for(String servletName : servletNames) {
+			filterConfig.addServletName(servletName);
+		}
 	}
 
 	@Override
 	public Collection<String> getServletNameMappings() {
-		return null;
+		return Arrays.asList(filterConfig.getServletNames());
 	}
 
+	/**
+	 * ͨURLƥӳ䣬ROOTӦûԶContext·ǰ׺ӺContextĹ黺ʧЧ
+	 * @param urlPatterns URLƥ
+	 */
 	@Override
 	public void addMappingForUrlPatterns(EnumSet<DispatcherType> dispatcherTypes, boolean isMatchAfter,
 			String... urlPatterns) {
-		// TODO Auto-generated method stub
-
+		
+		if(urlPatterns == null || urlPatterns.length == 0)
+			return;
+		
+		Context context = filterConfig.getContext();
+		context.getFilterChain().addFilter(filterConfig);
+		
+		for(String urlPattern : urlPatterns) {
+			
+			if(context.getName().equals("ROOT"))
+				filterConfig.addUrlPattern(urlPattern);
+			else
+				filterConfig.addUrlPattern("/" + context.getName() + urlPattern);
+		}
 	}
 
 	@Override
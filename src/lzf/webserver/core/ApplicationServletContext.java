@@ -470,19 +470,22 @@ public class ApplicationServletContext implements ServletContext {
 	@Override
 	public FilterRegistration.Dynamic addFilter(String filterName, String className) {
 		ApplicationFilterConfig config = new ApplicationFilterConfig(context, filterName, className);
-		return new ApplicationFilterRegistration(config);
+		context.filterChain.addFilter(config);
+		return config.filterRegistration;
 	}
 
 	@Override
 	public FilterRegistration.Dynamic addFilter(String filterName, Filter filter) {
 		ApplicationFilterConfig config = new ApplicationFilterConfig(context, filterName, filter);
-		return new ApplicationFilterRegistration(config);
+		context.filterChain.addFilter(config);
+		return config.filterRegistration;
 	}
 
 	@Override
 	public FilterRegistration.Dynamic addFilter(String filterName, Class<? extends Filter> filterClass) {
 		ApplicationFilterConfig config = new ApplicationFilterConfig(context, filterName, filterClass);
-		return new ApplicationFilterRegistration(config);
+		context.filterChain.addFilter(config);
+		return config.filterRegistration;
 	}
 
 	@Override
@@ -500,13 +503,23 @@ public class ApplicationServletContext implements ServletContext {
 	@Override
 	public FilterRegistration getFilterRegistration(String filterName) {
 		ApplicationFilterConfig config = context.filterChain.getFilterConfig(filterName);
-		return new ApplicationFilterRegistration(config);
+		
+		if(config == null)
+			return null;
+		
+		return config.filterRegistration;
 	}
 
 	@Override
 	public Map<String, ? extends FilterRegistration> getFilterRegistrations() {
-		// TODO Auto-generated method stub
-		return null;
+		
+		Map<String, FilterRegistration> map = new HashMap<>();
+		
+		for(ApplicationFilterConfig config : context.filterChain.getFilterConfigs()) {
+			map.put(config.getFilterName(), config.filterRegistration);
+		}
+		
+		return map;
 	}
 
 	@Override
@@ -6,6 +6,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import lzf.webserver.Container;
 import lzf.webserver.ContainerEvent;
 import lzf.webserver.ContainerListener;
+import lzf.webserver.LifecycleState;
 import lzf.webserver.Pipeline;
 
 /**
@@ -189,4 +190,41 @@ public abstract class ContainerBase<F, S> extends LifecycleBase implements Conta
 				c.containerEvent(event);
 		}
 	}
+	
+	/**
+	 * ʼܵеķţӦûź
+	 */
+	protected void initPipeline() throws Exception {
+		((StandardPipeline) pipeline).init();
+	}
+	
+	/**
+	 * ܵеķţ־ŵд߳
+	 */
+	protected void startPipeline() throws Exception {
+		((StandardPipeline) pipeline).start();
+	}
+	
+	/**
+	 * ֹͣܵеķţܵûʱκβ
+	 */
+	protected void stopPipeline() throws Exception {
+		
+		StandardPipeline p = (StandardPipeline) pipeline;
+		
+		if(p.getLifecycleState().isAvailable())
+			p.stop();
+	}
+	
+	/**
+	 * ٹܵеķţܵûгʼѾʱκβ
+	 */
+	protected void destoryPipeline() throws Exception {
+		
+		StandardPipeline p = (StandardPipeline) pipeline;
+		LifecycleState state = p.getLifecycleState();
+		
+		if(state.after(LifecycleState.INITIALIZED) && state.before(LifecycleState.DESTORYING))
+			p.destory();
+	}
 }
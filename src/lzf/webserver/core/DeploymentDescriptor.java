@@ -0,0 +1,291 @@
+package lzf.webserver.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018812 10:21:05
+* @Description web.xmlļĲϢֻݣκ
+* WebappLoaderweb.xmlɣӦõContextд벿գ´ʱҪ½web.xml
+* AnnotationScannerעɨҲʹøౣ棬web.xmlĽϲӦõContext
+*/
+final class DeploymentDescriptor {
+
+	//context-param
+	final Map<String, String> contextParams = new LinkedHashMap<>();
+
+	//filterweb.xmlе˳
+	final List<FilterDef> filters = new ArrayList<>();
+
+	//servletweb.xmlе˳
+	final List<ServletDef> servlets = new ArrayList<>();
+
+	//servlet-mappingÿԪΪ{servlet-name, url-pattern}
+	final List<String[]> servletMappings = new ArrayList<>();
+
+	//session-configеsession-timeoutûʱΪnull
+	Integer sessionTimeout = null;
+
+	//welcome-file-list
+	final List<String> welcomeFiles = new ArrayList<>();
+
+	//listener-class
+	final List<String> listeners = new ArrayList<>();
+
+	//web-appڵmetadata-completeԣΪtrueʱɨ@WebServlet@WebFilter@WebListenerע
+	boolean metadataComplete = false;
+
+	/**
+	 * filterfilter-mapping
+	 */
+	static final class FilterDef {
+
+		final String name;
+
+		final String filterClass;
+
+		final Map<String, String> initParams = new LinkedHashMap<>();
+
+		//filter-mappingеurl-patternδContext·ǰ׺
+		final List<String> urlPatterns = new ArrayList<>();
+
+		//filter-mappingеservlet-name
+		final List<String> servletNames = new ArrayList<>();
+
+		FilterDef(String name, String filterClass) {
+			this.name = name;
+			this.filterClass = filterClass;
+		}
+	}
+
+	/**
+	 * servlet
+	 */
+	static final class ServletDef {
+
+		final String name;
+
+		final String servletClass;
+
+		final Map<String, String> initParams = new LinkedHashMap<>();
+
+		//load-on-startupûʱΪnull
+		Integer loadOnStartup = null;
+
+		ServletDef(String name, String servletClass) {
+			this.name = name;
+			this.servletClass = servletClass;
+		}
+	}
+
+	/**
+	 * @return ƶӦfilterûҵnull
+	 */
+	FilterDef getFilter(String name) {
+
+		for(FilterDef filter : filters) {
+			if(filter.name.equals(name))
+				return filter;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return ƶӦservletûҵnull
+	 */
+	ServletDef getServlet(String name) {
+
+		for(ServletDef servlet : servlets) {
+			if(servlet.name.equals(name))
+				return servlet;
+		}
+
+		return null;
+	}
+
+	/**
+	 * ϲһݲϢѾڵȣ
+	 * ͬservletfilterֻȱٵĳʼûӳʱʹöԷӳ䣬
+	 * ͬservletfilterûظlistenerֱ
+	 * @param other ȼϵ͵ĲϢעɨ
+	 */
+	void merge(DeploymentDescriptor other) {
+
+		for(ServletDef servlet : other.servlets) {
+
+			ServletDef exist = getServlet(servlet.name);
+
+			if(exist == null) {
+				servlets.add(servlet);
+				addMappings(other, servlet.name);
+				continue;
+			}
+
+			for(Map.Entry<String, String> param : servlet.initParams.entrySet())
+				exist.initParams.putIfAbsent(param.getKey(), param.getValue());
+
+			if(exist.loadOnStartup == null)
+				exist.loadOnStartup = servlet.loadOnStartup;
+
+			if(!hasMapping(servlet.name))
+				addMappings(other, servlet.name);
+		}
+
+		for(FilterDef filter : other.filters) {
+
+			FilterDef exist = getFilter(filter.name);
+
+			if(exist == null) {
+				filters.add(filter);
+				continue;
+			}
+
+			for(Map.Entry<String, String> param : filter.initParams.entrySet())
+				exist.initParams.putIfAbsent(param.getKey(), param.getValue());
+
+			if(exist.urlPatterns.isEmpty() && exist.servletNames.isEmpty()) {
+				exist.urlPatterns.addAll(filter.urlPatterns);
+				exist.servletNames.addAll(filter.servletNames);
+			}
+		}
+
+		for(String listener : other.listeners) {
+			if(!listeners.contains(listener))
+				listeners.add(listener);
+		}
+	}
+
+	private boolean hasMapping(String servletName) {
+
+		for(String[] mapping : servletMappings) {
+			if(mapping[0].equals(servletName))
+				return true;
+		}
+
+		return false;
+	}
+
+	private void addMappings(DeploymentDescriptor other, String servletName) {
+
+		for(String[] mapping : other.servletMappings) {
+			if(mapping[0].equals(servletName))
+				servletMappings.add(mapping);
+		}
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+
+		writeMap(out, contextParams);
+
+		out.writeInt(filters.size());
+
+		for(FilterDef filter : filters) {
+			out.writeUTF(filter.name);
+			out.writeUTF(filter.filterClass);
+			writeMap(out, filter.initParams);
+			writeList(out, filter.urlPatterns);
+			writeList(out, filter.servletNames);
+		}
+
+		out.writeInt(servlets.size());
+
+		for(ServletDef servlet : servlets) {
+			out.writeUTF(servlet.name);
+			out.writeUTF(servlet.servletClass);
+			writeMap(out, servlet.initParams);
+			writeInteger(out, servlet.loadOnStartup);
+		}
+
+		out.writeInt(servletMappings.size());
+
+		for(String[] mapping : servletMappings) {
+			out.writeUTF(mapping[0]);
+			out.writeUTF(mapping[1]);
+		}
+
+		writeInteger(out, sessionTimeout);
+		writeList(out, welcomeFiles);
+		writeList(out, listeners);
+		out.writeBoolean(metadataComplete);
+	}
+
+	static DeploymentDescriptor readFrom(DataInput in) throws IOException {
+
+		DeploymentDescriptor descriptor = new DeploymentDescriptor();
+
+		readMap(in, descriptor.contextParams);
+
+		for(int i = in.readInt(); i > 0; i--) {
+			FilterDef filter = new FilterDef(in.readUTF(), in.readUTF());
+			readMap(in, filter.initParams);
+			readList(in, filter.urlPatterns);
+			readList(in, filter.servletNames);
+			descriptor.filters.add(filter);
+		}
+
+		for(int i = in.readInt(); i > 0; i--) {
+			ServletDef servlet = new ServletDef(in.readUTF(), in.readUTF());
+			readMap(in, servlet.initParams);
+			servlet.loadOnStartup = readInteger(in);
+			descriptor.servlets.add(servlet);
+		}
+
+		for(int i = in.readInt(); i > 0; i--)
+			descriptor.servletMappings.add(new String[] { in.readUTF(), in.readUTF() });
+
+		descriptor.sessionTimeout = readInteger(in);
+		readList(in, descriptor.welcomeFiles);
+		readList(in, descriptor.listeners);
+		descriptor.metadataComplete = in.readBoolean();
+
+		return descriptor;
+	}
+
+	static void writeList(DataOutput out, List<String> list) throws IOException {
+
+		out.writeInt(list.size());
+
+		for(String s : list)
+			out.writeUTF(s);
+	}
+
+	static void readList(DataInput in, List<String> list) throws IOException {
+		for(int i = in.readInt(); i > 0; i--)
+			list.add(in.readUTF());
+	}
+
+	private static void writeMap(DataOutput out, Map<String, String> map) throws IOException {
+
+		out.writeInt(map.size());
+
+		for(Map.Entry<String, String> entry : map.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+	}
+
+	private static void readMap(DataInput in, Map<String, String> map) throws IOException {
+		for(int i = in.readInt(); i > 0; i--)
+			map.put(in.readUTF(), in.readUTF());
+	}
+
+	private static void writeInteger(DataOutput out, Integer value) throws IOException {
+
+		out.writeBoolean(value != null);
+
+		if(value != null)
+			out.writeInt(value);
+	}
+
+	private static Integer readInteger(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readInt() : null;
+	}
+}
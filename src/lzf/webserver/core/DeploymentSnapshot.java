@@ -0,0 +1,232 @@
+package lzf.webserver.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018812 10:48:37
+* @Description WebӦòգڸWebӦõĹĿ¼£web.xml;̬ԴJSPļ
+* ռ¼web.xmlĳȡ޸ʱMD5ժҪԼWebӦĿ¼޸ʱ䣺
+* Ŀ¼½ɾļıĿ¼޸ʱ䣬ֻҪÿĿ¼޸ʱ䣬
+* Ҫ±ļжԴǷȻЧ
+*/
+final class DeploymentSnapshot {
+
+	private static final StringManager sm = StringManager.getManager(DeploymentSnapshot.class);
+
+	private static final Log log = LogFactory.getLog(DeploymentSnapshot.class);
+
+	//ļ
+	static final String SNAPSHOT_NAME = "deploy.snapshot";
+
+	private static final int MAGIC = 0x4C5A4644;
+
+	//ոʽ汾ʽ仯ʱӣɰ汾Ŀջᱻ
+	private static final int VERSION = 2;
+
+	//ļϵͳ޸ʱľ()޸ʱСڸֵĿ¼ɨٴα仯޸ʱ䲻䣬ʱ
+	private static final long TIMESTAMP_GRANULARITY = 2000;
+
+	//web.xmlȣļʱΪ-1
+	private long webXmlLength = -1;
+
+	private long webXmlLastModified = 0;
+
+	//web.xmlMD5ժҪļʱΪַ
+	private String webXmlDigest = "";
+
+	//web.xmlûweb.xml߽ʧʱΪnull
+	DeploymentDescriptor descriptor = null;
+
+	//ɨĿ¼(WebӦĿ¼Ŀ¼Ϊַ)޸ʱ
+	private final Map<String, Long> directories = new LinkedHashMap<>();
+
+	//̬Դļ·
+	final List<String> staticPaths = new ArrayList<>();
+
+	//JSPļ·
+	final List<String> jspPaths = new ArrayList<>();
+
+	/**
+	 * ¼web.xmlĳȡ޸ʱժҪӦڽweb.xml֮ǰ
+	 */
+	void setWebXml(File webXml) {
+
+		if(!webXml.isFile())
+			return;
+
+		webXmlLength = webXml.length();
+		webXmlLastModified = webXml.lastModified();
+		webXmlDigest = digest(webXml);
+	}
+
+	/**
+	 * ¼ɨĿ¼ӦгĿ¼еļ֮ǰ
+	 * @param path WebӦĿ¼·Ŀ¼Ϊַ
+	 */
+	void addDirectory(String path, File dir) {
+		directories.put(path, dir.lastModified());
+	}
+
+	/**
+	 * @param webappFolder WebӦĿ¼
+	 * @return web.xmlĿ¼ûб仯ʱtrue
+	 */
+	boolean isValid(File webappFolder) {
+
+		File webXml = new File(webappFolder, "WEB-INF" + File.separator + "web.xml");
+
+		if(!webXml.isFile()) {
+			if(webXmlLength != -1)
+				return false;
+
+		} else if(webXml.length() != webXmlLength || webXml.lastModified() != webXmlLastModified
+				|| !digest(webXml).equals(webXmlDigest)) {
+			return false;
+		}
+
+		for(Map.Entry<String, Long> entry : directories.entrySet()) {
+
+			File dir = entry.getKey().isEmpty() ? webappFolder : new File(webappFolder, entry.getKey().substring(1));
+
+			if(dir.lastModified() != entry.getValue())
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * ȡļ
+	 * @return գļڡʽ汾ͬļʱnull
+	 */
+	static DeploymentSnapshot load(File file) {
+
+		if(!file.isFile())
+			return null;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+
+			DeploymentSnapshot snapshot = new DeploymentSnapshot();
+
+			snapshot.webXmlLength = in.readLong();
+			snapshot.webXmlLastModified = in.readLong();
+			snapshot.webXmlDigest = in.readUTF();
+
+			if(in.readBoolean())
+				snapshot.descriptor = DeploymentDescriptor.readFrom(in);
+
+			for(int i = in.readInt(); i > 0; i--)
+				snapshot.directories.put(in.readUTF(), in.readLong());
+
+			DeploymentDescriptor.readList(in, snapshot.staticPaths);
+			DeploymentDescriptor.readList(in, snapshot.jspPaths);
+
+			return snapshot;
+
+		} catch (IOException | RuntimeException e) {
+			log.warn(sm.getString("DeploymentSnapshot.load.w0", file.getPath()), e);
+			return null;
+		}
+	}
+
+	/**
+	 * дʱļ滻Ŀ¼TIMESTAMP_GRANULARITYڱ޸ʱ
+	 */
+	void save(File file) {
+
+		long now = System.currentTimeMillis();
+
+		for(Long lastModified : directories.values()) {
+			if(now - lastModified < TIMESTAMP_GRANULARITY) {
+				file.delete();
+				return;
+			}
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+
+				out.writeLong(webXmlLength);
+				out.writeLong(webXmlLastModified);
+				out.writeUTF(webXmlDigest);
+
+				out.writeBoolean(descriptor != null);
+
+				if(descriptor != null)
+					descriptor.writeTo(out);
+
+				out.writeInt(directories.size());
+
+				for(Map.Entry<String, Long> entry : directories.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+
+				DeploymentDescriptor.writeList(out, staticPaths);
+				DeploymentDescriptor.writeList(out, jspPaths);
+			}
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException e) {
+			log.warn(sm.getString("DeploymentSnapshot.save.w0", file.getPath()), e);
+			temp.delete();
+		}
+	}
+
+	/**
+	 * @return ļݵMD5ժҪ޷ȡʱؿַ
+	 */
+	private static String digest(File file) {
+
+		try(InputStream is = new FileInputStream(file)) {
+
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] b = new byte[8192];
+			int len;
+
+			while((len = is.read(b)) != -1)
+				md.update(b, 0, len);
+
+			StringBuilder sb = new StringBuilder();
+
+			for(byte v : md.digest())
+				sb.append(Character.forDigit((v >> 4) & 0xF, 16)).append(Character.forDigit(v & 0xF, 16));
+
+			return sb.toString();
+
+		} catch (IOException | NoSuchAlgorithmException e) {
+			return "";
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package lzf.webserver.core;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018813 3:12:40
+* @Description עɨJARserver.xmlļHostڵjarsToSkipjarsToScan
+* ΪŷָJARļʹ*ͨ䣬磺log4j-*.jar,spring-*.jar
+* ͬʱƥֹJARȻᱻɨ
+*/
+public final class JarScanFilter {
+
+	//ҪɨעJAR
+	private volatile String[] jarsToSkip = new String[0];
+
+	//ҪɨעJARjarsToSkip
+	private volatile String[] jarsToScan = new String[0];
+
+	/**
+	 * @param patterns ŷָJARļʹ*ͨ
+	 */
+	public void setJarsToSkip(String patterns) {
+		this.jarsToSkip = split(patterns);
+	}
+
+	/**
+	 * @param patterns ŷָJARļʹ*ͨ
+	 */
+	public void setJarsToScan(String patterns) {
+		this.jarsToScan = split(patterns);
+	}
+
+	/**
+	 * @param jarName JARļspring-core-4.3.9.jar
+	 * @return ǷҪɨJARеע
+	 */
+	public boolean check(String jarName) {
+
+		if(matches(jarsToScan, jarName))
+			return true;
+
+		return !matches(jarsToSkip, jarName);
+	}
+
+	private static String[] split(String patterns) {
+
+		if(patterns == null)
+			return new String[0];
+
+		String[] array = patterns.split(",");
+		int size = 0;
+
+		for(String pattern : array) {
+			if(!pattern.trim().isEmpty())
+				array[size++] = pattern.trim();
+		}
+
+		String[] result = new String[size];
+		System.arraycopy(array, 0, result, 0, size);
+		return result;
+	}
+
+	private static boolean matches(String[] patterns, String name) {
+
+		for(String pattern : patterns) {
+			if(matches(pattern, 0, name, 0))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * ͨƥ䣬*ƥַ
+	 */
+	private static boolean matches(String pattern, int p, String name, int n) {
+
+		while(p < pattern.length()) {
+
+			char c = pattern.charAt(p);
+
+			if(c == '*') {
+
+				for(int i = name.length(); i >= n; i--) {
+					if(matches(pattern, p + 1, name, i))
+						return true;
+				}
+
+				return false;
+			}
+
+			if(n >= name.length() || name.charAt(n) != c)
+				return false;
+
+			p++;
+			n++;
+		}
+
+		return n == name.length();
+	}
+}
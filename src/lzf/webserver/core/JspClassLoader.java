@@ -1,12 +1,8 @@
 package lzf.webserver.core;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.nio.file.Files;
 
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
@@ -17,116 +13,52 @@ import lzf.webserver.util.StringManager;
 * @version 1.0
 * @date 2018726 2:30:47
 * @Description JSPWebappLoaderõJSP
+* ÿJSPServletʵʹһJspClassLoaderJSP±󴴽µµ࣬
+* ӰJSPҲҪWebӦ
+* ļҪʱŴJSPĿ¼ȡڴб
 */
 public class JspClassLoader extends ClassLoader {
-	
+
 	private static final StringManager sm = StringManager.getManager(JspClassLoader.class);
-	
+
 	private static final Log log = LogFactory.getLog(JspClassLoader.class);
-	
-	private final String jspWorkPath;
-	
-	private final Map<String, byte[]> map = new ConcurrentHashMap<>(24);
-	
-	private boolean isLoad = false;
-	
+
+	private final File jspWorkPath;
+
 	/**
 	 * @param parent ΪWebappClassLoader
 	 * @param jspWorkPath õjsp classļ·,ṹ/work/${HostName}/${contextName}
 	 */
 	JspClassLoader(ClassLoader parent, File jspWorkPath) {
-		
+
 		super(parent);
-		
+
 		if(!jspWorkPath.exists())
 			jspWorkPath.mkdir();
-		
-		this.jspWorkPath = jspWorkPath.getAbsolutePath();
+
+		this.jspWorkPath = jspWorkPath;
 	}
 
+	/**
+	 * JSPĿ¼ȡļJSPࡢڲԼǩļɵ
+	 */
 	@Override
 	public Class<?> findClass(String name) throws ClassNotFoundException {
-		
-		if(!isLoad) {
-			synchronized(this) {
-				if(!isLoad) {
-					startRead(new File(jspWorkPath));
-					isLoad = true;
-				}
-			}
-		}
-		
-		byte[] classBytes = map.get(name);
-			
-		if(classBytes == null) {
+
+		File file = new File(jspWorkPath, name.replace('.', File.separatorChar) + ".class");
+
+		if(!file.isFile())
 			throw new ClassNotFoundException(sm.getString("JspClassLoader.findClass.e0", name));
-		} else {
-			map.remove(name);
-			return defineClass(name, classBytes, 0, classBytes.length);
-		}
-		
-	}
-	
-	/**
-	 * бõJSP classļڴ
-	 * @param file JSP classļ·ڱУ·Ϊ/work/${HostName}/${contextName}
-	 */
-	private void startRead(File file) {
-		
-		if(file.exists()) {
-			File[] files = file.listFiles();
-			
-			if(files.length == 0) {
-				return;
-			} else {
-				
-				for(File file2 : files) {
-					
-					if(file2.isDirectory()) {
-						startRead(file2);
-					} else {
-						if(file2.getName().endsWith(".class")) {
-							
-							String klass = file2.getAbsolutePath().replace(jspWorkPath + File.separator, "")
-									.replace(".class", "").replace(File.separator, ".");
-							
-							if(this.findLoadedClass(klass) != null)
-								continue;
-							
-							byte[] b = loadJspClassFile(file2);
-							if(b == null)
-								continue;
-							
-							map.put(klass, b);
-						}
-					}
-				}
-			}
-		}
-		
-	}
-	
-	/**
-	 * ȡõJSPļתΪֽ
-	 * @param file JSPļ·
-	 * @return JSPļֽ
-	 */
-	private byte[] loadJspClassFile(File file) {
-		
+
+		byte[] b;
+
 		try {
-			@SuppressWarnings("resource")
-			FileInputStream fis = new FileInputStream(file);
-			
-			byte[] b = new byte[(int) file.length()];
-			fis.read(b);
-			return b;
-			
-		} catch (FileNotFoundException e) {
-			log.error(sm.getString("JspClassLoader.loadJspClassFile.e0", file.getAbsolutePath()), e);
+			b = Files.readAllBytes(file.toPath());
 		} catch (IOException e) {
 			log.error(sm.getString("JspClassLoader.loadJspClassFile.e1", file.getAbsolutePath()), e);
+			throw new ClassNotFoundException(name, e);
 		}
-		
-		return null;
+
+		return defineClass(name, b, 0, b.length);
 	}
 }
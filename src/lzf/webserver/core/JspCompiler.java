@@ -0,0 +1,390 @@
+package lzf.webserver.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jasper.JspC;
+
+import lzf.webserver.Context;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018811 9:40:26
+* @Description JSPJSPĿ¼±嵥ļ¼ÿJSPļ(includeָļǩļ)MD5ժҪ
+* ֻԴļļ仯߱ʧJSPŻ±룬ҪJSPJspCб
+* ForkJoin߳еʱʹø̳߳߳أʹù̳߳
+*/
+final class JspCompiler {
+
+	private static final StringManager sm = StringManager.getManager(JspCompiler.class);
+
+	private static final Log log = LogFactory.getLog(JspCompiler.class);
+
+	//嵥ļ
+	static final String MANIFEST_NAME = "jsp.manifest";
+
+	//嵥JSPļժҪļǰ׺
+	private static final String SOURCE_PREFIX = "source:";
+
+	//嵥JSPļбļǰ׺
+	private static final String DEPENDS_PREFIX = "depends:";
+
+	//ÿJspCʵٱJSPÿJspCʵҪɨTLDιС
+	private static final int MIN_BATCH_SIZE = 8;
+
+	//JasperɵJavaļм¼ļ
+	private static final Pattern DEPENDANT = Pattern.compile("_jspx_dependants\\.put\\(\"([^\"]+)\"");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Context context;
+
+	//JSPĿ¼
+	private final File workPath;
+
+	//WebӦJSPļ·WebӦĿ¼/sub/page.jsp
+	private final List<String> jspPaths;
+
+	//αѾļժҪڵļӦַ
+	private final Map<String, String> digests = new HashMap<>();
+
+	JspCompiler(Context context, File workPath, List<String> jspPaths) {
+		this.context = context;
+		this.workPath = workPath;
+		this.jspPaths = jspPaths;
+	}
+
+	/**
+	 * 뷢仯JSPļ嵥ûJSPļʱֱӷ
+	 * @return ±ɹJSP·
+	 * @throws Exception JSPļʧܣεıԻд嵥
+	 */
+	List<String> compile() throws Exception {
+
+		if(jspPaths.isEmpty())
+			return Collections.emptyList();
+
+		long startTime = System.currentTimeMillis();
+
+		Properties manifest = loadManifest();
+		Properties updated = new Properties();
+		List<String> stale = new ArrayList<>();
+
+		for(String path : jspPaths) {
+
+			if(isStale(path, manifest))
+				stale.add(path);
+			else
+				copyEntry(path, manifest, updated);
+		}
+
+		if(stale.isEmpty()) {
+			saveManifest(updated);
+			return Collections.emptyList();
+		}
+
+		List<List<String>> batches = split(stale);
+		List<ForkJoinTask<Throwable>> tasks = new ArrayList<>(batches.size());
+
+		for(List<String> batch : batches)
+			tasks.add(ForkJoinTask.adapt(() -> compileBatch(batch)));
+
+		ForkJoinTask.invokeAll(tasks);
+
+		Throwable error = null;
+		List<String> compiled = new ArrayList<>(stale.size());
+
+		for(int i = 0; i < batches.size(); i++) {
+
+			Throwable e = tasks.get(i).join();
+
+			if(e != null) {
+				log.error(sm.getString("JspCompiler.compile.e0", context.getName(), batches.get(i)), e);
+				if(error == null)
+					error = e;
+				continue;
+			}
+
+			for(String path : batches.get(i))
+				recordEntry(path, updated);
+
+			compiled.addAll(batches.get(i));
+		}
+
+		saveManifest(updated);
+
+		log.info(sm.getString("JspCompiler.compile.i0", context.getName(), jspPaths.size(), stale.size(),
+				batches.size(), String.valueOf(System.currentTimeMillis() - startTime)));
+
+		if(error instanceof Exception)
+			throw (Exception) error;
+		else if(error != null)
+			throw (Error) error;
+
+		return compiled;
+	}
+
+	/**
+	 * @return JSPǷҪ±룺嵥СԴļļժҪ仯ļ
+	 */
+	private boolean isStale(String path, Properties manifest) {
+
+		String digest = manifest.getProperty(SOURCE_PREFIX + path);
+
+		if(digest == null || !digest.equals(digest(path)))
+			return true;
+
+		if(!getGeneratedFile(path, ".class").exists())
+			return true;
+
+		for(String depend : getDepends(manifest, path)) {
+			if(!digest(depend).equals(manifest.getProperty(SOURCE_PREFIX + depend)))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * ûб仯JSP嵥Ƶ嵥
+	 */
+	private void copyEntry(String path, Properties manifest, Properties updated) {
+
+		updated.setProperty(SOURCE_PREFIX + path, manifest.getProperty(SOURCE_PREFIX + path));
+
+		String depends = manifest.getProperty(DEPENDS_PREFIX + path);
+
+		if(depends == null)
+			return;
+
+		updated.setProperty(DEPENDS_PREFIX + path, depends);
+
+		for(String depend : getDepends(manifest, path))
+			updated.setProperty(SOURCE_PREFIX + depend, manifest.getProperty(SOURCE_PREFIX + depend));
+	}
+
+	/**
+	 * JasperɵJavaļжȡɹJSPļ¼嵥
+	 */
+	private void recordEntry(String path, Properties updated) {
+
+		updated.setProperty(SOURCE_PREFIX + path, digest(path));
+
+		Set<String> depends = new LinkedHashSet<>();
+		File java = getGeneratedFile(path, ".java");
+
+		if(java.exists()) {
+			try {
+				Matcher m = DEPENDANT.matcher(new String(Files.readAllBytes(java.toPath()), StandardCharsets.UTF_8));
+
+				//ֻ¼WebӦڵļJARеTLDͱǩļڼ仯
+				while(m.find()) {
+					if(m.group(1).startsWith("/"))
+						depends.add(m.group(1));
+				}
+
+			} catch (IOException e) {
+				log.warn(sm.getString("JspCompiler.recordEntry.w0", java.getPath()), e);
+			}
+		}
+
+		if(depends.isEmpty())
+			return;
+
+		updated.setProperty(DEPENDS_PREFIX + path, String.join(",", depends));
+
+		for(String depend : depends)
+			updated.setProperty(SOURCE_PREFIX + depend, digest(depend));
+	}
+
+	/**
+	 * ʹһJspCʵһJSPļ
+	 * @return ׳쳣ɹʱnull
+	 */
+	private Throwable compileBatch(List<String> batch) {
+
+		StringBuilder files = new StringBuilder();
+
+		for(String path : batch) {
+
+			if(files.length() > 0)
+				files.append(',');
+			files.append(path.substring(1));
+
+			//JspCֻȽJSPļ޸ʱ䣬ɾɵıܱ֤ļ仯
+			getGeneratedFile(path, ".class").delete();
+			getGeneratedFile(path, ".java").delete();
+		}
+
+		JspC jspc = new JspC();
+
+		jspc.setUriroot(context.getPath().getAbsolutePath());
+		jspc.setOutputDir(workPath.getAbsolutePath());
+		jspc.setPackage(WebappLoader.DEFAULT_JSP_PACKAGE);
+		jspc.setJspFiles(files.toString());
+		jspc.setCompile(true);
+
+		try {
+			jspc.execute();
+			return null;
+
+		} catch (Throwable e) {
+			return e;
+		}
+	}
+
+	/**
+	 * ҪJSPƽΪ̳߳صĲж
+	 */
+	private static List<List<String>> split(List<String> stale) {
+
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+
+		int count = Math.max(1, Math.min(parallelism, stale.size() / MIN_BATCH_SIZE));
+		List<List<String>> batches = new ArrayList<>(count);
+
+		for(int i = 0; i < count; i++)
+			batches.add(new ArrayList<>());
+
+		for(int i = 0; i < stale.size(); i++)
+			batches.get(i % count).add(stale.get(i));
+
+		return batches;
+	}
+
+	/**
+	 * @param suffix .class.java
+	 * @return JSPɵļ
+	 */
+	private File getGeneratedFile(String path, String suffix) {
+		String className = StandardWrapper.parseJspURIToClass(path);
+		return new File(workPath, className.replace('.', File.separatorChar) + suffix);
+	}
+
+	private static List<String> getDepends(Properties manifest, String path) {
+
+		String depends = manifest.getProperty(DEPENDS_PREFIX + path);
+
+		if(depends == null || depends.isEmpty())
+			return Collections.emptyList();
+
+		List<String> list = new ArrayList<>();
+
+		for(String depend : depends.split(","))
+			list.add(depend);
+
+		return list;
+	}
+
+	/**
+	 * @param path WebӦĿ¼ļ·
+	 * @return ļݵMD5ժҪļڻ޷ȡʱؿַ
+	 */
+	private String digest(String path) {
+
+		String digest = digests.get(path);
+
+		if(digest != null)
+			return digest;
+
+		File file = new File(context.getPath(), path.substring(1));
+		digest = "";
+
+		if(file.isFile()) {
+			try(InputStream is = new FileInputStream(file)) {
+
+				MessageDigest md = MessageDigest.getInstance("MD5");
+				byte[] b = new byte[8192];
+				int len;
+
+				while((len = is.read(b)) != -1)
+					md.update(b, 0, len);
+
+				digest = toHex(md.digest());
+
+			} catch (IOException | NoSuchAlgorithmException e) {
+				log.warn(sm.getString("JspCompiler.digest.w0", file.getPath()), e);
+			}
+		}
+
+		digests.put(path, digest);
+		return digest;
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		char[] c = new char[bytes.length * 2];
+
+		for(int i = 0; i < bytes.length; i++) {
+			c[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			c[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+
+		return new String(c);
+	}
+
+	private Properties loadManifest() {
+
+		Properties manifest = new Properties();
+		File file = new File(workPath, MANIFEST_NAME);
+
+		if(!file.exists())
+			return manifest;
+
+		try(InputStream is = new FileInputStream(file)) {
+			manifest.load(is);
+		} catch (IOException e) {
+			//嵥ʱû嵥JSP±
+			log.warn(sm.getString("JspCompiler.loadManifest.w0", file.getPath()), e);
+			manifest.clear();
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * дʱļ滻жʱ²嵥
+	 */
+	private void saveManifest(Properties manifest) {
+
+		File file = new File(workPath, MANIFEST_NAME);
+		File temp = new File(workPath, MANIFEST_NAME + ".tmp");
+
+		try {
+			try(OutputStream os = new FileOutputStream(temp)) {
+				manifest.store(os, "JSP compile manifest of " + context.getName());
+			}
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException e) {
+			log.warn(sm.getString("JspCompiler.saveManifest.w0", file.getPath()), e);
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package lzf.webserver.core;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018811 2:16:37
+* @Description ȫֵԴļreloadableWebӦùһWatchServiceһ̨߳
+* ļ仯¼WebӦúϲDEBOUNCEû¼(߾һ¼MAX_DELAY)
+* 仯ļ·(WebӦĿ¼)һԽӦWebappLoader
+*/
+final class ResourceWatcher {
+
+	private static final StringManager sm = StringManager.getManager(ResourceWatcher.class);
+
+	private static final Log log = LogFactory.getLog(ResourceWatcher.class);
+
+	private static final ResourceWatcher instance = new ResourceWatcher();
+
+	//ȴ¼ʱ()༭ļĿ¼ʱڶʱڲ¼
+	private static final long DEBOUNCE = 500;
+
+	//ӵһ¼ȴʱ()ļ仯ʱһֱò
+	private static final long MAX_DELAY = 5000;
+
+	//¼ʱʹõ·WebappLoaderյ·ʱWebӦ
+	static final String OVERFLOW = "*";
+
+	private WatchService watchService = null;
+
+	//עĿ¼ӦWebappLoader
+	private final Map<WatchKey, WatchedDirectory> keys = new ConcurrentHashMap<>();
+
+	//ȴı仯ļɼ̷߳
+	private final Map<WebappLoader, Set<String>> pending = new HashMap<>();
+
+	private long firstEventTime = 0;
+
+	static ResourceWatcher getInstance() {
+		return instance;
+	}
+
+	private ResourceWatcher() {
+	}
+
+	/**
+	 * ӸWebappLoaderWebӦĿ¼Ŀ¼һεʱ߳
+	 * @throws IOException ޷WatchServiceעĿ¼
+	 */
+	synchronized void register(WebappLoader loader) throws IOException {
+
+		if(watchService == null) {
+
+			watchService = FileSystems.getDefault().newWatchService();
+
+			Thread thread = new Thread(new WatchProcesser(), "ResourceWatchProcesser");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		Path root = loader.getContext().getPath().toPath().toAbsolutePath();
+		registerTree(loader, root, root, null);
+	}
+
+	/**
+	 * ֹͣӸWebappLoaderWebӦãδ¼
+	 */
+	synchronized void unregister(WebappLoader loader) {
+
+		Iterator<Map.Entry<WatchKey, WatchedDirectory>> it = keys.entrySet().iterator();
+
+		while(it.hasNext()) {
+
+			Map.Entry<WatchKey, WatchedDirectory> entry = it.next();
+
+			if(entry.getValue().loader == loader) {
+				entry.getKey().cancel();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * עĿ¼Ŀ¼META-INFĿ¼ע
+	 * @param created ΪnullʱĿ¼еļΪ½ļü(Ŀ¼עǰѾдļ)
+	 */
+	private void registerTree(WebappLoader loader, Path root, Path dir, Set<String> created) throws IOException {
+
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
+
+				if(path.getFileName() != null && path.getFileName().toString().equals("META-INF"))
+					return FileVisitResult.SKIP_SUBTREE;
+
+				WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+				keys.put(key, new WatchedDirectory(loader, root, path));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+
+				if(created != null)
+					created.add(toRelativePath(root, path));
+
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * @return WebӦĿ¼·/ͷָͳһΪ/
+	 */
+	private static String toRelativePath(Path root, Path path) {
+		return "/" + root.relativize(path).toString().replace('\\', '/');
+	}
+
+	/**
+	 * һĿ¼¼½Ŀ¼ᱻע
+	 */
+	private void processEvents(WatchKey key) {
+
+		WatchedDirectory dir = keys.get(key);
+
+		if(dir == null) {
+			key.pollEvents();
+			key.reset();
+			return;
+		}
+
+		Set<String> paths = pending.computeIfAbsent(dir.loader, k -> new LinkedHashSet<>());
+
+		for(WatchEvent<?> event : key.pollEvents()) {
+
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				paths.add(OVERFLOW);
+				continue;
+			}
+
+			Path path = dir.path.resolve((Path) event.context());
+
+			if(path.getFileName().toString().equals("META-INF"))
+				continue;
+
+			paths.add(toRelativePath(dir.root, path));
+
+			if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+				try {
+					synchronized(this) {
+						if(dir.loader.getLifecycleState().isAvailable())
+							registerTree(dir.loader, dir.root, path, paths);
+					}
+				} catch (IOException e) {
+					log.warn(sm.getString("ResourceWatcher.processEvents.w0", path), e);
+				}
+			}
+		}
+
+		if(!key.reset())
+			keys.remove(key);
+	}
+
+	/**
+	 * ϲ¼WebappLoader
+	 */
+	private void flush() {
+
+		for(Map.Entry<WebappLoader, Set<String>> entry : pending.entrySet()) {
+
+			WebappLoader loader = entry.getKey();
+
+			if(!loader.getLifecycleState().isAvailable())
+				continue;
+
+			try {
+				loader.resourcesChanged(entry.getValue());
+			} catch (Throwable e) {
+				log.error(sm.getString("ResourceWatcher.flush.e0", loader.getContext().getName()), e);
+			}
+		}
+
+		pending.clear();
+		firstEventTime = 0;
+	}
+
+	/**
+	 * ̣߳ûд¼ʱȴд¼ʱȴDEBOUNCEľĬںͳһ
+	 */
+	private final class WatchProcesser implements Runnable {
+
+		@Override
+		public void run() {
+
+			while(true) {
+
+				try {
+					WatchKey key;
+
+					if(pending.isEmpty()) {
+						key = watchService.take();
+						firstEventTime = System.currentTimeMillis();
+					} else {
+						key = watchService.poll(DEBOUNCE, TimeUnit.MILLISECONDS);
+					}
+
+					if(key != null)
+						processEvents(key);
+
+					if(!pending.isEmpty() && (key == null || System.currentTimeMillis() - firstEventTime >= MAX_DELAY))
+						flush();
+
+				} catch (InterruptedException | ClosedWatchServiceException e) {
+					return;
+				} catch (RuntimeException e) {
+					log.error(sm.getString("ResourceWatcher.WatchProcesser.e0"), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * һӵĿ¼
+	 */
+	private static final class WatchedDirectory {
+
+		final WebappLoader loader;
+
+		//WebӦĿ¼
+		final Path root;
+
+		final Path path;
+
+		WatchedDirectory(WebappLoader loader, Path root, Path path) {
+			this.loader = loader;
+			this.root = root;
+			this.path = path;
+		}
+	}
+}
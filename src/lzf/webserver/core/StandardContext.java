@@ -3,6 +3,10 @@ package lzf.webserver.core;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
 import javax.servlet.SessionCookieConfig;
@@ -60,9 +64,21 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 	//洢WEBӦõļ
 	final ApplicationListenerContainer listenerContainer = new ApplicationListenerContainer(this);
 	
+	//webӦǷʹSessionweb.xmllzf.webserver.statelessʼ
+	private volatile boolean stateless = false;
+	
 	//SessionCookie࣬ʵSessionCookieConfigJ2EE淶
 	ApplicationSessionCookieConfig sessionCookieConfig = null;
 	
+	//ڴ
+	private final AtomicInteger activeRequests = new AtomicInteger();
+	
+	//Ϊtrueʱٽµdrain
+	private volatile boolean draining = false;
+	
+	//ȴſʱʹõ
+	private final Object drainLock = new Object();
+	
 	StandardContext(Host host) {
 		super(host);
 		addContainerListener(new ContextMapperListener(mapper));
@@ -175,6 +191,16 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 		sessionManager.setSessionMaxInactiveTime(timeout);
 	}
 	
+	@Override
+	public boolean isStateless() {
+		return stateless;
+	}
+	
+	@Override
+	public void setStateless(boolean stateless) {
+		this.stateless = stateless;
+	}
+	
 	/**
 	 * @return ContextwebӦ
 	 */
@@ -252,6 +278,59 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 		return responseCharacterEncoding;
 	}
 
+	/**
+	 * Ӽټſձ־drainñ־ټ˲©ڵǼǵ
+	 */
+	@Override
+	public boolean requestStarted() {
+		
+		activeRequests.incrementAndGet();
+		
+		if(draining) {
+			requestFinished();
+			return false;
+		}
+		
+		return true;
+	}
+
+	@Override
+	public void requestFinished() {
+		
+		if(activeRequests.decrementAndGet() == 0 && draining) {
+			synchronized(drainLock) {
+				drainLock.notifyAll();
+			}
+		}
+	}
+
+	@Override
+	public int getActiveRequests() {
+		return activeRequests.get();
+	}
+
+	@Override
+	public boolean drain(long timeout) throws InterruptedException {
+		
+		draining = true;
+		long deadline = System.currentTimeMillis() + timeout;
+		
+		synchronized(drainLock) {
+			
+			while(activeRequests.get() > 0) {
+				
+				long wait = deadline - System.currentTimeMillis();
+				
+				if(wait <= 0)
+					return false;
+				
+				drainLock.wait(wait);
+			}
+		}
+		
+		return true;
+	}
+
 	@Override
 	protected void initInternal() throws Exception {
 		
@@ -268,7 +347,8 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 			wrapper.init();
 		}
 		
-		pipeline.addValve(new StandardContextValve());
+		pipeline.setBasic(new StandardContextValve());
+		initPipeline();
 	
 		sessionManager.init();
 		sessionCookieConfig = new ApplicationSessionCookieConfig(this);
@@ -284,11 +364,10 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 		
 		loader.start();
 		
-		for(Wrapper wrapper: childContainers) {
-			wrapper.start();
-		}
+		startWrappers();
 		
 		sessionManager.start();
+		startPipeline();
 		
 		Thread.currentThread().setContextClassLoader(systemLoader);
 	}
@@ -296,19 +375,25 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 	@Override
 	protected void stopInternal() throws Exception {
 		
+		stopPipeline();
+		
 		for(Wrapper wrapper: childContainers) {
 			wrapper.stop();
 		}
 		
 		sessionManager.stop();
-		loader.stop();
 		
+		//ܻҪWebӦõ࣬رǰִ
 		listenerContainer.runContextDestoryedEvent();
+		
+		loader.stop();
 	}
 
 	@Override
 	protected void destoryInternal() throws Exception {
 		
+		destoryPipeline();
+		
 		for(Wrapper wrapper: childContainers) {
 			wrapper.destory();
 		}
@@ -317,6 +402,47 @@ public final class StandardContext extends ContainerBase<Host, Wrapper> implemen
 		loader.stop();
 	}
 	
+	/**
+	 * load-on-startupС˳WrapperͬһڵServlet룬
+	 * ǰһȫɺſʼһ飬load-on-startupΪWrapperҪServlet
+	 * ForkJoin߳еʱʹø̳߳߳أʹù̳߳
+	 * @throws Exception һWrapperʧ
+	 */
+	private void startWrappers() throws Exception {
+		
+		Map<Integer, List<ForkJoinTask<Void>>> groups = new TreeMap<>();
+		
+		for(Wrapper wrapper : childContainers) {
+			
+			int order = wrapper.getLoadOnStartup() < 0 ? Integer.MAX_VALUE : wrapper.getLoadOnStartup();
+			
+			groups.computeIfAbsent(order, k -> new ArrayList<>()).add(ForkJoinTask.adapt(() -> {
+				
+				Thread thread = Thread.currentThread();
+				ClassLoader threadLoader = thread.getContextClassLoader();
+				thread.setContextClassLoader(loader.getClassLoader());
+				
+				try {
+					wrapper.start();
+				} finally {
+					thread.setContextClassLoader(threadLoader);
+				}
+				
+				return null;
+			}));
+		}
+		
+		for(List<ForkJoinTask<Void>> group : groups.values()) {
+			
+			if(group.size() == 1) {
+				group.get(0).invoke();
+				continue;
+			}
+			
+			ForkJoinTask.invokeAll(group);
+		}
+	}
+	
 	/**
 	 * SessionIDɸContextӦCookie
 	 * @param sessionId SessionID
@@ -20,6 +20,9 @@ public class StandardEngine extends ContainerBase<Void, Host> implements Engine
 	
 	private Service service = null;
 	
+	//Ĭ޷ƥκHostʱʹ
+	private String defaultHost = null;
+	
 	public StandardEngine(Service service) {
 		super();
 		this.service = service;
@@ -40,12 +43,31 @@ public class StandardEngine extends ContainerBase<Void, Host> implements Engine
 		return service;
 	}
 
+	/**
+	 * Ĭͬʱ¸Serviceȫ·
+	 * @param hostName Ĭ
+	 */
+	@Override
+	public void setDefaultHost(String hostName) {
+		
+		this.defaultHost = hostName;
+		
+		if(service != null)
+			service.getGlobelMapper().setDefaultHostName(hostName);
+	}
+
+	@Override
+	public String getDefaultHost() {
+		return defaultHost;
+	}
+
 	@Override
 	protected void initInternal() throws Exception {
 		for(Host c : childContainers) {
 			c.init();
 		}
-		pipeline.addValve(new StandardEngineValve());
+		pipeline.setBasic(new StandardEngineValve());
+		initPipeline();
 	}
 
 	@Override
@@ -53,10 +75,12 @@ public class StandardEngine extends ContainerBase<Void, Host> implements Engine
 		for(Host c : childContainers) {
 			c.start();
 		}
+		startPipeline();
 	}
 
 	@Override
 	protected void stopInternal() throws Exception {
+		stopPipeline();
 		for(Host c : childContainers) {
 			c.stop();
 		}
@@ -64,6 +88,7 @@ public class StandardEngine extends ContainerBase<Void, Host> implements Engine
 
 	@Override
 	protected void destoryInternal() throws Exception {
+		destoryPipeline();
 		for(Host c : childContainers) {
 			c.destory();
 		}
@@ -1,11 +1,29 @@
 package lzf.webserver.core;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import lzf.webserver.Context;
 import lzf.webserver.Engine;
 import lzf.webserver.Host;
+import lzf.webserver.LifecycleException;
+import lzf.webserver.Wrapper;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
 import lzf.webserver.mapper.GlobelMappedListener;
+import lzf.webserver.resources.StaticResourceCache;
+import lzf.webserver.session.SessionIdGenerator;
+import lzf.webserver.session.SessionStore;
+import lzf.webserver.util.StringManager;
 
 /**
 * @author ӷ
@@ -14,11 +32,55 @@ import lzf.webserver.mapper.GlobelMappedListener;
 * @Description ˵
 */
 public class StandardHost extends ContainerBase<Engine, Context> implements Host {
+	
+	private static final Log log = LogFactory.getLog(StandardHost.class);
+	
+	private static final StringManager sm = StringManager.getManager(StandardHost.class);
 
 	public static final File DEFAULT_CONTEXT_FOLDER = new File("webapps");
 	
 	private File appBaseFolder = DEFAULT_CONTEXT_FOLDER;
 	
+	//ϣserver.xmlļHostڵµAliasڵ
+	private final List<String> aliases = new CopyOnWriteArrayList<>();
+	
+	//вWebӦõ߳Сڵ0ʱʹCPU
+	private int deployThreads = 0;
+	
+	//ΪtrueʱһWebӦòʧܶᵼ¸HostʧܣΪfalseʱʧܵWebӦ
+	private boolean failOnDeployError = false;
+	
+	//µWebӦǷԴļ仯ʱԶ
+	private boolean reloadable = false;
+	
+	//WebӦʱ°汾滻ɰ汾ǰԤȷʵURI(WebӦ)ǰServlet;̬Դ
+	private final List<String> warmupURIs = new CopyOnWriteArrayList<>();
+	
+	//WebӦʱȴɰ汾ڴɵʱ()ʱǿֹͣ
+	private long drainTimeout = 30000;
+	
+	//עɨJARjarsToSkipjarsToScan
+	private final JarScanFilter jarScanFilter = new JarScanFilter();
+	
+	//WebӦʹõSession洢ʵΪnullʱSessionֻڴ
+	private String sessionStore = null;
+	
+	//ÿWebӦڴౣSessionСڵ0ʾ
+	private int maxActiveSessions = -1;
+	
+	//WebӦõSessionгʱ()󱻻̣Сڵ0ʾʱ任
+	private int maxIdleSwap = -1;
+	
+	//SessionIDֽ뷽ʽ(hex/base64url)SecureRandom㷨
+	private int sessionIdLength = SessionIdGenerator.DEFAULT_LENGTH;
+	
+	private String sessionIdEncoding = SessionIdGenerator.HEX;
+	
+	private String sessionIdAlgorithm = SessionIdGenerator.DEFAULT_ALGORITHM;
+	
+	//WebӦùõSessionIDһβWebӦʱ
+	private SessionIdGenerator sessionIdGenerator = null;
+	
 	public StandardHost(Engine parentConatiner) {
 		super(parentConatiner);
 		addContainerListener(new GlobelMappedListener(((Engine)getParentContainer())
@@ -35,42 +97,522 @@ public class StandardHost extends ContainerBase<Engine, Context> implements Host
 		this.appBaseFolder = folder;
 	}
 
+	/**
+	 * ͳһתΪСд
+	 * @param alias Ϊͨʽ*.example.com
+	 */
+	@Override
+	public void addAlias(String alias) {
+		
+		if(alias == null)
+			return;
+		
+		alias = alias.trim().toLowerCase(Locale.ROOT);
+		
+		if(alias.isEmpty() || aliases.contains(alias))
+			return;
+		
+		aliases.add(alias);
+		runContainerEvent(Host.ADD_ALIAS_EVENT, alias);
+	}
+	
+	/**
+	 * @param alias ҪƳı
+	 */
+	@Override
+	public void removeAlias(String alias) {
+		
+		if(alias == null)
+			return;
+		
+		alias = alias.trim().toLowerCase(Locale.ROOT);
+		
+		if(aliases.remove(alias))
+			runContainerEvent(Host.REMOVE_ALIAS_EVENT, alias);
+	}
+	
+	/**
+	 * @return еı
+	 */
+	@Override
+	public String[] getAliases() {
+		return aliases.toArray(new String[0]);
+	}
+
+	/**
+	 * @return вWebӦõ߳
+	 */
+	public int getDeployThreads() {
+		return deployThreads;
+	}
+	
+	/**
+	 * @param deployThreads вWebӦõ߳Сڵ0ʱʹCPUΪ1ʱ˳
+	 */
+	public void setDeployThreads(int deployThreads) {
+		this.deployThreads = deployThreads;
+	}
+	
+	public boolean isFailOnDeployError() {
+		return failOnDeployError;
+	}
+	
+	/**
+	 * @param failOnDeployError ΪtrueʱһWebӦòʧܶᵼ¸Hostʧܣ
+	 * Ϊfalseʱ¼־ƳʧܵWebӦ
+	 */
+	public void setFailOnDeployError(boolean failOnDeployError) {
+		this.failOnDeployError = failOnDeployError;
+	}
+
+	public boolean isReloadable() {
+		return reloadable;
+	}
+	
+	/**
+	 * @param reloadable µWebӦǷԴļ仯ʱԶ룬Hostʼǰ
+	 */
+	public void setReloadable(boolean reloadable) {
+		this.reloadable = reloadable;
+	}
+
+	/**
+	 * @return WebӦʱԤȷʵURI
+	 */
+	public List<String> getWarmupURIs() {
+		return warmupURIs;
+	}
+	
+	/**
+	 * @param uri WebӦʱԤȷʵURIWebӦã/index.jsp
+	 */
+	public void addWarmupURI(String uri) {
+		
+		if(uri == null)
+			return;
+		
+		uri = uri.trim();
+		
+		if(uri.isEmpty())
+			return;
+		
+		warmupURIs.add(uri.startsWith("/") ? uri : "/" + uri);
+	}
+	
+	public long getDrainTimeout() {
+		return drainTimeout;
+	}
+	
+	/**
+	 * @param drainTimeout WebӦʱȴɰ汾ɵʱ()
+	 */
+	public void setDrainTimeout(long drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+	
+	/**
+	 * @return µWebӦɨעʱʹõJAR
+	 */
+	public JarScanFilter getJarScanFilter() {
+		return jarScanFilter;
+	}
+	
+	public String getSessionStore() {
+		return sessionStore;
+	}
+	
+	/**
+	 * @param sessionStore Session洢ʵlzf.webserver.session.FileSessionStoreHostǰ
+	 */
+	public void setSessionStore(String sessionStore) {
+		this.sessionStore = sessionStore;
+	}
+	
+	public int getMaxActiveSessions() {
+		return maxActiveSessions;
+	}
+	
+	/**
+	 * @param maxActiveSessions ÿWebӦڴౣSessionʱδʵSession
+	 */
+	public void setMaxActiveSessions(int maxActiveSessions) {
+		this.maxActiveSessions = maxActiveSessions;
+	}
+	
+	public int getMaxIdleSwap() {
+		return maxIdleSwap;
+	}
+	
+	/**
+	 * @param maxIdleSwap Sessionгʱ()󱻻
+	 */
+	public void setMaxIdleSwap(int maxIdleSwap) {
+		this.maxIdleSwap = maxIdleSwap;
+	}
+	
+	public int getSessionIdLength() {
+		return sessionIdLength;
+	}
+	
+	/**
+	 * @param sessionIdLength SessionIDֽСSessionIdGenerator.MIN_LENGTHHostǰ
+	 */
+	public void setSessionIdLength(int sessionIdLength) {
+		this.sessionIdLength = sessionIdLength;
+	}
+	
+	public String getSessionIdEncoding() {
+		return sessionIdEncoding;
+	}
+	
+	/**
+	 * @param sessionIdEncoding SessionIDı뷽ʽhexbase64urlHostǰ
+	 */
+	public void setSessionIdEncoding(String sessionIdEncoding) {
+		this.sessionIdEncoding = sessionIdEncoding;
+	}
+	
+	public String getSessionIdAlgorithm() {
+		return sessionIdAlgorithm;
+	}
+	
+	/**
+	 * @param sessionIdAlgorithm SessionIDʹõSecureRandom㷨Hostǰ
+	 */
+	public void setSessionIdAlgorithm(String sessionIdAlgorithm) {
+		this.sessionIdAlgorithm = sessionIdAlgorithm;
+	}
+	
+	/**
+	 * @return WebӦùõSessionIDʱʹĬϲ
+	 */
+	private synchronized SessionIdGenerator getSessionIdGenerator() {
+		
+		if(sessionIdGenerator != null)
+			return sessionIdGenerator;
+		
+		try {
+			sessionIdGenerator = new SessionIdGenerator(sessionIdLength, sessionIdEncoding, sessionIdAlgorithm,
+					null, SessionIdGenerator.DEFAULT_POOL_SIZE);
+			
+		} catch (IllegalArgumentException e) {
+			log.error(sm.getString("StandardHost.getSessionIdGenerator.e0", getName()), e);
+			sessionIdGenerator = new SessionIdGenerator();
+		}
+		
+		return sessionIdGenerator;
+	}
+	
+	/**
+	 * WebӦõSessionSessionIDΪSessionSession洢ʵÿWebӦʹõʵ
+	 * @param context WebӦãҪǰ
+	 */
+	private void configureSessionManager(Context context) {
+		
+		context.getSessionManager().setMaxActiveSessions(maxActiveSessions);
+		context.getSessionManager().setMaxIdleSwap(maxIdleSwap);
+		context.getSessionManager().setSessionIdGenerator(getSessionIdGenerator());
+		
+		if(sessionStore == null)
+			return;
+		
+		try {
+			SessionStore store = (SessionStore) Class.forName(sessionStore).getDeclaredConstructor().newInstance();
+			context.getSessionManager().setSessionStore(store);
+			
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			log.error(sm.getString("StandardHost.configureSessionManager.e0", getName(), sessionStore), e);
+		}
+	}
+	
+	/**
+	 * °汾ɰ汾ͬʱڣ°汾ʼԤɺ·ɱԭӵ滻ɰ汾
+	 * ˺°汾ɰ汾ں̨߳еȴɺֹͣ
+	 * °汾ʧʱ°汾ɰ汾ṩ
+	 * @param context ҪContext
+	 */
+	@Override
+	public void reloadContext(Context context) {
+		
+		synchronized(context) {
+			
+			//ContextѾ滻
+			if(!childContainers.contains(context))
+				return;
+			
+			log.info(sm.getString("StandardHost.reloadContext.i0", context.getName()));
+			long startTime = System.currentTimeMillis();
+			
+			Context newContext = StandardContext.createContextByFolder(this, context.getPath());
+			newContext.setReloadable(context.getReloadable());
+			configureSessionManager(newContext);
+			
+			//·ɱͬӳ䣬ʱȻ·ɵɰ汾
+			addChildContainer(newContext);
+			
+			try {
+				newContext.init();
+				newContext.start();
+				
+			} catch (Throwable e) {
+				
+				log.error(sm.getString("StandardHost.reloadContext.e0", context.getName()), e);
+				removeChildContainer(newContext);
+				ResourceWatcher.getInstance().unregister(newContext.getWebappLoader());
+				
+				try {
+					newContext.stop();
+				} catch (Throwable t) {
+					log.warn(sm.getString("StandardHost.reloadContext.w0", newContext.getName()), t);
+				}
+				return;
+			}
+			
+			warmUp(newContext);
+			
+			//֮ļ仯°汾
+			ResourceWatcher.getInstance().unregister(context.getWebappLoader());
+			
+			runContainerEvent(Host.REPLACE_CONTEXT_EVENT, newContext);
+			removeChildContainer(context);
+			
+			log.info(sm.getString("StandardHost.reloadContext.i1", context.getName(), 
+					String.valueOf(System.currentTimeMillis() - startTime)));
+			
+			Thread thread = new Thread(new DrainProcesser(context), "ContextDrainProcesser");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * ԤwarmupURIsӦServlet;̬Դļ滻ĵһȴغServletʼ
+	 * Ԥʧֻ¼־Ӱ滻
+	 */
+	private void warmUp(Context context) {
+		
+		if(warmupURIs.isEmpty())
+			return;
+		
+		String prefix = context.getName().equals("ROOT") ? "" : "/" + context.getName();
+		
+		Thread thread = Thread.currentThread();
+		ClassLoader threadLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(context.getWebappLoader().getClassLoader());
+		
+		try {
+			for(String uri : warmupURIs) {
+				
+				try {
+					Wrapper wrapper = context.getMapper().getWrapper(prefix + uri);
+					
+					if(wrapper == null) {
+						log.warn(sm.getString("StandardHost.warmUp.w0", context.getName(), uri));
+						continue;
+					}
+					
+					wrapper.getServlet();
+					
+					File file = context.getMapper().getStaticFile(uri);
+					
+					if(file != null)
+						StaticResourceCache.getInstance().getResource(file);
+					
+				} catch (Throwable e) {
+					log.warn(sm.getString("StandardHost.warmUp.w1", context.getName(), uri), e);
+				}
+			}
+		} finally {
+			thread.setContextClassLoader(threadLoader);
+		}
+	}
+	
 	@Override
 	protected void initInternal() throws Exception {
 		
 		findWebappAndLoad();
 		
-		for(Context context: childContainers) {
-			context.init();
-		}
+		deployContexts(false);
 		
-		pipeline.addValve(new StandardHostValve());
+		pipeline.setBasic(new StandardHostValve());
+		initPipeline();
 	}
 
 	@Override
 	protected void startInternal() throws Exception {
 		
-		for(Context context: childContainers) {
-			context.start();
-		}
+		deployContexts(true);
+		
+		startPipeline();
 	}
 
 	@Override
 	protected void stopInternal() throws Exception {
 		
+		stopPipeline();
+		
 		for(Context context: childContainers) {
 			context.stop();
 		}
+		
+		//SessionIDḷ̨́߳ʱµ
+		synchronized(this) {
+			if(sessionIdGenerator != null) {
+				sessionIdGenerator.stop();
+				sessionIdGenerator = null;
+			}
+		}
 	}
 
 	@Override
 	protected void destoryInternal() throws Exception {
 		
+		destoryPipeline();
+		
 		for(Context context: childContainers) {
 			context.destory();
 		}
 	}
 
+	/**
+	 * ForkJoin̳߳вгʼеContext¼ÿWebӦõĺʱ
+	 * Contextʱͬһ̳߳вServlet
+	 * @param start ΪfalseʱʼContextΪtrueʱContext
+	 * @throws LifecycleException failOnDeployErrorΪtrueWebӦòʧ
+	 */
+	private void deployContexts(boolean start) throws Exception {
+		
+		List<Context> contexts = new ArrayList<>(childContainers);
+		
+		if(contexts.isEmpty())
+			return;
+		
+		int threads = deployThreads > 0 ? deployThreads : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = new ForkJoinPool(Math.min(threads, contexts.size()), new DeployThreadFactory(), null, false);
+		
+		long startTime = System.currentTimeMillis();
+		List<Future<Throwable>> futures = new ArrayList<>(contexts.size());
+		
+		try {
+			for(Context context : contexts)
+				futures.add(pool.submit(new DeployProcesser(context, start)));
+			
+			for(int i = 0; i < contexts.size(); i++) {
+				
+				Context context = contexts.get(i);
+				Throwable error;
+				
+				try {
+					error = futures.get(i).get();
+				} catch (ExecutionException e) {
+					error = e.getCause();
+				}
+				
+				if(error == null)
+					continue;
+				
+				if(failOnDeployError)
+					throw new LifecycleException(sm.getString("StandardHost.deployContexts.e0", getName(), context.getName()), error);
+				
+				log.error(sm.getString("StandardHost.deployContexts.e1", getName(), context.getName()), error);
+				removeChildContainer(context);
+			}
+			
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		
+		log.info(sm.getString(start ? "StandardHost.deployContexts.i1" : "StandardHost.deployContexts.i0", getName(), 
+				childContainers.size(), String.valueOf(System.currentTimeMillis() - startTime)));
+	}
+	
+	/**
+	 * ʼContext񣬷ز׳쳣ɹʱnull
+	 */
+	private static final class DeployProcesser implements Callable<Throwable> {
+		
+		private final Context context;
+		
+		private final boolean start;
+		
+		DeployProcesser(Context context, boolean start) {
+			this.context = context;
+			this.start = start;
+		}
+
+		@Override
+		public Throwable call() {
+			
+			long startTime = System.currentTimeMillis();
+			
+			try {
+				if(start)
+					context.start();
+				else
+					context.init();
+				
+			} catch (Throwable e) {
+				return e;
+			}
+			
+			log.info(sm.getString(start ? "StandardHost.DeployProcesser.i1" : "StandardHost.DeployProcesser.i0", 
+					context.getName(), String.valueOf(System.currentTimeMillis() - startTime)));
+			return null;
+		}
+	}
+	
+	/**
+	 * ȴ滻ľɰ汾Contextֹͣ
+	 */
+	private final class DrainProcesser implements Runnable {
+		
+		private final Context context;
+		
+		DrainProcesser(Context context) {
+			this.context = context;
+		}
+
+		@Override
+		public void run() {
+			
+			long startTime = System.currentTimeMillis();
+			
+			try {
+				if(context.drain(drainTimeout))
+					log.info(sm.getString("StandardHost.DrainProcesser.i0", context.getName(), 
+							String.valueOf(System.currentTimeMillis() - startTime)));
+				else
+					log.warn(sm.getString("StandardHost.DrainProcesser.w0", context.getName(), 
+							context.getActiveRequests(), String.valueOf(drainTimeout)));
+				
+			} catch (InterruptedException e) {
+				log.warn(sm.getString("StandardHost.DrainProcesser.w0", context.getName(), 
+						context.getActiveRequests(), String.valueOf(drainTimeout)));
+			}
+			
+			try {
+				context.stop();
+			} catch (Throwable e) {
+				log.error(sm.getString("StandardHost.reloadContext.w0", context.getName()), e);
+			}
+		}
+	}
+	
+	/**
+	 * ̳߳ص̹߳߳ƸʽΪContextDeployProcesser-n
+	 */
+	private static final class DeployThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("ContextDeployProcesser-" + thread.getPoolIndex());
+			return thread;
+		}
+	}
+
 	private void findWebappAndLoad() {
 		
 		if(appBaseFolder.exists()) {
@@ -79,8 +621,11 @@ public class StandardHost extends ContainerBase<Engine, Context> implements Host
 				
 				if(folder.isDirectory()) {
 					StandardContext context = (StandardContext) StandardContext.createContextByFolder(this, folder);
-					if(context != null)
+					if(context != null) {
+						context.setReloadable(reloadable);
+						configureSessionManager(context);
 						addChildContainer(context);
+					}
 				}
 			}
 		}
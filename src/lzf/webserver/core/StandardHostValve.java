@@ -3,9 +3,7 @@ package lzf.webserver.core;
 import java.io.IOException;
 
 import javax.servlet.ServletException;
-import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
 import lzf.webserver.Context;
 import lzf.webserver.connector.Request;
@@ -48,16 +46,7 @@ public final class StandardHostValve extends ValveBase {
 			}
 		}
 		
-		HttpSession serverSession = request.getSession(false);
-		
-		if(serverSession == null) {
-			
-			serverSession = request.getSession();
-			Cookie session = context.createSessionCookie(serverSession.getId());
-			
-			response.addCookie(session);
-		}
-
+		//SessionֻWebӦõgetSessionʱ
 		context.getPipeline().getFirst().invoke(request, response);
 	}
 }
@@ -21,6 +21,9 @@ public final class StandardPipeline extends LifecycleBase implements Pipeline {
 	private Container<?, ?> container;
 	
 	private volatile Valve[] valves = new Valve[0];
+	
+	//ţλڷĩ
+	private volatile Valve basic = null;
 
 	public StandardPipeline() {	
 	}
@@ -45,10 +48,11 @@ public final class StandardPipeline extends LifecycleBase implements Pipeline {
 	 */
 	@Override
 	public Valve getBasic() {
-		return valves[valves.length - 1];
+		return basic;
 	}
 
 	/**
+	 * ûţʼλڹܵĩˣظʱ滻ԭеĻ
 	 * @param valve ܵʵStandardͷValve
 	 */
 	@Override
@@ -56,20 +60,20 @@ public final class StandardPipeline extends LifecycleBase implements Pipeline {
 		
 		if(getLifecycleState().after(LifecycleState.STARTING_PREP))
 			throw new LifecycleException(sm.getString("StandardPipeline.setBasic.e0", container.getName()));
+		
+		synchronized(this) {
 			
-		for(Valve v : valves) {
-			if(v == valve)
+			if(basic == valve)
 				return;
-		}
-		
-		Valve[] newValves = new Valve[valves.length + 1];
-		
-		synchronized(valves) {
-			for(int i = 0; i < valves.length; i++) {
-				newValves[i] = valves[i];
-			}
-			newValves[newValves.length - 1] = valve;
-			this.valves = newValves;
+			
+			int len = basic == null ? valves.length : valves.length - 1;
+			
+			Valve[] newValves = new Valve[len + 1];
+			System.arraycopy(valves, 0, newValves, 0, len);
+			newValves[len] = valve;
+			
+			this.basic = valve;
+			setValves(newValves);
 		}
 	}
 
@@ -82,20 +86,36 @@ public final class StandardPipeline extends LifecycleBase implements Pipeline {
 		if(getLifecycleState().after(LifecycleState.STARTING_PREP))
 			throw new LifecycleException(sm.getString("StandardPipeline.addValve.e0", container.getName()));
 		
-		for(Valve v : valves) {
-			if(v == valve)
-				return;
+		synchronized(this) {
+			
+			for(Valve v : valves) {
+				if(v == valve)
+					return;
+			}
+			
+			Valve[] newValves = new Valve[valves.length + 1];
+			newValves[0] = valve;
+			System.arraycopy(valves, 0, newValves, 1, valves.length);
+			
+			setValves(newValves);
 		}
+	}
+	
+	/**
+	 * 滻飬˳ÿŵһ
+	 * @param newValves µķ
+	 */
+	private void setValves(Valve[] newValves) {
 		
-		Valve[] newValves = new Valve[valves.length + 1];
-		
-		synchronized(valves) {
-			newValves[0] = valve;
-			for(int i = 1; i < newValves.length; i++) {
-				newValves[i] = valves[i - 1];
-			}
-			this.valves = newValves;
+		for(int i = 0; i < newValves.length; i++) {
+			
+			if(newValves[i].getContainer() == null)
+				newValves[i].setContainer(container);
+			
+			newValves[i].setNext(i + 1 < newValves.length ? newValves[i + 1] : null);
 		}
+		
+		this.valves = newValves;
 	}
 
 	/**
@@ -116,21 +136,30 @@ public final class StandardPipeline extends LifecycleBase implements Pipeline {
 		if(getLifecycleState().after(LifecycleState.STARTING_PREP))
 			throw new LifecycleException(sm.getString("StandardPipeline.removeValve.e0", container.getName()));
 		
-		int index = -1;
-		synchronized(valves) {
+		synchronized(this) {
+			
+			int index = -1;
+			
 			for(int i = 0; i < valves.length; i++) {
 				if(valves[i] == valve)
 					index = i;
 			}
+			
 			if(index == -1)
 				return;
+			
 			Valve[] newValves = new Valve[valves.length - 1];
+			
 			for(int i = 0, j = 0; i < valves.length; i++) {
 				if(i == index)
 					continue;
 				newValves[j++] = valves[i];
 			}
-			this.valves = newValves;
+			
+			if(basic == valve)
+				basic = null;
+			
+			setValves(newValves);
 		}
 	}
 
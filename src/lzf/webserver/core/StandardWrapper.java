@@ -3,6 +3,8 @@ package lzf.webserver.core;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
@@ -30,6 +32,9 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 	
 	volatile Servlet servlet;
 	
+	//ǰServletʵacquireڵһʱJSP±Servletʵһ滻
+	private volatile ServletInstance instance = null;
+	
 	//ServletConfigʵ࣬Servletơ
 	volatile ApplicationServletConfig servletConfig = new ApplicationServletConfig(this);
 	
@@ -207,35 +212,41 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 			return;
 		} else if(getServletClass() != null) {
 			
-			try {
-				
-				if(servletConfig.servletType.equals(ApplicationServletConfig.JSP)) {
-					
-					servlet = (Servlet)(getParentContainer().getWebappLoader().getJspClassLoader()
-							.loadClass(servletConfig.servletClass).newInstance());
-					servlet.init(servletConfig);
-					
-				} else {
-				
-					servlet = (Servlet) (getParentContainer().getWebappLoader().getClassLoader()
-							.loadClass(servletConfig.getServletClass()).newInstance());
-					
-					servlet.init(servletConfig);
-				}
-				
-			} catch (InstantiationException e) {
-				log.error("", e);
-			} catch (IllegalAccessException e) {
-				log.error("", e);
-			} catch (ClassNotFoundException e) {
-				log.error("", e);
-			}
-			
+			servlet = createServlet();
 			return;
 		}
 		
 		throw new ServletException("Servlet class not set.");
 	}
+	
+	/**
+	 * ʼһµServletʵJSPÿζʹµJSP
+	 * @return Servletʵ޷ʱnull
+	 */
+	private Servlet createServlet() throws ServletException {
+		
+		try {
+			ClassLoader loader;
+			
+			if(servletConfig.servletType.equals(ApplicationServletConfig.JSP))
+				loader = getParentContainer().getWebappLoader().createJspClassLoader();
+			else
+				loader = getParentContainer().getWebappLoader().getClassLoader();
+			
+			Servlet servlet = (Servlet) loader.loadClass(getServletClass()).newInstance();
+			servlet.init(servletConfig);
+			return servlet;
+			
+		} catch (InstantiationException e) {
+			log.error("", e);
+		} catch (IllegalAccessException e) {
+			log.error("", e);
+		} catch (ClassNotFoundException e) {
+			log.error("", e);
+		}
+		
+		return null;
+	}
 
 	/**
 	 * жصǰWrapperеServlet
@@ -243,11 +254,121 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 	 */
 	@Override
 	public void unload() throws ServletException {
-		servlet.destroy();
+		
+		//load-on-startupΪҴδServletûʵ
+		if(servlet != null)
+			servlet.destroy();
+		
 		servlet = null;
+		instance = null;
 		servletConfig = null;
 	}
 
+	/**
+	 * ʹµServletʵ滻ǰʵJSP±µ
+	 * ʵʼɺ滻滻ʵʵڴɺ
+	 * ʵ޷ʱʵ
+	 * @throws ServletException ʵʼʧ
+	 */
+	synchronized void reload() throws ServletException {
+		
+		//δServletһʱֱµ
+		if(servlet == null)
+			return;
+		
+		Servlet newServlet = createServlet();
+		
+		if(newServlet == null)
+			return;
+		
+		Servlet old = servlet;
+		ServletInstance oldInstance = instance;
+		
+		servlet = newServlet;
+		instance = new ServletInstance(newServlet);
+		
+		if(oldInstance != null && oldInstance.servlet == old)
+			oldInstance.retire();
+		else
+			old.destroy();
+	}
+	
+	/**
+	 * ȡǰServletʵǼһڴɺServletInstance.release
+	 * @return ǰServletʵServlet޷ʱnull
+	 */
+	ServletInstance acquire() throws ServletException {
+		
+		while(true) {
+			
+			Servlet servlet = getServlet();
+			
+			if(servlet == null)
+				return null;
+			
+			ServletInstance instance = this.instance;
+			
+			if(instance == null || instance.servlet != servlet) {
+				synchronized(this) {
+					if(this.servlet == servlet && (this.instance == null || this.instance.servlet != servlet))
+						this.instance = new ServletInstance(servlet);
+				}
+				continue;
+			}
+			
+			instance.active.incrementAndGet();
+			
+			//Ǽǰʵѱ滻ʹʵ
+			if(instance.servlet == this.servlet)
+				return instance;
+			
+			instance.release();
+		}
+	}
+	
+	/**
+	 * һServletʵʹ滻Ϊ0ʱ
+	 */
+	static final class ServletInstance {
+		
+		final Servlet servlet;
+		
+		//ʹøʵ
+		private final AtomicInteger active = new AtomicInteger();
+		
+		//ʵѱ滻
+		private volatile boolean retired = false;
+		
+		private final AtomicBoolean destroyed = new AtomicBoolean();
+		
+		ServletInstance(Servlet servlet) {
+			this.servlet = servlet;
+		}
+		
+		/**
+		 * 
+		 */
+		void release() {
+			if(active.decrementAndGet() == 0 && retired)
+				destroy();
+		}
+		
+		/**
+		 * ʵѱ滻ûڴʱ
+		 */
+		private void retire() {
+			retired = true;
+			
+			if(active.get() == 0)
+				destroy();
+		}
+		
+		private void destroy() {
+			if(destroyed.compareAndSet(false, true))
+				servlet.destroy();
+		}
+	}
+
 	/**
 	 * Servlet
 	 * @param servlet
@@ -263,8 +384,14 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 	 */
 	@Override
 	public Servlet getServlet() throws ServletException {
-		if(servlet == null)
-			load();
+		
+		if(servlet == null) {
+			synchronized(this) {
+				if(servlet == null)
+					load();
+			}
+		}
+		
 		return servlet;
 	}
 	
@@ -304,12 +431,15 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 
 	@Override
 	protected void initInternal() throws Exception {
-		pipeline.addValve(new StandardWrapperValve());
+		pipeline.setBasic(new StandardWrapperValve());
 	}
 
 	@Override
 	protected void startInternal() throws Exception {
-		load();
+		
+		//load-on-startupΪʱڵһʱServlet
+		if(loadOnStartup >= 0)
+			load();
 	}
 
 	@Override
@@ -335,42 +465,21 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 	}
 	
 	/**
-	 * һĬServletWrapperʹʱעҪֶContext
+	 * һĬServletWrapperWebӦõо̬ԴļWrapper
+	 * ·ContextMapperľ̬Դƥ䣬ʹʱעҪֶContext
 	 * @param context Context
-	 * @param path Դļ·
-	 * @param b 
 	 * @return úõWrapperʵ
 	 */
-	public static Wrapper getDefaultWrapper(Context context, File path, byte[] b) {
+	public static Wrapper getDefaultWrapper(Context context) {
 		
 		StandardWrapper wrapper = new StandardWrapper(context);
 		
-		wrapper.setServlet(new DefaultServlet(path, b));
-		wrapper.setPath(path);
+		wrapper.setServlet(new DefaultServlet(context));
+		wrapper.setPath(context.getPath());
 		
-		wrapper.setName(path.getName());
+		wrapper.setName("default");
 		
-		//wrapperŵ·ʽ:webapps/ROOT/index.html
-		String p = path.getPath().replaceAll("\\\\", "/");
-		
-		if(context.getName().equals("ROOT")) {
-			
-			//webӦĿ¼ʽ:webapps/ROOT
-			String contextPath = context.getPath().getPath().replaceAll("\\\\", "/");
-			
-			//WrapperURIΪ/index.html
-			wrapper.addURIPattern(p.replaceAll(contextPath, ""));
-
-		} else {
-			
-			//дwebӦõĿ¼ʽ:webapps
-			String webappBaseFolder = context.getParentContainer().getWebappBaseFolder().getPath();
-			
-			//WrapperURIΪ/index.html
-			wrapper.addURIPattern(p.replaceAll(webappBaseFolder, ""));
-		}
-		
-		wrapper.servletConfig.servletName = "Default:" + path.getPath();
+		wrapper.servletConfig.servletName = "default";
 		wrapper.servletConfig.servletClass = "lzf.webserver.servlets.DefaultServlet";
 		wrapper.servletConfig.servletType = ApplicationServletConfig.STATIC;
 		
@@ -422,6 +531,7 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 		wrapper.servletConfig.servletName = path.getName();
 		wrapper.servletConfig.servletType = ApplicationServletConfig.JSP;
 		wrapper.setName(path.getName());
+		wrapper.setPath(path);
 		
 		//wrapperŵ·ʽ:webapps/${contextName}/index.html
 		String p = path.getPath().replaceAll("\\\\", "/");
@@ -475,7 +585,7 @@ public class StandardWrapper extends ContainerBase<Context, Void> implements Wra
 	 * @param uri JSP URI·
 	 * @return JSP
 	 */
-	private static String parseJspURIToClass(String uri) {
+	static String parseJspURIToClass(String uri) {
 
 		if(uri.startsWith("/"))
 			uri = uri.substring(1);
@@ -3,6 +3,7 @@ package lzf.webserver.core;
 import java.io.IOException;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import lzf.webserver.Context;
@@ -37,23 +38,50 @@ public final class StandardWrapperValve extends ValveBase {
 		
 		context.getListenerContainer().runRequestInitializedEvent(requestFacade);
 		
-		//ִй
-		context.getFilterChain().doFilter(requestFacade, responseFacade);
+		//ȡWrapperԤƥõĹ
+		ApplicationFilterConfig[] filters = context.getFilterChain().findFilters(wrapper, request.getRequestURI());
 		
 		//õǰ߳ΪWebӦõ
 		Thread.currentThread().setContextClassLoader(context.getWebappLoader().getClassLoader());
-		//ִServlet
-		wrapper.getServlet().service(requestFacade, responseFacade);
+		//ִйĩִServletJSP±ɵServletʵɺŻ
+		StandardWrapper.ServletInstance instance = ((StandardWrapper) wrapper).acquire();
+		
+		try {
+			new WrapperFilterChain(filters, instance != null ? instance.servlet : null).doFilter(requestFacade, responseFacade);
+		} finally {
+			if(instance != null) {
+				ApplicationAsyncContext asyncContext = request.getApplicationAsyncContext();
+				
+				//첽complete֮ǰԿʹøServletʵͷ
+				if(asyncContext == null || !asyncContext.addCompletionTask(instance::release))
+					instance.release();
+			}
+		}
+		
+		//Servlet첽ģʽӦAsyncContextcompleteύ
+		ApplicationAsyncContext asyncContext = request.getApplicationAsyncContext();
+		
+		if(asyncContext != null && asyncContext.containerReturned())
+			return;
+		
+		finishResponse(context, requestFacade, response);
+	}
+	
+	/**
+	 * DateContent-LengthӦͷ¼Ӧύͻ
+	 * @param context Context
+	 * @param servletRequest ݸ
+	 * @param response Ӧ
+	 * @throws IOException
+	 */
+	static void finishResponse(Context context, ServletRequest servletRequest, Response response) throws IOException {
 		
-		response.setStatus(HttpServletResponse.SC_OK);
 		response.addDateHeader("Date", System.currentTimeMillis());
 		
 		setContentLength(response);
 		
-		//context.getFilterChain().doFilter(requestFacade, responseFacade);
-		
 		if(!response.isCommitted())
-			context.getListenerContainer().runRequestDestroyedEvent(requestFacade);
+			context.getListenerContainer().runRequestDestroyedEvent(servletRequest);
 		
 		response.sendResponse();
 	}
@@ -63,7 +91,11 @@ public final class StandardWrapperValve extends ValveBase {
 	 * @param response Ӧ
 	 * @throws IOException
 	 */
-	private void setContentLength(Response response) throws IOException {
+	private static void setContentLength(Response response) throws IOException {
+		
+		//304ӦûӦ壬Ӧ
+		if(response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED)
+			return;
 		
 		if(response.getHeader("Content-Length") == null) {
 			
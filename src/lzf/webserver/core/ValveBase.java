@@ -17,7 +17,7 @@ import lzf.webserver.log.LogFactory;
 * @date 2018712 2:52:27
 * @Description ų࣬ʵӦ̳иó
 */
-public abstract class ValveBase implements Valve {
+public abstract class ValveBase extends LifecycleBase implements Valve {
 	
 	protected final Log log = LogFactory.getLog(ValveBase.class); 
 	
@@ -71,6 +71,29 @@ public abstract class ValveBase implements Valve {
 			throws IOException, ServletException;
 	
 
+	/**
+	 * ŵܵҪʼԴķſд·
+	 */
+	@Override
+	protected void initInternal() throws Exception {
+		//NOOP
+	}
+	
+	@Override
+	protected void startInternal() throws Exception {
+		//NOOP
+	}
+	
+	@Override
+	protected void stopInternal() throws Exception {
+		//NOOP
+	}
+	
+	@Override
+	protected void destoryInternal() throws Exception {
+		//NOOP
+	}
+
 	/**
 	 * ܵ
 	 * @return lzf.webserver.valve[containerName]
@@ -3,11 +3,24 @@ package lzf.webserver.core;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
@@ -18,30 +31,143 @@ import lzf.webserver.util.StringManager;
  * @version 1.0
  * @date 2018711 7:30:37
  * @Description WebӦÿwebӦ(Context)ӦһWebappClassLoader
+ * ʱɨWEB-INF/classesĿ¼WEB-INF/libJARĿ¼ṹԴĿ¼()λõ
+ * ԴʱֻʰĿ¼λã̽еURL
+ * ûҵԴᱻ¼ֱ֮ӷأWebӦõļ仯ʱᱻ滻Ҫ
  */
 public final class WebappClassLoader extends URLClassLoader {
-	
+
+	static {
+		registerAsParallelCapable();
+	}
+
 	private static final StringManager sm = StringManager.getManager(WebappClassLoader.class);
 
 	private static final Log log = LogFactory.getLog(WebappClassLoader.class);
 
+	//¼δҵԴ¼¼
+	private static final int MAX_NOT_FOUND = 8192;
+
 	//{web-app}/WEB-INF/lib·
 	final String lib;
 
 	//{web-app}/WEB-INF/classes·
 	final String classes;
-	
+
+	//ԴĿ¼(com/example/Ŀ¼Ϊַ)ͰĿ¼λãclassesĿ¼JAR֮ǰ
+	private final Map<String, Location[]> index;
+
+	//еJARرʱر
+	private final List<JarFile> jarFiles = new ArrayList<>();
+
+	//ûҵԴ
+	private final Set<String> notFound = ConcurrentHashMap.newKeySet();
+
 	/**
 	 * @param parent һΪϵͳ
 	 * @param webappFolder webappĿ¼
-	 * @param libURLs WEB-INF\libJar
+	 * @param jars WEB-INF/libеJar
 	 */
-	WebappClassLoader(ClassLoader parent, File webappFolder, URL[] urls) {
-		super(urls, parent);
+	WebappClassLoader(ClassLoader parent, File webappFolder, List<File> jars) throws MalformedURLException {
+
+		super(new URL[0], parent);
+
 		this.lib = webappFolder.getAbsolutePath() + File.separator + "WEB-INF" + File.separator + "lib";
 		this.classes = webappFolder.getAbsolutePath() + File.separator + "WEB-INF" + File.separator + "classes";
+
+		long startTime = System.currentTimeMillis();
+		Map<String, List<Location>> map = new HashMap<>();
+
+		File classesFolder = new File(classes);
+
+		if(classesFolder.isDirectory()) {
+			super.addURL(classesFolder.toURI().toURL());
+			indexFolder(new Location(classesFolder, null, classesFolder.toURI().toURL()), classesFolder, "", map);
+		}
+
+		for(File jar : jars) {
+
+			try {
+				JarFile jarFile = new JarFile(jar);
+				jarFiles.add(jarFile);
+				super.addURL(jar.toURI().toURL());
+				indexJar(new Location(null, jarFile, jar.toURI().toURL()), map);
+
+			} catch (IOException e) {
+				log.warn(sm.getString("WebappClassLoader.indexJar.w0", jar.getAbsolutePath()), e);
+			}
+		}
+
+		Map<String, Location[]> index = new HashMap<>(map.size() * 4 / 3 + 1);
+
+		for(Map.Entry<String, List<Location>> entry : map.entrySet())
+			index.put(entry.getKey(), entry.getValue().toArray(new Location[entry.getValue().size()]));
+
+		this.index = index;
+
+		if(log.isDebugEnabled())
+			log.debug(sm.getString("WebappClassLoader.i0", webappFolder.getName(), index.size(), jarFiles.size(),
+					String.valueOf(System.currentTimeMillis() - startTime)));
 	}
 
+	/**
+	 * ¼classesĿ¼аļĿ¼
+	 * @param dir ԴĿ¼/βĿ¼Ϊַ
+	 */
+	private static void indexFolder(Location location, File folder, String dir, Map<String, List<Location>> map) {
+
+		File[] files = folder.listFiles();
+
+		if(files == null)
+			return;
+
+		boolean hasFile = false;
+
+		for(File file : files) {
+			if(file.isDirectory())
+				indexFolder(location, file, dir + file.getName() + "/", map);
+			else
+				hasFile = true;
+		}
+
+		if(hasFile)
+			addLocation(dir, location, map);
+	}
+
+	/**
+	 * JARĿ¼еĿ¼ļĿ¼
+	 */
+	private static void indexJar(Location location, Map<String, List<Location>> map) {
+
+		Enumeration<JarEntry> entries = location.jarFile.entries();
+
+		while(entries.hasMoreElements()) {
+
+			JarEntry entry = entries.nextElement();
+
+			if(entry.isDirectory())
+				continue;
+
+			String name = entry.getName();
+			addLocation(name.substring(0, name.lastIndexOf('/') + 1), location, map);
+		}
+	}
+
+	private static void addLocation(String dir, Location location, Map<String, List<Location>> map) {
+
+		List<Location> list = map.computeIfAbsent(dir, k -> new ArrayList<>(1));
+
+		if(list.isEmpty() || list.get(list.size() - 1) != location)
+			list.add(location);
+	}
+
+	/**
+	 * @param name Դcom/example/Main.class
+	 * @return ܰԴλãû򷵻null
+	 */
+	private Location[] getLocations(String name) {
+		return index.get(name.substring(0, name.lastIndexOf('/') + 1));
+	}
 
 	/**
 	 * webӦõlibclassesļм
@@ -52,65 +178,216 @@ public final class WebappClassLoader extends URLClassLoader {
 	@Override
 	protected Class<?> findClass(String name) throws ClassNotFoundException {
 
-		try {
-			Class<?> klass = super.findClass(name);
-			return klass;
-		} catch(ClassNotFoundException e) {
-			String classPath = classes + File.separator + name.replace('.', 
-					File.separatorChar) + ".class";
-			
-			File file = new File(classPath);
-			
-			if(!file.exists())
-				throw new ClassNotFoundException();
-			
-			InputStream input = null;
-			try {
-				input = new FileInputStream(file);
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				int read = 0;
-				
-				byte[] b = new byte[(int)file.length()];
-
-				while((read = input.read(b)) != -1) {
-					baos.write(b, 0, read);
-				}
+		if(notFound.contains(name))
+			throw new ClassNotFoundException(name);
+
+		String path = name.replace('.', '/') + ".class";
+		Location[] locations = getLocations(path);
+
+		if(locations != null) {
+
+			for(Location location : locations) {
+
+				byte[] b;
 
-				return this.defineClass(name, b, 0, b.length);
-			} catch (FileNotFoundException e0) {
-				throw new ClassNotFoundException();
-			} catch (IOException e0) {
-				log.error("" , e0);
-				
-			}finally {
 				try {
-					input.close();
-				} catch (IOException e1) {
-					log.warn(sm.getString("WebappClassLoader.findClass.e0"), e1);
+					b = location.read(path);
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
 				}
+
+				if(b == null)
+					continue;
+
+				definePackage(name, location);
+				return defineClass(name, b, 0, b.length, new CodeSource(location.url, (CodeSigner[]) null));
 			}
-			
-			throw new ClassNotFoundException();
+		}
+
+		addNotFound(name);
+		throw new ClassNotFoundException(name);
+	}
+
+	/**
+	 * ڶ֮ǰİJARеʹJARManifest
+	 * getPackageJava 9бgetDefinedPackageJava 8в
+	 */
+	@SuppressWarnings("deprecation")
+	private void definePackage(String className, Location location) {
+
+		int index = className.lastIndexOf('.');
+
+		if(index == -1)
+			return;
+
+		String packageName = className.substring(0, index);
+
+		if(getPackage(packageName) != null)
+			return;
+
+		try {
+			Manifest manifest = location.jarFile != null ? location.jarFile.getManifest() : null;
+
+			if(manifest != null)
+				definePackage(packageName, manifest, location.url);
+			else
+				definePackage(packageName, null, null, null, null, null, null, null);
+
+		} catch (IOException e) {
+			definePackage(packageName, null, null, null, null, null, null, null);
+
+		} catch (IllegalArgumentException e) {
+			//߳Ѿ˸ð
 		}
 	}
-	
-	/*
+
 	@Override
-	public Class<?> loadClass(String name) throws ClassNotFoundException {
-		System.out.println(name);
-		return super.loadClass(name);
+	public URL findResource(String name) {
+
+		if(notFound.contains(name))
+			return null;
+
+		Location[] locations = getLocations(name);
+
+		if(locations != null) {
+
+			for(Location location : locations) {
+
+				URL url = location.getResource(name);
+
+				if(url != null)
+					return url;
+			}
+		}
+
+		addNotFound(name);
+		return null;
 	}
-	
+
 	@Override
-	public URL getResource(String name) {
-		System.out.println(name);
-		return super.getResource(name);
+	public Enumeration<URL> findResources(String name) throws IOException {
+
+		Location[] locations = getLocations(name);
+
+		if(locations == null)
+			return Collections.emptyEnumeration();
+
+		List<URL> urls = new ArrayList<>(locations.length);
+
+		for(Location location : locations) {
+
+			URL url = location.getResource(name);
+
+			if(url != null)
+				urls.add(url);
+		}
+
+		return Collections.enumeration(urls);
+	}
+
+	private void addNotFound(String name) {
+
+		if(notFound.size() >= MAX_NOT_FOUND)
+			notFound.clear();
+
+		notFound.add(name);
 	}
-	
+
+	/**
+	 * رеJAR
+	 */
 	@Override
-	public Enumeration<URL> getResources(String name) throws IOException {
-		Enumeration<URL> en = super.getResources(name);
-		System.out.println("r:" + name + " " + en.hasMoreElements());
-		return en;
-	}*/
+	public void close() throws IOException {
+
+		super.close();
+
+		for(JarFile jarFile : jarFiles) {
+			try {
+				jarFile.close();
+			} catch (IOException e) {
+				log.warn(sm.getString("WebappClassLoader.close.w0", jarFile.getName()), e);
+			}
+		}
+	}
+
+	/**
+	 * ԴڵλãclassesĿ¼һJAR
+	 */
+	private static final class Location {
+
+		//classesĿ¼JARʱΪnull
+		final File folder;
+
+		//JARclassesĿ¼ʱΪnull
+		final JarFile jarFile;
+
+		//classesĿ¼JARURL
+		final URL url;
+
+		Location(File folder, JarFile jarFile, URL url) {
+			this.folder = folder;
+			this.jarFile = jarFile;
+			this.url = url;
+		}
+
+		/**
+		 * @return Դݣʱnull
+		 */
+		byte[] read(String name) throws IOException {
+
+			if(folder != null) {
+
+				File file = new File(folder, name);
+
+				if(!file.isFile())
+					return null;
+
+				try(InputStream is = new FileInputStream(file)) {
+					return readFully(is, (int) file.length());
+				}
+			}
+
+			JarEntry entry = jarFile.getJarEntry(name);
+
+			if(entry == null)
+				return null;
+
+			try(InputStream is = jarFile.getInputStream(entry)) {
+				return readFully(is, (int) entry.getSize());
+			}
+		}
+
+		/**
+		 * @return ԴURLʱnull
+		 */
+		URL getResource(String name) {
+
+			try {
+				if(folder != null) {
+					File file = new File(folder, name);
+					return file.exists() ? file.toURI().toURL() : null;
+				}
+
+				if(jarFile.getJarEntry(name) == null)
+					return null;
+
+				return new URL("jar:" + url + "!/" + name);
+
+			} catch (MalformedURLException e) {
+				return null;
+			}
+		}
+
+		private static byte[] readFully(InputStream is, int size) throws IOException {
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(size > 0 ? size : 8192);
+			byte[] b = new byte[8192];
+			int read;
+
+			while((read = is.read(b)) != -1)
+				baos.write(b, 0, read);
+
+			return baos.toByteArray();
+		}
+	}
 }
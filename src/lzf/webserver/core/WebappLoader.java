@@ -1,18 +1,15 @@
 package lzf.webserver.core;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import org.apache.jasper.JspC;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
 
@@ -20,8 +17,10 @@ import lzf.webserver.Context;
 import lzf.webserver.Host;
 import lzf.webserver.LifecycleException;
 import lzf.webserver.Loader;
+import lzf.webserver.Wrapper;
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
+import lzf.webserver.resources.StaticResourceCache;
 import lzf.webserver.startup.ServerConstant;
 import lzf.webserver.util.StringManager;
 import lzf.webserver.util.XMLUtil;
@@ -47,16 +46,17 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 	//Ҫ滻ʱҪ½һWebappClassLoader滻ɵClassLoader
 	private volatile WebappClassLoader classLoader = null;
 	
-	//JSPӦΪwebWebappClassLoader
-	private volatile JspClassLoader jspClassLoader = null;
+	//JSPĿ¼JSPӸĿ¼ȡļ
+	private volatile File jspWorkPath = null;
+	
+	//WEB-INF/libеJAR
+	private List<File> jars = Collections.emptyList();
 	
 	//֧滻
 	private boolean reloadable = false;
 	
-	//Դļ޸ʱӳ
-	private Map<File, Long> modifyTimeMap = new ConcurrentHashMap<>();
-	
-	private ResourceCheckProcess resourceProcess = null;
+	//WebӦJSPļWebӦĿ¼·
+	private final List<String> jspPaths = new CopyOnWriteArrayList<>();
 
 	WebappLoader(Context context) {
 		this.context = context;
@@ -71,8 +71,8 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 	}
 	
 	@Override
-	public ClassLoader getJspClassLoader() {
-		return jspClassLoader;
+	public ClassLoader createJspClassLoader() {
+		return new JspClassLoader(classLoader, jspWorkPath);
 	}
 
 	/**
@@ -116,314 +116,471 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 	@Override
 	protected void initInternal() throws Exception {
 		initClassLoader();
-		loadWebXml();
-		resourceLoad(context.getPath());
-		compileJspFile();
+		
+		DeploymentSnapshot deployment = loadDeployment();
+		DeploymentDescriptor descriptor = deployment.descriptor;
+		
+		//web.xmlmetadata-completeΪtrueʱֻʹweb.xmlе
+		if(descriptor == null || !descriptor.metadataComplete)
+			descriptor = scanAnnotations(descriptor);
+		
+		applyWebXml(descriptor);
+		
+		applyResources(deployment.staticPaths, deployment.jspPaths);
+		jspPaths.addAll(deployment.jspPaths);
+		compileJspFile(jspPaths);
 	}
 
 	@Override
 	protected void startInternal() throws Exception {
-
+		
+		if(!reloadable)
+			return;
+		
+		try {
+			ResourceWatcher.getInstance().register(this);
+		} catch (IOException e) {
+			log.warn(sm.getString("WebappLoader.startInternal.w0", context.getName()), e);
+		}
 	}
 
 	@Override
 	protected void stopInternal() throws Exception {
+		
+		ResourceWatcher.getInstance().unregister(this);
+		
+		//ͷ򿪵JAR
+		if(classLoader != null) {
+			try {
+				classLoader.close();
+			} catch (IOException e) {
+				log.warn(sm.getString("WebappLoader.stopInternal.w0", context.getName()), e);
+			}
+		}
+		
 		classLoader = null;
-		jspClassLoader = null;
 	}
 
 	@Override
 	protected void destoryInternal() throws Exception {
 		classLoader = null;
-		jspClassLoader = null;
 	}
 	
 	/**
-	 * ڼԴļ̡߳ÿWebӦöӦһ̡߳ļ޸ʱʵ滻
-	 * ߳̽reloadableΪtrueʱ
+	 * Դļϲļ仯¼
+	 * WEB-INF/classesWEB-INF/libweb.xml仯ʱWebӦã
+	 * JSPļ仯ʱֻ±ӰJSP滻Servlet
+	 * ̬Դ仯ʱֻ¾̬Դͻ
+	 * @param paths 仯(½޸Ļɾ)ļĿ¼WebӦĿ¼
 	 */
-	static final class ResourceCheckProcess implements Runnable {
+	void resourcesChanged(Set<String> paths) throws Exception {
 		
-		private final WebappLoader loader;
-		private final File contextPath;
-		private final Map<File, Long> map;
-		private boolean modify = false;
+		List<String> staticAdded = new ArrayList<>();
+		List<String> staticRemoved = new ArrayList<>();
+		List<String> jspAdded = new ArrayList<>();
+		List<String> jspRemoved = new ArrayList<>();
+		boolean jspChanged = false;
 		
-		ResourceCheckProcess(WebappLoader loader){
-			this.loader = loader;
-			this.contextPath = loader.getContext().getPath();
-			this.map = loader.modifyTimeMap;
-		}
-
-		@Override
-		public void run() {
+		for(String path : paths) {
 			
-			while(loader.getLifecycleState().isAvailable()) {
-				checkModify(contextPath);
-				if(modify) {
-					reloadContext();
-				}
-				try {
-					Thread.sleep(10000);
-				} catch (InterruptedException e) {
-					new Thread(loader.resourceProcess).start();
-					return;
-				}
+			if(isReloadPath(path)) {
+				reloadContext();
+				return;
 			}
-		}
-		
-		/**
-		 * ݹĿ¼µļMapеļбȶԣ޸modifyΪtrue
-		 * @param path ļFileⲿʱӦContextĿ¼
-		 */
-		private void checkModify(File path) {
 			
-			if(!path.exists()) {
-				modify = true;
-			}
+			File file = new File(context.getPath(), path.substring(1));
+			String fileName = file.getName();
 			
-			File[] files = path.listFiles();
+			if(fileName.endsWith(".jsp")) {
+				
+				if(file.isFile() && !jspPaths.contains(path))
+					jspAdded.add(path);
+				else if(!file.exists() && jspPaths.contains(path))
+					jspRemoved.add(path);
+				
+				jspChanged = true;
+				
+			} else if(isJspDependency(path)) {
+				jspChanged = true;
+				
+			} else if(file.isDirectory()) {
+				//½Ŀ¼еļѾɼΪ·
+				continue;
+				
+			} else if(!path.startsWith("/WEB-INF/") && !fileName.endsWith(".class")) {
+				
+				StaticResourceCache.getInstance().invalidate(file);
+				
+				if(file.isFile())
+					staticAdded.add(path);
+				else
+					staticRemoved.add(path);
+			}
 			
-			for(File file : files) {
-				if(file.isDirectory()) {
-					checkModify(file);
-				} else {
-					Long ot = file.lastModified();
-					Long nt = map.get(file);
-					if(nt == null) {
-						modify = true;
-					}
-					
-					if(ot != nt) {
-						modify = true;
+			//ɾĿ¼ܰJSPļ
+			if(!file.exists()) {
+				for(String jspPath : jspPaths) {
+					if(jspPath.startsWith(path + "/")) {
+						jspRemoved.add(jspPath);
+						jspChanged = true;
 					}
 				}
 			}
 		}
 		
-		private void reloadContext() {
+		if(!staticAdded.isEmpty() || !staticRemoved.isEmpty())
+			updateStaticResources(staticAdded, staticRemoved);
+		
+		if(jspChanged)
+			updateJspFiles(jspAdded, jspRemoved);
+	}
+	
+	/**
+	 * @return ·ı仯ǷҪWebӦ
+	 */
+	private static boolean isReloadPath(String path) {
+		
+		return path.equals(ResourceWatcher.OVERFLOW) || path.equals("/WEB-INF") 
+				|| path.equals("/WEB-INF/web.xml") || path.equals("/WEB-INF/classes") || path.equals("/WEB-INF/lib")
+				|| path.startsWith("/WEB-INF/classes/") || path.startsWith("/WEB-INF/lib/");
+	}
+	
+	/**
+	 * @return ļǷܱJSPͨincludeָǩ
+	 */
+	private static boolean isJspDependency(String path) {
+		
+		return path.endsWith(".jspf") || path.endsWith(".jspx") || path.endsWith(".tag") 
+				|| path.endsWith(".tagx") || path.endsWith(".tld") || path.startsWith("/WEB-INF/tags/");
+	}
+	
+	/**
+	 * ¾̬ԴWebӦԭûо̬ԴʱĬWrapper
+	 */
+	private void updateStaticResources(List<String> added, List<String> removed) throws Exception {
+		
+		if(context.getMapper().getStaticWrapper() != null) {
+			context.getMapper().updateStaticResources(added, removed);
+			return;
+		}
+		
+		if(added.isEmpty())
+			return;
+		
+		Wrapper wrapper = StandardWrapper.getDefaultWrapper(context);
+		
+		context.getMapper().setStaticResources(wrapper, added);
+		context.addChildContainer(wrapper);
+		
+		wrapper.init();
+		wrapper.start();
+	}
+	
+	/**
+	 * עJSPƳɾJSPʹµJSP±JSP
+	 */
+	private void updateJspFiles(List<String> added, List<String> removed) throws Exception {
+		
+		for(String path : removed) {
 			
-			log.info(sm.getString("WebappLoader.ResourceCheckProcess.i0", contextPath.getName()));
-			Host host = loader.getContext().getParentContainer();
+			jspPaths.remove(path);
+			Wrapper wrapper = findJspWrapper(path);
 			
-			synchronized(loader.getContext()) {
-				host.removeChildContainer(loader.getContext());
-				Context context = StandardContext.createContextByFolder(host, loader.getContext().getPath());
-				host.addChildContainer(context);
-				try {
-					context.init();
-					context.start();
-				} catch (Exception e) {
-					log.error(sm.getString("WebappLoader.ResourceCheckProcess.e0", context.getName()), e);
-				}
-				
+			if(wrapper != null) {
+				context.removeChildContainer(wrapper);
+				wrapper.stop();
 			}
 		}
+		
+		List<Wrapper> addedWrappers = new ArrayList<>(added.size());
+		
+		for(String path : added) {
+			jspPaths.add(path);
+			addedWrappers.add(StandardWrapper.getJspWrapper(context, new File(context.getPath(), path.substring(1))));
+		}
+		
+		List<String> compiled = compileJspFile(jspPaths);
+		
+		//±JSPʹµServletʵ滻ʵʵڴɺ
+		for(String path : compiled) {
+			
+			StandardWrapper wrapper = (StandardWrapper) findJspWrapper(path);
+			
+			if(wrapper != null)
+				wrapper.reload();
+		}
+		
+		for(Wrapper wrapper : addedWrappers) {
+			context.addChildContainer(wrapper);
+			wrapper.init();
+			wrapper.start();
+		}
+		
+		log.info(sm.getString("WebappLoader.updateJspFiles.i0", context.getName(), added.size(), removed.size(), compiled.size()));
+	}
+	
+	/**
+	 * @param path JSPļWebӦĿ¼·
+	 * @return JSPӦWrapperûҵnull
+	 */
+	private Wrapper findJspWrapper(String path) {
+		
+		File file = new File(context.getPath(), path.substring(1));
+		
+		for(Wrapper wrapper : context.getChildContainers()) {
+			if(file.equals(wrapper.getPath()) && ApplicationServletConfig.JSP.equals(wrapper.getServletConfig().servletType))
+				return wrapper;
+		}
+		
+		return null;
 	}
 	
+	/**
+	 * WebӦãHost°汾Contextɺ滻ǰContext
+	 */
+	private void reloadContext() {
+		
+		log.info(sm.getString("WebappLoader.reloadContext.i0", context.getName()));
+		context.getParentContainer().reloadContext(context);
+	}
 	
 	/**
-	 * ʼWebJsp
+	 * ʼWebȷJSPĿ¼WebڴʱclassesĿ¼libJAR
 	 * @throws MalformedURLException
 	 */
 	private void initClassLoader() throws MalformedURLException {
 		
 		File lib = new File(context.getPath(), "WEB-INF" + File.separator + "lib");
-		File classes = new File(context.getPath(), "WEB-INF" + File.separator + "classes");
 		
+		List<File> jars = new ArrayList<>();
 		File[] files = lib.listFiles();
 		
-		List<URL> urls = new LinkedList<>();
-		urls.add(lib.toURI().toURL());
-		urls.add(classes.toURI().toURL());
+		if(files != null) {
+			for(File file : files) {
+				if(file.isFile() && file.getName().toLowerCase().endsWith(".jar"))
+					jars.add(file);
+			}
+		}
+		
+		classLoader = new WebappClassLoader(WebappClassLoader.class.getClassLoader(), context.getPath(), jars);
+		this.jars = jars;
+		
+		jspWorkPath = ServerConstant.getConstant().getJspWorkPath(context);
+	}
+
+	/**
+	 * ȡWebӦõĲϢweb.xmlĿ¼ûб仯ʱֱʹùĿ¼µĲգ
+	 * ½web.xmlɨWebӦĿ¼µĿ
+	 * @return Ϣ
+	 */
+	private DeploymentSnapshot loadDeployment() {
+		
+		long startTime = System.currentTimeMillis();
+		File file = new File(jspWorkPath, DeploymentSnapshot.SNAPSHOT_NAME);
+		
+		DeploymentSnapshot snapshot = DeploymentSnapshot.load(file);
+		
+		if(snapshot != null && snapshot.isValid(context.getPath())) {
+			log.info(sm.getString("WebappLoader.loadDeployment.i0", context.getName(), 
+					String.valueOf(System.currentTimeMillis() - startTime)));
+			return snapshot;
+		}
+		
+		snapshot = new DeploymentSnapshot();
+		
+		File webXml = new File(context.getPath(), "WEB-INF" + File.separator + "web.xml");
+		snapshot.setWebXml(webXml);
 		
-		for(File file : files) {
-			urls.add(file.toURI().toURL());
+		boolean parsed = true;
+		
+		if(webXml.exists()) {
+			snapshot.descriptor = parseWebXml(webXml);
+			parsed = snapshot.descriptor != null;
 		}
 		
-		loadClassesPath(urls, classes);
+		resourceLoad(context.getPath(), "", snapshot);
 		
-		classLoader = new WebappClassLoader(WebappClassLoader.class.getClassLoader(), 
-				context.getPath(), urls.toArray(new URL[urls.size()]));
+		//web.xmlʧʱգ´ʱ½
+		if(parsed)
+			snapshot.save(file);
 		
-		jspClassLoader = new JspClassLoader(classLoader, ServerConstant.getConstant()
-				.getJspWorkPath(context));
+		return snapshot;
 	}
 	
 	/**
-	 * ȡWEB-INF\classesĿ¼µclassļ
-	 * @param urls
-	 * @param path
-	 * @throws MalformedURLException
+	 * ɨclassesĿ¼JARе@WebServlet@WebFilter@WebListenerע⣬web.xmlĽϲ
+	 * web.xmlеȣJARɨJARժҪ棬ûб仯JARҪɨ
+	 * @param webXml web.xmlûweb.xml߽ʧʱΪnull
+	 * @return ϲĲϢ
 	 */
-	private void loadClassesPath(final List<URL> urls, File path) throws MalformedURLException {
+	private DeploymentDescriptor scanAnnotations(DeploymentDescriptor webXml) {
 		
-		if(!path.exists())
-			return;
+		long startTime = System.currentTimeMillis();
 		
-		File[] files = path.listFiles();
-		if(files.length == 0)
-			return;
+		Host host = context.getParentContainer();
+		JarScanFilter filter = host instanceof StandardHost ? ((StandardHost) host).getJarScanFilter() : null;
 		
-		for(File file : files) {
-			
-			if(file.isDirectory()) {
-				urls.add(file.toURI().toURL());
-				loadClassesPath(urls, file);
-			} else {
-				urls.add(file.toURI().toURL());
+		AnnotationScanner scanner = new AnnotationScanner(context.getName(), 
+				ServerConstant.getConstant().getAnnotationCachePath(), filter);
+		
+		DeploymentDescriptor annotations = scanner.scan(new File(classLoader.classes), jars);
+		
+		if(log.isDebugEnabled())
+			log.debug(sm.getString("WebappLoader.scanAnnotations.i0", context.getName(), jars.size(), 
+					scanner.getSkippedJars(), scanner.getCachedJars(), String.valueOf(System.currentTimeMillis() - startTime)));
+		
+		//עеURLӳWebӦãROOTӦõWrapperContext·URIӳ
+		if(!context.getName().equals("ROOT")) {
+			for(int i = 0; i < annotations.servletMappings.size(); i++) {
+				String[] mapping = annotations.servletMappings.get(i);
+				annotations.servletMappings.set(i, new String[] { mapping[0], "/" + context.getName() + mapping[1] });
 			}
-			
-			modifyTimeMap.put(file, file.lastModified());
 		}
+		
+		if(webXml == null)
+			return annotations;
+		
+		webXml.merge(annotations);
+		return webXml;
 	}
-
+	
 	/**
-	 * @param path WebӦĿ¼÷᳢еļ
+	 * עWebӦõJSPļ;̬Դо̬ԴһĬWrapper
+	 * ļStaticResourceCacheڵһʱ
+	 * @param staticPaths ̬ԴļWebӦĿ¼·
+	 * @param jspPaths JSPļWebӦĿ¼·
 	 */
-	private void resourceLoad(File file) {
+	private void applyResources(List<String> staticPaths, List<String> jspPaths) {
+		
+		for(String path : jspPaths)
+			context.addChildContainer(StandardWrapper.getJspWrapper(context, new File(context.getPath(), path.substring(1))));
+		
+		if(staticPaths.isEmpty())
+			return;
+		
+		Wrapper wrapper = StandardWrapper.getDefaultWrapper(context);
+		
+		context.getMapper().setStaticResources(wrapper, staticPaths);
+		context.addChildContainer(wrapper);
+	}
+	
+	/**
+	 * @param file WebӦĿ¼Ŀ¼÷᳢еļ
+	 * @param prefix Ŀ¼WebӦĿ¼·Ŀ¼Ϊ""(ַ)
+	 * @param snapshot ¼ɨĿ¼̬ԴļJSPļ
+	 */
+	private void resourceLoad(File file, String prefix, DeploymentSnapshot snapshot) {
 	
 		if(!file.exists())
 			return;
 		
+		//гļ֮ǰ¼޸ʱ䣬гļ֮ı仯ʹʧЧ
+		snapshot.addDirectory(prefix, file);
+		
 		File[] files = file.listFiles();
 		
-		if (files.length == 0) {
+		if (files == null || files.length == 0) {
 			return;
 		}
 		
+		//WEB-INFĿ¼µļͻֱӷ
+		boolean webInf = prefix.equals("/WEB-INF") || prefix.startsWith("/WEB-INF/");
+		
 		for (File file2 : files) {
+			
+			String fileName = file2.getName();
+			
 			if (file2.isDirectory()) {
-				if(file2.getName().equals("META-INF")) {
+				if(fileName.equals("META-INF")) {
 					continue;
 				}
-				resourceLoad(file2);
+				resourceLoad(file2, prefix + "/" + fileName, snapshot);
 			} else {
 				
-				byte[] b = loadFile(file2);
-				if(b == null)
-					return;
-					
-				String fileName = file2.getName();
-					
-				if(!(fileName.endsWith(".class") || fileName.endsWith(".jsp"))) {
-					context.addChildContainer(StandardWrapper.getDefaultWrapper(context, file2, b));
-					
-				} else if(fileName.endsWith(".jsp")) {
-					context.addChildContainer(StandardWrapper.getJspWrapper(context, file2));
-				}
+				if(fileName.endsWith(".jsp")) {
+					snapshot.jspPaths.add(prefix + "/" + fileName);
 				
-				modifyTimeMap.put(file2, file2.lastModified());
+				} else if(!fileName.endsWith(".class") && !webInf) {
+					snapshot.staticPaths.add(prefix + "/" + fileName);
+				}
 			}
 		}
 	}
 	
 	/**
-	 * WebӦеJSPļ
+	 * WebӦõJSPļֻԴļļ仯JSPûJSPļʱκδ
+	 * @param jspPaths WebӦJSPļWebӦĿ¼·
+	 * @return ±JSP·
 	 */
-	private void compileJspFile() {
+	private List<String> compileJspFile(List<String> jspPaths) throws Exception {
+		
+		if(jspPaths.isEmpty())
+			return Collections.emptyList();
 		
-		//webӦеjspļ 
 		File jspWork = ServerConstant.getConstant().getJspWorkPath(context);
-				
-		JspC jspc = new JspC();
-				
-		jspc.setUriroot(context.getPath().getAbsolutePath());
-		jspc.setOutputDir(jspWork.getAbsolutePath());
-				
-		jspc.setPackage(DEFAULT_JSP_PACKAGE);
-		jspc.setCompile(true);
-				
-		jspc.execute();
-	}
-	
-	/**
-	 * @param file ҪԴļFile
-	 * @return Դļ
-	 */
-	private byte[] loadFile(File file) {
-		try {
-			@SuppressWarnings("resource")
-			FileInputStream fis = new FileInputStream(file);
-			
-			byte[] b = new byte[(int) file.length()];
-			fis.read(b);
-			
-			return b;
-		} catch (FileNotFoundException e) {
-			log.error(sm.getString("WebappLoader.loadFile.e0", file.getAbsolutePath()), e);
-		} catch (IOException e) {
-			log.error(sm.getString("WebappLoader.loadFile.e1", file.getAbsolutePath()) , e);
-		}
 		
-		return null;
+		return new JspCompiler(context, jspWork, new ArrayList<>(jspPaths)).compile();
 	}
 	
 	/**
-	 * web.xmlļ
+	 * web.xmlļ
 	 * @param path web.xmlļ·
-	 * @return Ƿسɹ
-	 * @throws DocumentException web.xmlļϹ淶
+	 * @return web.xmlļϹ淶ʱnull
 	 */
-	private boolean loadWebXml() {	
-		File path = new File(context.getPath(), "WEB-INF" + File.separator + "web.xml");
-		if(!path.exists())
-			return false;
+	private DeploymentDescriptor parseWebXml(File path) {
 		
 		Element root = null;
 		try {
 			root = XMLUtil.getXMLRoot(path);
 		} catch (DocumentException e) {
 			log.error(sm.getString("WebappLoader.loadWebXml.e0", context.getName()), e);
-			return false;
+			return null;
 		}
 		
-		/*
-		Element displayRoot = root.element("display-name");
-		if(displayRoot != null){
-			String displayName = displayRoot.getStringValue();
-		}*/
+		DeploymentDescriptor descriptor = new DeploymentDescriptor();
+		descriptor.metadataComplete = Boolean.parseBoolean(root.attributeValue("metadata-complete"));
 		
 		for(Element contextParam : root.elements("context-param")) {
 			
 			String paramName = contextParam.element("param-name").getText();
 			String paramValue = contextParam.element("param-value").getText();
 			
-			context.getServletContext().setInitParameter(paramName, paramValue);
+			descriptor.contextParams.put(paramName, paramValue);
 		}
 		
-		
 		for(Element filter : root.elements("filter")) {
 			
 			String filterName = filter.element("filter-name").getText();
 			String filterClass = filter.element("filter-class").getText();
 			
-			ApplicationFilterConfig filterConfig = new ApplicationFilterConfig(context, filterName, filterClass);
+			DeploymentDescriptor.FilterDef filterDef = new DeploymentDescriptor.FilterDef(filterName, filterClass);
 			
 			for(Element initParam : filter.elements("init-param")) {
 				
 				String name = initParam.element("param-name").getText();
 				String value = initParam.element("param-value").getText();
 				
-				filterConfig.setInitParameter(name, value);
+				filterDef.initParams.put(name, value);
 			}
 			
-			context.getFilterChain().addFilter(filterConfig);
+			descriptor.filters.add(filterDef);
 		}
 		
 		for(Element filterMapping : root.elements("filter-mapping")) {
 			
 			String filterName = filterMapping.element("filter-name").getText();
-			String urlPattern = filterMapping.element("url-pattern").getText();
 			
-			ApplicationFilterConfig filterConfig = context.getFilterChain().getFilterConfig(filterName);
+			DeploymentDescriptor.FilterDef filterDef = descriptor.getFilter(filterName);
 			
-			if(filterConfig != null) {
+			if(filterDef != null) {
 				
-				if(context.getName().equals("ROOT"))
-					filterConfig.addUrlPattern(urlPattern);
-				else
-					filterConfig.addUrlPattern("/" + context.getName() + urlPattern);
+				for(Element urlPattern : filterMapping.elements("url-pattern")) {
+					filterDef.urlPatterns.add(urlPattern.getText());
+				}
+				
+				for(Element servletName : filterMapping.elements("servlet-name")) {
+					filterDef.servletNames.add(servletName.getText());
+				}
 					
 			} else {
 				log.warn(sm.getString("WebappLoader.loadWebXml.w0", context.getName(), filterName));
@@ -432,28 +589,29 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 		
 		//Servlet
 		
-		Map<String, String> servletMap = new LinkedHashMap<>();
-		Map<String, Map<String, String>> initParamMap = new LinkedHashMap<>();
-		
 		for(Element servlet : root.elements("servlet")) {
 			
 			String servletName = servlet.element("servlet-name").getText();
 			String servletClass = servlet.element("servlet-class").getText();
 			
-			List<Element> initParams = servlet.elements("init-param");
+			DeploymentDescriptor.ServletDef servletDef = new DeploymentDescriptor.ServletDef(servletName, servletClass);
 			
-			if(initParams != null) {
-				
-				Map<String, String> map = new LinkedHashMap<>();
-				
-				for(Element initParam : servlet.elements("init-param")) {
-					map.put(initParam.element("param-name").getText(), initParam.element("param-value").getText());
+			for(Element initParam : servlet.elements("init-param")) {
+				servletDef.initParams.put(initParam.element("param-name").getText(), initParam.element("param-value").getText());
+			}
+			
+			//load-on-startupWebӦʱServlet˳򣬸ʾһʱ
+			Element loadOnStartup = servlet.element("load-on-startup");
+			
+			if(loadOnStartup != null) {
+				try {
+					servletDef.loadOnStartup = Integer.valueOf(loadOnStartup.getTextTrim());
+				} catch (NumberFormatException e) {
+					log.warn(sm.getString("WebappLoader.loadWebXml.w2", context.getName(), servletName, loadOnStartup.getTextTrim()));
 				}
-				
-				initParamMap.put(servletName, map);
 			}
 			
-			servletMap.put(servletName, servletClass);
+			descriptor.servlets.add(servletDef);
 		}
 		
 		for(Element servletMapping : root.elements("servlet-mapping")) {
@@ -461,19 +619,7 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 			String servletName = servletMapping.element("servlet-name").getText();
 			String uriPattern = servletMapping.element("url-pattern").getText();
 			
-			if(servletMap.containsKey(servletName)) {
-				
-				Map<String, String> initParams = null;
-				
-				if(initParamMap.containsKey(servletName)) {
-					initParams = initParamMap.get(servletName);
-				}
-				
-				context.addChildContainer(StandardWrapper.getDynamicWrapper(context, servletName
-						, servletMap.get(servletName), uriPattern, initParams));
-			} else {
-				log.warn(sm.getString("WebappLoader.loadWebXml.w1", context.getName(), servletName));
-			}
+			descriptor.servletMappings.add(new String[] { servletName, uriPattern });
 		}
 		
 		//Session-Config
@@ -481,8 +627,7 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 		Element sessionConfig = root.element("session-config");
 		
 		if(sessionConfig != null) {	
-			int sessionTimeOut = Integer.valueOf(sessionConfig.element("session-timeout").getText());
-			context.setSessionTimeout(sessionTimeOut);
+			descriptor.sessionTimeout = Integer.valueOf(sessionConfig.element("session-timeout").getText());
 		}
 		
 		Element welcomeFileRoot = root.element("welcome-file-list");
@@ -490,8 +635,7 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 		if(welcomeFileRoot != null) {
 		
 			for(Element welcomeFile : welcomeFileRoot.elements("welcome-file")) {
-				String weclomeFileName = welcomeFile.getText();
-				context.addWelcomeFile(weclomeFileName);
+				descriptor.welcomeFiles.add(welcomeFile.getText());
 			}
 			
 		}
@@ -501,11 +645,76 @@ public final class WebappLoader extends LifecycleBase implements Loader {
 		if(listenerRoot != null) {
 			
 			for(Element listener : listenerRoot.elements("listener-class")) {
-				String listenerClass = listener.getText();
-				context.getListenerContainer().addListenerClass(listenerClass);
+				descriptor.listeners.add(listener.getText());
+			}
+		}
+		
+		return descriptor;
+	}
+	
+	/**
+	 * web.xmlĽӦõContextóʼעServletͻӭҳ
+	 * @param descriptor web.xmlԲ
+	 */
+	private void applyWebXml(DeploymentDescriptor descriptor) {
+		
+		for(Map.Entry<String, String> param : descriptor.contextParams.entrySet()) {
+			context.getServletContext().setInitParameter(param.getKey(), param.getValue());
+		}
+		
+		context.setStateless(Boolean.parseBoolean(descriptor.contextParams.get(Context.STATELESS_PARAM)));
+		
+		for(DeploymentDescriptor.FilterDef filterDef : descriptor.filters) {
+			
+			ApplicationFilterConfig filterConfig = new ApplicationFilterConfig(context, filterDef.name, filterDef.filterClass);
+			
+			for(Map.Entry<String, String> param : filterDef.initParams.entrySet()) {
+				filterConfig.setInitParameter(param.getKey(), param.getValue());
+			}
+			
+			for(String urlPattern : filterDef.urlPatterns) {
+				
+				if(context.getName().equals("ROOT"))
+					filterConfig.addUrlPattern(urlPattern);
+				else
+					filterConfig.addUrlPattern("/" + context.getName() + urlPattern);
+			}
+			
+			for(String servletName : filterDef.servletNames) {
+				filterConfig.addServletName(servletName);
 			}
+			
+			context.getFilterChain().addFilter(filterConfig);
 		}
 		
-		return true;
+		for(String[] servletMapping : descriptor.servletMappings) {
+			
+			DeploymentDescriptor.ServletDef servletDef = descriptor.getServlet(servletMapping[0]);
+			
+			if(servletDef != null) {
+				
+				Wrapper wrapper = StandardWrapper.getDynamicWrapper(context, servletDef.name
+						, servletDef.servletClass, servletMapping[1], servletDef.initParams);
+				
+				if(servletDef.loadOnStartup != null)
+					wrapper.setLoadOnStartup(servletDef.loadOnStartup);
+				
+				context.addChildContainer(wrapper);
+			} else {
+				log.warn(sm.getString("WebappLoader.loadWebXml.w1", context.getName(), servletMapping[0]));
+			}
+		}
+		
+		if(descriptor.sessionTimeout != null) {
+			context.setSessionTimeout(descriptor.sessionTimeout);
+		}
+		
+		for(String welcomeFile : descriptor.welcomeFiles) {
+			context.addWelcomeFile(welcomeFile);
+		}
+		
+		for(String listenerClass : descriptor.listeners) {
+			context.getListenerContainer().addListenerClass(listenerClass);
+		}
 	}
 }
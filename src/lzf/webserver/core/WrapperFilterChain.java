@@ -0,0 +1,55 @@
+package lzf.webserver.core;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201883 10:21:36
+* @Description ĹԤƥõĹ͵ǰ±꣬йִϺServlet
+* öһʹã֮߳乲
+*/
+final class WrapperFilterChain implements FilterChain {
+
+	//ApplicationFilterChainĹ飬޸
+	private final ApplicationFilterConfig[] filters;
+
+	//ĩ˵Servlet
+	private final Servlet servlet;
+
+	//һҪִеĹ±
+	private int pos = 0;
+
+	WrapperFilterChain(ApplicationFilterConfig[] filters, Servlet servlet) {
+		this.filters = filters;
+		this.servlet = servlet;
+	}
+
+	/**
+	 * תһfilterѾȫִServlet
+	 */
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+
+		while(pos < filters.length) {
+
+			Filter filter = filters[pos++].getFilter();
+
+			//ʼʧܵFilterֱ
+			if(filter != null) {
+				filter.doFilter(request, response, this);
+				return;
+			}
+		}
+
+		if(servlet != null)
+			servlet.service(request, response);
+	}
+}
@@ -1,5 +1,7 @@
 package lzf.webserver.mapper;
 
+import java.io.File;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +25,9 @@ public final class ContextMapper {
 
 	private static final StringManager sm = StringManager.getManager(ContextMapper.class);
 	
+	//δûӭļӭļʱβҵĬҳ
+	private static final String[] DEFAULT_WELCOME_FILES = { "index.html", "index.jsp", "index" };
+	
 	private final Context context;
 	
 	//洢URI·Ϣ"blog/my.html"mapƥ侫׼URL·
@@ -31,6 +36,12 @@ public final class ContextMapper {
 	//洢URIƥģƥѯurl-patternвΪ/demo/*.jsp
 	private final Map<String, MappedWrapper> patternMapper = new LinkedHashMap<>();
 	
+	//о̬ԴļõWrapperΪnullʾWebӦûо̬Դ
+	private volatile Wrapper staticWrapper = null;
+	
+	//̬Դļ··WebӦĿ¼
+	private volatile StaticPathIndex staticIndex = StaticPathIndex.EMPTY;
+	
 	private Boolean rootApp = null;
 	
 	public ContextMapper(Context context) {
@@ -55,19 +66,18 @@ public final class ContextMapper {
 			//ǲǳԷҳ
 			if(uri.equals("/")) {
 				//mw = mapper.get("/index.html");
-				mw = getWelcomeWrapper();
-				if(mw != null)
-					return mw.object;
-				
-				return null;
+				return getWelcomeWrapper();
 			} 
 			
 			//ȷ
 			mw = mapper.get(uri);
 			
-			//ûҵȡģ
+			//ûҵҾ̬Դٲȡģ
 			if(mw == null) {
 				
+				if(staticWrapper != null && staticIndex.contains(uri))
+					return staticWrapper;
+				
 				for(Map.Entry<String, MappedWrapper> pattern : patternMapper.entrySet()) {
 					if(matcher(uri,pattern.getKey()))
 						return pattern.getValue().object;
@@ -84,28 +94,22 @@ public final class ContextMapper {
 		
 		//ûҵڶ"/"˵Էҳ
 		if(st == -1) {
-			MappedWrapper mw = getWelcomeWrapper();
-			
-			if(mw == null)
-				return null;
-			
-			return mw.object;
+			return getWelcomeWrapper();
 		//ҵˣ˵ǽΪӵURL"/demo/index.jsp"ȡ/index.jsp
 		} else {
 			
 			//URIΪָʽ"/demo/"
 			if(uri.equals("/" + context.getName() + "/")) {
-				
-				MappedWrapper mw = getWelcomeWrapper();
-				if(mw == null)
-					return null;
-				return mw.object;
+				return getWelcomeWrapper();
 			}
 			
 			MappedWrapper mw = mapper.get(uri);
 			
 			if(mw == null) {
 				
+				if(staticWrapper != null && staticIndex.contains(uri.substring(st)))
+					return staticWrapper;
+				
 				for(Map.Entry<String, MappedWrapper> pattern : patternMapper.entrySet()) {
 					//System.out.println(pattern.getKey());
 					if(matcher(uri,pattern.getKey()))
@@ -121,54 +125,139 @@ public final class ContextMapper {
 	
 	/**
 	 * ûҳURIʱҳ
-	 * @return ҳMappedWrapper
+	 * @return ҳӦWrapperҳΪ̬Դʱؾ̬ԴWrapper
 	 */
-	private MappedWrapper getWelcomeWrapper() {
+	private Wrapper getWelcomeWrapper() {
 		
-		MappedWrapper mw = null;
+		String welcomeFile = getWelcomeFile();
 		
-		//ȡContextĻӭҳ漯
-		List<String> welcomeFileList = context.getWelcomeFileList();
+		if(welcomeFile != null) {
+			
+			MappedWrapper mw = mapper.get(getContextPrefix() + welcomeFile);
+			
+			if(mw != null)
+				return mw.object;
+			
+			return staticWrapper;
+		}
 		
-		String contextName = "/";
+		String contextName = getContextPrefix();
 		
-		//ROOT webӦcontextΪ"/${contextName}/"
-		if(!rootApp)
-			contextName += context.getName() + "/";
+		//ûҵģƥѯ
+		for(Map.Entry<String, MappedWrapper> pattern : patternMapper.entrySet()) {
+			if(contextName.matches(pattern.getKey()))
+				return pattern.getValue().object;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * βһӭļϡindex.htmlindex.jspindexȷӳ;̬Դһڼ
+	 * @return ӭļûҵnull
+	 */
+	private String getWelcomeFile() {
+		
+		//ȡContextĻӭҳ漯
+		List<String> welcomeFileList = context.getWelcomeFileList();
 		
 		//ȴӻӭļҳ漯ϲ
 		if(welcomeFileList != null) {
 			
 			for(String file : welcomeFileList) {
-				mw = mapper.get(contextName + file);
-				
-				if(mw != null)
-					return mw;
+				if(isWelcomeFile(file))
+					return file;
 			}
 		}
 		
-		//Ŀ¼µindex.html
-		mw = mapper.get(contextName + "index.html");
-		if(mw != null)
-			return mw;
+		for(String file : DEFAULT_WELCOME_FILES) {
+			if(isWelcomeFile(file))
+				return file;
+		}
 		
-		//Ŀ¼µindex.jsp
-		mw = mapper.get(contextName + "index.jsp");
-		if(mw != null)
-			return mw;
+		return null;
+	}
+	
+	private boolean isWelcomeFile(String file) {
 		
-		//index
-		mw = mapper.get(contextName + "index");
-		if(mw != null)
-			return mw;
+		if(mapper.containsKey(getContextPrefix() + file))
+			return true;
 		
-		//ûҵģƥѯ
-		for(Map.Entry<String, MappedWrapper> pattern : patternMapper.entrySet()) {
-			if(contextName.matches(pattern.getKey()))
-				return pattern.getValue();
+		return staticWrapper != null && staticIndex.contains("/" + file);
+	}
+	
+	/**
+	 * @return ȷӳиWebӦURIǰ׺ROOTӦΪ"/"Ϊ"/${contextName}/"
+	 */
+	private String getContextPrefix() {
+		
+		checkRootApp();
+		
+		//ROOT webӦcontextΪ"/${contextName}/"
+		if(rootApp)
+			return "/";
+		
+		return "/" + context.getName() + "/";
+	}
+	
+	/**
+	 * URIҶӦľ̬Դļɾ̬ԴServletڴʱ
+	 * @param path WebӦĿ¼·/css/main.css"/"ʾҳ
+	 * @return ̬ԴļǾ̬Դʱnull
+	 */
+	public File getStaticFile(String path) {
+		
+		if(staticWrapper == null)
+			return null;
+		
+		if(path.isEmpty() || path.equals("/")) {
+			
+			String welcomeFile = getWelcomeFile();
+			
+			if(welcomeFile == null || !staticIndex.contains("/" + welcomeFile))
+				return null;
+			
+			path = "/" + welcomeFile;
+			
+		} else if(!staticIndex.contains(path)) {
+			return null;
 		}
 		
-		return null;
+		return new File(context.getPath(), path.substring(1));
+	}
+	
+	/**
+	 * øWebӦõľ̬Դо̬ԴļһWrapper
+	 * ˷ӦڸWrapperContextǰ
+	 * @param wrapper ĬServletWrapper
+	 * @param paths WebӦĿ¼ľ̬Դļ·/css/main.css
+	 */
+	public synchronized void setStaticResources(Wrapper wrapper, Collection<String> paths) {
+		this.staticIndex = StaticPathIndex.build(paths);
+		this.staticWrapper = wrapper;
+	}
+	
+	/**
+	 * ڼӻɾ̬ԴļԴļļ仯ʱ
+	 * @param added ľ̬Դļ·
+	 * @param removed ɾľ̬ԴļĿ¼·
+	 */
+	public synchronized void updateStaticResources(Collection<String> added, Collection<String> removed) {
+		this.staticIndex = staticIndex.update(added, removed);
+	}
+	
+	/**
+	 * @return о̬ԴļõWrapperWebӦûо̬Դʱnull
+	 */
+	public Wrapper getStaticWrapper() {
+		return staticWrapper;
+	}
+	
+	/**
+	 * @return ̬Դļ
+	 */
+	public int getStaticResourceCount() {
+		return staticIndex.size();
 	}
 	
 	/**
@@ -179,6 +268,10 @@ public final class ContextMapper {
 		
 		checkRootApp();
 		
+		//̬ԴWrapperͨ·ƥ䣬ʹURIӳ
+		if(wrapper == staticWrapper)
+			return;
+		
 		List<String> uriPatterns = wrapper.getURIPatterns();
 		
 		if(uriPatterns == null || uriPatterns.isEmpty())
@@ -237,20 +330,21 @@ public final class ContextMapper {
 	 */
 	void removeMapper(Wrapper wrapper) {
 		
+		if(wrapper == staticWrapper) {
+			staticWrapper = null;
+			staticIndex = StaticPathIndex.EMPTY;
+			return;
+		}
+		
 		List<String> uriPatterns = wrapper.getURIPatterns();
 		
 		if(uriPatterns == null || uriPatterns.isEmpty())
 			return;
 		
-		String prefix = "";
-		
-		if(!rootApp) {
-			prefix = "/" + context.getName();
-		}
-		
+		//addWrapperԭURIӳ򣬷ROOTӦõĹѰContextǰ׺
 		for(String uriPattern : uriPatterns) {
-			mapper.remove(prefix + uriPattern);
-			patternMapper.remove(prefix + uriPattern);
+			mapper.remove(uriPattern);
+			patternMapper.remove(uriPattern);
 		}
 		
 	}
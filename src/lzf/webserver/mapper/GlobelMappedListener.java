@@ -40,6 +40,15 @@ public class GlobelMappedListener implements ContainerListener {
 			else if(data instanceof Context)
 				contextRemoveEvent((Context)data);
 			
+		} else if(type.equals(Host.REPLACE_CONTEXT_EVENT)) {
+			
+			if(data instanceof Context)
+				contextReplaceEvent((Context)data);
+			
+		} else if(type.equals(Host.ADD_ALIAS_EVENT) || type.equals(Host.REMOVE_ALIAS_EVENT)) {
+			
+			if(event.getSource() instanceof Host)
+				hostAliasEvent((Host)event.getSource());
 		}
 	}
 	
@@ -51,6 +60,10 @@ public class GlobelMappedListener implements ContainerListener {
 		mapper.removeHost(host);
 	}
 	
+	private void hostAliasEvent(Host host) {
+		mapper.updateHostAliases(host);
+	}
+	
 	private void contextAddEvent(Context context) {
 		mapper.addContext(context);
 	}
@@ -58,4 +71,8 @@ public class GlobelMappedListener implements ContainerListener {
 	private void contextRemoveEvent(Context context) {
 		mapper.removeContext(context);
 	}
+	
+	private void contextReplaceEvent(Context context) {
+		mapper.replaceContext(context);
+	}
 }
@@ -2,6 +2,7 @@ package lzf.webserver.mapper;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lzf.webserver.Context;
 import lzf.webserver.Host;
@@ -28,9 +29,15 @@ public final class GlobelMapper {
 	//MapprMap
 	private final Map<String, MappedHost> mapper = new LinkedHashMap<>();
 	
-	//MapperContextContextMapperMap
+	//MapperContextContextMapperMapContextӳпܱ滻ʹConcurrentHashMap
 	private final Map<MappedHost, Map<String, MappedContext>> hostMapper = new LinkedHashMap<>();
 	
+	//(ͨ)䶯ʱؽ
+	private volatile HostIndex hostIndex = new HostIndex();
+	
+	//Ĭ޷ƥʱ·ɵ
+	private String defaultHostName = null;
+	
 	public GlobelMapper(Service service) {
 		this.service = service;
 	}
@@ -44,7 +51,7 @@ public final class GlobelMapper {
 		MappedHost mappedHost = new MappedHost(host.getName(), host);
 		mapper.put(host.getName(), mappedHost);
 		
-		Map<String, MappedContext> map = new LinkedHashMap<>();
+		Map<String, MappedContext> map = new ConcurrentHashMap<>();
 		
 		for(Context c : host.getChildContainers()) {
 			MappedContext mc = new MappedContext(c.getName(), c);
@@ -52,6 +59,7 @@ public final class GlobelMapper {
 		}
 		
 		hostMapper.put(mappedHost, map);
+		rebuildHostIndex();
 	}
 	
 	/**
@@ -74,6 +82,58 @@ public final class GlobelMapper {
 		
 		hostMapper.remove(mh);
 		mapper.remove(hostName);
+		rebuildHostIndex();
+	}
+	
+	/**
+	 * Hostı仯ʱؽ
+	 * @param host Host
+	 */
+	synchronized void updateHostAliases(Host host) {
+		
+		if(getMappedHost(host.getName()) == null)
+			return;
+		
+		rebuildHostIndex();
+	}
+	
+	/**
+	 * ĬȲƥҲƥʱ·
+	 * @param hostName ĬΪnullʱʾʹĬ
+	 */
+	public synchronized void setDefaultHostName(String hostName) {
+		this.defaultHostName = hostName;
+		rebuildHostIndex();
+	}
+	
+	/**
+	 * @return Ĭû򷵻null
+	 */
+	public String getDefaultHostName() {
+		return defaultHostName;
+	}
+	
+	/**
+	 * ݵǰе¹ǰиö
+	 */
+	private void rebuildHostIndex() {
+		
+		HostIndex index = new HostIndex();
+		
+		for(MappedHost mh : mapper.values()) {
+			
+			index.put(mh.name, mh);
+			
+			for(String alias : mh.object.getAliases()) {
+				index.put(alias, mh);
+			}
+		}
+		
+		//Ĭ֮ǰãʱҲӦӺؽʱ
+		if(defaultHostName != null)
+			index.setDefaultHost(mapper.get(defaultHostName));
+		
+		this.hostIndex = index;
 	}
 	
 	/**
@@ -89,12 +149,13 @@ public final class GlobelMapper {
 	}
 	
 	/**
-	 * ȡHostʵ
-	 * @param hostName
-	 * @return
+	 * еȡHostʵƥͱͨ(*.example.com)Ĭ
+	 * ƥʱԴСд
+	 * @param hostName еwww.lzfnb.top
+	 * @return HostʵûҵûĬ򷵻null
 	 */
 	public Host getHost(String hostName) {
-		MappedHost mh = getMappedHost(hostName);
+		MappedHost mh = hostIndex.find(hostName);
 		if(mh == null)
 			return null;
 		return mh.object;
@@ -163,7 +224,7 @@ public final class GlobelMapper {
 		//hostӳвڴMappedHost½һMapHostеContextӳ
 		if(!hostMapper.containsKey(mappedHost)) {
 			
-			Map<String, MappedContext> map = new LinkedHashMap<>();
+			Map<String, MappedContext> map = new ConcurrentHashMap<>();
 			
 			for(Context c : host.getChildContainers()) {
 				System.out.println(c.getName());
@@ -187,6 +248,26 @@ public final class GlobelMapper {
 		}
 	}
 	
+	/**
+	 * ͬContextӳ滻ΪµContext滻ԭӵģ˺󶼻·ɵµContext
+	 * @param context °汾Context
+	 */
+	void replaceContext(Context context) {
+		
+		Host host = context.getParentContainer();
+		MappedHost mappedHost = getMappedHost(host.getName());
+		
+		if(mappedHost == null) {
+			log.error(sm.getString("GlobelMapper.addContext.e0", host.getName()));
+			return;
+		}
+		
+		Map<String, MappedContext> map = hostMapper.get(mappedHost);
+		
+		if(map != null)
+			map.put(context.getName(), new MappedContext(context.getName(), context));
+	}
+	
 	/**
 	 * ·ƳContextӳϵ
 	 * @param context
@@ -199,7 +280,11 @@ public final class GlobelMapper {
 			return;
 		}
 		
-		hostMapper.remove(mappedHost);
+		//ֻƳContextӳ䣬ͬһµWebӦòӰ
+		Map<String, MappedContext> map = hostMapper.get(mappedHost);
+		
+		if(map != null && map.get(context.getName()) != null && map.get(context.getName()).object == context)
+			map.remove(context.getName());
 	}
 	
 	private MappedContext getMappedContext(MappedHost mappedHost, String contextName) {
@@ -209,6 +294,16 @@ public final class GlobelMapper {
 	public Service getService() {
 		return service;
 	}
+	
+	/**
+	 * HostӦӳԪأͬʱHostIndexʹ
+	 */
+	static final class MappedHost extends MapElement<Host> {
+
+		public MappedHost(String name, Host object) {
+			super(name, object);
+		}
+	}
 }
 
 /**
@@ -226,13 +321,6 @@ abstract class MapElement<T> {
 	}
 }
 
-final class MappedHost extends MapElement<Host> {
-
-	public MappedHost(String name, Host object) {
-		super(name, object);
-	}
-}
-
 final class MappedContext extends MapElement<Context> {
 	
 	public MappedContext(String name, Context object) {
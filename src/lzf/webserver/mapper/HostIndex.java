@@ -0,0 +1,223 @@
+package lzf.webserver.mapper;
+
+import java.util.Locale;
+
+import lzf.webserver.mapper.GlobelMapper.MappedHost;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201882 3:12:40
+* @Description ǩ֯ĺ׺(com -> example -> www)
+* ֧־ȷ*.example.comʽͨƥʱԴСдҲκʱ
+* ö󹹽ɺ󲻿޸ģGlobelMapper䶯ʱؽ滻
+*/
+final class HostIndex {
+
+	//ÿڵӽڵϣĳʼΪ2
+	private static final int INIT_CAPACITY = 4;
+
+	//ڵ㣬Ӧκαǩ
+	private final Node root = new Node(null);
+
+	//δƥ䵽κʱʹõĬΪnull
+	private MappedHost defaultHost = null;
+
+	/**
+	 * һӳ䣬"*."ͷʱʾͨ
+	 * @param hostName www.example.com*.example.com
+	 * @param host MappedHost
+	 */
+	void put(String hostName, MappedHost host) {
+
+		if(hostName == null || hostName.isEmpty())
+			return;
+
+		boolean wildcard = false;
+		int end = hostName.length();
+
+		if(hostName.charAt(end - 1) == '.')
+			end--;
+
+		int start = 0;
+		if(hostName.startsWith("*.")) {
+			wildcard = true;
+			start = 2;
+		} else if(hostName.equals("*")) {
+			//"*"ƥͬĬ
+			defaultHost = host;
+			return;
+		}
+
+		Node node = root;
+
+		while(end > start) {
+			int dot = hostName.lastIndexOf('.', end - 1);
+			int labelStart = dot < start ? start : dot + 1;
+
+			node = node.getOrCreateChild(hostName.substring(labelStart, end).toLowerCase(Locale.ROOT));
+			end = labelStart - 1;
+		}
+
+		if(wildcard)
+			node.wildcard = host;
+		else
+			node.exact = host;
+	}
+
+	/**
+	 * @param host Ĭ޷ƥʱʹ
+	 */
+	void setDefaultHost(MappedHost host) {
+		this.defaultHost = host;
+	}
+
+	/**
+	 * еȷƥȣΪ׺ͨΪĬ
+	 * @param hostName е(˿)
+	 * @return MappedHostûҵδĬʱnull
+	 */
+	MappedHost find(String hostName) {
+
+		if(hostName == null)
+			return defaultHost;
+
+		int end = hostName.length();
+
+		if(end > 0 && hostName.charAt(end - 1) == '.')
+			end--;
+
+		if(end == 0)
+			return defaultHost;
+
+		Node node = root;
+		MappedHost wildcard = null;
+
+		while(end > 0) {
+			//ǰڵֻͨƥ仹ʣǩ
+			if(node.wildcard != null)
+				wildcard = node.wildcard;
+
+			int dot = hostName.lastIndexOf('.', end - 1);
+			int labelStart = dot + 1;
+
+			node = node.getChild(hostName, labelStart, end - labelStart);
+
+			if(node == null)
+				break;
+
+			end = dot;
+		}
+
+		if(node != null && node.exact != null)
+			return node.exact;
+
+		if(wildcard != null)
+			return wildcard;
+
+		return defaultHost;
+	}
+
+	/**
+	 * ԴСдַĹϣֵ
+	 */
+	private static int hash(String s, int off, int len) {
+
+		int h = 0;
+		for(int i = off; i < off + len; i++) {
+			h = 31 * h + Character.toLowerCase(s.charAt(i));
+		}
+
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * ׺ڵ㣬ÿڵӦһǩ
+	 */
+	private static final class Node {
+
+		//ýڵӦıǩ(Сд)
+		final String label;
+
+		//ýڵǩĹϣֵ
+		final int hash;
+
+		//ӽڵ㿪Ѱַϣ
+		Node[] children = null;
+
+		//ӽڵ
+		int size = 0;
+
+		//ȫƥ䵽ýڵʱӦ
+		MappedHost exact = null;
+
+		//ԸýڵΪ׺ͨ
+		MappedHost wildcard = null;
+
+		Node(String label) {
+			this.label = label;
+			this.hash = label == null ? 0 : hash(label, 0, label.length());
+		}
+
+		/**
+		 * ӽڵвַͬıǩ(ԴСд)
+		 */
+		Node getChild(String s, int off, int len) {
+
+			if(children == null || len == 0)
+				return null;
+
+			int h = hash(s, off, len);
+			int mask = children.length - 1;
+
+			for(int i = h & mask; ; i = (i + 1) & mask) {
+				Node n = children[i];
+				if(n == null)
+					return null;
+				if(n.hash == h && n.label.length() == len && s.regionMatches(true, off, n.label, 0, len))
+					return n;
+			}
+		}
+
+		Node getOrCreateChild(String label) {
+
+			Node n = getChild(label, 0, label.length());
+			if(n != null)
+				return n;
+
+			if(children == null) {
+				children = new Node[INIT_CAPACITY];
+			} else if((size + 1) * 2 > children.length) {
+				resize();
+			}
+
+			n = new Node(label);
+			insert(children, n);
+			size++;
+			return n;
+		}
+
+		private void resize() {
+
+			Node[] table = new Node[children.length << 1];
+
+			for(Node n : children) {
+				if(n != null)
+					insert(table, n);
+			}
+
+			children = table;
+		}
+
+		private static void insert(Node[] table, Node n) {
+
+			int mask = table.length - 1;
+			int i = n.hash & mask;
+
+			while(table[i] != null)
+				i = (i + 1) & mask;
+
+			table[i] = n;
+		}
+	}
+}
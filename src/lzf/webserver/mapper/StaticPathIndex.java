@@ -0,0 +1,90 @@
+package lzf.webserver.mapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018810 4:05:18
+* @Description WebӦþ̬Դļ··WebӦĿ¼/css/main.css
+* ·Уֲͨƥ䣬ÿļֻռһַ
+* ö󹹽ɺ󲻿޸ģContextMapperWebӦʱ滻
+*/
+final class StaticPathIndex {
+
+	static final StaticPathIndex EMPTY = new StaticPathIndex(new String[0]);
+
+	//·飬ظԪ
+	private final String[] paths;
+
+	private StaticPathIndex(String[] paths) {
+		this.paths = paths;
+	}
+
+	/**
+	 * @param paths ̬Դ·ϣ/ͷ
+	 * @return Щ·
+	 */
+	static StaticPathIndex build(Collection<String> paths) {
+
+		String[] array = paths.toArray(new String[paths.size()]);
+		Arrays.sort(array);
+
+		int size = 0;
+
+		for(int i = 0; i < array.length; i++) {
+			if(size == 0 || !array[i].equals(array[size - 1]))
+				array[size++] = array[i];
+		}
+
+		return new StaticPathIndex(size == array.length ? array : Arrays.copyOf(array, size));
+	}
+
+	/**
+	 * ɾ·µö
+	 * @param added ·
+	 * @param removed ɾ·ҲĿ¼ʱĿ¼е·ᱻɾ
+	 * @return µ
+	 */
+	StaticPathIndex update(Collection<String> added, Collection<String> removed) {
+
+		List<String> list = new ArrayList<>(paths.length + added.size());
+
+		for(String path : paths) {
+			if(!isRemoved(path, removed))
+				list.add(path);
+		}
+
+		list.addAll(added);
+
+		return build(list);
+	}
+
+	private static boolean isRemoved(String path, Collection<String> removed) {
+
+		for(String r : removed) {
+			if(path.equals(r) || (path.startsWith(r) && path.charAt(r.length()) == '/'))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param path WebӦĿ¼·
+	 * @return ·ǷΪ̬Դļ
+	 */
+	boolean contains(String path) {
+		return Arrays.binarySearch(paths, path) >= 0;
+	}
+
+	/**
+	 * @return ̬Դļ
+	 */
+	int size() {
+		return paths.length;
+	}
+}
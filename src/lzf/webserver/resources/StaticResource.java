@@ -0,0 +1,67 @@
+package lzf.webserver.resources;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018810 10:16:42
+* @Description ̬Դļĳһʱ̵ݣ޸
+* Դݱֱֻڴڴӳ仺УͬԴͬһ
+* ûлԴݣʹʱֱӴļȡ
+*/
+public final class StaticResource {
+
+	private final File file;
+
+	//ֻʹʱӦgetContentȡĸͼûлԴΪnull
+	private final ByteBuffer content;
+
+	private final long length;
+
+	private final String etag;
+
+	private final long lastModified;
+
+	StaticResource(File file, ByteBuffer content, long length, String etag, long lastModified) {
+		this.file = file;
+		this.content = content;
+		this.length = length;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return ԴݵֻͼpositionΪ0limitΪԴȣ޸positionlimit
+	 * ԴûлʱnullӦgetFileصļȡ
+	 */
+	public ByteBuffer getContent() {
+		return content == null ? null : content.duplicate();
+	}
+
+	/**
+	 * @return Դ(ֽ)
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return ǿETag˫
+	 */
+	public String getETag() {
+		return etag;
+	}
+
+	/**
+	 * @return ʱļ޸ʱ
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+}
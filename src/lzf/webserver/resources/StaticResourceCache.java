@@ -0,0 +1,370 @@
+package lzf.webserver.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018810 10:42:05
+* @Description ȫֵľ̬Դ棬WebӦù
+* ԴڵһαʱŶֱڴ(ڴӳ)ܴСmaxSizeʱ̭δʵԴ
+* ÿrevalidateIntervalļ޸ʱͳȼԴǷ仯
+* ͬļ(WebӦͬjs)MD5ժҪͬһֻռһڴ
+* maxObjectSizeļҲڴ棬ServletֱӴļֶη
+* server.xmlServerڵͨResourcesڵ
+*/
+public final class StaticResourceCache {
+
+	private static final StaticResourceCache instance = new StaticResourceCache();
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	//ֽ(ȥغݼ)
+	private long maxSize = 64 * 1024 * 1024;
+
+	//Իĵļֽ
+	private int maxObjectSize = 8 * 1024 * 1024;
+
+	//μļǷ޸ĵС()
+	private long revalidateInterval = 5000;
+
+	//Ϊtrueʱļʹڴӳ䣬Ƶֱڴ
+	private boolean useMappedBuffers = false;
+
+	//ļӦĻ˳
+	private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+	//ժҪӦĹ
+	private final Map<String, SharedContent> contents = new HashMap<>();
+
+	//ǰռõֽ
+	private long size = 0;
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	public static StaticResourceCache getInstance() {
+		return instance;
+	}
+
+	private StaticResourceCache() {
+	}
+
+	/**
+	 * ȡ̬ԴûлļѾ޸ʱ
+	 * @param file Դļ
+	 * @return Դļʱnull
+	 * @throws IOException ȡļʧ
+	 */
+	public StaticResource getResource(File file) throws IOException {
+
+		long now = System.currentTimeMillis();
+		Entry entry;
+
+		synchronized(this) {
+			entry = entries.get(file);
+		}
+
+		if(entry != null) {
+
+			if(now - entry.checked < revalidateInterval) {
+				hitCount.increment();
+				return entry.resource;
+			}
+
+			StaticResource resource = entry.resource;
+
+			if(file.isFile() && file.lastModified() == resource.getLastModified()
+					&& file.length() == resource.getLength()) {
+				entry.checked = now;
+				hitCount.increment();
+				return resource;
+			}
+
+			remove(file, entry);
+		}
+
+		missCount.increment();
+
+		if(!file.isFile())
+			return null;
+
+		if(file.length() > maxObjectSize)
+			return loadUncached(file);
+
+		return load(file, now);
+	}
+
+	/**
+	 * ƳļӦĻһʱ룬Դļļ仯ʱ
+	 * @param file Դļ
+	 */
+	public synchronized void invalidate(File file) {
+
+		Entry entry = entries.remove(file);
+
+		if(entry != null)
+			release(entry.content);
+	}
+
+	/**
+	 * ļ뻺棬ѻļͬʱ仺
+	 */
+	private StaticResource load(File file, long now) throws IOException {
+
+		long lastModified = file.lastModified();
+		ByteBuffer buffer;
+
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			long length = channel.size();
+
+			//ļڼ鳤֮
+			if(length > maxObjectSize)
+				return loadUncached(file);
+
+			if(useMappedBuffers) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			} else {
+				buffer = ByteBuffer.allocateDirect((int) length);
+				while(buffer.hasRemaining() && channel.read(buffer) != -1);
+				buffer.flip();
+			}
+		}
+
+		byte[] digest = digest(buffer);
+		String key = toHex(digest) + ":" + buffer.remaining();
+
+		synchronized(this) {
+
+			SharedContent content = contents.get(key);
+
+			if(content == null) {
+				content = new SharedContent(key, buffer.asReadOnlyBuffer(), '"' + toHex(digest) + '"');
+				contents.put(key, content);
+				size += content.buffer.capacity();
+			}
+
+			content.refs++;
+
+			Entry entry = new Entry(new StaticResource(file, content.buffer, content.buffer.capacity(), content.etag,
+					lastModified), content, now);
+			Entry old = entries.put(file, entry);
+
+			if(old != null)
+				release(old.content);
+
+			evict();
+
+			return entry.resource;
+		}
+	}
+
+	/**
+	 * maxObjectSizeļ뻺棬صԴݣʹʱļȡ
+	 * ETagļȺ޸ʱɣÿժҪ
+	 */
+	private static StaticResource loadUncached(File file) {
+
+		long lastModified = file.lastModified();
+		long length = file.length();
+		String etag = '"' + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + '"';
+
+		return new StaticResource(file, null, length, etag, lastModified);
+	}
+
+	/**
+	 * ƳļӦĻڸûǵǰʱƳ
+	 */
+	private synchronized void remove(File file, Entry entry) {
+
+		if(entries.get(file) != entry)
+			return;
+
+		entries.remove(file);
+		release(entry.content);
+	}
+
+	/**
+	 * δʵĻʼֱ̭ܴСmaxSizeиö
+	 */
+	private void evict() {
+
+		Iterator<Entry> it = entries.values().iterator();
+
+		while(size > maxSize && it.hasNext()) {
+			Entry entry = it.next();
+			it.remove();
+			release(entry.content);
+			evictionCount.increment();
+		}
+	}
+
+	/**
+	 * ٹݵüûлʱͷţиö
+	 */
+	private void release(SharedContent content) {
+
+		if(--content.refs > 0)
+			return;
+
+		contents.remove(content.key);
+		size -= content.buffer.capacity();
+	}
+
+	private static byte[] digest(ByteBuffer buffer) {
+
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update(buffer.duplicate());
+			return md.digest();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		char[] c = new char[bytes.length * 2];
+
+		for(int i = 0; i < bytes.length; i++) {
+			c[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			c[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+
+		return new String(c);
+	}
+
+	/**
+	 * @return ռõֽ
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return ļ
+	 */
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return ȥغ
+	 */
+	public synchronized int getContentCount() {
+		return contents.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize ֽӦJVMֱڴС(-XX:MaxDirectMemorySize)
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	public int getMaxObjectSize() {
+		return maxObjectSize;
+	}
+
+	/**
+	 * @param maxObjectSize Իĵļֽ
+	 */
+	public void setMaxObjectSize(int maxObjectSize) {
+		this.maxObjectSize = maxObjectSize;
+	}
+
+	public long getRevalidateInterval() {
+		return revalidateInterval;
+	}
+
+	/**
+	 * @param revalidateInterval μļǷ޸ĵС()Ϊ0ʱÿ󶼼
+	 */
+	public void setRevalidateInterval(long revalidateInterval) {
+		this.revalidateInterval = revalidateInterval;
+	}
+
+	public boolean isUseMappedBuffers() {
+		return useMappedBuffers;
+	}
+
+	/**
+	 * @param useMappedBuffers Ϊtrueʱļʹڴӳ䣬ļɲϵͳҳ
+	 * עӳڼļضϻᵼ·쳣Դļܱԭ޸ʱ鿪
+	 */
+	public void setUseMappedBuffers(boolean useMappedBuffers) {
+		this.useMappedBuffers = useMappedBuffers;
+	}
+
+	/**
+	 * һļĻ
+	 */
+	private static final class Entry {
+
+		final StaticResource resource;
+
+		final SharedContent content;
+
+		//һμļǷ޸ĵʱ
+		volatile long checked;
+
+		Entry(StaticResource resource, SharedContent content, long checked) {
+			this.resource = resource;
+			this.content = content;
+			this.checked = checked;
+		}
+	}
+
+	/**
+	 * ļݣüڻ޸
+	 */
+	private static final class SharedContent {
+
+		final String key;
+
+		final ByteBuffer buffer;
+
+		final String etag;
+
+		int refs = 0;
+
+		SharedContent(String key, ByteBuffer buffer, String etag) {
+			this.key = key;
+			this.buffer = buffer;
+			this.etag = etag;
+		}
+	}
+}
@@ -1,65 +1,367 @@
 package lzf.webserver.servlets;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import lzf.webserver.Context;
+import lzf.webserver.resources.StaticResource;
+import lzf.webserver.resources.StaticResourceCache;
+import lzf.webserver.util.ByteBufOutputStream;
 import lzf.webserver.util.ContentType;
+import lzf.webserver.util.TimeUtil;
 
 
 /**
 * @author ӷ
 * @version 1.0
 * @date 2018721 8:08:34
-* @Description ̬ļServletд
+* @Description ̬ļServletдÿWebӦֻһʵ
+* ·ͨContextMapperľ̬ԴΪļ
+* ֧ETag/If-None-MatchIf-Modified-Since(304)ԼRange/If-RangeͶֽڷΧ(206)
+* ļڵһʱStaticResourceCache룬ٳפÿServletУûлĴļֱӴļ
 */
 public class DefaultServlet extends HttpServlet {
 
 	private static final long serialVersionUID = -6022554049128780788L;
-	
-	@SuppressWarnings("unused")
-	private final File path;
-	
-	// þ̬ԴĶ
-	private final byte[] resource;
-	
-	// þ̬Դ
-	private final String contentType;
-	
-	// þ̬Դ޸ʱ
-	private final long lastModified;
-	
+
+	//һֽڷΧʱRangeͷ
+	private static final int MAX_RANGES = 16;
+
+	//ServletWebӦ
+	private final Context context;
+
 	@Override
 	public void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		
-		response.setContentType(contentType);
-		response.addIntHeader("Content-Length", resource.length);
-		response.setDateHeader("Last-Modified", lastModified);
-		
-		response.getOutputStream().write(resource);
+
+		File file = context.getMapper().getStaticFile(getResourcePath(request));
+
+		if(file == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		StaticResource resource = StaticResourceCache.getInstance().getResource(file);
+
+		//ļWebӦɾ
+		if(resource == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		boolean head = "HEAD".equals(request.getMethod());
+
+		response.setHeader("Accept-Ranges", "bytes");
+		response.setHeader("ETag", resource.getETag());
+		response.setDateHeader("Last-Modified", resource.getLastModified());
+
+		if((head || "GET".equals(request.getMethod())) && isNotModified(request, resource)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		String contentType = getContentType(file);
+		List<long[]> ranges = head ? null : parseRanges(request, resource);
+
+		//ûRangeͷ߲If-Range
+		if(ranges == null) {
+			response.setContentType(contentType);
+			response.setContentLengthLong(resource.getLength());
+
+			if(!head)
+				write(response.getOutputStream(), resource, 0, resource.getLength());
+			return;
+		}
+
+		if(ranges.isEmpty()) {
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setHeader("Content-Range", "bytes */" + resource.getLength());
+			return;
+		}
+
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+		if(ranges.size() == 1) {
+			long[] range = ranges.get(0);
+			long len = range[1] - range[0] + 1;
+
+			response.setContentType(contentType);
+			response.setContentLengthLong(len);
+			response.setHeader("Content-Range", contentRange(range, resource));
+			write(response.getOutputStream(), resource, range[0], len);
+			return;
+		}
+
+		writeMultipart(ranges, resource, contentType, response);
+	}
+
+	/**
+	 * @return URIȥContext·ǰ׺Ĳ֣/demo/css/main.css/css/main.css
+	 */
+	private static String getResourcePath(HttpServletRequest request) {
+
+		String uri = request.getRequestURI();
+		String contextPath = request.getContextPath();
+
+		//forward/includeURIContext·ǰ׺
+		if(!contextPath.isEmpty() && uri.startsWith(contextPath + "/"))
+			return uri.substring(contextPath.length());
+
+		return uri;
 	}
-	
-	
-	public DefaultServlet(File path, byte[] resource) {
-		
-		this.path = path;
-		this.resource = resource;
-		
-		String fileName = path.getPath();
+
+	/**
+	 * @return ļ׺õԴ
+	 */
+	private static String getContentType(File file) {
+
+		String fileName = file.getName();
 		int index = fileName.lastIndexOf('.');
-		String suffix = fileName.substring(index + 1, fileName.length());
 
-		if(suffix != null) {
-			this.contentType = ContentType.getBySuffix(suffix);
-		} else {
-			this.contentType = ContentType.getBySuffix("application/octet-stream");
+		if(index == -1)
+			return ContentType.getBySuffix("");
+
+		return ContentType.getBySuffix(fileName.substring(index + 1));
+	}
+
+	/**
+	 * ԴһдֱӴӻƻֱӴļ
+	 * ûлԴļֶζȡڴ
+	 */
+	private static void write(ServletOutputStream os, StaticResource resource, long off, long len) throws IOException {
+
+		ByteBuffer content = resource.getContent();
+
+		if(content == null) {
+			write(os, resource.getFile(), off, len);
+			return;
 		}
-		
-		this.lastModified = path.lastModified();
+
+		//ԴmaxObjectSize
+		content.position((int) off).limit((int) (off + len));
+
+		if(os instanceof ByteBufOutputStream) {
+			((ByteBufOutputStream) os).write(content);
+			return;
+		}
+
+		byte[] b = new byte[Math.min(8192, content.remaining())];
+
+		while(content.hasRemaining()) {
+			int n = Math.min(b.length, content.remaining());
+			content.get(b, 0, n);
+			os.write(b, 0, n);
+		}
+	}
+
+	private static void write(ServletOutputStream os, File file, long off, long len) throws IOException {
+
+		if(os instanceof ByteBufOutputStream) {
+			((ByteBufOutputStream) os).write(file, off, len);
+			return;
+		}
+
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(8192, len));
+
+			while(len > 0) {
+
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), len));
+
+				int n = channel.read(buffer, off);
+
+				if(n == -1)
+					throw new EOFException(file.getAbsolutePath());
+
+				os.write(buffer.array(), 0, n);
+				off += n;
+				len -= n;
+			}
+		}
+	}
+
+	/**
+	 * жϿͻ˻ԴǷȻЧ
+	 * If-None-MatchʱIf-Modified-SinceIf-None-MatchʹȽ
+	 * @return ΪtrueʱӦ304
+	 */
+	private static boolean isNotModified(HttpServletRequest request, StaticResource resource) {
+
+		String ifNoneMatch = request.getHeader("If-None-Match");
+
+		if(ifNoneMatch != null)
+			return matchesEtag(ifNoneMatch, resource.getETag());
+
+		long ifModifiedSince = TimeUtil.parseHttpDate(request.getHeader("If-Modified-Since"));
+
+		//HTTPֻȷ
+		return ifModifiedSince != -1 && resource.getLastModified() / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * @param header If-None-MatchͷΪ*򶺺ŷָĶETag
+	 * @return ǷԴƥETag(W/ǰ׺)
+	 */
+	private static boolean matchesEtag(String header, String etag) {
+
+		for(String tag : header.split(",")) {
+
+			tag = tag.trim();
+
+			if(tag.equals("*"))
+				return true;
+
+			if(tag.startsWith("W/"))
+				tag = tag.substring(2);
+
+			if(tag.equals(etag))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Rangeͷ
+	 * @return ÿԪΪ{ʼλ, λ}()nullʾӦݣؿбʾзΧ޷
+	 */
+	private static List<long[]> parseRanges(HttpServletRequest request, StaticResource resource) {
+
+		String header = request.getHeader("Range");
+
+		if(header == null)
+			return null;
+
+		//If-RangeʱRangeETagʹǿȽϣڱLast-Modifiedȫͬ
+		String ifRange = request.getHeader("If-Range");
+
+		if(ifRange != null) {
+
+			ifRange = ifRange.trim();
+
+			if(ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+				if(!ifRange.equals(resource.getETag()))
+					return null;
+			} else {
+				long date = TimeUtil.parseHttpDate(ifRange);
+				if(date == -1 || date / 1000 != resource.getLastModified() / 1000)
+					return null;
+			}
+		}
+
+		header = header.trim();
+
+		if(!header.startsWith("bytes="))
+			return null;
+
+		long length = resource.getLength();
+		List<long[]> ranges = new ArrayList<>();
+
+		for(String spec : header.substring(6).split(",")) {
+
+			spec = spec.trim();
+
+			if(spec.isEmpty())
+				continue;
+
+			int dash = spec.indexOf('-');
+
+			if(dash == -1)
+				return null;
+
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			long start, end;
+
+			try {
+				if(first.isEmpty()) {
+					//bytes=-500 ʾ500ֽ
+					if(last.isEmpty())
+						return null;
+
+					long suffix = Long.parseLong(last);
+
+					if(suffix <= 0)
+						continue;
+
+					start = Math.max(0, length - suffix);
+					end = length - 1;
+
+				} else {
+					start = Long.parseLong(first);
+					end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+
+					if(start < 0 || end < start)
+						return null;
+
+					end = Math.min(end, length - 1);
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+
+			if(start >= length)
+				continue;
+
+			ranges.add(new long[] { start, end });
+		}
+
+		if(ranges.size() > MAX_RANGES)
+			return null;
+
+		return ranges;
+	}
+
+	/**
+	 * multipart/byterangesʽдֽڷΧ
+	 */
+	private static void writeMultipart(List<long[]> ranges, StaticResource resource, String contentType,
+			HttpServletResponse response) throws IOException {
+
+		String boundary = "APLUS_" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+		response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+		ServletOutputStream os = response.getOutputStream();
+
+		for(long[] range : ranges) {
+
+			StringBuilder sb = new StringBuilder();
+			sb.append("\r\n--").append(boundary).append("\r\n");
+
+			if(contentType != null)
+				sb.append("Content-Type: ").append(contentType).append("\r\n");
+
+			sb.append("Content-Range: ").append(contentRange(range, resource)).append("\r\n\r\n");
+
+			os.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+			write(os, resource, range[0], range[1] - range[0] + 1);
+		}
+
+		os.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private static String contentRange(long[] range, StaticResource resource) {
+		return "bytes " + range[0] + "-" + range[1] + "/" + resource.getLength();
+	}
+
+	public DefaultServlet(Context context) {
+		this.context = context;
 	}
 
 }
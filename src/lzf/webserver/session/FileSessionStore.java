@@ -0,0 +1,164 @@
+package lzf.webserver.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.startup.ServerConstant;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018815 4:52:08
+* @Description ļSession洢SessionWebӦùĿ¼µsessions.logļУSessionȻЧ
+* ÿֻ׷ӷ仯SessionԪݺԣֵʹJavaлûʵSerializableӿڵԲᱻ
+* ȡʱʹWebӦõлֵ
+*/
+public final class FileSessionStore implements SessionStore {
+
+	private static final StringManager sm = StringManager.getManager(FileSessionStore.class);
+
+	private static final Log log = LogFactory.getLog(FileSessionStore.class);
+
+	//־ļ
+	public static final String LOG_NAME = "sessions.log";
+
+	private HttpSessionManager manager;
+
+	private SessionLog sessionLog;
+
+	@Override
+	public void open(HttpSessionManager manager) throws IOException {
+
+		this.manager = manager;
+
+		File file = new File(ServerConstant.getConstant().getJspWorkPath(manager.getContext()), LOG_NAME);
+		sessionLog = SessionLog.acquire(file);
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return true;
+	}
+
+	/**
+	 * ȡSessionлԣ޷лԻᱻ
+	 */
+	@Override
+	public SessionData load(String id) throws IOException {
+
+		Map<String, byte[]> values = new HashMap<>();
+		SessionData data = sessionLog.load(id, values);
+
+		if(data == null)
+			return null;
+
+		ClassLoader classLoader = manager.getContext().getWebappLoader().getClassLoader();
+
+		for(Map.Entry<String, byte[]> value : values.entrySet()) {
+
+			try(ObjectInputStream ois = new WebappObjectInputStream(new ByteArrayInputStream(value.getValue()), classLoader)) {
+				data.getAttributes().put(value.getKey(), ois.readObject());
+
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				log.warn(sm.getString("FileSessionStore.load.w0", manager.getContext().getName(), id, value.getKey()), e);
+			}
+		}
+
+		return data;
+	}
+
+	/**
+	 * л仯Բ׷ӵ־ļ޷л԰Ƴ
+	 */
+	@Override
+	public void save(SessionData data) throws IOException {
+
+		Map<String, byte[]> values = new HashMap<>();
+
+		for(Map.Entry<String, Object> attribute : data.getAttributes().entrySet()) {
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+			try(ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+				oos.writeObject(attribute.getValue());
+
+			} catch (NotSerializableException e) {
+				if(log.isDebugEnabled())
+					log.debug(sm.getString("FileSessionStore.save.d0", manager.getContext().getName(),
+							data.getId(), attribute.getKey()));
+
+				data.getRemovedAttributes().add(attribute.getKey());
+				continue;
+
+			} catch (IOException | RuntimeException e) {
+				log.warn(sm.getString("FileSessionStore.save.w0", manager.getContext().getName(),
+						data.getId(), attribute.getKey()), e);
+				continue;
+			}
+
+			values.put(attribute.getKey(), baos.toByteArray());
+		}
+
+		sessionLog.append(data, values);
+	}
+
+	@Override
+	public boolean remove(String id) throws IOException {
+		return sessionLog.remove(id);
+	}
+
+	@Override
+	public Collection<String> expiredSessions(long now) {
+		return sessionLog.expired(now);
+	}
+
+	@Override
+	public void backgroundProcess() {
+		sessionLog.backgroundProcess();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if(sessionLog != null)
+			sessionLog.release();
+
+		sessionLog = null;
+	}
+
+	/**
+	 * ʹWebӦĶ
+	 */
+	private static final class WebappObjectInputStream extends ObjectInputStream {
+
+		private final ClassLoader classLoader;
+
+		WebappObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+			super(in);
+			this.classLoader = classLoader;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+			try {
+				return Class.forName(desc.getName(), false, classLoader);
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+}
@@ -1,10 +1,9 @@
 package lzf.webserver.session;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpSession;
 
@@ -13,7 +12,7 @@ import lzf.webserver.LifecycleException;
 import lzf.webserver.Session;
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
-import lzf.webserver.util.TimeUtil;
+import lzf.webserver.util.StringManager;
 
 /**
 * @author ӷ
@@ -23,11 +22,25 @@ import lzf.webserver.util.TimeUtil;
 */
 public final class HttpSessionManager extends SessionManagerBase {
 	
+	private static final StringManager sm = StringManager.getManager(HttpSessionManager.class);
+	
 	private static final Log log = LogFactory.getLog(HttpSessionManager.class);
 	
 	//WebAppʵ
 	private final Context context;
 	
+	//Session洢Ĭֻڴ
+	private volatile SessionStore store = new MemorySessionStore();
+	
+	//SessionIDHost
+	private volatile SessionIdGenerator sessionIdGenerator = DefaultGeneratorHolder.INSTANCE;
+	
+	//ϴα֮仯Session
+	private final Set<StandardSession> changedSessions = ConcurrentHashMap.newKeySet();
+	
+	//ɾSessionStoreеSessionʱʹõѾƳSession±
+	private final Object storeLock = new Object();
+	
 	public HttpSessionManager(Context context) {
 		this.context = context;
 	}
@@ -45,12 +58,44 @@ public final class HttpSessionManager extends SessionManagerBase {
 	@Override
 	protected void startInternal() throws LifecycleException {
 		log.info("HTTPSessionManager start");
-		new Thread(processer).start();
+		
+		//SessionҪ浽̣δó־ûSession洢ʱʹļ洢
+		if(isPassivationEnabled() && !store.isPersistent()) {
+			log.info(sm.getString("HttpSessionManager.startInternal.i0", context.getName()));
+			store = new FileSessionStore();
+		}
+		
+		try {
+			store.open(this);
+		} catch (IOException e) {
+			log.error(sm.getString("HttpSessionManager.startInternal.e0", context.getName(), store.getClass().getName()), e);
+			store = new MemorySessionStore();
+		}
+		
+		scheduleSessions();
 	}
 
+	/**
+	 * з仯SessionرSessionStoreڴеSessionSessionStoreɾ
+	 * ǰ֪ͨSessionʵHttpSessionActivationListenerӿڵ
+	 */
 	@Override
 	protected void stopInternal() throws LifecycleException {
-		//־û
+		
+		cancelSessions();
+		
+		if(store.isPersistent()) {
+			for(Session session : sessions.values())
+				notifyPassivate((StandardSession) session);
+		}
+		
+		saveChangedSessions();
+		
+		try {
+			store.close();
+		} catch (IOException e) {
+			log.warn(sm.getString("HttpSessionManager.stopInternal.w0", context.getName()), e);
+		}
 	}
 
 	@Override
@@ -71,6 +116,229 @@ public final class HttpSessionManager extends SessionManagerBase {
 		return session;
 	}
 	
+	/**
+	 * @param store Session洢ҪSessionǰ
+	 */
+	public void setSessionStore(SessionStore store) {
+		this.store = store;
+	}
+	
+	public SessionStore getSessionStore() {
+		return store;
+	}
+	
+	public SessionIdGenerator getSessionIdGenerator() {
+		return sessionIdGenerator;
+	}
+	
+	/**
+	 * @param sessionIdGenerator SessionIDͬһHostµWebӦùһʵ
+	 */
+	public void setSessionIdGenerator(SessionIdGenerator sessionIdGenerator) {
+		this.sessionIdGenerator = sessionIdGenerator;
+	}
+	
+	/**
+	 * @return SessionStoreǷҪSession
+	 */
+	boolean isPersistent() {
+		return store.isPersistent();
+	}
+	
+	/**
+	 * Session½ʻԷ仯ʱStandardSession
+	 */
+	void sessionChanged(StandardSession session) {
+		changedSessions.add(session);
+	}
+	
+	/**
+	 * SessionIDɾSessionStoreоIDӦSessionIDSession´αʱд
+	 * @param oldId ɵSessionID
+	 */
+	void sessionIdChanged(String oldId) {
+		
+		if(!store.isPersistent())
+			return;
+		
+		synchronized(storeLock) {
+			try {
+				store.remove(oldId);
+			} catch (IOException e) {
+				log.warn(sm.getString("HttpSessionManager.removeStored.w0", context.getName(), oldId), e);
+			}
+		}
+	}
+	
+	/**
+	 * SessionStoreжȡSessionSessionһαʱ
+	 * ѾڵSession¼SessionStoreɾ
+	 */
+	@Override
+	protected Session loadSession(String sessionId) {
+		
+		if(!store.isPersistent())
+			return null;
+		
+		SessionData data;
+		
+		try {
+			data = store.load(sessionId);
+		} catch (IOException e) {
+			log.warn(sm.getString("HttpSessionManager.loadSession.w0", context.getName(), sessionId), e);
+			return null;
+		}
+		
+		if(data == null)
+			return null;
+		
+		if(data.isExpired(System.currentTimeMillis())) {
+			destroyStored(data);
+			return null;
+		}
+		
+		return new StandardSession(this, data);
+	}
+	
+	/**
+	 * ֪ͨSessionеԺSessionϴα֮ı仯дSessionStore
+	 */
+	@Override
+	protected boolean passivateSession(Session session) {
+		
+		if(!store.isPersistent())
+			return false;
+		
+		StandardSession standardSession = (StandardSession) session;
+		notifyPassivate(standardSession);
+		changedSessions.remove(standardSession);
+		
+		synchronized(storeLock) {
+			
+			if(standardSession.isRemoved())
+				return false;
+			
+			try {
+				store.save(standardSession.takeChanges());
+			} catch (IOException e) {
+				log.warn(sm.getString("HttpSessionManager.saveChangedSessions.w0", context.getName(), session.getId()), e);
+				//ʧܣSessionڴ
+				changedSessions.add(standardSession);
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	@Override
+	protected void activateSession(Session session) {
+		
+		try {
+			((StandardSession) session).activate();
+		} catch (RuntimeException e) {
+			log.warn(sm.getString("HttpSessionManager.activateSession.w0", context.getName(), session.getId()), e);
+		}
+	}
+	
+	private void notifyPassivate(StandardSession session) {
+		
+		try {
+			session.passivate();
+		} catch (RuntimeException e) {
+			log.warn(sm.getString("HttpSessionManager.notifyPassivate.w0", context.getName(), session.getId()), e);
+		}
+	}
+	
+	/**
+	 * ֻSessionStoreѾڵSession(߷δʵSession)
+	 */
+	private void expireStoredSessions() {
+		
+		if(!store.isPersistent())
+			return;
+		
+		long now = System.currentTimeMillis();
+		
+		for(String id : store.expiredSessions(now)) {
+			
+			//ڴеSessionSessionExpiryScheduler
+			if(sessions.containsKey(id))
+				continue;
+			
+			SessionData data;
+			
+			try {
+				data = store.load(id);
+			} catch (IOException e) {
+				log.warn(sm.getString("HttpSessionManager.loadSession.w0", context.getName(), id), e);
+				continue;
+			}
+			
+			if(data != null && data.isExpired(now))
+				destroyStored(data);
+		}
+	}
+	
+	/**
+	 * SessionStoreɾѾڵSession¼߳ͬʱɾʱֻһ
+	 */
+	private void destroyStored(SessionData data) {
+		
+		boolean exist;
+		
+		synchronized(storeLock) {
+			try {
+				exist = store.remove(data.getId());
+			} catch (IOException e) {
+				log.warn(sm.getString("HttpSessionManager.removeStored.w0", context.getName(), data.getId()), e);
+				return;
+			}
+		}
+		
+		if(!exist)
+			return;
+		
+		StandardSession session = new StandardSession(this, data);
+		session.setRemoved();
+		context.getListenerContainer().runSessionDestroyedEvent(session);
+	}
+	
+	/**
+	 * SessionExpirySchedulerĺ̶̨߳ڵãеSessionSessionStoreйڵSession淢仯Session
+	 */
+	@Override
+	protected void backgroundProcess() {
+		passivateSessions();
+		expireStoredSessions();
+		saveChangedSessions();
+		store.backgroundProcess();
+	}
+	
+	/**
+	 * ֻϴα֮仯SessionÿSessionֻд仯
+	 */
+	private void saveChangedSessions() {
+		
+		for(Iterator<StandardSession> it = changedSessions.iterator(); it.hasNext(); ) {
+			
+			StandardSession session = it.next();
+			it.remove();
+			
+			synchronized(storeLock) {
+				
+				if(session.isRemoved())
+					continue;
+				
+				try {
+					store.save(session.takeChanges());
+				} catch (IOException e) {
+					log.warn(sm.getString("HttpSessionManager.saveChangedSessions.w0", context.getName(), session.getId()), e);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * ȡSessionManagerContext
 	 * @return Contextʵ
@@ -100,27 +368,39 @@ public final class HttpSessionManager extends SessionManagerBase {
 		
 		if(session != null) {
 			
-			synchronized(sessions) {
-				sessions.remove(sessionId);
-			}
+			super.removeSession(sessionId);
+			removeStored((StandardSession) session);
 		
 			context.getListenerContainer().runSessionDestroyedEvent(session);
 		}
 	}
 	
 	/**
-	 * ־ûSession
-	 * @throws IOException 
+	 * SessionStoreɾƳSession
 	 */
-	protected void persistSessions() throws IOException {
-		File file = new File(System.getProperty("user.dir") + File.separator 
-				+ TimeUtil.getTimeString() + ".ser");
-		FileOutputStream fos = new FileOutputStream(file);
-		ObjectOutputStream oos = new ObjectOutputStream(fos);
+	private void removeStored(StandardSession session) {
+		
+		session.setRemoved();
 		
-		for(Map.Entry<String, Session> entry : sessions.entrySet()) {
-			oos.writeObject(entry);
+		if(!store.isPersistent())
+			return;
+		
+		synchronized(storeLock) {
+			try {
+				store.remove(session.getId());
+			} catch (IOException e) {
+				log.warn(sm.getString("HttpSessionManager.removeStored.w0", context.getName(), session.getId()), e);
+			}
 		}
-		oos.close();
+	}
+	
+	/**
+	 * δSessionIDʱʹõĬʵһʹʱ
+	 * ʵκHostûлᱻֹͣ˲ԤSessionID̨߳
+	 */
+	private static final class DefaultGeneratorHolder {
+		
+		static final SessionIdGenerator INSTANCE = new SessionIdGenerator(SessionIdGenerator.DEFAULT_LENGTH,
+				SessionIdGenerator.HEX, SessionIdGenerator.DEFAULT_ALGORITHM, null, 0);
 	}
 }
@@ -0,0 +1,49 @@
+package lzf.webserver.session;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018815 2:25:40
+* @Description ĬϵSession洢SessionֻSessionڴУSessionȫʧЧ
+*/
+public final class MemorySessionStore implements SessionStore {
+
+	@Override
+	public void open(HttpSessionManager manager) {
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return false;
+	}
+
+	@Override
+	public SessionData load(String id) {
+		return null;
+	}
+
+	@Override
+	public void save(SessionData data) {
+	}
+
+	@Override
+	public boolean remove(String id) {
+		return false;
+	}
+
+	@Override
+	public Collection<String> expiredSessions(long now) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void backgroundProcess() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
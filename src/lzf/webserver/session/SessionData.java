@@ -0,0 +1,87 @@
+package lzf.webserver.session;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018815 2:10:33
+* @Description SessionSessionStoreб
+* ʱֻϴα֮仯Ĳ֣attributesΪ޸ĵԣremovedAttributesΪƳԣ
+* replaceΪtrueʱ(½SessionIDߵinvalidate)ȶ֮ǰ
+* ȡʱattributesSessionе
+*/
+public final class SessionData {
+
+	private final String id;
+
+	private final long creationTime;
+
+	private final long lastAccessedTime;
+
+	private final int maxInactiveInterval;
+
+	private final boolean replace;
+
+	private final Map<String, Object> attributes = new HashMap<>();
+
+	private final Set<String> removedAttributes = new HashSet<>();
+
+	public SessionData(String id, long creationTime, long lastAccessedTime, int maxInactiveInterval, boolean replace) {
+		this.id = id;
+		this.creationTime = creationTime;
+		this.lastAccessedTime = lastAccessedTime;
+		this.maxInactiveInterval = maxInactiveInterval;
+		this.replace = replace;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public long getCreationTime() {
+		return creationTime;
+	}
+
+	public long getLastAccessedTime() {
+		return lastAccessedTime;
+	}
+
+	/**
+	 * @return ǻԾʱ()
+	 */
+	public int getMaxInactiveInterval() {
+		return maxInactiveInterval;
+	}
+
+	/**
+	 * @return Ƿ֮ǰ
+	 */
+	public boolean isReplace() {
+		return replace;
+	}
+
+	/**
+	 * @return ֵʱֻ޸ĵ
+	 */
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return ϴα֮Ƴ
+	 */
+	public Set<String> getRemovedAttributes() {
+		return removedAttributes;
+	}
+
+	/**
+	 * @return nowʱǷѾڣǻԾʱСڵ0ʱ
+	 */
+	public boolean isExpired(long now) {
+		return maxInactiveInterval > 0 && now - lastAccessedTime >= maxInactiveInterval;
+	}
+}
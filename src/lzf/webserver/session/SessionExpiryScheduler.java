@@ -0,0 +1,254 @@
+package lzf.webserver.session;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import lzf.webserver.Session;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018814 9:40:26
+* @Description ȫSessionڵеSessionһ̨߳
+* ʱ佫SessionΪGRANULARITYĹͰУ̨߳ÿGRANULARITYȡѾڵͰ
+* ֻЩͰеSessionҪSession
+* SessionʺֻйʱǰڵͰʱƶµͰУƵʵSessionÿGRANULARITYƶһ
+* ÿδ굽ڵͰSessionbackgroundProcess(籣淢仯Session)
+*/
+final class SessionExpiryScheduler {
+
+	private static final StringManager sm = StringManager.getManager(SessionExpiryScheduler.class);
+
+	private static final Log log = LogFactory.getLog(SessionExpiryScheduler.class);
+
+	//ͰĿ()SessionڹںGRANULARITY뱻Ƴ
+	static final long GRANULARITY = 5000;
+
+	//ڵSessionڵͰ
+	private static final long NEVER = Long.MAX_VALUE;
+
+	private static final SessionExpiryScheduler instance = new SessionExpiryScheduler();
+
+	//ͰΪͰ(ʱGRANULARITYȡ)
+	private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+	//бȵSession䵱ǰڵͰ
+	private final Map<Session, Long> scheduled = new ConcurrentHashMap<>();
+
+	//ѾSession
+	private final Set<SessionManagerBase> managers = new CopyOnWriteArraySet<>();
+
+	private SessionExpiryScheduler() {
+
+		Thread thread = new Thread(new SessionExpiryProcesser(), "SessionExpiryProcesser");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	static SessionExpiryScheduler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * עSession˺̨̻߳ᶨڵbackgroundProcess
+	 */
+	void register(SessionManagerBase manager) {
+		managers.add(manager);
+	}
+
+	void unregister(SessionManagerBase manager) {
+		managers.remove(manager);
+	}
+
+	/**
+	 * ʼµSessionSessionʱָ
+	 */
+	void add(Session session) {
+
+		long key = bucketOf(session);
+
+		scheduled.put(session, key);
+		addToBucket(session, key);
+	}
+
+	/**
+	 * SessionʻǻԾʱ䱻޸ĺãʱڵǰͰʱκδ
+	 */
+	void update(Session session) {
+
+		Long current = scheduled.get(session);
+
+		if(current == null)
+			return;
+
+		long key = bucketOf(session);
+
+		if(key == current)
+			return;
+
+		if(!scheduled.replace(session, current, key))
+			return;
+
+		addToBucket(session, key);
+		removeFromBucket(session, current);
+	}
+
+	/**
+	 * ֹͣȸSessionSessionƳSessionֹͣʱ
+	 */
+	void cancel(Session session) {
+
+		Long current = scheduled.remove(session);
+
+		if(current != null)
+			removeFromBucket(session, current);
+	}
+
+	/**
+	 * @return SessionʱڵͰǻԾʱСڵ0Session
+	 */
+	private static long bucketOf(Session session) {
+
+		if(session.getMaxInactiveInterval() <= 0)
+			return NEVER;
+
+		long expiryTime = session.getLastAccessedTime() + session.getMaxInactiveInterval();
+		return (expiryTime + GRANULARITY - 1) / GRANULARITY;
+	}
+
+	private void addToBucket(Session session, long key) {
+
+		while(key != NEVER) {
+
+			Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+			bucket.sessions.add(session);
+
+			if(!bucket.closed)
+				return;
+
+			//ͰѾ̨߳ȡһͰ
+			bucket.sessions.remove(session);
+
+			if(!scheduled.replace(session, key, key + 1))
+				return;
+
+			key++;
+		}
+	}
+
+	private void removeFromBucket(Session session, long key) {
+
+		if(key == NEVER)
+			return;
+
+		Bucket bucket = buckets.get(key);
+
+		if(bucket != null)
+			bucket.sessions.remove(session);
+	}
+
+	/**
+	 * ѾڵͰڵSessionSessionƳ
+	 * δڵSession(Ͱȡʱպñ)µͰ
+	 */
+	private void expireBuckets(long now) {
+
+		Map.Entry<Long, Bucket> entry;
+
+		while((entry = buckets.firstEntry()) != null && entry.getKey() * GRANULARITY <= now) {
+
+			long key = entry.getKey();
+			Bucket bucket = entry.getValue();
+
+			bucket.closed = true;
+			buckets.remove(key, bucket);
+
+			for(Session session : bucket.sessions) {
+
+				Long current = scheduled.get(session);
+
+				//ѾƶͰѾȡ
+				if(current == null || current != key)
+					continue;
+
+				if(session.getLastAccessedTime() + session.getMaxInactiveInterval() > now) {
+
+					long newKey = bucketOf(session);
+
+					if(scheduled.replace(session, key, newKey))
+						addToBucket(session, newKey);
+
+					continue;
+				}
+
+				if(!scheduled.remove(session, key))
+					continue;
+
+				try {
+					session.getSessionManager().expireSession(session);
+				} catch (Throwable e) {
+					log.warn(sm.getString("SessionExpiryScheduler.expireBuckets.w0", session.getId()), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * עSessionbackgroundProcess
+	 */
+	private void backgroundProcess() {
+
+		for(SessionManagerBase manager : managers) {
+			try {
+				manager.backgroundProcess();
+			} catch (Throwable e) {
+				log.warn(sm.getString("SessionExpiryScheduler.backgroundProcess.w0"), e);
+			}
+		}
+	}
+
+	/**
+	 * Ͱ̨߳ȡclosedΪtrue˺ٽµSession
+	 */
+	private static final class Bucket {
+
+		final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+		volatile boolean closed = false;
+	}
+
+	/**
+	 * ̨̣߳ÿͰĵʱ䴦ڵͰ
+	 */
+	private final class SessionExpiryProcesser implements Runnable {
+
+		@Override
+		public void run() {
+
+			while(true) {
+
+				long now = System.currentTimeMillis();
+
+				try {
+					expireBuckets(now);
+				} catch (Throwable e) {
+					log.error(sm.getString("SessionExpiryScheduler.SessionExpiryProcesser.e0"), e);
+				}
+
+				backgroundProcess();
+
+				try {
+					Thread.sleep(GRANULARITY - System.currentTimeMillis() % GRANULARITY);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package lzf.webserver.session;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018816 10:12:45
+* @Description SessionIDÿHostӦһʵ
+* ÿ߳ʹԼSecureRandomʵͬһSecureRandomϾ
+* ̨߳ԤSessionID뻷飬SessionʱֱӴȡΪʱڵǰ߳
+* ֱֽӱΪʮƻBase64URL()ַֽMIN_LENGTH
+* Hostֹͣʱstop̨̣֮߳SessionIDڵǰ߳
+*/
+public final class SessionIdGenerator {
+
+	private static final StringManager sm = StringManager.getManager(SessionIdGenerator.class);
+
+	private static final Log log = LogFactory.getLog(SessionIdGenerator.class);
+
+	//ʮƱ
+	public static final String HEX = "hex";
+
+	//Base64URL룬ֻĸ֡'-''_'
+	public static final String BASE64URL = "base64url";
+
+	//ĬֽʮƱʱSessionIDΪ32
+	public static final int DEFAULT_LENGTH = 16;
+
+	//Сֽ(128λ)õֵСڸֵʱʹøֵ
+	public static final int MIN_LENGTH = 16;
+
+	//ĬϵSecureRandom㷨ÿʵLinuxĬϵNativePRNGʵͬһ
+	public static final String DEFAULT_ALGORITHM = "SHA1PRNG";
+
+	//ĬԤɵSessionID
+	public static final int DEFAULT_POOL_SIZE = 256;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	//ֽ
+	private final int length;
+
+	//ǷʹBase64URL
+	private final boolean base64;
+
+	//SecureRandom㷨ṩߣΪnullʱʹĬֵ
+	private final String algorithm;
+
+	private final String provider;
+
+	//ÿ̵߳SecureRandomʵ
+	private final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(this::createSecureRandom);
+
+	//ԤɵSessionIDȡλΪnull
+	private final AtomicReferenceArray<String> pool;
+
+	//һȡλ
+	private final AtomicInteger takeIndex = new AtomicInteger();
+
+	//ϴλѺ̨֮߳ȡ
+	private final AtomicInteger taken = new AtomicInteger();
+
+	private volatile Thread filler = null;
+
+	//ǷѾֹֹͣͣԤSessionID
+	private volatile boolean stopped = false;
+
+	/**
+	 * ʹĬϲ16ֽڡʮƱ롢SHA1PRNG㷨
+	 */
+	public SessionIdGenerator() {
+		this(DEFAULT_LENGTH, HEX, DEFAULT_ALGORITHM, null, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param length ֽСڵ0ʱʹDEFAULT_LENGTHСMIN_LENGTHʱʹMIN_LENGTH
+	 * @param encoding 뷽ʽhexbase64urlΪnullʱʹhex
+	 * @param algorithm SecureRandom㷨SHA1PRNGNativePRNGNonBlockingΪnullʱʹƽ̨Ĭ㷨
+	 * @param provider SecureRandom㷨ṩߣΪnullʱʹĬṩ
+	 * @param poolSize ԤɵSessionIDСڵ0ʱԤ
+	 */
+	public SessionIdGenerator(int length, String encoding, String algorithm, String provider, int poolSize) {
+
+		if(length <= 0) {
+			this.length = DEFAULT_LENGTH;
+		} else if(length < MIN_LENGTH) {
+			log.warn(sm.getString("SessionIdGenerator.length.w0", length, MIN_LENGTH));
+			this.length = MIN_LENGTH;
+		} else {
+			this.length = length;
+		}
+
+		if(encoding == null || encoding.equalsIgnoreCase(HEX)) {
+			this.base64 = false;
+		} else if(encoding.equalsIgnoreCase(BASE64URL)) {
+			this.base64 = true;
+		} else {
+			throw new IllegalArgumentException(sm.getString("SessionIdGenerator.encoding.e0", encoding));
+		}
+
+		this.algorithm = algorithm;
+		this.provider = provider;
+
+		//ȡ2ݣλ±
+		int capacity = 1;
+		while(capacity < poolSize)
+			capacity <<= 1;
+
+		this.pool = poolSize > 0 ? new AtomicReferenceArray<>(capacity) : null;
+	}
+
+	/**
+	 * ȡһԤɵSessionIDûпõSessionIDʱڵǰ߳
+	 * @return µSessionID
+	 */
+	public String generateSessionId() {
+
+		if(pool == null || stopped)
+			return newSessionId();
+
+		int mask = pool.length() - 1;
+		String id = pool.getAndSet(takeIndex.getAndIncrement() & mask, null);
+
+		//ѾȡһʱѺ̨̲߳
+		if(id == null || taken.incrementAndGet() >= (mask + 1) / 2)
+			wakeFiller();
+
+		return id != null ? id : newSessionId();
+	}
+
+	/**
+	 * ̨̣֮߳ȻSessionID
+	 */
+	public synchronized void stop() {
+
+		stopped = true;
+
+		if(filler != null) {
+			LockSupport.unpark(filler);
+			filler = null;
+		}
+	}
+
+	/**
+	 * ʹõǰ̵߳SecureRandomSessionID
+	 */
+	private String newSessionId() {
+
+		byte[] bytes = new byte[length];
+		randoms.get().nextBytes(bytes);
+
+		if(base64)
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+		char[] chars = new char[bytes.length * 2];
+
+		for(int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+
+		return new String(chars);
+	}
+
+	private SecureRandom createSecureRandom() {
+
+		if(algorithm != null) {
+			try {
+				if(provider != null)
+					return SecureRandom.getInstance(algorithm, provider);
+				return SecureRandom.getInstance(algorithm);
+
+			} catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+				log.warn(sm.getString("SessionIdGenerator.createSecureRandom.w0", algorithm, provider), e);
+			}
+		}
+
+		return new SecureRandom();
+	}
+
+	/**
+	 * Ѻ̨̣߳һεʱ̨߳
+	 */
+	private void wakeFiller() {
+
+		taken.set(0);
+		Thread thread = filler;
+
+		if(thread == null) {
+			synchronized(this) {
+				if(stopped)
+					return;
+
+				if(filler == null) {
+					thread = new Thread(new SessionIdGenerateProcesser(), "SessionIdGenerateProcesser");
+					thread.setDaemon(true);
+					filler = thread;
+					thread.start();
+					return;
+				}
+				thread = filler;
+			}
+		}
+
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * ̨̣߳Ϊnullλ֮ȴѣstop˳
+	 */
+	private final class SessionIdGenerateProcesser implements Runnable {
+
+		@Override
+		public void run() {
+
+			while(!stopped) {
+
+				try {
+					for(int i = 0; i < pool.length(); i++) {
+						if(pool.get(i) == null)
+							pool.compareAndSet(i, null, newSessionId());
+					}
+				} catch (Throwable e) {
+					log.error(sm.getString("SessionIdGenerator.SessionIdGenerateProcesser.e0"), e);
+				}
+
+				LockSupport.park(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,665 @@
+package lzf.webserver.session;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018815 3:30:52
+* @Description FileSessionStoreʹõֻ׷־ļÿαֻļĩβ׷ӷ仯SessionԪݺ
+* ÿ¼ͬһSessionһ¼λãͬһSessionļ¼ļһӺǰļ¼
+* ڴֻSessionIDһ¼λõ(ԼʱֵSessionLogIndex)
+* Sessionʱؼ¼ȡԪݺֵֵפڴ
+* һSession׷ӳMAX_CHAIN_APPENDSκдһΣƼ¼ĳ
+* Чļ¼ļСһʱںֻ̨߳ȻЧļ¼ļ滻ԭļ
+* ͬһļֻᱻһΣWebӦʱ¾汾Sessionͬһʵ
+*/
+final class SessionLog {
+
+	private static final StringManager sm = StringManager.getManager(SessionLog.class);
+
+	private static final Log log = LogFactory.getLog(SessionLog.class);
+
+	private static final int MAGIC = 0x4C5A534C;
+
+	//ļʽ汾ʽ仯ʱӣɰ汾ļᱻ
+	private static final int VERSION = 2;
+
+	//ļͷȣMAGICVERSION
+	private static final int HEADER_SIZE = 8;
+
+	//¼ͣSessionԪݣreplaceΪtrueʱ֮ǰԣ¼˽
+	private static final byte META = 1;
+
+	//¼ͣ޸ĵ
+	private static final byte ATTRIBUTE = 2;
+
+	//¼ͣƳ
+	private static final byte REMOVE_ATTRIBUTE = 3;
+
+	//¼ͣƳSession
+	private static final byte REMOVE = 4;
+
+	//ļСֵЧ¼һʱѹ
+	private static final long COMPACT_THRESHOLD = 1024 * 1024;
+
+	//һSessionд֮׷ӵĴд
+	private static final int MAX_CHAIN_APPENDS = 16;
+
+	//Ѿ򿪵־ļ
+	private static final Map<File, SessionLog> logs = new HashMap<>();
+
+	private final File file;
+
+	//ʹø־ļSessionStorelogsͬ
+	private int references = 0;
+
+	private RandomAccessFile raf;
+
+	private FileChannel channel;
+
+	//ļȣһ¼λ
+	private long length;
+
+	//Session¼ܳȣ¼бļ¼ǵҲ
+	private long liveBytes;
+
+	//ϴεforce֮Ƿд
+	private boolean unforced = false;
+
+	//SessionID¼
+	private SessionLogIndex index = new SessionLogIndex();
+
+	private SessionLog(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * ־ļļѾʱͬһʵ
+	 */
+	static SessionLog acquire(File file) throws IOException {
+
+		File key = file.getCanonicalFile();
+
+		synchronized(logs) {
+
+			SessionLog sessionLog = logs.get(key);
+
+			if(sessionLog == null) {
+				sessionLog = new SessionLog(key);
+				sessionLog.open();
+				logs.put(key, sessionLog);
+			}
+
+			sessionLog.references++;
+			return sessionLog;
+		}
+	}
+
+	/**
+	 * ͷ־ļûSessionStoreʹʱرոļ
+	 */
+	void release() throws IOException {
+
+		synchronized(logs) {
+
+			if(--references > 0)
+				return;
+
+			logs.remove(file);
+		}
+
+		synchronized(this) {
+			channel.force(false);
+			raf.close();
+		}
+	}
+
+	/**
+	 * ȡļļĩβ޷ļ¼(дʱ)ᱻض
+	 */
+	private synchronized void open() throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		if(file.isFile() && file.length() >= HEADER_SIZE)
+			replay();
+
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+
+		if(length < HEADER_SIZE) {
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+			header.flip();
+
+			channel.truncate(0);
+			writeFully(header, 0);
+			length = HEADER_SIZE;
+			index.clear();
+			liveBytes = 0;
+
+		} else if(channel.size() > length) {
+			channel.truncate(length);
+		}
+
+		//ѾڵSessionѹʱٸ
+		for(String id : expired(System.currentTimeMillis()))
+			drop(index.find(id));
+
+		log.info(sm.getString("SessionLog.open.i0", file.getAbsolutePath(), index.size(),
+				String.valueOf(System.currentTimeMillis() - start)));
+	}
+
+	private void replay() throws IOException {
+
+		try(CountingInputStream cis = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			DataInputStream in = new DataInputStream(cis);
+
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+				log.warn(sm.getString("SessionLog.replay.w0", file.getAbsolutePath()));
+				return;
+			}
+
+			length = HEADER_SIZE;
+
+			while(true) {
+
+				int type = in.read();
+
+				if(type == -1)
+					break;
+
+				try {
+					String id = in.readUTF();
+					in.readLong();
+
+					switch(type) {
+					case META:
+						in.readLong();
+						long lastAccessedTime = in.readLong();
+						int maxInactiveInterval = in.readInt();
+						boolean replace = in.readBoolean();
+
+						int slot = index.insert(id);
+						long before = index.chainSize(slot);
+
+						index.startBatch(slot, replace);
+						index.setExpires(slot, lastAccessedTime, maxInactiveInterval);
+						index.append(slot, length, (int) (cis.count - length));
+						liveBytes += index.chainSize(slot) - before;
+						break;
+
+					case ATTRIBUTE:
+						in.readUTF();
+						int size = in.readInt();
+
+						if(size < 0) {
+							log.warn(sm.getString("SessionLog.replay.w1", file.getAbsolutePath(), length));
+							return;
+						}
+
+						skipFully(in, size);
+						applyRecord(id, (int) (cis.count - length));
+						break;
+
+					case REMOVE_ATTRIBUTE:
+						in.readUTF();
+						applyRecord(id, (int) (cis.count - length));
+						break;
+
+					case REMOVE:
+						drop(index.find(id));
+						break;
+
+					default:
+						log.warn(sm.getString("SessionLog.replay.w1", file.getAbsolutePath(), length));
+						return;
+					}
+
+				} catch (EOFException | UTFDataFormatException e) {
+					//¼дһʱreadUTFܶضϵַ
+					log.warn(sm.getString("SessionLog.replay.w1", file.getAbsolutePath(), length));
+					break;
+				}
+
+				length = cis.count;
+			}
+		}
+	}
+
+	/**
+	 * طԼ¼ӵSession¼ĩβSessionѾƳʱ
+	 */
+	private void applyRecord(String id, int recordSize) {
+
+		int slot = index.find(id);
+
+		if(slot == -1)
+			return;
+
+		index.append(slot, length, recordSize);
+		liveBytes += recordSize;
+	}
+
+	/**
+	 * ļĩβ׷Session仯Ĳ
+	 * @param data SessionԪԼƳ
+	 * @param values ޸ĵлֵ
+	 */
+	synchronized void append(SessionData data, Map<String, byte[]> values) throws IOException {
+
+		int slot = index.find(data.getId());
+		long prev = data.isReplace() || slot == -1 ? -1 : index.head(slot);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		long head = encode(new DataOutputStream(baos), baos, length, prev, data, values);
+
+		writeFully(ByteBuffer.wrap(baos.toByteArray()), length);
+		length += baos.size();
+		unforced = true;
+
+		//дɹŸ
+		slot = index.insert(data.getId());
+		long before = index.chainSize(slot);
+
+		index.startBatch(slot, data.isReplace());
+		index.setExpires(slot, data.getLastAccessedTime(), data.getMaxInactiveInterval());
+		index.append(slot, head, baos.size());
+		liveBytes += index.chainSize(slot) - before;
+
+		if(index.appends(slot) > MAX_CHAIN_APPENDS)
+			rewrite(data.getId());
+	}
+
+	/**
+	 * ؼ¼SessionȫԲдһΣ֮ǰļ¼ʧЧ
+	 */
+	private void rewrite(String id) throws IOException {
+
+		Map<String, byte[]> values = new HashMap<>();
+		SessionData data = load(id, values);
+
+		if(data != null)
+			append(new SessionData(id, data.getCreationTime(), data.getLastAccessedTime(),
+					data.getMaxInactiveInterval(), true), values);
+	}
+
+	/**
+	 * ļĩβ׷SessionƳļ¼
+	 * @return SessionǷ
+	 */
+	synchronized boolean remove(String id) throws IOException {
+
+		int slot = index.find(id);
+
+		if(slot == -1)
+			return false;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+
+		out.writeByte(REMOVE);
+		out.writeUTF(id);
+		out.writeLong(-1);
+
+		writeFully(ByteBuffer.wrap(baos.toByteArray()), length);
+		length += baos.size();
+		unforced = true;
+
+		drop(slot);
+		return true;
+	}
+
+	/**
+	 * ֻѾڵĹͰSessionڹںSessionExpiryScheduler.GRANULARITY뱻ҵ
+	 * @return nowʱѾڵSessionID
+	 */
+	synchronized List<String> expired(long now) {
+
+		List<String> ids = new ArrayList<>();
+		index.collectExpired(now, ids);
+		return ids;
+	}
+
+	/**
+	 * ؼ¼ȡSessionԪݺֵ
+	 * @param values ڱлֵ
+	 * @return SessionԪݣʱnull
+	 */
+	synchronized SessionData load(String id, Map<String, byte[]> values) throws IOException {
+
+		int slot = index.find(id);
+
+		if(slot == -1)
+			return null;
+
+		//ӺǰȡѾ(Ƴ)Ӧļ¼Ѿ
+		Set<String> seen = new HashSet<>();
+		SessionData data = null;
+		long position = index.head(slot);
+
+		while(position >= 0) {
+
+			long recordPosition = position;
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new ChannelInputStream(position), 512));
+
+			int type = in.read();
+
+			if(!id.equals(in.readUTF()))
+				throw new IOException(sm.getString("SessionLog.load.e0", file.getAbsolutePath(), recordPosition));
+
+			position = in.readLong();
+
+			switch(type) {
+			case META:
+				long creationTime = in.readLong();
+				long lastAccessedTime = in.readLong();
+				int maxInactiveInterval = in.readInt();
+
+				if(data == null)
+					data = new SessionData(id, creationTime, lastAccessedTime, maxInactiveInterval, false);
+
+				if(in.readBoolean())
+					position = -1;
+				break;
+
+			case ATTRIBUTE:
+				String name = in.readUTF();
+				byte[] value = new byte[in.readInt()];
+
+				if(seen.add(name)) {
+					in.readFully(value);
+					values.put(name, value);
+				}
+				break;
+
+			case REMOVE_ATTRIBUTE:
+				seen.add(in.readUTF());
+				break;
+
+			default:
+				throw new IOException(sm.getString("SessionLog.load.e0", file.getAbsolutePath(), recordPosition));
+			}
+		}
+
+		if(data == null)
+			throw new IOException(sm.getString("SessionLog.load.e0", file.getAbsolutePath(), index.head(slot)));
+
+		return data;
+	}
+
+	/**
+	 * д̣Ч¼һʱѹļ
+	 */
+	synchronized void backgroundProcess() {
+
+		try {
+			if(unforced) {
+				channel.force(false);
+				unforced = false;
+			}
+
+			if(length > COMPACT_THRESHOLD && liveBytes * 2 < length)
+				compact();
+
+		} catch (IOException e) {
+			log.warn(sm.getString("SessionLog.backgroundProcess.w0", file.getAbsolutePath()), e);
+		}
+	}
+
+	/**
+	 * ȻЧδڵSessionдʱļ滻ԭļ
+	 */
+	private void compact() throws IOException {
+
+		long start = System.currentTimeMillis();
+		long oldLength = length;
+		long now = System.currentTimeMillis();
+
+		File temp = new File(file.getPath() + ".tmp");
+		SessionLogIndex newIndex = new SessionLogIndex(index.size());
+		long newLength = 0;
+
+		try(RandomAccessFile tempFile = new RandomAccessFile(temp, "rw")) {
+
+			tempFile.setLength(0);
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
+			DataOutputStream out = new DataOutputStream(baos);
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			for(int i = 0; i < index.capacity(); i++) {
+
+				String id = index.idAt(i);
+
+				if(id == null || index.expires(i) <= now)
+					continue;
+
+				Map<String, byte[]> values = new HashMap<>();
+				SessionData data = load(id, values);
+
+				int recordStart = baos.size();
+				long head = encode(out, baos, newLength, -1, new SessionData(id, data.getCreationTime(),
+						data.getLastAccessedTime(), data.getMaxInactiveInterval(), true), values);
+
+				int slot = newIndex.insert(id);
+				newIndex.startBatch(slot, true);
+				newIndex.setExpires(slot, data.getLastAccessedTime(), data.getMaxInactiveInterval());
+				newIndex.append(slot, head, baos.size() - recordStart);
+
+				//дʱļ
+				if(baos.size() >= 8192) {
+					tempFile.write(baos.toByteArray());
+					newLength += baos.size();
+					baos.reset();
+				}
+			}
+
+			tempFile.write(baos.toByteArray());
+			newLength += baos.size();
+			tempFile.getFD().sync();
+		}
+
+		//ƽ̨滻Ѿ򿪵ļ滻ʧʱ´ԭļֲ
+		boolean moved = false;
+		raf.close();
+
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+
+			if(!moved)
+				temp.delete();
+		}
+
+		index = newIndex;
+		length = newLength;
+		liveBytes = newLength - HEADER_SIZE;
+		unforced = false;
+
+		log.info(sm.getString("SessionLog.compact.i0", file.getAbsolutePath(), oldLength, newLength,
+				String.valueOf(System.currentTimeMillis() - start)));
+	}
+
+	/**
+	 * SessionԪݡƳԺֵΪһ¼ÿ¼ָǰһ¼
+	 * @param base ¼ļеʼλüȥbaosеֽ
+	 * @param prev Sessionһ¼λãûʱΪ-1
+	 * @return һ¼λ
+	 */
+	private static long encode(DataOutputStream out, ByteArrayOutputStream baos, long base, long prev,
+			SessionData data, Map<String, byte[]> values) throws IOException {
+
+		String id = data.getId();
+
+		prev = writeHeader(out, baos, base, META, id, prev);
+		out.writeLong(data.getCreationTime());
+		out.writeLong(data.getLastAccessedTime());
+		out.writeInt(data.getMaxInactiveInterval());
+		out.writeBoolean(data.isReplace());
+
+		for(String name : data.getRemovedAttributes()) {
+			prev = writeHeader(out, baos, base, REMOVE_ATTRIBUTE, id, prev);
+			out.writeUTF(name);
+		}
+
+		for(Map.Entry<String, byte[]> value : values.entrySet()) {
+			prev = writeHeader(out, baos, base, ATTRIBUTE, id, prev);
+			out.writeUTF(value.getKey());
+			out.writeInt(value.getValue().length);
+			out.write(value.getValue());
+		}
+
+		return prev;
+	}
+
+	/**
+	 * д¼ͷ͡SessionIDһ¼λ
+	 * @return ü¼λ
+	 */
+	private static long writeHeader(DataOutputStream out, ByteArrayOutputStream baos, long base, byte type,
+			String id, long prev) throws IOException {
+
+		long position = base + baos.size();
+
+		out.writeByte(type);
+		out.writeUTF(id);
+		out.writeLong(prev);
+		return position;
+	}
+
+	/**
+	 * ƳSession¼ΪЧ¼
+	 */
+	private void drop(int slot) {
+
+		if(slot == -1)
+			return;
+
+		liveBytes -= index.chainSize(slot);
+		index.remove(slot);
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	private static void skipFully(DataInputStream in, int size) throws IOException {
+
+		while(size > 0) {
+
+			int skipped = in.skipBytes(size);
+
+			if(skipped <= 0)
+				throw new EOFException();
+
+			size -= skipped;
+		}
+	}
+
+	/**
+	 * ָλÿʼȡ־ļıFileChannelĵǰλ
+	 */
+	private final class ChannelInputStream extends InputStream {
+
+		private long position;
+
+		ChannelInputStream(long position) {
+			this.position = position;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			byte[] b = new byte[1];
+
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+
+			if(read > 0)
+				position += read;
+
+			return read;
+		}
+	}
+
+	/**
+	 * ¼Ѿȡֽ
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		long count = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			int b = super.read();
+
+			if(b != -1)
+				count++;
+
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			int read = super.read(b, off, len);
+
+			if(read > 0)
+				count += read;
+
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package lzf.webserver.session;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018815 4:12:37
+* @Description SessionLogڴѰַ(̽)ĹϣÿSessionֻIDһ¼λá
+* ʱ䡢¼ܳȺ׷ӴݱڼУΪÿSessionԴ
+* ͨλ±ʣ±һinsert֮ǰЧSessionLogͬ
+* SessionExpirySchedulerͬʱSessionΪGRANULARITYĹͰУ
+* ÿͰһλ˫(prevnext)ҹڵSessionʱֻѾڵͰ
+*/
+final class SessionLogIndex {
+
+	//СΪ2
+	private static final int MIN_CAPACITY = 16;
+
+	//ͰĿ()
+	private static final long GRANULARITY = SessionExpiryScheduler.GRANULARITY;
+
+	//߲κιͰ
+	private static final int NONE = -1;
+
+	private String[] ids;
+
+	//Sessionһ¼ļеλ
+	private long[] heads;
+
+	//ʱ䣬ʱΪLong.MAX_VALUE
+	private long[] expires;
+
+	//Session¼м¼ܳ
+	private int[] sizes;
+
+	//һд(replace)֮׷Ӵ
+	private byte[] appends;
+
+	//Ͱеǰһͺһλ
+	private int[] prev;
+
+	private int[] next;
+
+	//Ͱ(ʱGRANULARITYȡ)ĵһλڵSessionκͰ
+	private final TreeMap<Long, Integer> buckets = new TreeMap<>();
+
+	private int size = 0;
+
+	SessionLogIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize ԤƵSession
+	 */
+	SessionLogIndex(int expectedSize) {
+
+		int capacity = MIN_CAPACITY;
+
+		while(capacity * 3 / 4 < expectedSize)
+			capacity <<= 1;
+
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		ids = new String[capacity];
+		heads = new long[capacity];
+		expires = new long[capacity];
+		sizes = new int[capacity];
+		appends = new byte[capacity];
+		prev = new int[capacity];
+		next = new int[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return λ±СڸֵidAtΪnullĲλһSession
+	 */
+	int capacity() {
+		return ids.length;
+	}
+
+	/**
+	 * @return SessionڵĲλʱ-1
+	 */
+	int find(String id) {
+
+		int mask = ids.length - 1;
+
+		for(int i = hash(id) & mask; ; i = (i + 1) & mask) {
+
+			String key = ids[i];
+
+			if(key == null)
+				return -1;
+
+			if(key.equals(id))
+				return i;
+		}
+	}
+
+	/**
+	 * ҸSessionڵĲλʱһλĲλheadΪ-1
+	 * @return λ±
+	 */
+	int insert(String id) {
+
+		if((size + 1) * 4 > ids.length * 3)
+			resize(ids.length << 1);
+
+		int mask = ids.length - 1;
+		int i = hash(id) & mask;
+
+		for(; ids[i] != null; i = (i + 1) & mask) {
+			if(ids[i].equals(id))
+				return i;
+		}
+
+		ids[i] = id;
+		heads[i] = -1;
+		expires[i] = Long.MAX_VALUE;
+		sizes[i] = 0;
+		appends[i] = 0;
+		size++;
+		return i;
+	}
+
+	/**
+	 * Ƴλ֮ĲλǰƶԱ̽
+	 */
+	void remove(int slot) {
+
+		unlink(slot);
+
+		int mask = ids.length - 1;
+		int hole = slot;
+
+		for(int i = (slot + 1) & mask; ids[i] != null; i = (i + 1) & mask) {
+
+			int home = hash(ids[i]) & mask;
+
+			//home(hole, i]ʱĿƶճλ
+			if(((i - home) & mask) >= ((i - hole) & mask)) {
+				move(i, hole);
+				hole = i;
+			}
+		}
+
+		ids[hole] = null;
+		size--;
+	}
+
+	/**
+	 * λƶղλͰָλһ޸
+	 */
+	private void move(int from, int to) {
+
+		ids[to] = ids[from];
+		heads[to] = heads[from];
+		expires[to] = expires[from];
+		sizes[to] = sizes[from];
+		appends[to] = appends[from];
+		prev[to] = prev[from];
+		next[to] = next[from];
+
+		if(expires[from] == Long.MAX_VALUE)
+			return;
+
+		if(prev[from] != NONE)
+			next[prev[from]] = to;
+		else
+			buckets.put(bucketOf(expires[from]), to);
+
+		if(next[from] != NONE)
+			prev[next[from]] = to;
+	}
+
+	private void resize(int capacity) {
+
+		String[] oldIds = ids;
+		long[] oldHeads = heads;
+		long[] oldExpires = expires;
+		int[] oldSizes = sizes;
+		byte[] oldAppends = appends;
+
+		allocate(capacity);
+		int mask = capacity - 1;
+
+		for(int j = 0; j < oldIds.length; j++) {
+
+			if(oldIds[j] == null)
+				continue;
+
+			int i = hash(oldIds[j]) & mask;
+
+			while(ids[i] != null)
+				i = (i + 1) & mask;
+
+			ids[i] = oldIds[j];
+			heads[i] = oldHeads[j];
+			expires[i] = oldExpires[j];
+			sizes[i] = oldSizes[j];
+			appends[i] = oldAppends[j];
+		}
+
+		//λȫı䣬½Ͱ
+		buckets.clear();
+
+		for(int i = 0; i < capacity; i++) {
+			if(ids[i] != null)
+				link(i);
+		}
+	}
+
+	void clear() {
+		Arrays.fill(ids, null);
+		buckets.clear();
+		size = 0;
+	}
+
+	String idAt(int slot) {
+		return ids[slot];
+	}
+
+	long head(int slot) {
+		return heads[slot];
+	}
+
+	long expires(int slot) {
+		return expires[slot];
+	}
+
+	int chainSize(int slot) {
+		return sizes[slot];
+	}
+
+	int appends(int slot) {
+		return appends[slot];
+	}
+
+	/**
+	 * ʼ׷һ¼(һα)replaceΪtrueʱ֮ǰļ¼ʧЧ
+	 */
+	void startBatch(int slot, boolean replace) {
+
+		if(replace) {
+			sizes[slot] = 0;
+			appends[slot] = 1;
+		} else if(appends[slot] < Byte.MAX_VALUE) {
+			appends[slot]++;
+		}
+	}
+
+	/**
+	 * ڼ¼ĩβ׷˼¼
+	 * @param head һ¼λ
+	 * @param bytes ׷ӵļ¼ܳ
+	 */
+	void append(int slot, long head, int bytes) {
+		heads[slot] = head;
+		sizes[slot] += bytes;
+	}
+
+	/**
+	 * ùʱ䣬ԭĹͰʱƶ
+	 */
+	void setExpires(int slot, long lastAccessedTime, int maxInactiveInterval) {
+
+		long time = maxInactiveInterval > 0 ? lastAccessedTime + maxInactiveInterval : Long.MAX_VALUE;
+
+		if(bucketOf(time) == bucketOf(expires[slot])) {
+			expires[slot] = time;
+			return;
+		}
+
+		unlink(slot);
+		expires[slot] = time;
+		link(slot);
+	}
+
+	/**
+	 * ҳѾڵͰеSessionڹںGRANULARITY뱻ҵ
+	 * @param ids ڱڵSessionID
+	 */
+	void collectExpired(long now, List<String> ids) {
+
+		for(Map.Entry<Long, Integer> bucket : buckets.headMap(now / GRANULARITY, true).entrySet()) {
+			for(int i = bucket.getValue(); i != NONE; i = next[i])
+				ids.add(this.ids[i]);
+		}
+	}
+
+	/**
+	 * λʱڵͰͷ
+	 */
+	private void link(int slot) {
+
+		prev[slot] = NONE;
+		next[slot] = NONE;
+
+		if(expires[slot] == Long.MAX_VALUE)
+			return;
+
+		Integer first = buckets.put(bucketOf(expires[slot]), slot);
+
+		if(first != null) {
+			next[slot] = first;
+			prev[first] = slot;
+		}
+	}
+
+	private void unlink(int slot) {
+
+		if(expires[slot] == Long.MAX_VALUE)
+			return;
+
+		if(prev[slot] != NONE)
+			next[prev[slot]] = next[slot];
+		else if(next[slot] != NONE)
+			buckets.put(bucketOf(expires[slot]), next[slot]);
+		else
+			buckets.remove(bucketOf(expires[slot]));
+
+		if(next[slot] != NONE)
+			prev[next[slot]] = prev[slot];
+	}
+
+	private static long bucketOf(long expires) {
+		return expires == Long.MAX_VALUE ? Long.MAX_VALUE : (expires + GRANULARITY - 1) / GRANULARITY;
+	}
+
+	private static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
@@ -1,15 +1,12 @@
 package lzf.webserver.session;
 
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import lzf.webserver.LifecycleException;
-import lzf.webserver.LifecycleState;
 import lzf.webserver.Session;
 import lzf.webserver.core.LifecycleBase;
-import lzf.webserver.log.Log;
-import lzf.webserver.log.LogFactory;
 
 /**
 * @author ӷ
@@ -17,10 +14,11 @@ import lzf.webserver.log.LogFactory;
 * @date 2018717 10:16:33
 * @Description Ự
 * ֮ԴỰΪԺչHTTPĹ
+* SessionĹȫֵSessionExpirySchedulerͳһΪÿSession̨߳
+* maxActiveSessionsmaxIdleSwapʱ̨߳̽ʱδʵSessionSession洢У
+* ڴֻԾSessionSession´ηʱָ
 */
 public abstract class SessionManagerBase extends LifecycleBase {
-	
-	private static final Log log = LogFactory.getLog(SessionManagerBase.class);
 
 	//Ĭʱ20
 	public static final int DEFAULT_MAX_INACTIVETIME = 20 * 60 * 1000;
@@ -31,46 +29,14 @@ public abstract class SessionManagerBase extends LifecycleBase {
 	//ĬǻԾʱ
 	protected int defaultMaxSessionInactiveTime = DEFAULT_MAX_INACTIVETIME;
 	
-	//Session
-	private final AtomicInteger sessionNum = new AtomicInteger(0);
+	//ڴౣSessionʱδʵSessionСڵ0ʾ
+	protected int maxActiveSessions = -1;
 	
-	//̨̣߳Session
-	protected final LifeCheckProcesser processer = new LifeCheckProcesser();
+	//Sessionгʱ()󱻻Сڵ0ʾʱ任
+	protected int maxIdleSwap = -1;
 	
-	protected class LifeCheckProcesser implements Runnable {
-		@Override
-		public void run() {
-			log.info("LifeCheckProcesser run");
-			
-			while(true) {
-				
-				if(getLifecycleState().after(LifecycleState.STOPPING_PREP))
-					break;
-				
-				long nowTime = System.currentTimeMillis();
-				
-				for(Map.Entry<String, Session> entry : sessions.entrySet()) {
-					Session session = entry.getValue();
-					if(nowTime - session.getLastAccessedTime() >= session.getMaxInactiveInterval()) {
-						try {
-							removeSession(entry.getKey());
-						} catch (LifecycleException e) {
-							return;
-						}
-						sessionNum.decrementAndGet();
-					}
-				}
-				try {
-					//Ĭÿ15ִһμ
-					Thread.sleep(15 * 1000);
-				} catch (InterruptedException e) {
-					log.error(e);
-					new Thread(processer).start();
-					return;
-				}
-			}
-		}
-	}
+	//ȫSessionڵ
+	private final SessionExpiryScheduler expiryScheduler = SessionExpiryScheduler.getInstance();
 	
 	/**
 	 * ȡĬϵSessionǻԾʱ
@@ -88,6 +54,35 @@ public abstract class SessionManagerBase extends LifecycleBase {
 		this.defaultMaxSessionInactiveTime = timeout;
 	}
 	
+	public final int getMaxActiveSessions() {
+		return maxActiveSessions;
+	}
+	
+	/**
+	 * @param maxActiveSessions ڴౣSessionСڵ0ʾƣSessionǰ
+	 */
+	public final void setMaxActiveSessions(int maxActiveSessions) {
+		this.maxActiveSessions = maxActiveSessions;
+	}
+	
+	public final int getMaxIdleSwap() {
+		return maxIdleSwap;
+	}
+	
+	/**
+	 * @param maxIdleSwap Sessionгʱ()󱻻Сڵ0ʾʱ任Sessionǰ
+	 */
+	public final void setMaxIdleSwap(int maxIdleSwap) {
+		this.maxIdleSwap = maxIdleSwap;
+	}
+	
+	/**
+	 * @return ǷҪSession
+	 */
+	protected final boolean isPassivationEnabled() {
+		return maxActiveSessions > 0 || maxIdleSwap > 0;
+	}
+	
 	/**
 	 * һµSession
 	 * @return StrandardSessionʵ
@@ -97,6 +92,7 @@ public abstract class SessionManagerBase extends LifecycleBase {
 		checkLifecycleState();
 		Session session = newSessionInternal();
 		sessions.put(session.getId(), session);
+		expiryScheduler.add(session);
 		return session;
 	}
 	
@@ -119,8 +115,20 @@ public abstract class SessionManagerBase extends LifecycleBase {
 			return newSession();
 		
 		Session session = sessions.get(sessionId);
+		
+		//ѾڵͰδڵSession
+		if(session != null && isExpired(session, System.currentTimeMillis())) {
+			expireSession(session);
+			session = null;
+		}
+		
+		//ڴûиSessionʱԴSession洢лָ
+		if(session == null)
+			session = restoreSession(sessionId);
+		
 		if(session != null) {
 			session.updateLastAccessedTime();
+			expiryScheduler.update(session);
 			return session;
 		}
 		
@@ -129,6 +137,126 @@ public abstract class SessionManagerBase extends LifecycleBase {
 		return null;
 	}
 	
+	/**
+	 * Session洢жȡSession뵽Session
+	 * @return ָSessionʵ߳ѾָSessionʱָ̻߳ʵʱnull
+	 */
+	private Session restoreSession(String sessionId) {
+		
+		Session session = loadSession(sessionId);
+		
+		if(session == null)
+			return null;
+		
+		Session exist = sessions.putIfAbsent(sessionId, session);
+		
+		if(exist != null)
+			return exist;
+		
+		expiryScheduler.add(session);
+		activateSession(session);
+		return session;
+	}
+	
+	/**
+	 * ʱ䳬maxIdleSwapSession֮ڴеSessionȻmaxActiveSessionsʱδʵSession
+	 * backgroundProcessе
+	 */
+	protected final void passivateSessions() {
+		
+		if(!isPassivationEnabled())
+			return;
+		
+		long now = System.currentTimeMillis();
+		int overflow = maxActiveSessions > 0 ? sessions.size() - maxActiveSessions : 0;
+		
+		if(maxIdleSwap > 0) {
+			for(Session session : sessions.values()) {
+				if(now - session.getLastAccessedTime() >= maxIdleSwap && passivate(session))
+					overflow--;
+			}
+		}
+		
+		if(overflow <= 0)
+			return;
+		
+		//ʱڶѶΪδʵoverflowSession
+		PriorityQueue<Candidate> oldest = new PriorityQueue<>(overflow,
+				(a, b) -> Long.compare(b.lastAccessedTime, a.lastAccessedTime));
+		
+		for(Session session : sessions.values()) {
+			
+			long lastAccessedTime = session.getLastAccessedTime();
+			
+			if(oldest.size() < overflow) {
+				oldest.add(new Candidate(session, lastAccessedTime));
+				
+			} else if(lastAccessedTime < oldest.peek().lastAccessedTime) {
+				oldest.poll();
+				oldest.add(new Candidate(session, lastAccessedTime));
+			}
+		}
+		
+		for(Candidate candidate : oldest)
+			passivate(candidate.session);
+	}
+	
+	/**
+	 * SessionڴƳڼSessionʱŻڴ
+	 * @return ǷѾ
+	 */
+	private boolean passivate(Session session) {
+		
+		long lastAccessedTime = session.getLastAccessedTime();
+		
+		if(!passivateSession(session))
+			return false;
+		
+		if(!sessions.remove(session.getId(), session))
+			return false;
+		
+		expiryScheduler.cancel(session);
+		
+		if(session.getLastAccessedTime() != lastAccessedTime && sessions.putIfAbsent(session.getId(), session) == null) {
+			expiryScheduler.add(session);
+			activateSession(session);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Session浽Session洢У֮SessionڴƳ
+	 * @param session ҪSession
+	 * @return Ƿ񱣴ɹĬϷfalseʱSessionڴ
+	 */
+	protected boolean passivateSession(Session session) {
+		return false;
+	}
+	
+	/**
+	 * SessionSession洢лָڴ
+	 * @param session ָSession
+	 */
+	protected void activateSession(Session session) {
+	}
+	
+	/**
+	 * Session洢жȡSessionд÷ʵSessionĳ־û
+	 * @param sessionId SessionID
+	 * @return SessionʵĬϷnull
+	 */
+	protected Session loadSession(String sessionId) {
+		return null;
+	}
+	
+	/**
+	 * SessionExpirySchedulerĺ̨߳ÿδSessionãд÷
+	 */
+	protected void backgroundProcess() {
+	}
+	
 	/**
 	 * ȼgetSession(sessionId, true);
 	 * @throws LifecycleException Sessionδ״̬
@@ -144,15 +272,71 @@ public abstract class SessionManagerBase extends LifecycleBase {
 	 */
 	public void removeSession(String sessionId) throws LifecycleException {
 		checkLifecycleState();
+		Session session;
 		synchronized(sessions) {
-			sessions.remove(sessionId);
+			session = sessions.remove(sessionId);
+		}
+		
+		if(session != null)
+			expiryScheduler.cancel(session);
+	}
+	
+	/**
+	 * ƳѾڵSessionSessionExpiryScheduler
+	 * @param session ڵSessionʵѾƳ߱滻ʱκδ
+	 */
+	void expireSession(Session session) {
+		
+		if(sessions.get(session.getId()) != session)
+			return;
+		
+		try {
+			removeSession(session.getId());
+		} catch (LifecycleException e) {
+			//SessionѾֹͣ
 		}
 	}
 	
 	/**
-	 * SessionIDUUIDֵ
+	 * ʼȸSessionSessionĹڣSessionʱ
+	 */
+	protected final void scheduleSessions() {
+		for(Session session : sessions.values())
+			expiryScheduler.add(session);
+		
+		expiryScheduler.register(this);
+	}
+	
+	/**
+	 * ֹͣȸSessionSessionĹڣSessionֹͣʱ
+	 */
+	protected final void cancelSessions() {
+		
+		expiryScheduler.unregister(this);
+		
+		for(Session session : sessions.values())
+			expiryScheduler.cancel(session);
+	}
+	
+	/**
+	 * ֪ͨڵSessionǻԾʱѾı
+	 */
+	final void maxInactiveIntervalChanged(Session session) {
+		expiryScheduler.update(session);
+	}
+	
+	/**
+	 * @return ǻԾʱ0ҾʱѾʱʱtrue
+	 */
+	private static boolean isExpired(Session session, long now) {
+		return session.getMaxInactiveInterval() > 0 
+				&& now - session.getLastAccessedTime() >= session.getMaxInactiveInterval();
+	}
+	
+	/**
+	 * SessionID
 	 * @param session Sessionʵ
-	 * @return µUUIDֵ
+	 * @return µSessionID
 	 * @throws LifecycleException Sessionδ״̬
 	 */
 	public final String changeSessionId(Session session) throws LifecycleException {
@@ -170,12 +354,13 @@ public abstract class SessionManagerBase extends LifecycleBase {
 			s.changeId();
 			sessions.put(s.getId(), s);
 		}
+		expiryScheduler.update(s);
 		return s.getId();
 	}
 	
 	/**
-	 * @param sessionId ޸ĵSessionʵUUID
-	 * @return ĺõSessionIDUUIDֵ
+	 * @param sessionId ޸ĵSessionʵID
+	 * @return µSessionID
 	 * @throws LifecycleException Sessionδ״̬
 	 */
 	public final String changeSessionId(String sessionId) throws LifecycleException  {
@@ -193,4 +378,18 @@ public abstract class SessionManagerBase extends LifecycleBase {
 			throw new LifecycleException("This Session Manager is not available");
 	}
 	
+	/**
+	 * ȴSessionѡʱʱ
+	 */
+	private static final class Candidate {
+		
+		final Session session;
+		
+		final long lastAccessedTime;
+		
+		Candidate(Session session, long lastAccessedTime) {
+			this.session = session;
+			this.lastAccessedTime = lastAccessedTime;
+		}
+	}
 }
@@ -0,0 +1,69 @@
+package lzf.webserver.session;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 2018815 2:02:17
+* @Description Session洢ӿڣÿHttpSessionManagerӦһSessionStoreʵ
+* SessionڴбʹõSessionSessionStoreڷָSession
+* Sessionںֻ̨߳淢仯SessionSessionڵһαʱŴSessionStoreȡ
+* ʵҪ޲ι췽server.xmlļHostڵsessionStoreָ
+*/
+public interface SessionStore {
+
+	/**
+	 * 򿪴洢Sessionʱ
+	 * @param manager Session
+	 * @throws IOException ޷򿪴洢
+	 */
+	public void open(HttpSessionManager manager) throws IOException;
+
+	/**
+	 * @return ǷҪSessionΪfalseʱSession¼Sessionı仯
+	 */
+	public boolean isPersistent();
+
+	/**
+	 * ȡSessionѾڵSessionҲҪأSession¼ɾ
+	 * @param id SessionID
+	 * @return Sessionݣʱnull
+	 * @throws IOException ȡʧ
+	 */
+	public SessionData load(String id) throws IOException;
+
+	/**
+	 * Sessionϴα֮仯Ĳ
+	 * @param data Session
+	 * @throws IOException ʧ
+	 */
+	public void save(SessionData data) throws IOException;
+
+	/**
+	 * ɾSession
+	 * @param id SessionID
+	 * @return SessionǷڣ߳ͬʱɾͬһSessionʱֻһ̷߳true
+	 * @throws IOException ɾʧ
+	 */
+	public boolean remove(String id) throws IOException;
+	
+	/**
+	 * ѾڵSession̶̨߳ڵ
+	 * @param now ǰʱ
+	 * @return ѾڵSessionID
+	 */
+	public Collection<String> expiredSessions(long now);
+
+	/**
+	 * ̶̨߳ڵãˢ»Session
+	 */
+	public void backgroundProcess();
+
+	/**
+	 * رմ洢Sessionֹͣʱ
+	 * @throws IOException رʧ
+	 */
+	public void close() throws IOException;
+}
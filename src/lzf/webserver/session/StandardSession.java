@@ -2,13 +2,16 @@ package lzf.webserver.session;
 
 import java.io.Serializable;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionActivationListener;
 import javax.servlet.http.HttpSessionContext;
+import javax.servlet.http.HttpSessionEvent;
 
 import lzf.webserver.Session;
 import lzf.webserver.util.IteratorEnumeration;
@@ -26,10 +29,10 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	private static final long serialVersionUID = 8941015350279589423L;
 	
 	//Session Id
-	private String id = UUID.randomUUID().toString().replaceAll("\\-", "");
+	private String id;
 	
 	//ʱ
-	private final long createTime = System.currentTimeMillis();
+	private final long createTime;
 	
 	//ĬǻԾʱ
 	private int maxSessionInactiveTime;
@@ -45,6 +48,21 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	
 	//SessionĹ
 	private final HttpSessionManager manager;
+	
+	//ϴα浽SessionStore֮޸ĵ
+	private final transient Set<String> dirtyAttributes = ConcurrentHashMap.newKeySet();
+	
+	//ϴα浽SessionStore֮Ƴ
+	private final transient Set<String> removedAttributes = ConcurrentHashMap.newKeySet();
+	
+	//´αʱǷSessionStore֮ǰԣ½SessionIDߵinvalidateΪtrue
+	private transient volatile boolean replaceStored = true;
+	
+	//ǷѾSessionĴ漯
+	private transient volatile boolean dirty = false;
+	
+	//ǷѾSessionƳƳٱ浽SessionStore
+	private transient volatile boolean removed = false;
 
 	/**
 	 * SessionManagerö
@@ -52,7 +70,26 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	 */
 	public StandardSession(HttpSessionManager manager) {
 		this.manager = manager;
+		this.id = manager.getSessionIdGenerator().generateSessionId();
+		this.createTime = System.currentTimeMillis();
 		this.maxSessionInactiveTime = manager.getDefaultSessionMaxInactiveTime();
+		markDirty();
+	}
+	
+	/**
+	 * SessionStoreбݻָSession
+	 * @param manager SessionManagerʵ
+	 * @param data SessionStoreȡSession
+	 */
+	StandardSession(HttpSessionManager manager, SessionData data) {
+		this.manager = manager;
+		this.id = data.getId();
+		this.createTime = data.getCreationTime();
+		this.lastAccessTime = data.getLastAccessedTime();
+		this.maxSessionInactiveTime = data.getMaxInactiveInterval();
+		this.isNew = false;
+		this.replaceStored = false;
+		this.attributeMap.putAll(data.getAttributes());
 	}
 	
 	/**
@@ -93,6 +130,7 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	public void updateLastAccessedTime() {
 		isNew = false;
 		lastAccessTime = System.currentTimeMillis();
+		markDirty();
 	}
 	
 	/**
@@ -122,6 +160,8 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	@Override
 	public void invalidate() {
 		attributeMap.clear();
+		replaceStored = true;
+		markDirty();
 	}
 
 	/**
@@ -135,6 +175,7 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	@Override @Deprecated
 	public void putValue(String name, Object value) {
 		attributeMap.put(name, value);
+		attributeChanged(name);
 	}
 
 	/**
@@ -148,13 +189,15 @@ public class StandardSession implements Session, HttpSession, Serializable {
 		
 		if(value != null) {
 			attributeMap.remove(name);
+			attributeRemoved(name);
 			manager.getContext().getListenerContainer().runContextAttributeRemovedEvent(name, value);
 		}
 	}
 
 	@Override @Deprecated
 	public void removeValue(String name) {
-		attributeMap.remove(name);
+		if(attributeMap.remove(name) != null)
+			attributeRemoved(name);
 	}
 
 	/**
@@ -167,6 +210,7 @@ public class StandardSession implements Session, HttpSession, Serializable {
 		
 		Object val = attributeMap.get(name);
 		attributeMap.put(name, value);
+		attributeChanged(name);
 		
 		if(val == null) {	
 			manager.getContext().getListenerContainer().runContextAttributeAddedEvent(name, value);
@@ -188,13 +232,119 @@ public class StandardSession implements Session, HttpSession, Serializable {
 	@Override
 	public void setMaxInactiveInterval(int maxInactiveInterval) {
 		this.maxSessionInactiveTime = maxInactiveInterval;
+		manager.maxInactiveIntervalChanged(this);
+		markDirty();
 	}
 
 	@Override
 	public String changeId() {
-		String newId = UUID.randomUUID().toString();
+		String oldId = this.id;
+		String newId = manager.getSessionIdGenerator().generateSessionId();
 		this.id = newId;
+		replaceStored = true;
+		manager.sessionIdChanged(oldId);
+		markDirty();
 		return newId;
 	}
+	
+	private void attributeChanged(String name) {
+		removedAttributes.remove(name);
+		dirtyAttributes.add(name);
+		markDirty();
+	}
+	
+	private void attributeRemoved(String name) {
+		dirtyAttributes.remove(name);
+		removedAttributes.add(name);
+		markDirty();
+	}
+	
+	/**
+	 * ֪ͨSessionSessionҪ棬SessionStoreҪSessionʱκδ
+	 */
+	private void markDirty() {
+		
+		if(dirty || !manager.isPersistent())
+			return;
+		
+		dirty = true;
+		manager.sessionChanged(this);
+	}
+	
+	boolean isRemoved() {
+		return removed;
+	}
+	
+	void setRemoved() {
+		this.removed = true;
+	}
+	
+	/**
+	 * ֪ͨʵHttpSessionActivationListenerӿڵԣSessionSessionStore
+	 */
+	void passivate() {
+		
+		HttpSessionEvent event = new HttpSessionEvent(this);
+		
+		for(Object value : attributeMap.values()) {
+			if(value instanceof HttpSessionActivationListener)
+				((HttpSessionActivationListener) value).sessionWillPassivate(event);
+		}
+	}
+	
+	/**
+	 * ֪ͨʵHttpSessionActivationListenerӿڵԣSessionѾSessionStoreлָ
+	 */
+	void activate() {
+		
+		HttpSessionEvent event = new HttpSessionEvent(this);
+		
+		for(Object value : attributeMap.values()) {
+			if(value instanceof HttpSessionActivationListener)
+				((HttpSessionActivationListener) value).sessionDidActivate(event);
+		}
+	}
+	
+	/**
+	 * ȡϴα֮仯Ĳ֣Sessionĺ̨
+	 * @return Ҫ浽SessionStore
+	 */
+	SessionData takeChanges() {
+		
+		dirty = false;
+		
+		boolean replace = replaceStored;
+		replaceStored = false;
+		
+		SessionData data = new SessionData(id, createTime, lastAccessTime, maxSessionInactiveTime, replace);
+		
+		if(replace) {
+			//ٸƣ֮޸ĵԻ´α
+			dirtyAttributes.clear();
+			removedAttributes.clear();
+			data.getAttributes().putAll(attributeMap);
+			return data;
+		}
+		
+		for(Iterator<String> it = removedAttributes.iterator(); it.hasNext(); ) {
+			data.getRemovedAttributes().add(it.next());
+			it.remove();
+		}
+		
+		for(Iterator<String> it = dirtyAttributes.iterator(); it.hasNext(); ) {
+			
+			String name = it.next();
+			it.remove();
+			
+			Object value = attributeMap.get(name);
+			
+			if(value != null)
+				data.getAttributes().put(name, value);
+			else
+				data.getRemovedAttributes().add(name);
+		}
+		
+		return data;
+	}
 
 }
\ No newline at end of file
@@ -1,12 +1,18 @@
 package lzf.webserver.startup;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
 
+import org.dom4j.Attribute;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
 
 import lzf.webserver.LifecycleException;
+import lzf.webserver.Pipeline;
 import lzf.webserver.Server;
+import lzf.webserver.Valve;
 import lzf.webserver.connector.Connector;
 import lzf.webserver.connector.NettyHandler;
 import lzf.webserver.core.StandardEngine;
@@ -15,6 +21,7 @@ import lzf.webserver.core.StandardServer;
 import lzf.webserver.core.StandardService;
 import lzf.webserver.log.Log;
 import lzf.webserver.log.LogFactory;
+import lzf.webserver.resources.StaticResourceCache;
 import lzf.webserver.util.StringManager;
 import lzf.webserver.util.XMLUtil;
 
@@ -73,6 +80,16 @@ public final class Bootstrap {
 		if (shutdownCmd != null)
 			server.setShutdownCommand(shutdownCmd);
 
+		// ̬ԴãWebӦùͬһ
+		Element resourcesRoot = serverRoot.element("Resources");
+
+		if (resourcesRoot != null) {
+			for (Attribute attr : resourcesRoot.attributes()) {
+				if (!setProperty(StaticResourceCache.getInstance(), attr.getName(), attr.getValue()))
+					log.warn(sm.getString("Bootstrap.loadServerXml.w0", attr.getName()));
+			}
+		}
+
 		// ServerڵµServiceڵ
 		for (Element serviceRoot : serverRoot.elements("Service")) {
 
@@ -131,6 +148,15 @@ public final class Bootstrap {
 
 			if (engineName != null)
 				engine.setName(engineName);
+			
+			// Ĭ޷ƥκHostʱɸ
+			String defaultHost = engineRoot.attributeValue("defaultHost");
+			
+			if (defaultHost != null)
+				engine.setDefaultHost(defaultHost);
+			
+			// Engineܵеķ
+			addValves(engineRoot, engine.getPipeline());
 
 			// EngineڵµHostڵ㣬HostڵڳʼʱԶĿ¼µwebӦ
 			for (Element hostRoot : engineRoot.elements("Host")) {
@@ -145,8 +171,77 @@ public final class Bootstrap {
 				
 				if (hostAppBase != null)
 					host.setWebappBaseFolder(new File(hostAppBase));
+				
+				// вWebӦõ߳ͲʧʱĴ
+				String deployThreads = hostRoot.attributeValue("deployThreads");
+				String failOnDeployError = hostRoot.attributeValue("failOnDeployError");
+				
+				if (deployThreads != null)
+					host.setDeployThreads(Integer.parseInt(deployThreads.trim()));
+				
+				if (failOnDeployError != null)
+					host.setFailOnDeployError(Boolean.parseBoolean(failOnDeployError.trim()));
+				
+				// Դļ仯ʱǷԶWebӦ
+				String reloadable = hostRoot.attributeValue("reloadable");
+				
+				if (reloadable != null)
+					host.setReloadable(Boolean.parseBoolean(reloadable.trim()));
+				
+				// WebӦʱԤȷʵURI(ŷָ)Լȴɰ汾ɵʱ
+				String warmupURIs = hostRoot.attributeValue("warmupURIs");
+				String drainTimeout = hostRoot.attributeValue("drainTimeout");
+				
+				if (warmupURIs != null) {
+					for (String uri : warmupURIs.split(","))
+						host.addWarmupURI(uri);
+				}
+				
+				if (drainTimeout != null)
+					host.setDrainTimeout(Long.parseLong(drainTimeout.trim()));
+				
+				// ɨ@WebServletעʱͱɨJAR(ŷָʹ*ͨ)
+				host.getJarScanFilter().setJarsToSkip(hostRoot.attributeValue("jarsToSkip"));
+				host.getJarScanFilter().setJarsToScan(hostRoot.attributeValue("jarsToScan"));
+				
+				// Session洢ʵ࣬δʱSessionֻڴ
+				String sessionStore = hostRoot.attributeValue("sessionStore");
+				
+				if (sessionStore != null && !sessionStore.trim().isEmpty())
+					host.setSessionStore(sessionStore.trim());
+				
+				// ÿWebӦڴౣSessionԼSessionж()󻻳
+				String maxActiveSessions = hostRoot.attributeValue("maxActiveSessions");
+				String maxIdleSwap = hostRoot.attributeValue("maxIdleSwap");
+				
+				if (maxActiveSessions != null)
+					host.setMaxActiveSessions(Integer.parseInt(maxActiveSessions.trim()));
+				
+				if (maxIdleSwap != null)
+					host.setMaxIdleSwap(Integer.parseInt(maxIdleSwap.trim()));
+				
+				// SessionIDֽ뷽ʽ(hex/base64url)SecureRandom㷨
+				String sessionIdLength = hostRoot.attributeValue("sessionIdLength");
+				String sessionIdEncoding = hostRoot.attributeValue("sessionIdEncoding");
+				String sessionIdAlgorithm = hostRoot.attributeValue("sessionIdAlgorithm");
+				
+				if (sessionIdLength != null)
+					host.setSessionIdLength(Integer.parseInt(sessionIdLength.trim()));
+				
+				if (sessionIdEncoding != null)
+					host.setSessionIdEncoding(sessionIdEncoding.trim());
+				
+				if (sessionIdAlgorithm != null)
+					host.setSessionIdAlgorithm(sessionIdAlgorithm.trim().isEmpty() ? null : sessionIdAlgorithm.trim());
 				// -----------------------------------------------------------------------------
 				
+				// Ϊͨʽ*.example.com
+				for (Element aliasRoot : hostRoot.elements("Alias")) {
+					host.addAlias(aliasRoot.getTextTrim());
+				}
+				
+				// Hostܵеķ
+				addValves(hostRoot, host.getPipeline());
 				// -----------------------------------------------------------------------------
 				engine.addChildContainer(host);
 			}
@@ -157,6 +252,104 @@ public final class Bootstrap {
 		return server;
 	}
 
+	/**
+	 * ݽڵµValveӽڵ㴴ŲӵܵУŰļе˳ִ
+	 * @param root EngineHostڵ
+	 * @param pipeline Ĺܵ
+	 */
+	private void addValves(Element root, Pipeline pipeline) throws LifecycleException {
+		
+		List<Element> valveRoots = root.elements("Valve");
+		
+		// addValveὫӵܵǰˣҪ
+		for (int i = valveRoots.size() - 1; i >= 0; i--) {
+			
+			Valve valve = createValve(valveRoots.get(i));
+			
+			if (valve != null)
+				pipeline.addValve(valve);
+		}
+	}
+	
+	/**
+	 * ValveڵclassNameԴţͨӦsetter
+	 * @param valveRoot Valveڵ
+	 * @return ʵʧʱnull
+	 */
+	private Valve createValve(Element valveRoot) {
+		
+		String className = valveRoot.attributeValue("className");
+		
+		if (className == null) {
+			log.warn(sm.getString("Bootstrap.createValve.w0"));
+			return null;
+		}
+		
+		Valve valve;
+		
+		try {
+			valve = (Valve) Class.forName(className).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			log.error(sm.getString("Bootstrap.createValve.e0", className), e);
+			return null;
+		}
+		
+		for (Attribute attr : valveRoot.attributes()) {
+			
+			if (attr.getName().equals("className"))
+				continue;
+			
+			if (!setProperty(valve, attr.getName(), attr.getValue()))
+				log.warn(sm.getString("Bootstrap.createValve.w1", className, attr.getName()));
+		}
+		
+		return valve;
+	}
+	
+	/**
+	 * ösetterԣ֧Stringintlongbooleandouble
+	 * @param obj 
+	 * @param name 
+	 * @param value ֵ
+	 * @return Ƿóɹ
+	 */
+	private static boolean setProperty(Object obj, String name, String value) {
+		
+		String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		
+		for (Method method : obj.getClass().getMethods()) {
+			
+			if (!method.getName().equals(setterName) || method.getParameterCount() != 1)
+				continue;
+			
+			Class<?> type = method.getParameterTypes()[0];
+			
+			try {
+				if (type == String.class) {
+					method.invoke(obj, value);
+				} else if (type == int.class || type == Integer.class) {
+					method.invoke(obj, Integer.valueOf(value.trim()));
+				} else if (type == long.class || type == Long.class) {
+					method.invoke(obj, Long.valueOf(value.trim()));
+				} else if (type == boolean.class || type == Boolean.class) {
+					method.invoke(obj, Boolean.valueOf(value.trim()));
+				} else if (type == double.class || type == Double.class) {
+					method.invoke(obj, Double.valueOf(value.trim()));
+				} else {
+					continue;
+				}
+				
+				return true;
+				
+			} catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
+				log.error("", e);
+				return false;
+			}
+		}
+		
+		return false;
+	}
+
 	private Bootstrap() {
 		bootstrap = this;
 	}
@@ -77,8 +77,8 @@ public final class ServerConstant {
 	
 	public File getJspWorkPath(Context context) {
 		
-		//·Ϊ /work/${hostname}/${contextname}
-		File file = new File(work, context.getParentContainer().getName() + File.separator 
+		//·Ϊ /work/${hostname}/${contextname}ͨе*滻Ϊ_
+		File file = new File(work, context.getParentContainer().getName().replace('*', '_') + File.separator 
 				+ context.getName());
 		
 		if(!file.exists())
@@ -86,4 +86,15 @@ public final class ServerConstant {
 		
 		return file;
 	}
+	
+	public File getAnnotationCachePath() {
+		
+		//·Ϊ /work/annotationsJARժҪעɨWebӦù
+		File file = new File(work, "annotations");
+		
+		if(!file.exists())
+			file.mkdirs();
+		
+		return file;
+	}
 }
@@ -1,6 +1,11 @@
 package lzf.webserver.util;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
@@ -11,11 +16,11 @@ import io.netty.buffer.ByteBuf;
 * @author ӷ
 * @version 1.0
 * @date 2018718 3:17:16
-* @Description ˵
+* @Description Netty ByteBufдӦֽдʵ
 */
 public class ByteBufOutputStream extends ServletOutputStream {
 
-	private final ByteBuf buf;
+	protected final ByteBuf buf;
 	
 	private int size = 0;
 	
@@ -38,6 +43,52 @@ public class ByteBufOutputStream extends ServletOutputStream {
 		size++;
 	}
 	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		buf.writeBytes(b, off, len);
+		size += len;
+	}
+	
+	/**
+	 * дNIOʣȫֽ
+	 * @param src ԴΪֱڴ滺
+	 */
+	public void write(ByteBuffer src) throws IOException {
+		int len = src.remaining();
+		buf.writeBytes(src);
+		size += len;
+	}
+	
+	/**
+	 * дļһ֣ĬͨһСֶζ룬д÷ֱӴļ
+	 * @param file ļ
+	 * @param position ʼλ
+	 * @param count ֽ
+	 * @throws EOFException ļȲ
+	 */
+	public void write(File file, long position, long count) throws IOException {
+		
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(8192, count));
+			
+			while(count > 0) {
+				
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), count));
+				
+				int n = channel.read(buffer, position);
+				
+				if(n == -1)
+					throw new EOFException(file.getAbsolutePath());
+				
+				write(buffer.array(), 0, n);
+				position += n;
+				count -= n;
+			}
+		}
+	}
+	
 	public int getSize() {
 		return size;
 	}
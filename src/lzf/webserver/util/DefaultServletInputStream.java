@@ -1,43 +1,347 @@
 package lzf.webserver.util;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
 
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelConfig;
+
 /**
 * @author ӷ
 * @version 1.0
 * @date 2018717 8:47:29
-* @Description ˵
+* @Description ÿյһݿ͵offer룬յһfinish
+* ģʽûʱȡ̵߳ȴһݿ飻ReadListenerҵ߼̳߳ػصonDataAvailableonAllDataRead
+* δȡݳHIGH_WATER_MARKʱͣͨȡȡLOW_WATER_MARKºָ
 */
 public class DefaultServletInputStream extends ServletInputStream {
 
-	private final InputStream is;
-	
-	public DefaultServletInputStream(InputStream is) {
-		this.is = is;
+	//ͣͨȡĻֽ
+	private static final int HIGH_WATER_MARK = 64 * 1024;
+
+	//ָͨȡĻֽ
+	private static final int LOW_WATER_MARK = 16 * 1024;
+
+	//δȡݿ飬룬ȡϺͷ
+	private final Deque<ByteBuf> chunks = new ArrayDeque<>();
+
+	//ִReadListenerص̳߳أΪnullʱڵǰ߳лص
+	private final Executor executor;
+
+	//ӵͨãͣͻָȡΪnullʱ
+	private final ChannelConfig config;
+
+	private volatile ReadListener listener = null;
+
+	//chunksδȡֽ
+	private int buffered = 0;
+
+	//Ѿյһݿ
+	private boolean eof = false;
+
+	//ϣʣ屻
+	private boolean discarded = false;
+
+	//֮ǰر
+	private boolean aborted = false;
+
+	//isReadyfalseΪtrueһݿ鵽ʱصReadListener
+	private boolean readPending = false;
+
+	//ǷѾصonAllDataReadonError
+	private boolean listenerFinished = false;
+
+	/**
+	 * @param executor ִReadListenerص̳߳
+	 * @param config ӵͨãΪnullʱͣȡ
+	 */
+	public DefaultServletInputStream(Executor executor, ChannelConfig config) {
+		this.executor = executor;
+		this.config = config;
+	}
+
+	/**
+	 * ãһݿ飬ݿɱͷ
+	 * @param chunk ݿ
+	 */
+	public void offer(ByteBuf chunk) {
+
+		boolean notify;
+
+		synchronized(this) {
+			if(eof || discarded || aborted || !chunk.isReadable()) {
+				chunk.release();
+				return;
+			}
+
+			chunks.addLast(chunk);
+			buffered += chunk.readableBytes();
+
+			if(config != null && buffered >= HIGH_WATER_MARK)
+				config.setAutoRead(false);
+
+			notify = readPending;
+			readPending = false;
+			notifyAll();
+		}
+
+		if(notify)
+			notifyListener();
+	}
+
+	/**
+	 * ãѾȫյ
+	 */
+	public void finish() {
+
+		boolean notify;
+
+		synchronized(this) {
+			if(eof)
+				return;
+
+			eof = true;
+			notify = readPending;
+			readPending = false;
+			notifyAll();
+		}
+
+		if(notify)
+			notifyListener();
+	}
+
+	/**
+	 * ӦѾͣͷδȡݲ֮󵽴ݣָͨȡԱһ
+	 */
+	public void discard() {
+
+		synchronized(this) {
+			if(discarded)
+				return;
+
+			discarded = true;
+			releaseChunks();
+			notifyAll();
+		}
+
+		if(config != null)
+			config.setAutoRead(true);
+	}
+
+	/**
+	 * ֮ǰرգĶȡ׳IOExceptionReadListenerصonError
+	 */
+	public void abort() {
+
+		final ReadListener listener;
+
+		synchronized(this) {
+			if(eof || discarded || aborted)
+				return;
+
+			aborted = true;
+			releaseChunks();
+			notifyAll();
+
+			listener = this.listener;
+
+			if(listener == null || listenerFinished)
+				return;
+
+			listenerFinished = true;
+		}
+
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onError(new IOException("Connection closed before request body was read"));
+			}
+		});
 	}
-	
+
 	@Override
-	public boolean isFinished() {
-		return true;
+	public synchronized boolean isFinished() {
+		return discarded || (eof && chunks.isEmpty());
 	}
 
+	/**
+	 * @return ȡǷ񲻻falseһݿ鵽ʱصonDataAvailable
+	 */
 	@Override
-	public boolean isReady() {
-		return true;
+	public synchronized boolean isReady() {
+
+		if(!chunks.isEmpty() || eof || discarded || aborted)
+			return true;
+
+		readPending = true;
+		return false;
 	}
 
+	/**
+	 * ReadListenerѾʱ̳߳ػصonDataAvailableݶصonAllDataRead
+	 * @param listener ReadListenerʵ
+	 * @throws IllegalStateException ѾùReadListener
+	 */
 	@Override
-	public void setReadListener(ReadListener listener) {
-		
+	public void setReadListener(final ReadListener listener) {
+
+		if(listener == null)
+			throw new NullPointerException("ReadListener is null");
+
+		synchronized(this) {
+			if(this.listener != null)
+				throw new IllegalStateException("ReadListener has been set");
+
+			this.listener = listener;
+
+			if(chunks.isEmpty() && !eof && !discarded) {
+				readPending = true;
+				return;
+			}
+		}
+
+		notifyListener();
+	}
+
+	/**
+	 * صReadListenerʱصonDataAvailableصһonAllDataRead
+	 */
+	private void notifyListener() {
+
+		final ReadListener listener = this.listener;
+
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if(!isFinished())
+						listener.onDataAvailable();
+
+					//onDataAvailableж
+					if(isFinished() && markListenerFinished())
+						listener.onAllDataRead();
+
+				} catch (IOException | RuntimeException e) {
+					if(markListenerFinished())
+						listener.onError(e);
+				}
+			}
+		});
+	}
+
+	private synchronized boolean markListenerFinished() {
+
+		if(listenerFinished)
+			return false;
+
+		listenerFinished = true;
+		return true;
+	}
+
+	private void dispatch(Runnable task) {
+
+		if(executor == null)
+			task.run();
+		else
+			executor.execute(task);
 	}
 
 	@Override
 	public int read() throws IOException {
-		return is.read();
+
+		synchronized(this) {
+			ByteBuf chunk = awaitChunk();
+
+			if(chunk == null)
+				return -1;
+
+			int b = chunk.readUnsignedByte();
+			consumed(chunk, 1);
+			return b;
+		}
 	}
 
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if(len == 0)
+			return 0;
+
+		synchronized(this) {
+			ByteBuf chunk = awaitChunk();
+
+			if(chunk == null)
+				return -1;
+
+			int n = Math.min(len, chunk.readableBytes());
+			chunk.readBytes(b, off, n);
+			consumed(chunk, n);
+			return n;
+		}
+	}
+
+	@Override
+	public synchronized int available() throws IOException {
+		return buffered;
+	}
+
+	/**
+	 * һݵݿ飬ģʽûʱȴ
+	 * @return ݿ飬Ѿʱnull
+	 * @throws IOException Ѿرջߵȴж
+	 * @throws IllegalStateException ģʽisReadyfalseʱȡ
+	 */
+	private ByteBuf awaitChunk() throws IOException {
+
+		while(chunks.isEmpty()) {
+
+			if(aborted)
+				throw new IOException("Connection closed before request body was read");
+
+			if(eof || discarded)
+				return null;
+
+			if(listener != null)
+				throw new IllegalStateException("Read is not ready");
+
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+		}
+
+		return chunks.peekFirst();
+	}
+
+	/**
+	 * ݿжȡnֽڣݿͷţݵLOW_WATER_MARKʱָͨȡ
+	 */
+	private void consumed(ByteBuf chunk, int n) {
+
+		if(!chunk.isReadable())
+			chunks.pollFirst().release();
+
+		int before = buffered;
+		buffered -= n;
+
+		if(config != null && before >= LOW_WATER_MARK && buffered < LOW_WATER_MARK)
+			config.setAutoRead(true);
+	}
+
+	private void releaseChunks() {
+
+		ByteBuf chunk;
+
+		while((chunk = chunks.pollFirst()) != null)
+			chunk.release();
+
+		buffered = 0;
+	}
 }
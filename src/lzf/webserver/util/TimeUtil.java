@@ -2,7 +2,15 @@ package lzf.webserver.util;
 
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
 import java.util.Date;
+import java.util.Locale;
 
 /**
 * @author ӷ
@@ -14,6 +22,19 @@ public final class TimeUtil {
 
 	private static final SimpleDateFormat LOG_TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
 	
+	//HTTPӦͷʹõRFC 1123ڸʽSun, 06 Nov 1994 08:49:37 GMT
+	private static final DateTimeFormatter HTTP_DATE_FORMAT = DateTimeFormatter
+			.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+	
+	//RFC 850ʽSunday, 06-Nov-94 08:49:37 GMTǰȥ(λ޷һУ)
+	private static final DateTimeFormatter RFC_850_FORMAT = new DateTimeFormatterBuilder().appendPattern("dd-MMM-")
+			.appendValueReduced(ChronoField.YEAR, 2, 2, 1970).appendPattern(" HH:mm:ss 'GMT'")
+			.toFormatter(Locale.US).withZone(ZoneOffset.UTC);
+	
+	//ANSI Casctime()ʽSun Nov  6 08:49:37 1994
+	private static final DateTimeFormatter ASCTIME_FORMAT = DateTimeFormatter
+			.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.US).withZone(ZoneOffset.UTC);
+	
 	public static Timestamp getTimestamp() {
 		Date date = new Date();       
 		Timestamp dateStamp = new Timestamp(date.getTime());
@@ -25,6 +46,49 @@ public final class TimeUtil {
 		return LOG_TIME_FORMAT.format(date);
 	}
 		
+	/**
+	 * ʱʽΪHTTPڣ̰߳ȫ
+	 * @param millis ʱ()
+	 * @return RFC 1123ʽַ
+	 */
+	public static String formatHttpDate(long millis) {
+		return HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(millis));
+	}
+	
+	/**
+	 * HTTPͷӦͷеڣ֧RFC 1123RFC 850asctimeʽ
+	 * @param value ַ
+	 * @return ʱ()޷ʱ-1
+	 */
+	public static long parseHttpDate(String value) {
+		
+		if(value == null)
+			return -1;
+		
+		value = value.trim();
+		
+		try {
+			return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			//Ծɵڸʽ
+		}
+		
+		try {
+			return ZonedDateTime.parse(value.substring(value.indexOf(',') + 1).trim(), RFC_850_FORMAT)
+					.toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			//asctimeʽ
+		}
+		
+		try {
+			return ZonedDateTime.parse(value, ASCTIME_FORMAT).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			//޷
+		}
+		
+		return -1;
+	}
+		
 	private TimeUtil() {
 	}
 }
@@ -0,0 +1,167 @@
+package lzf.webserver.valves;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201885 10:42:19
+* @Description ־ʹõĶߵ߻λ
+* ÿλһظʹõֽ飬߳ͨCASռòλд־¼д̰߳˳
+* λжϸòλǷдɶ̲Ҫ
+*/
+final class AccessLogRing {
+
+	//λֽĳʼС
+	private static final int INIT_SLOT_SIZE = 256;
+
+	private final Slot[] slots;
+
+	//ÿλţposʱд룬pos + 1ʱɶ
+	private final AtomicLongArray sequences;
+
+	private final int mask;
+
+	//һԱռõλ
+	private final AtomicLong tail = new AtomicLong(0);
+
+	//һҪ߶λãд̷߳
+	private long head = 0;
+
+	/**
+	 * @param capacity λᱻϵΪ2
+	 */
+	AccessLogRing(int capacity) {
+
+		int size = 1;
+		while(size < capacity)
+			size <<= 1;
+
+		this.slots = new Slot[size];
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+
+		for(int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * ռһλ
+	 * @return ռõλãʱ-1
+	 */
+	long tryClaim() {
+
+		long pos = tail.get();
+
+		for(;;) {
+			long diff = sequences.get((int) (pos & mask)) - pos;
+
+			if(diff == 0) {
+				if(tail.compareAndSet(pos, pos + 1))
+					return pos;
+			} else if(diff < 0) {
+				return -1;
+			}
+
+			pos = tail.get();
+		}
+	}
+
+	/**
+	 * @param pos tryClaimصλ
+	 * @return λöӦĲλ
+	 */
+	Slot slot(long pos) {
+		return slots[(int) (pos & mask)];
+	}
+
+	/**
+	 * дɵĲλд̲߳ܶ
+	 * ʹvolatileд֮ȡд̵߳ĵȴ־ʱд̵߳ļ齻
+	 * @param pos tryClaimصλ
+	 */
+	void publish(long pos) {
+		sequences.set((int) (pos & mask), pos + 1);
+	}
+
+	/**
+	 * ȡһԶĲλд̵߳
+	 * @return λûпɶļ¼ʱnull
+	 */
+	Slot peek() {
+
+		int index = (int) (head & mask);
+
+		if(sequences.get(index) != head + 1)
+			return null;
+
+		return slots[index];
+	}
+
+	/**
+	 * ͷpeekصĲλʹԱٴռ
+	 * ʹvolatileд֮ȴеʱ
+	 */
+	void release() {
+		sequences.set((int) (head & mask), head + slots.length);
+		head++;
+	}
+
+	/**
+	 * λеһλ
+	 */
+	static final class Slot {
+
+		//־¼UTF-8ֽ
+		byte[] data = new byte[INIT_SLOT_SIZE];
+
+		//Чֽڳ
+		int length = 0;
+
+		/**
+		 * ַUTF-8дòλĩβӻзλʱ
+		 * @param cs ʽõ־¼
+		 */
+		void encode(CharSequence cs) {
+
+			int len = cs.length();
+
+			if(data.length < len * 3 + 1)
+				data = new byte[len * 3 + 1];
+
+			byte[] buf = data;
+			int n = 0;
+
+			for(int i = 0; i < len; i++) {
+
+				char c = cs.charAt(i);
+
+				if(c < 0x80) {
+					buf[n++] = (byte) c;
+
+				} else if(c < 0x800) {
+					buf[n++] = (byte) (0xC0 | (c >> 6));
+					buf[n++] = (byte) (0x80 | (c & 0x3F));
+
+				} else if(Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(cs.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, cs.charAt(++i));
+					buf[n++] = (byte) (0xF0 | (cp >> 18));
+					buf[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+					buf[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+					buf[n++] = (byte) (0x80 | (cp & 0x3F));
+
+				} else {
+					buf[n++] = (byte) (0xE0 | (c >> 12));
+					buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+					buf[n++] = (byte) (0x80 | (c & 0x3F));
+				}
+			}
+
+			buf[n++] = '\n';
+			length = n;
+		}
+	}
+}
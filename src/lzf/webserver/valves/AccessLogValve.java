@@ -0,0 +1,1088 @@
+package lzf.webserver.valves;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import lzf.webserver.connector.Request;
+import lzf.webserver.connector.Response;
+import lzf.webserver.core.ApplicationAsyncContext;
+import lzf.webserver.core.ValveBase;
+import lzf.webserver.log.AccessLog;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.startup.ServerConstant;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201885 11:05:37
+* @Description ־ţӵEngineHostĹܵ
+* ߳̽־¼ʽ߳˽еĻУٷλɵд߳дļ
+* ֧commoncombinedjsonԤʽԼԶʽ־ļ԰ںʹС
+*/
+public class AccessLogValve extends ValveBase implements AccessLog {
+
+	private static final StringManager sm = StringManager.getManager(AccessLogValve.class);
+
+	private static final Log log = LogFactory.getLog(AccessLogValve.class);
+
+	public static final String COMMON_PATTERN = "%h %l %u %t \"%r\" %s %b";
+
+	public static final String COMBINED_PATTERN = COMMON_PATTERN + " \"%{Referer}i\" \"%{User-Agent}i\"";
+
+	public static final String JSON_PATTERN = "{\"time\":%t,\"remoteAddr\":%a,\"method\":%m,\"uri\":%U,\"query\":%q,"
+			+ "\"protocol\":%H,\"status\":%s,\"bytes\":%b,\"elapsedMillis\":%D,\"referer\":%{Referer}i,"
+			+ "\"userAgent\":%{User-Agent}i}";
+
+	//ʱ־¼
+	public static final String POLICY_DROP = "drop";
+
+	//ʱ̵߳ȴд߳
+	public static final String POLICY_BLOCK = "block";
+
+	//д̵߳д¼
+	private static final int BATCH_SIZE = 1024;
+
+	//дʧܺ´־ļĳʼȴʱȴʱ()
+	private static final long MIN_RETRY_DELAY = 1000;
+
+	private static final long MAX_RETRY_DELAY = 60 * 1000;
+
+	//߳˽еĸʽóȺֹ𳬳¼ռڴ
+	private static final int MAX_RETAINED_BUFFER = 4096;
+
+	private static final ThreadLocal<StringBuilder> formatBuffer = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	//־ļĿ¼
+	private String directory = ServerConstant.getConstant().getLog().getPath();
+
+	//־ļǰ׺
+	private String prefix = "access_log";
+
+	//־ļ׺
+	private String suffix = ".log";
+
+	//־ʽ
+	private String pattern = "common";
+
+	//Ƿڹ־ļ
+	private boolean rotatable = true;
+
+	//־ļеڸʽ
+	private String fileDateFormat = "yyyy-MM-dd";
+
+	//־ļֽһļСڵ0ʾ
+	private long maxFileSize = 64 * 1024 * 1024;
+
+	//λλ
+	private int bufferSize = 8192;
+
+	//ʱĴ
+	private String fullPolicy = POLICY_DROP;
+
+	//block߳ȴĺü¼Сڵ0ʱȴ
+	private long maxBlockTime = 1000;
+
+	//patternõ־Ԫ
+	private volatile Element[] elements;
+
+	private AccessLogRing ring;
+
+	//־¼
+	private final LongAdder dropped = new LongAdder();
+
+	private volatile boolean running = false;
+
+	//д߳ǷѾ˳˳̲߳ٵȴвλ
+	private volatile boolean writerDead = false;
+
+	private volatile Thread writerThread;
+
+	//д߳ûм¼дѾߣ̷߳¼Ҫ
+	private volatile boolean writerWaiting = false;
+
+	//blockڵȴвλ̣߳д߳ÿȡһ¼
+	private final Queue<Thread> blockedProducers = new ConcurrentLinkedQueue<>();
+
+	public AccessLogValve() {
+		super();
+	}
+
+	@Override
+	public void invoke(Request request, Response response) throws IOException, ServletException {
+
+		final long start = System.nanoTime();
+
+		getNext().invoke(request, response);
+
+		//첽ڽ֮ŻύӦʱټ¼־עʱ첽Ѿ¼
+		ApplicationAsyncContext asyncContext = request.getApplicationAsyncContext();
+
+		if(asyncContext != null && asyncContext.addCompletionTask(() -> log(request, response, System.nanoTime() - start)))
+			return;
+
+		log(request, response, System.nanoTime() - start);
+	}
+
+	/**
+	 * ¼һηʣ޷ȡʱ
+	 */
+	@Override
+	public void log(ServletRequest request, ServletResponse response) {
+		log((HttpServletRequest) request, (HttpServletResponse) response, -1);
+	}
+
+	/**
+	 * ʽύһ־¼
+	 * @param request 
+	 * @param response Ӧ
+	 * @param elapsedNanos ʱ()δ֪ʱΪ-1
+	 */
+	public void log(HttpServletRequest request, HttpServletResponse response, long elapsedNanos) {
+
+		if(!running)
+			return;
+
+		StringBuilder sb = formatBuffer.get();
+		sb.setLength(0);
+
+		for(Element e : elements)
+			e.append(sb, request, response, elapsedNanos);
+
+		long pos = claim();
+
+		if(pos >= 0) {
+			ring.slot(pos).encode(sb);
+			ring.publish(pos);
+
+			if(writerWaiting)
+				LockSupport.unpark(writerThread);
+		}
+
+		if(sb.capacity() > MAX_RETAINED_BUFFER)
+			formatBuffer.remove();
+	}
+
+	/**
+	 * ջʱĲռһλblockȴmaxBlockTime룬д߳Ѿ˳ʱȴ
+	 * ȴڼߣд߳ȡ¼
+	 * @return ռõλã¼ʱ-1
+	 */
+	private long claim() {
+
+		long pos = ring.tryClaim();
+
+		if(pos >= 0)
+			return pos;
+
+		if(POLICY_BLOCK.equals(fullPolicy) && maxBlockTime > 0) {
+
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockTime);
+			Thread current = Thread.currentThread();
+
+			//ȵǼԣд߳ڵǼ֮ͷŵĲλһܱ߻ỽѸ߳
+			blockedProducers.add(current);
+
+			try {
+				for(;;) {
+					pos = ring.tryClaim();
+
+					if(pos >= 0)
+						return pos;
+
+					long remaining = deadline - System.nanoTime();
+
+					if(!running || writerDead || remaining <= 0)
+						break;
+
+					LockSupport.parkNanos(this, remaining);
+				}
+			} finally {
+				blockedProducers.remove(current);
+			}
+		}
+
+		dropped.increment();
+		return -1;
+	}
+
+	@Override
+	protected void initInternal() throws Exception {
+		elements = parsePattern(pattern);
+	}
+
+	@Override
+	protected void startInternal() throws Exception {
+
+		ring = new AccessLogRing(bufferSize);
+
+		LogWriterProcesser processer = new LogWriterProcesser();
+		processer.open();
+
+		writerDead = false;
+		running = true;
+
+		writerThread = new Thread(processer, "AccessLogWriter[" + getContainerName() + "]");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	@Override
+	protected void stopInternal() throws Exception {
+
+		running = false;
+
+		if(writerThread != null) {
+			LockSupport.unpark(writerThread);
+			writerThread.join(5000);
+			writerThread = null;
+		}
+
+		long count = dropped.sum();
+		if(count > 0)
+			log.warn(sm.getString("AccessLogValve.stop.w0", getContainerName(), count));
+	}
+
+	private String getContainerName() {
+		return container == null ? "" : container.getName();
+	}
+
+	/**
+	 * @return ʱ־¼
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
+	public String getSuffix() {
+		return suffix;
+	}
+
+	public void setSuffix(String suffix) {
+		this.suffix = suffix;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @param pattern ־ʽΪcommoncombinedjson%ԪɵԶʽ
+	 */
+	public void setPattern(String pattern) {
+		this.pattern = pattern;
+
+		if(elements != null)
+			elements = parsePattern(pattern);
+	}
+
+	public boolean isRotatable() {
+		return rotatable;
+	}
+
+	public void setRotatable(boolean rotatable) {
+		this.rotatable = rotatable;
+	}
+
+	public String getFileDateFormat() {
+		return fileDateFormat;
+	}
+
+	public void setFileDateFormat(String fileDateFormat) {
+		this.fileDateFormat = fileDateFormat;
+	}
+
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public String getFullPolicy() {
+		return fullPolicy;
+	}
+
+	public long getMaxBlockTime() {
+		return maxBlockTime;
+	}
+
+	/**
+	 * @param maxBlockTime block߳ȴĺСڵ0ʱȴ
+	 */
+	public void setMaxBlockTime(long maxBlockTime) {
+		this.maxBlockTime = maxBlockTime;
+	}
+
+	/**
+	 * @param fullPolicy ʱĴԣdropblock
+	 */
+	public void setFullPolicy(String fullPolicy) {
+		this.fullPolicy = fullPolicy.toLowerCase();
+	}
+
+	/**
+	 * ־ʽ
+	 * @param pattern ־ʽԤʽ
+	 * @return ־Ԫ
+	 */
+	static Element[] parsePattern(String pattern) {
+
+		boolean json = false;
+
+		if(pattern.equalsIgnoreCase("common")) {
+			pattern = COMMON_PATTERN;
+		} else if(pattern.equalsIgnoreCase("combined")) {
+			pattern = COMBINED_PATTERN;
+		} else if(pattern.equalsIgnoreCase("json")) {
+			pattern = JSON_PATTERN;
+			json = true;
+		}
+
+		List<Element> list = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+
+		for(int i = 0; i < pattern.length(); i++) {
+
+			char c = pattern.charAt(i);
+
+			if(c != '%' || i + 1 == pattern.length()) {
+				literal.append(c);
+				continue;
+			}
+
+			char next = pattern.charAt(++i);
+			String param = null;
+
+			//%{xxx}iʽԪ
+			if(next == '{') {
+				int end = pattern.indexOf('}', i);
+				if(end == -1 || end + 1 == pattern.length()) {
+					literal.append('%').append(pattern, i, pattern.length());
+					break;
+				}
+				param = pattern.substring(i + 1, end);
+				i = end + 1;
+				next = pattern.charAt(i);
+			}
+
+			Element e = createElement(next, param, json);
+
+			if(e == null) {
+				literal.append(next == '%' ? "%" : "%" + next);
+				continue;
+			}
+
+			if(literal.length() > 0) {
+				list.add(new LiteralElement(literal.toString()));
+				literal.setLength(0);
+			}
+
+			list.add(e);
+		}
+
+		if(literal.length() > 0)
+			list.add(new LiteralElement(literal.toString()));
+
+		return list.toArray(new Element[list.size()]);
+	}
+
+	private static Element createElement(char type, String param, boolean json) {
+
+		switch(type) {
+		case 'a':
+		case 'h':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getRemoteAddr();
+				}
+			};
+		case 'l':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return null;
+				}
+			};
+		case 'u':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getRemoteUser();
+				}
+			};
+		case 'm':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getMethod();
+				}
+			};
+		case 'U':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getRequestURI();
+				}
+			};
+		case 'q':
+			return new QueryElement(json);
+		case 'H':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getProtocol();
+				}
+			};
+		case 'v':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getServerName();
+				}
+			};
+		case 'I':
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return Thread.currentThread().getName();
+				}
+			};
+		case 'r':
+			return new RequestLineElement(json);
+		case 't':
+			return new TimeElement(json);
+		case 's':
+			return new StatusElement();
+		case 'b':
+			return new BytesElement(json);
+		case 'D':
+			return new ElapsedElement(false);
+		case 'T':
+			return new ElapsedElement(true);
+		case 'i':
+			if(param == null)
+				return null;
+			final String requestHeader = param;
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return req.getHeader(requestHeader);
+				}
+			};
+		case 'o':
+			if(param == null)
+				return null;
+			final String responseHeader = param;
+			return new StringElement(json) {
+				String value(HttpServletRequest req, HttpServletResponse resp) {
+					return resp.getHeader(responseHeader);
+				}
+			};
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * ־ԪأĳһϢ׷ӵʽ
+	 */
+	interface Element {
+
+		void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos);
+	}
+
+	/**
+	 * ̶ı
+	 */
+	private static final class LiteralElement implements Element {
+
+		private final String text;
+
+		LiteralElement(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+			sb.append(text);
+		}
+	}
+
+	/**
+	 * ַ͵ԪأֵΪnullʱ"-"jsonʽŲתַnull
+	 */
+	private static abstract class StringElement implements Element {
+
+		private final boolean json;
+
+		StringElement(boolean json) {
+			this.json = json;
+		}
+
+		abstract String value(HttpServletRequest req, HttpServletResponse resp);
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+			appendString(sb, value(req, resp), json);
+		}
+	}
+
+	static void appendString(StringBuilder sb, String value, boolean json) {
+
+		if(value == null) {
+			sb.append(json ? "null" : "-");
+			return;
+		}
+
+		if(!json) {
+			sb.append(value);
+			return;
+		}
+
+		sb.append('"');
+		appendEscaped(sb, value);
+		sb.append('"');
+	}
+
+	/**
+	 * JSONַת
+	 */
+	static void appendEscaped(StringBuilder sb, CharSequence value) {
+
+		for(int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			switch(c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					sb.append("\\u00");
+					sb.append(Character.forDigit(c >> 4, 16));
+					sb.append(Character.forDigit(c & 0xF, 16));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * ѯַͨʽ´'?'
+	 */
+	private static final class QueryElement implements Element {
+
+		private final boolean json;
+
+		QueryElement(boolean json) {
+			this.json = json;
+		}
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+
+			String query = req.getQueryString();
+
+			if(json) {
+				appendString(sb, query, true);
+			} else if(query != null) {
+				sb.append('?').append(query);
+			}
+		}
+	}
+
+	/**
+	 * УGET /index.html?a=1 HTTP/1.1
+	 */
+	private static final class RequestLineElement implements Element {
+
+		private final boolean json;
+
+		RequestLineElement(boolean json) {
+			this.json = json;
+		}
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+
+			if(json)
+				sb.append('"');
+
+			sb.append(req.getMethod()).append(' ');
+
+			if(json)
+				appendEscaped(sb, req.getRequestURI());
+			else
+				sb.append(req.getRequestURI());
+
+			String query = req.getQueryString();
+			if(query != null) {
+				sb.append('?');
+				if(json)
+					appendEscaped(sb, query);
+				else
+					sb.append(query);
+			}
+
+			sb.append(' ').append(req.getProtocol());
+
+			if(json)
+				sb.append('"');
+		}
+	}
+
+	/**
+	 * ʱ䣬ʽΪdd/MMM/yyyy:HH:mm:ss Zͬһڵøʽ
+	 */
+	private static final class TimeElement implements Element {
+
+		private static final SimpleDateFormat format = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+
+		private static volatile CachedTime cache = new CachedTime(0, "");
+
+		private final boolean json;
+
+		TimeElement(boolean json) {
+			this.json = json;
+		}
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+
+			long second = System.currentTimeMillis() / 1000;
+			CachedTime time = cache;
+
+			if(time.second != second) {
+				synchronized(format) {
+					time = new CachedTime(second, format.format(new Date(second * 1000)));
+				}
+				cache = time;
+			}
+
+			sb.append(json ? '"' : '[').append(time.text).append(json ? '"' : ']');
+		}
+
+		private static final class CachedTime {
+
+			final long second;
+
+			final String text;
+
+			CachedTime(long second, String text) {
+				this.second = second;
+				this.text = text;
+			}
+		}
+	}
+
+	/**
+	 * Ӧ״̬
+	 */
+	private static final class StatusElement implements Element {
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+			sb.append(resp.getStatus());
+		}
+	}
+
+	/**
+	 * ӦֽȡContent-LengthӦͷ
+	 */
+	private static final class BytesElement implements Element {
+
+		private final boolean json;
+
+		BytesElement(boolean json) {
+			this.json = json;
+		}
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+
+			String length = resp.getHeader("Content-Length");
+
+			if(length == null || length.equals("0"))
+				sb.append(json ? "0" : "-");
+			else
+				sb.append(length);
+		}
+	}
+
+	/**
+	 * ʱ䣬%DΪ룬%TΪ(λС)
+	 */
+	private static final class ElapsedElement implements Element {
+
+		private final boolean seconds;
+
+		ElapsedElement(boolean seconds) {
+			this.seconds = seconds;
+		}
+
+		@Override
+		public void append(StringBuilder sb, HttpServletRequest req, HttpServletResponse resp, long elapsedNanos) {
+
+			if(elapsedNanos < 0) {
+				sb.append(-1);
+				return;
+			}
+
+			long millis = elapsedNanos / 1000000;
+
+			if(!seconds) {
+				sb.append(millis);
+				return;
+			}
+
+			long fraction = millis % 1000;
+			sb.append(millis / 1000).append('.');
+
+			if(fraction < 100)
+				sb.append('0');
+			if(fraction < 10)
+				sb.append('0');
+
+			sb.append(fraction);
+		}
+	}
+
+	/**
+	 * ־д̣߳ӻλ־¼дļͬʱ־ļĹ
+	 * дʧʱеļ¼ر־ļȴһʱ´򿪣ڼȡ¼붪
+	 * ûм¼ʱߣ̷ֱ߳µļ¼ߵ´־ļʱ
+	 */
+	private final class LogWriterProcesser implements Runnable {
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+		private FileChannel channel;
+
+		//ǰ־ļдֽ
+		private long written = 0;
+
+		//ǰ־ļе
+		private String currentDate = null;
+
+		//ǰµļţСʱ
+		private int index = 0;
+
+		//´μǷҪʱ
+		private long nextRotateCheck = 0;
+
+		private SimpleDateFormat dateFormat;
+
+		//bufferδдļļ¼дʧʱ붪
+		private int pending = 0;
+
+		//־ļرպ´γ´򿪵ʱ
+		private long nextRetry = 0;
+
+		//´дʧܺȴĺдɹ
+		private long retryDelay = MIN_RETRY_DELAY;
+
+		/**
+		 * 򿪵ǰ־ļstartInternalãԱ׶α¶Ŀ¼޷дȴ
+		 */
+		void open() throws IOException {
+
+			dateFormat = new SimpleDateFormat(fileDateFormat);
+			currentDate = rotatable ? dateFormat.format(new Date()) : null;
+			index = 0;
+
+			File dir = new File(directory);
+			if(!dir.exists())
+				dir.mkdirs();
+
+			File file = currentFile(dir);
+
+			//Ѿдļ
+			while(maxFileSize > 0 && file.length() >= maxFileSize) {
+				index++;
+				file = currentFile(dir);
+			}
+
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+			written = channel.size();
+		}
+
+		private File currentFile(File dir) {
+
+			StringBuilder sb = new StringBuilder(prefix);
+
+			if(currentDate != null)
+				sb.append('.').append(currentDate);
+
+			if(index > 0)
+				sb.append('.').append(index);
+
+			sb.append(suffix);
+			return new File(dir, sb.toString());
+		}
+
+		@Override
+		public void run() {
+
+			try {
+				for(;;) {
+
+					boolean stopping = !running;
+
+					if(channel == null && System.currentTimeMillis() >= nextRetry)
+						reopen();
+
+					int count = channel != null ? writeBatch() : discardBatch();
+
+					if(count > 0) {
+						wakeBlockedProducers();
+					} else {
+						if(stopping)
+							break;
+						idle();
+					}
+				}
+			} catch (Throwable e) {
+				log.error(sm.getString("AccessLogValve.LogWriterProcesser.e1", getContainerName()), e);
+			} finally {
+				writerDead = true;
+				wakeBlockedProducers();
+				close();
+			}
+		}
+
+		/**
+		 * õȴ־ٴμ黺Ȼûм¼ʱ
+		 * ־ļرڼߵ´´򿪵ʱ
+		 */
+		private void idle() {
+
+			writerWaiting = true;
+
+			if(running && ring.peek() == null) {
+				if(channel != null)
+					LockSupport.park(this);
+				else
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(
+							Math.max(1, nextRetry - System.currentTimeMillis())));
+			}
+
+			writerWaiting = false;
+		}
+
+		private void wakeBlockedProducers() {
+
+			for(Thread thread : blockedProducers)
+				LockSupport.unpark(thread);
+		}
+
+		/**
+		 * ӻλȡһ¼д־ļдʧʱر־ļ
+		 * @return ȡļ¼
+		 */
+		private int writeBatch() {
+
+			int count = 0;
+
+			try {
+				//ȼ֮ĵһ¼дµ־ļ
+				rotateIfNecessary();
+
+				AccessLogRing.Slot slot;
+				while(count < BATCH_SIZE && (slot = ring.peek()) != null) {
+					put(slot.data, slot.length);
+					ring.release();
+					count++;
+				}
+
+				if(buffer.position() > 0)
+					flushBuffer();
+
+				if(count > 0)
+					retryDelay = MIN_RETRY_DELAY;
+
+			} catch (IOException e) {
+				writeFailed(e);
+			}
+
+			return count;
+		}
+
+		/**
+		 * ־ļرڼȡһ¼߳򻺳ȴ
+		 * @return ȡļ¼
+		 */
+		private int discardBatch() {
+
+			int count = 0;
+
+			while(count < BATCH_SIZE && ring.peek() != null) {
+				ring.release();
+				count++;
+			}
+
+			dropped.add(count);
+			return count;
+		}
+
+		/**
+		 * δдļ¼ر־ļretryDelay´򿪣ÿʧܺȴʱӱ
+		 */
+		private void writeFailed(IOException e) {
+
+			log.error(sm.getString("AccessLogValve.LogWriterProcesser.e0", getContainerName(), retryDelay), e);
+
+			dropped.add(pending);
+			pending = 0;
+			buffer.clear();
+
+			close();
+			channel = null;
+
+			nextRetry = System.currentTimeMillis() + retryDelay;
+			retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+		}
+
+		private void reopen() {
+
+			try {
+				open();
+				log.info(sm.getString("AccessLogValve.LogWriterProcesser.i0", getContainerName()));
+			} catch (IOException e) {
+				writeFailed(e);
+			}
+		}
+
+		private void put(byte[] data, int length) throws IOException {
+
+			if(buffer.remaining() < length)
+				flushBuffer();
+
+			if(length > buffer.capacity()) {
+				ByteBuffer wrap = ByteBuffer.wrap(data, 0, length);
+				while(wrap.hasRemaining())
+					written += channel.write(wrap);
+				return;
+			}
+
+			buffer.put(data, 0, length);
+			pending++;
+		}
+
+		private void flushBuffer() throws IOException {
+
+			buffer.flip();
+
+			while(buffer.hasRemaining())
+				written += channel.write(buffer);
+
+			buffer.clear();
+			pending = 0;
+		}
+
+		/**
+		 * ڱ仯ļСʱлµ־ļÿһ
+		 */
+		private void rotateIfNecessary() throws IOException {
+
+			long now = System.currentTimeMillis();
+
+			if(now < nextRotateCheck)
+				return;
+
+			nextRotateCheck = now + 1000;
+
+			boolean rotate = false;
+
+			if(rotatable) {
+				String date = dateFormat.format(new Date(now));
+				if(!date.equals(currentDate)) {
+					currentDate = date;
+					index = 0;
+					rotate = true;
+				}
+			}
+
+			if(!rotate && maxFileSize > 0 && written >= maxFileSize) {
+				index++;
+				rotate = true;
+			}
+
+			if(!rotate)
+				return;
+
+			channel.close();
+
+			File file = currentFile(new File(directory));
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+			written = channel.size();
+		}
+
+		private void close() {
+			try {
+				if(channel != null)
+					channel.close();
+			} catch (IOException e) {
+				log.error("", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package lzf.webserver.valves;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201886 2:31:50
+* @Description ӳֱͼ΢Ϊλ¼
+* HdrHistogramƣÿ2پΪ8䣬12.5%
+* ÿʹһLongAdder̼߳¼ͬһʱụྺȡʱ
+* ļڵһμ¼ʱ֮¼ʱκʱ
+*/
+final class LatencyHistogram {
+
+	//ÿ2仮ֵΪ2^SUB_BUCKET_BITS
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	//Լ¼ֵ(΢)Լ19Сʱֵֵ¼
+	private static final long MAX_VALUE = (1L << 36) - 1;
+
+	static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+	//ļûм¼Ϊnull
+	private final AtomicReferenceArray<LongAdder> counts = new AtomicReferenceArray<>(BUCKET_COUNT);
+
+	private final LongAdder totalCount = new LongAdder();
+
+	private final LongAdder totalMicros = new LongAdder();
+
+	/**
+	 * ¼һӳ
+	 * @param micros ӳ(΢)
+	 */
+	void record(long micros) {
+
+		if(micros < 0)
+			micros = 0;
+		else if(micros > MAX_VALUE)
+			micros = MAX_VALUE;
+
+		counter(index(micros)).increment();
+		totalCount.increment();
+		totalMicros.add(micros);
+	}
+
+	private LongAdder counter(int index) {
+
+		LongAdder counter = counts.get(index);
+
+		if(counter == null) {
+			counter = new LongAdder();
+			if(!counts.compareAndSet(index, null, counter))
+				counter = counts.get(index);
+		}
+
+		return counter;
+	}
+
+	/**
+	 * @param value ¼ֵ
+	 * @return ֵڵ±
+	 */
+	static int index(long value) {
+
+		if(value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+		return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+	}
+
+	/**
+	 * @param index ±
+	 * @return Ͻ()
+	 */
+	static long upperBound(int index) {
+
+		if(index < SUB_BUCKET_COUNT)
+			return index + 1;
+
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		int sub = index % SUB_BUCKET_COUNT;
+
+		return (long) (SUB_BUCKET_COUNT + sub + 1) << shift;
+	}
+
+	/**
+	 * @return Ŀ
+	 */
+	long[] snapshot() {
+
+		long[] result = new long[BUCKET_COUNT];
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			LongAdder counter = counts.get(i);
+			if(counter != null)
+				result[i] = counter.sum();
+		}
+
+		return result;
+	}
+
+	long getTotalCount() {
+		return totalCount.sum();
+	}
+
+	long getTotalMicros() {
+		return totalMicros.sum();
+	}
+
+	/**
+	 * ӿͳƲֵָļ¼
+	 * @param snapshot snapshotصĿ
+	 * @param micros Ͻ(΢)
+	 * @return Ͻ粻ֵļ¼
+	 */
+	static long countAtOrBelow(long[] snapshot, long micros) {
+
+		long count = 0;
+
+		for(int i = 0; i < snapshot.length; i++) {
+			if(upperBound(i) > micros + 1)
+				break;
+			count += snapshot[i];
+		}
+
+		return count;
+	}
+
+	/**
+	 * ӿмλ
+	 * @param snapshot snapshotصĿ
+	 * @param quantile λΧ0~1
+	 * @return λӦϽ(΢)ûм¼ʱ0
+	 */
+	static long quantile(long[] snapshot, double quantile) {
+
+		long total = 0;
+		for(long c : snapshot)
+			total += c;
+
+		if(total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(quantile * total);
+		if(rank < 1)
+			rank = 1;
+
+		long count = 0;
+
+		for(int i = 0; i < snapshot.length; i++) {
+			count += snapshot[i];
+			if(count >= rank)
+				return upperBound(i) - 1;
+		}
+
+		return MAX_VALUE;
+	}
+}
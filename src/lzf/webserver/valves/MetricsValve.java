@@ -0,0 +1,418 @@
+package lzf.webserver.valves;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.ServletException;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import lzf.webserver.Context;
+import lzf.webserver.Host;
+import lzf.webserver.Wrapper;
+import lzf.webserver.connector.Request;
+import lzf.webserver.connector.Response;
+import lzf.webserver.core.ApplicationAsyncContext;
+import lzf.webserver.core.ValveBase;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201886 3:05:12
+* @Description ָ귧ţHost/Context/Wrapperͳӳֱͼ״̬롢շֽڴ
+* ָPrometheusıʽͨĶ˿ں·¶¼̲Ҳʱ
+*/
+public class MetricsValve extends ValveBase {
+
+	private static final StringManager sm = StringManager.getManager(MetricsValve.class);
+
+	private static final Log log = LogFactory.getLog(MetricsValve.class);
+
+	//PrometheusֱͼϽ()
+	private static final double[] BUCKETS_SECONDS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5,
+			1, 2.5, 5, 10, 30, 60 };
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+	private static final String[] STATUS_CLASSES = { "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+	//ÿWrapperӦָ꣬Wrapperڼ䲻䣬ֱΪƴַ
+	private final Map<Wrapper, RequestMetrics> metricsMap = new ConcurrentHashMap<>();
+
+	//¶ָĶ˿ڣСڵ0ʾ
+	private int port = 9091;
+
+	//¶ָĵַ
+	private String address = "0.0.0.0";
+
+	//¶ָ·
+	private String path = "/metrics";
+
+	private EventLoopGroup group;
+
+	private Channel serverChannel;
+
+	public MetricsValve() {
+		super();
+	}
+
+	@Override
+	public void invoke(Request request, Response response) throws IOException, ServletException {
+
+		Wrapper wrapper = request.getWrapper();
+
+		if(wrapper == null) {
+			getNext().invoke(request, response);
+			return;
+		}
+
+		RequestMetrics found = metricsMap.get(wrapper);
+
+		final RequestMetrics metrics = found != null ? found : metricsMap.computeIfAbsent(wrapper, RequestMetrics::new);
+
+		metrics.inFlight.increment();
+		long start = System.nanoTime();
+
+		boolean async = false;
+
+		try {
+			getNext().invoke(request, response);
+
+			//첽ͳƣעʱ첽Ѿͳ
+			ApplicationAsyncContext asyncContext = request.getApplicationAsyncContext();
+
+			if(asyncContext != null)
+				async = asyncContext.addCompletionTask(() -> metrics.record(request, response, start));
+
+		} finally {
+			if(!async)
+				metrics.record(request, response, start);
+		}
+	}
+
+	@Override
+	protected void startInternal() throws Exception {
+
+		if(port <= 0)
+			return;
+
+		group = new NioEventLoopGroup(1);
+
+		ServerBootstrap boot = new ServerBootstrap();
+		boot.group(group).channel(NioServerSocketChannel.class).childHandler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel ch) throws Exception {
+				ch.pipeline().addLast(new HttpServerCodec());
+				ch.pipeline().addLast(new HttpObjectAggregator(8 * 1024));
+				ch.pipeline().addLast(new MetricsHandler());
+			}
+		});
+
+		try {
+			serverChannel = boot.bind(new InetSocketAddress(address, port)).sync().channel();
+			log.info(sm.getString("MetricsValve.startInternal.i0", address, port, path));
+		} catch (Exception e) {
+			group.shutdownGracefully();
+			group = null;
+			log.error(sm.getString("MetricsValve.startInternal.e0", port), e);
+		}
+	}
+
+	@Override
+	protected void stopInternal() throws Exception {
+
+		if(serverChannel != null) {
+			serverChannel.close().sync();
+			serverChannel = null;
+		}
+
+		if(group != null) {
+			group.shutdownGracefully();
+			group = null;
+		}
+	}
+
+	/**
+	 * Prometheusıʽָ
+	 * @param sb 
+	 */
+	public void writeMetrics(StringBuilder sb) {
+
+		removeStaleMetrics();
+
+		sb.append("# HELP webserver_requests_total Total number of requests by status class.\n");
+		sb.append("# TYPE webserver_requests_total counter\n");
+
+		for(RequestMetrics m : metricsMap.values()) {
+			for(int i = 0; i < STATUS_CLASSES.length; i++) {
+				sb.append("webserver_requests_total{");
+				m.appendLabels(sb);
+				sb.append(",status=\"").append(STATUS_CLASSES[i]).append("\"} ").append(m.status[i].sum()).append('\n');
+			}
+		}
+
+		sb.append("# HELP webserver_requests_in_flight Number of requests currently being processed.\n");
+		sb.append("# TYPE webserver_requests_in_flight gauge\n");
+
+		for(RequestMetrics m : metricsMap.values()) {
+			sb.append("webserver_requests_in_flight{");
+			m.appendLabels(sb);
+			sb.append("} ").append(m.inFlight.sum()).append('\n');
+		}
+
+		sb.append("# HELP webserver_received_bytes_total Request body bytes received.\n");
+		sb.append("# TYPE webserver_received_bytes_total counter\n");
+
+		for(RequestMetrics m : metricsMap.values()) {
+			sb.append("webserver_received_bytes_total{");
+			m.appendLabels(sb);
+			sb.append("} ").append(m.bytesIn.sum()).append('\n');
+		}
+
+		sb.append("# HELP webserver_sent_bytes_total Response body bytes sent.\n");
+		sb.append("# TYPE webserver_sent_bytes_total counter\n");
+
+		for(RequestMetrics m : metricsMap.values()) {
+			sb.append("webserver_sent_bytes_total{");
+			m.appendLabels(sb);
+			sb.append("} ").append(m.bytesOut.sum()).append('\n');
+		}
+
+		sb.append("# HELP webserver_request_duration_seconds Request latency.\n");
+		sb.append("# TYPE webserver_request_duration_seconds histogram\n");
+
+		for(RequestMetrics m : metricsMap.values()) {
+
+			long[] snapshot = m.latency.snapshot();
+			long total = 0;
+			for(long c : snapshot)
+				total += c;
+
+			for(double le : BUCKETS_SECONDS) {
+				sb.append("webserver_request_duration_seconds_bucket{");
+				m.appendLabels(sb);
+				sb.append(",le=\"").append(le).append("\"} ");
+				sb.append(LatencyHistogram.countAtOrBelow(snapshot, (long) (le * 1000000))).append('\n');
+			}
+
+			sb.append("webserver_request_duration_seconds_bucket{");
+			m.appendLabels(sb);
+			sb.append(",le=\"+Inf\"} ").append(total).append('\n');
+
+			sb.append("webserver_request_duration_seconds_sum{");
+			m.appendLabels(sb);
+			sb.append("} ").append(m.latency.getTotalMicros() / 1000000.0).append('\n');
+
+			sb.append("webserver_request_duration_seconds_count{");
+			m.appendLabels(sb);
+			sb.append("} ").append(total).append('\n');
+		}
+
+		sb.append("# HELP webserver_request_duration_quantile_seconds Request latency quantiles since start.\n");
+		sb.append("# TYPE webserver_request_duration_quantile_seconds gauge\n");
+
+		for(RequestMetrics m : metricsMap.values()) {
+
+			long[] snapshot = m.latency.snapshot();
+
+			for(double q : QUANTILES) {
+				sb.append("webserver_request_duration_quantile_seconds{");
+				m.appendLabels(sb);
+				sb.append(",quantile=\"").append(q).append("\"} ");
+				sb.append(LatencyHistogram.quantile(snapshot, q) / 1000000.0).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * ƳѾжصContext(ؼǰľContext)Ӧָ
+	 */
+	private void removeStaleMetrics() {
+
+		Iterator<Map.Entry<Wrapper, RequestMetrics>> it = metricsMap.entrySet().iterator();
+
+		while(it.hasNext()) {
+
+			Wrapper wrapper = it.next().getKey();
+			Context context = wrapper.getParentContainer();
+
+			if(context == null)
+				continue;
+
+			Host host = context.getParentContainer();
+
+			if(host != null && host.getChildContainer(context.getName()) != context)
+				it.remove();
+		}
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @param port ¶ָĶ˿ڣСڵ0ʾ
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public String getAddress() {
+		return address;
+	}
+
+	public void setAddress(String address) {
+		this.address = address;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	/**
+	 * Wrapperָ
+	 */
+	private static final class RequestMetrics {
+
+		final String hostName;
+
+		final String contextName;
+
+		final String wrapperName;
+
+		final LatencyHistogram latency = new LatencyHistogram();
+
+		//1xx~5xx״̬
+		final LongAdder[] status = new LongAdder[STATUS_CLASSES.length];
+
+		final LongAdder bytesIn = new LongAdder();
+
+		final LongAdder bytesOut = new LongAdder();
+
+		final LongAdder inFlight = new LongAdder();
+
+		RequestMetrics(Wrapper wrapper) {
+
+			Context context = wrapper.getParentContainer();
+			Host host = context == null ? null : context.getParentContainer();
+
+			this.wrapperName = wrapper.getName();
+			this.contextName = context == null ? "" : context.getName();
+			this.hostName = host == null ? "" : host.getName();
+
+			for(int i = 0; i < status.length; i++)
+				status[i] = new LongAdder();
+		}
+
+		void record(Request request, Response response, long start) {
+
+			latency.record((System.nanoTime() - start) / 1000);
+			inFlight.decrement();
+
+			int sc = response.getStatus();
+			if(sc == 0)
+				sc = 200;
+
+			int index = sc / 100 - 1;
+			if(index >= 0 && index < status.length)
+				status[index].increment();
+
+			long in = request.getContentLengthLong();
+			if(in > 0)
+				bytesIn.add(in);
+
+			String out = response.getHeader("Content-Length");
+			if(out != null) {
+				try {
+					bytesOut.add(Long.parseLong(out));
+				} catch (NumberFormatException e) {
+					//ԸʽӦͷ
+				}
+			}
+		}
+
+		void appendLabels(StringBuilder sb) {
+			sb.append("host=\"");
+			appendLabelValue(sb, hostName);
+			sb.append("\",context=\"");
+			appendLabelValue(sb, contextName);
+			sb.append("\",wrapper=\"");
+			appendLabelValue(sb, wrapperName);
+			sb.append('"');
+		}
+
+		private static void appendLabelValue(StringBuilder sb, String value) {
+
+			for(int i = 0; i < value.length(); i++) {
+
+				char c = value.charAt(i);
+
+				if(c == '\\' || c == '"')
+					sb.append('\\').append(c);
+				else if(c == '\n')
+					sb.append("\\n");
+				else
+					sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * ָ˿ϵHTTP
+	 */
+	private final class MetricsHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) throws Exception {
+
+			String uri = req.getUri();
+			int query = uri.indexOf('?');
+			if(query != -1)
+				uri = uri.substring(0, query);
+
+			FullHttpResponse resp;
+
+			if(uri.equals(path)) {
+				StringBuilder sb = new StringBuilder(4096);
+				writeMetrics(sb);
+				resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+						Unpooled.copiedBuffer(sb, StandardCharsets.UTF_8));
+				resp.headers().set(HttpHeaders.Names.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8");
+			} else {
+				resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+			}
+
+			resp.headers().set(HttpHeaders.Names.CONTENT_LENGTH, resp.content().readableBytes());
+			ctx.writeAndFlush(resp).addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package lzf.webserver.valves;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletException;
+
+import lzf.webserver.Context;
+import lzf.webserver.connector.Request;
+import lzf.webserver.connector.Response;
+import lzf.webserver.core.ValveBase;
+import lzf.webserver.log.Log;
+import lzf.webserver.log.LogFactory;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201887 9:48:26
+* @Description ţͻIPַָͷÿͻʹͰ
+* ͷֱֻӵĿͻεĴʱʹãҶ(뱾Ĵ)ʼ
+* ӦӵHostܵУڴSessionִй֮ǰֱӷ429״̬Retry-AfterӦͷ
+* Ͱڷֶμ޵LRUУʱеͰᱻ̭αIPʱڴռñֲ
+*/
+public class RateLimitValve extends ValveBase {
+
+	private static final StringManager sm = StringManager.getManager(RateLimitValve.class);
+
+	private static final Log log = LogFactory.getLog(RateLimitValve.class);
+
+	public static final int SC_TOO_MANY_REQUESTS = 429;
+
+	//ֶΪ2
+	private static final int STRIPES = 64;
+
+	//ÿ벹
+	private double rate = 50;
+
+	//Ͱͻ
+	private int burst = 100;
+
+	//Ϊͻ˱ʶͷX-Forwarded-ForΪnullʱʹÿͻIPַ
+	private String keyHeader = null;
+
+	//εĴIPַԶŷָֻЩַʹkeyHeader
+	private String trustedProxies = null;
+
+	//ౣͰĬ͸Contextƽ
+	private int maxEntries = 100000;
+
+	//Ͱгʱ()̭
+	private int idleTimeout = 300;
+
+	//Context򣬸ʽΪ"contextName=rate/burst, ..."
+	private String contextLimits = null;
+
+	//Ĭ
+	private volatile Limiter defaultLimiter;
+
+	//ContextƶӦ
+	private volatile Map<String, Limiter> contextLimiters = new HashMap<>();
+
+	//trustedProxiesõĵַ
+	private volatile Set<String> proxies = Collections.emptySet();
+
+	public RateLimitValve() {
+		super();
+	}
+
+	@Override
+	public void invoke(Request request, Response response) throws IOException, ServletException {
+
+		String key = getClientKey(request);
+
+		if(key == null) {
+			getNext().invoke(request, response);
+			return;
+		}
+
+		Limiter limiter = defaultLimiter;
+		Context context = request.getContext();
+
+		if(context != null) {
+			Limiter l = contextLimiters.get(context.getName());
+			if(l != null)
+				limiter = l;
+		}
+
+		long waitSeconds = limiter.tryAcquire(key, System.nanoTime());
+
+		if(waitSeconds > 0) {
+			response.setHeader("Retry-After", String.valueOf(waitSeconds));
+			response.sendError(SC_TOO_MANY_REQUESTS);
+			return;
+		}
+
+		getNext().invoke(request, response);
+	}
+
+	/**
+	 * ֱӵĿͻ˲εĴʱʹIPַͷҶ˿ʼεĴ
+	 * ȡһεĵַͷֵԱͻα죬ֱʹ
+	 * @return ͻ˱ʶ
+	 */
+	private String getClientKey(Request request) {
+
+		String remoteAddr = request.getRemoteAddr();
+
+		if(keyHeader == null || !proxies.contains(remoteAddr))
+			return remoteAddr;
+
+		String value = request.getHeader(keyHeader);
+
+		if(value == null)
+			return remoteAddr;
+
+		String key = remoteAddr;
+		String[] hops = value.split(",");
+
+		for(int i = hops.length - 1; i >= 0; i--) {
+
+			String hop = hops[i].trim();
+
+			if(hop.isEmpty())
+				continue;
+
+			key = hop;
+
+			if(!proxies.contains(hop))
+				break;
+		}
+
+		return key;
+	}
+
+	@Override
+	protected void initInternal() throws Exception {
+
+		Set<String> proxySet = new HashSet<>();
+
+		if(trustedProxies != null) {
+			for(String proxy : trustedProxies.split(",")) {
+				if(!proxy.trim().isEmpty())
+					proxySet.add(proxy.trim());
+			}
+		}
+
+		if(keyHeader != null && proxySet.isEmpty())
+			log.warn(sm.getString("RateLimitValve.initInternal.w1", keyHeader));
+
+		proxies = proxySet;
+
+		//ContextƶӦrateburst
+		Map<String, double[]> rules = new HashMap<>();
+
+		if(contextLimits != null) {
+
+			for(String rule : contextLimits.split(",")) {
+
+				rule = rule.trim();
+
+				if(rule.isEmpty())
+					continue;
+
+				int eq = rule.indexOf('=');
+				int slash = rule.indexOf('/', eq);
+
+				try {
+					if(eq == -1)
+						throw new NumberFormatException();
+
+					String name = rule.substring(0, eq).trim();
+					double r;
+					int b;
+
+					if(slash == -1) {
+						r = Double.parseDouble(rule.substring(eq + 1).trim());
+						b = (int) Math.max(1, Math.ceil(r));
+					} else {
+						r = Double.parseDouble(rule.substring(eq + 1, slash).trim());
+						b = Integer.parseInt(rule.substring(slash + 1).trim());
+					}
+
+					rules.put(name, new double[] {r, b});
+
+				} catch (NumberFormatException e) {
+					log.warn(sm.getString("RateLimitValve.initInternal.w0", rule));
+				}
+			}
+		}
+
+		//ͰmaxEntries
+		int entries = maxEntries / (rules.size() + 1);
+
+		Map<String, Limiter> limiters = new HashMap<>();
+
+		for(Map.Entry<String, double[]> rule : rules.entrySet())
+			limiters.put(rule.getKey(), new Limiter(rule.getValue()[0], (int) rule.getValue()[1], entries, idleTimeout));
+
+		defaultLimiter = new Limiter(rate, burst, entries, idleTimeout);
+		contextLimiters = limiters;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @param rate ÿ벹
+	 */
+	public void setRate(double rate) {
+		this.rate = rate;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * @param burst Ͱ
+	 */
+	public void setBurst(int burst) {
+		this.burst = burst;
+	}
+
+	public String getKeyHeader() {
+		return keyHeader;
+	}
+
+	/**
+	 * @param keyHeader Ϊͻ˱ʶͷֻtrustedProxiesЧ
+	 */
+	public void setKeyHeader(String keyHeader) {
+		this.keyHeader = keyHeader;
+	}
+
+	public String getTrustedProxies() {
+		return trustedProxies;
+	}
+
+	/**
+	 * @param trustedProxies εĴIPַԶŷָgetRemoteAddrصĸʽһ
+	 */
+	public void setTrustedProxies(String trustedProxies) {
+		this.trustedProxies = trustedProxies;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @param maxEntries ౣͰĬ͸Contextƽ
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(int idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public String getContextLimits() {
+		return contextLimits;
+	}
+
+	/**
+	 * @param contextLimits Context"api=10/20, admin=1/5"ʾapiӦÿ10ƣ20
+	 */
+	public void setContextLimits(String contextLimits) {
+		this.contextLimits = contextLimits;
+	}
+
+	/**
+	 * һӦͰͻ˱ʶĹϣֵֶμ
+	 */
+	static final class Limiter {
+
+		private final double tokensPerNano;
+
+		private final int burst;
+
+		private final long idleNanos;
+
+		private final Stripe[] stripes = new Stripe[STRIPES];
+
+		Limiter(double rate, int burst, int maxEntries, int idleTimeout) {
+
+			this.tokensPerNano = rate / 1000000000.0;
+			this.burst = Math.max(1, burst);
+			this.idleNanos = idleTimeout * 1000000000L;
+
+			int perStripe = Math.max(1, maxEntries / STRIPES);
+
+			for(int i = 0; i < STRIPES; i++)
+				stripes[i] = new Stripe(perStripe);
+		}
+
+		/**
+		 * Իȡһ
+		 * @param key ͻ˱ʶ
+		 * @param now ǰʱ()
+		 * @return 0ʾȡɹΪҪȴ
+		 */
+		long tryAcquire(String key, long now) {
+
+			int h = key.hashCode();
+			Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+
+			synchronized(stripe) {
+
+				stripe.expire(now, idleNanos);
+
+				TokenBucket bucket = stripe.get(key);
+
+				if(bucket == null) {
+					bucket = new TokenBucket(burst, now);
+					stripe.put(key, bucket);
+				} else {
+					bucket.refill(now, tokensPerNano, burst);
+				}
+
+				if(bucket.tokens >= 1) {
+					bucket.tokens -= 1;
+					return 0;
+				}
+
+				if(tokensPerNano <= 0)
+					return 1;
+
+				double waitNanos = (1 - bucket.tokens) / tokensPerNano;
+				return Math.max(1, (long) Math.ceil(waitNanos / 1000000000.0));
+			}
+		}
+	}
+
+	/**
+	 * ˳еLRUʱ̭δʵͰ
+	 */
+	private static final class Stripe extends LinkedHashMap<String, TokenBucket> {
+
+		private static final long serialVersionUID = 1L;
+
+		//ÿηĹĿⵥʱ
+		private static final int MAX_EXPIRE_PER_CALL = 4;
+
+		private final int capacity;
+
+		Stripe(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+			return size() > capacity;
+		}
+
+		/**
+		 * δʵһ˿ʼƳгʱͰ
+		 */
+		void expire(long now, long idleNanos) {
+
+			Iterator<TokenBucket> it = values().iterator();
+
+			for(int i = 0; i < MAX_EXPIRE_PER_CALL && it.hasNext(); i++) {
+
+				if(now - it.next().lastRefill < idleNanos)
+					return;
+
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Ͱֶεڷ
+	 */
+	private static final class TokenBucket {
+
+		double tokens;
+
+		long lastRefill;
+
+		TokenBucket(int burst, long now) {
+			this.tokens = burst;
+			this.lastRefill = now;
+		}
+
+		void refill(long now, double tokensPerNano, int burst) {
+
+			long elapsed = now - lastRefill;
+
+			if(elapsed <= 0)
+				return;
+
+			tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+			lastRefill = now;
+		}
+	}
+}
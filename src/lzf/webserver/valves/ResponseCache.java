@@ -0,0 +1,59 @@
+package lzf.webserver.valves;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201888 10:31:05
+* @Description ӦʧЧӿڣResponseCacheValveCACHE_ATTRIBUTEΪʵڸWebӦõServletContext
+* WebӦÿݱʹʧЧ·Contextǰ׺Ӱ챾WebӦõĻ
+* ͳΪ(ͨΪһHost)
+*/
+public interface ResponseCache {
+
+	/**
+	 * ʹָ·ĻʧЧѯַͲͬVaryĻ
+	 * @param path ·/index.jsp
+	 */
+	public void invalidate(String path);
+
+	/**
+	 * ʹָǰ׺ͷ·ĻʧЧ
+	 * @param prefix ·ǰ׺/news/
+	 */
+	public void invalidatePrefix(String prefix);
+
+	/**
+	 * ʹWebӦõлʧЧ
+	 */
+	public void invalidateAll();
+
+	/**
+	 * @return д
+	 */
+	public long getHitCount();
+
+	/**
+	 * @return δд
+	 */
+	public long getMissCount();
+
+	/**
+	 * @return ʣΧ0~1ûʱ0
+	 */
+	public double getHitRatio();
+
+	/**
+	 * @return 㱻̭Ļ
+	 */
+	public long getEvictionCount();
+
+	/**
+	 * @return ռõֽ
+	 */
+	public long getSize();
+
+	/**
+	 * @return Ӧ
+	 */
+	public int getEntryCount();
+}
@@ -0,0 +1,720 @@
+package lzf.webserver.valves;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+
+import lzf.webserver.Context;
+import lzf.webserver.connector.Request;
+import lzf.webserver.connector.Response;
+import lzf.webserver.connector.ResponseCommitListener;
+import lzf.webserver.core.ValveBase;
+import lzf.webserver.util.ByteBufOutputStream;
+import lzf.webserver.util.StringManager;
+import lzf.webserver.util.TimeUtil;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201888 11:05:44
+* @Description Ӧ淧ţӦӵHostܵ
+* GETӦCache-Control(s-maxagemax-age)ExpiresЧڣӦύǰӦͷӦ壬
+* ӦԱֱڴУVaryӦͷгͷͬʱΪͬı
+* лGET/HEADֱɸ÷ŻطӦٴSessionҲִйServlet
+* 水ĹϣֵֶΣÿΪ˳еLRUܴСmaxSizeʱ̭δʵӦ
+*/
+public class ResponseCacheValve extends ValveBase {
+
+	private static final StringManager sm = StringManager.getManager(ResponseCacheValve.class);
+
+	//ResponseCacheServletContextе
+	public static final String CACHE_ATTRIBUTE = "lzf.webserver.valves.ResponseCache";
+
+	//ֶΪ2
+	private static final int STRIPES = 16;
+
+	//ͬһURLౣVary
+	private static final int MAX_VARIANTS = 8;
+
+	//ÿĿӦĹڴռ
+	private static final int ENTRY_OVERHEAD = 256;
+
+	//浽еӦͷطʱ
+	private static final String[] EXCLUDED_HEADERS = { "Date", "Age", "Content-Length", "Set-Cookie",
+			"Connection", "Keep-Alive", "Transfer-Encoding" };
+
+	//ֽ
+	private long maxSize = 64 * 1024 * 1024;
+
+	//ӦֽӦ
+	private int maxEntrySize = 1024 * 1024;
+
+	//ӦǷ񱣴ֱڴ
+	private boolean offHeap = true;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	public ResponseCacheValve() {
+		super();
+
+		for(int i = 0; i < STRIPES; i++)
+			stripes[i] = new Stripe();
+	}
+
+	@Override
+	public void invoke(Request request, Response response) throws IOException, ServletException {
+
+		String method = request.getMethod();
+		boolean head = "HEAD".equals(method);
+		Context context = request.getContext();
+
+		if((!head && !"GET".equals(method)) || context == null) {
+			getNext().invoke(request, response);
+			return;
+		}
+
+		registerContext(context);
+
+		String key = getCacheKey(request);
+		String requestCacheControl = request.getHeader("Cache-Control");
+
+		boolean noStore = hasDirective(requestCacheControl, "no-store");
+		boolean noCache = noStore || hasDirective(requestCacheControl, "no-cache")
+				|| hasDirective(requestCacheControl, "max-age=0")
+				|| hasDirective(request.getHeader("Pragma"), "no-cache");
+
+		long now = System.currentTimeMillis();
+
+		if(!noCache) {
+
+			CacheEntry entry = lookup(key, request, now);
+
+			if(entry != null) {
+				hitCount.increment();
+				replay(entry, head, response, now);
+				return;
+			}
+		}
+
+		missCount.increment();
+
+		//HEADûӦ壬֤ϢӦܱ
+		if(!noStore && !head && request.getHeader("Authorization") == null)
+			response.setCommitListener(new CaptureListener(key, context, request));
+
+		getNext().invoke(request, response);
+	}
+
+	/**
+	 * @return HostƺURL
+	 */
+	private static String getCacheKey(Request request) {
+
+		String query = request.getQueryString();
+		String uri = request.getRequestURI();
+		String host = request.getHost().getName();
+
+		StringBuilder sb = new StringBuilder(host.length() + uri.length() + (query == null ? 0 : query.length() + 1));
+		sb.append(host).append(uri);
+
+		if(query != null)
+			sb.append('?').append(query);
+
+		return sb.toString();
+	}
+
+	/**
+	 * ÷ŵResponseCacheͼ浽WebӦõServletContextУWebӦ¼غ
+	 */
+	private void registerContext(Context context) {
+
+		ServletContext sc = context.getServletContext();
+
+		if(sc != null && sc.getAttribute(CACHE_ATTRIBUTE) == null)
+			sc.setAttribute(CACHE_ATTRIBUTE, new ContextCache(context));
+	}
+
+	private Stripe stripeFor(String key) {
+		int h = key.hashCode();
+		return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * ƥδڵĻ
+	 * @return Ŀûʱnull
+	 */
+	private CacheEntry lookup(String key, Request request, long now) {
+
+		Stripe stripe = stripeFor(key);
+
+		synchronized(stripe) {
+
+			List<CacheEntry> variants = stripe.map.get(key);
+
+			if(variants == null)
+				return null;
+
+			for(int i = 0; i < variants.size(); i++) {
+
+				CacheEntry entry = variants.get(i);
+
+				if(!entry.matches(request))
+					continue;
+
+				if(entry.expires > now)
+					return entry;
+
+				variants.remove(i);
+				stripe.size -= entry.weight;
+
+				if(variants.isEmpty())
+					stripe.map.remove(key);
+
+				return null;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 滺ĿͬһľĿᱻ滻ʱδʵһ̭
+	 */
+	private void store(String key, CacheEntry entry) {
+
+		Stripe stripe = stripeFor(key);
+		long stripeMaxSize = maxSize / STRIPES;
+
+		synchronized(stripe) {
+
+			List<CacheEntry> variants = stripe.map.get(key);
+
+			if(variants == null) {
+				variants = new ArrayList<>(1);
+				stripe.map.put(key, variants);
+			}
+
+			for(int i = 0; i < variants.size(); i++) {
+				CacheEntry old = variants.get(i);
+				if(old.sameVariant(entry)) {
+					variants.remove(i);
+					stripe.size -= old.weight;
+					break;
+				}
+			}
+
+			if(variants.size() >= MAX_VARIANTS) {
+				stripe.size -= variants.remove(0).weight;
+				evictionCount.increment();
+			}
+
+			variants.add(entry);
+			stripe.size += entry.weight;
+
+			//ĿλLRUĩβ˻󱻼鵽
+			Iterator<List<CacheEntry>> it = stripe.map.values().iterator();
+
+			while(stripe.size > stripeMaxSize && it.hasNext()) {
+
+				List<CacheEntry> eldest = it.next();
+
+				if(eldest == variants)
+					break;
+
+				for(CacheEntry e : eldest) {
+					stripe.size -= e.weight;
+					evictionCount.increment();
+				}
+
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * ƳĻĿ
+	 * @param predicate ж
+	 */
+	private void invalidate(Predicate<CacheEntry> predicate) {
+
+		for(Stripe stripe : stripes) {
+
+			synchronized(stripe) {
+
+				Iterator<List<CacheEntry>> it = stripe.map.values().iterator();
+
+				while(it.hasNext()) {
+
+					List<CacheEntry> variants = it.next();
+
+					for(Iterator<CacheEntry> vit = variants.iterator(); vit.hasNext();) {
+						CacheEntry entry = vit.next();
+						if(predicate.test(entry)) {
+							vit.remove();
+							stripe.size -= entry.weight;
+						}
+					}
+
+					if(variants.isEmpty())
+						it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * ʹûĿֱӦ
+	 */
+	private static void replay(CacheEntry entry, boolean head, Response response, long now) throws IOException {
+
+		response.setStatus(entry.status);
+
+		for(int i = 0; i < entry.headerNames.length; i++)
+			response.setHeader(entry.headerNames[i], entry.headerValues[i]);
+
+		response.setDateHeader("Date", now);
+		response.setHeader("Age", String.valueOf((now - entry.created) / 1000));
+		response.setHeader("Content-Length", String.valueOf(entry.body.remaining()));
+
+		if(!head) {
+
+			ServletOutputStream os = response.getOutputStream();
+			ByteBuffer body = entry.body.duplicate();
+
+			if(os instanceof ByteBufOutputStream) {
+				((ByteBufOutputStream) os).write(body);
+			} else {
+				byte[] b = new byte[Math.min(8192, body.remaining())];
+				while(body.hasRemaining()) {
+					int len = Math.min(b.length, body.remaining());
+					body.get(b, 0, len);
+					os.write(b, 0, len);
+				}
+			}
+		}
+
+		response.sendResponse();
+	}
+
+	/**
+	 * @param value ŷָͷֵCache-Control
+	 * @param directive ָ
+	 * @return Ƿָ(ִСд)
+	 */
+	private static boolean hasDirective(String value, String directive) {
+
+		if(value == null)
+			return false;
+
+		for(String d : value.split(",")) {
+			if(d.trim().equalsIgnoreCase(directive))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Cache-ControlExpiresӦЧ
+	 * @return Ч()ɻʱ0
+	 */
+	private static long freshnessLifetime(String cacheControl, String expires, long now) {
+
+		long maxAge = -1, sMaxAge = -1;
+
+		if(cacheControl != null) {
+
+			for(String d : cacheControl.split(",")) {
+
+				d = d.trim().toLowerCase();
+
+				if(d.equals("no-store") || d.equals("no-cache") || d.startsWith("private"))
+					return 0;
+
+				try {
+					if(d.startsWith("s-maxage="))
+						sMaxAge = Long.parseLong(d.substring(9).trim());
+					else if(d.startsWith("max-age="))
+						maxAge = Long.parseLong(d.substring(8).trim());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+
+		if(sMaxAge >= 0)
+			return sMaxAge * 1000;
+
+		if(maxAge >= 0)
+			return maxAge * 1000;
+
+		if(expires != null)
+			return Math.max(0, TimeUtil.parseHttpDate(expires) - now);
+
+		return 0;
+	}
+
+	@Override
+	protected void stopInternal() throws Exception {
+
+		log.info(sm.getString("ResponseCacheValve.stopInternal.i0", hitCount.sum(), missCount.sum(),
+				String.format("%.2f", getHitRatio() * 100), evictionCount.sum()));
+
+		invalidate(e -> true);
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return ʣΧ0~1
+	 */
+	public double getHitRatio() {
+
+		long hit = hitCount.sum();
+		long total = hit + missCount.sum();
+
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * @return ռõֽ
+	 */
+	public long getSize() {
+
+		long size = 0;
+
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.size;
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return Ӧ
+	 */
+	public int getEntryCount() {
+
+		int count = 0;
+
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				for(List<CacheEntry> variants : stripe.map.values())
+					count += variants.size();
+			}
+		}
+
+		return count;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize ֽ
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * @param maxEntrySize Ӧֽ
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * @param offHeap ΪtrueʱӦ屣ֱڴУٶԶڴGCӰ
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * һֶΣͬһURLб屣ͬһб
+	 */
+	private static final class Stripe {
+
+		final LinkedHashMap<String, List<CacheEntry>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+		//÷ֶлռõֽ
+		long size = 0;
+	}
+
+	/**
+	 * Ӧ޸
+	 */
+	private static final class CacheEntry {
+
+		//WebӦõ
+		final String context;
+
+		//URIContextǰ׺
+		final String uri;
+
+		final int status;
+
+		final String[] headerNames;
+
+		final String[] headerValues;
+
+		final ByteBuffer body;
+
+		//VaryӦͷгͷƼûʱͷֵ
+		final String[] varyNames;
+
+		final String[] varyValues;
+
+		final long created;
+
+		final long expires;
+
+		final int weight;
+
+		CacheEntry(String context, String uri, int status, String[] headerNames, String[] headerValues,
+				ByteBuffer body, String[] varyNames, String[] varyValues, long created, long expires) {
+
+			this.context = context;
+			this.uri = uri;
+			this.status = status;
+			this.headerNames = headerNames;
+			this.headerValues = headerValues;
+			this.body = body;
+			this.varyNames = varyNames;
+			this.varyValues = varyValues;
+			this.created = created;
+			this.expires = expires;
+			this.weight = body.capacity() + ENTRY_OVERHEAD;
+		}
+
+		/**
+		 * @return VaryͷǷ뱣ʱͬ
+		 */
+		boolean matches(Request request) {
+
+			for(int i = 0; i < varyNames.length; i++) {
+
+				String value = request.getHeader(varyNames[i]);
+
+				if(value == null ? varyValues[i] != null : !value.equals(varyValues[i]))
+					return false;
+			}
+
+			return true;
+		}
+
+		boolean sameVariant(CacheEntry other) {
+
+			if(varyNames.length != other.varyNames.length)
+				return false;
+
+			for(int i = 0; i < varyNames.length; i++) {
+
+				if(!varyNames[i].equalsIgnoreCase(other.varyNames[i]))
+					return false;
+
+				String v = varyValues[i];
+
+				if(v == null ? other.varyValues[i] != null : !v.equals(other.varyValues[i]))
+					return false;
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * ӦύǰжǷԻ棬ԻʱӦͷӦ
+	 */
+	private final class CaptureListener implements ResponseCommitListener {
+
+		private final String key;
+
+		private final Context context;
+
+		private final Request request;
+
+		CaptureListener(String key, Context context, Request request) {
+			this.key = key;
+			this.context = context;
+			this.request = request;
+		}
+
+		@Override
+		public void beforeCommit(Response response, ByteBuffer content) {
+
+			int status = response.getStatus();
+
+			if(status != 200 && status != 203 && status != 300 && status != 301 && status != 404 && status != 410)
+				return;
+
+			String cacheControl = null, expires = null, vary = null;
+			List<String> names = new ArrayList<>();
+			List<String> values = new ArrayList<>();
+
+			headers:
+			for(String name : response.getHeaderNames()) {
+
+				String value = response.getHeader(name);
+
+				if(value == null)
+					continue;
+
+				if(name.equalsIgnoreCase("Cache-Control"))
+					cacheControl = value;
+				else if(name.equalsIgnoreCase("Expires"))
+					expires = value;
+				else if(name.equalsIgnoreCase("Vary"))
+					vary = value;
+
+				for(String excluded : EXCLUDED_HEADERS) {
+					if(name.equalsIgnoreCase(excluded)) {
+						//Set-CookieӦضͻˣܱ
+						if(excluded.equals("Set-Cookie"))
+							return;
+						continue headers;
+					}
+				}
+
+				names.add(name);
+				values.add(value);
+			}
+
+			long now = System.currentTimeMillis();
+			long lifetime = freshnessLifetime(cacheControl, expires, now);
+
+			if(lifetime <= 0 || content.remaining() > maxEntrySize)
+				return;
+
+			String[] varyNames = new String[0];
+
+			if(vary != null) {
+
+				List<String> list = new ArrayList<>();
+
+				for(String v : vary.split(",")) {
+					v = v.trim();
+					if(v.equals("*"))
+						return;
+					if(!v.isEmpty())
+						list.add(v);
+				}
+
+				varyNames = list.toArray(varyNames);
+			}
+
+			String[] varyValues = new String[varyNames.length];
+
+			for(int i = 0; i < varyNames.length; i++)
+				varyValues[i] = request.getHeader(varyNames[i]);
+
+			int len = content.remaining();
+			ByteBuffer body = offHeap ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+			body.put(content.duplicate());
+			body.flip();
+
+			store(key, new CacheEntry(context.getName(), request.getRequestURI(), status,
+					names.toArray(new String[names.size()]), values.toArray(new String[values.size()]),
+					body.asReadOnlyBuffer(), varyNames, varyValues, now, now + lifetime));
+		}
+	}
+
+	/**
+	 * ServletContextеResponseCacheͼʧЧԸWebӦ
+	 */
+	private final class ContextCache implements ResponseCache {
+
+		private final String name;
+
+		private final String contextPath;
+
+		ContextCache(Context context) {
+			this.name = context.getName();
+			this.contextPath = name.equals("ROOT") ? "" : "/" + name;
+		}
+
+		@Override
+		public void invalidate(String path) {
+			String uri = contextPath + path;
+			ResponseCacheValve.this.invalidate(e -> e.context.equals(name) && e.uri.equals(uri));
+		}
+
+		@Override
+		public void invalidatePrefix(String prefix) {
+			String uriPrefix = contextPath + prefix;
+			ResponseCacheValve.this.invalidate(e -> e.context.equals(name) && e.uri.startsWith(uriPrefix));
+		}
+
+		@Override
+		public void invalidateAll() {
+			ResponseCacheValve.this.invalidate(e -> e.context.equals(name));
+		}
+
+		@Override
+		public long getHitCount() {
+			return ResponseCacheValve.this.getHitCount();
+		}
+
+		@Override
+		public long getMissCount() {
+			return ResponseCacheValve.this.getMissCount();
+		}
+
+		@Override
+		public double getHitRatio() {
+			return ResponseCacheValve.this.getHitRatio();
+		}
+
+		@Override
+		public long getEvictionCount() {
+			return ResponseCacheValve.this.getEvictionCount();
+		}
+
+		@Override
+		public long getSize() {
+			return ResponseCacheValve.this.getSize();
+		}
+
+		@Override
+		public int getEntryCount() {
+			return ResponseCacheValve.this.getEntryCount();
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package lzf.webserver.valves;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.ServletException;
+
+import lzf.webserver.Wrapper;
+import lzf.webserver.connector.Request;
+import lzf.webserver.connector.Response;
+import lzf.webserver.core.ValveBase;
+import lzf.webserver.util.StringManager;
+
+/**
+* @author ӷ
+* @version 1.0
+* @date 201889 3:22:10
+* @Description ̼߳ⷧţӦӵEngineܵ
+* ¼ÿڴĿʼʱʹ̣߳ɺ̶̨߳ɨ裬
+* ʱ䳬thresholdᱻ¼URIWrapper̵߳ǰĵջ
+* interruptThreshold(0ʱ)Ĵ̻߳ᱻж
+*/
+public class StuckThreadDetectionValve extends ValveBase {
+
+	private static final StringManager sm = StringManager.getManager(StuckThreadDetectionValve.class);
+
+	//жΪĴʱ()
+	private int threshold = 60;
+
+	//жϴ̵߳Ĵʱ()Сڵ0ʱж
+	private int interruptThreshold = 0;
+
+	//ɨ()
+	private int scanInterval = 5;
+
+	//߳IDӦڴ
+	private final ConcurrentHashMap<Long, MonitoredRequest> activeRequests = new ConcurrentHashMap<>();
+
+	//ǰ߳
+	private final AtomicInteger stuckCount = new AtomicInteger(0);
+
+	//жϵ߳
+	private final LongAdder interruptedCount = new LongAdder();
+
+	private ScheduledThreadPoolExecutor scanner = null;
+
+	public StuckThreadDetectionValve() {
+		super();
+	}
+
+	@Override
+	public void invoke(Request request, Response response) throws IOException, ServletException {
+
+		Thread thread = Thread.currentThread();
+		Wrapper wrapper = request.getWrapper();
+
+		MonitoredRequest monitored = new MonitoredRequest(thread, request.getMethod(), request.getRequestURI(),
+				wrapper == null ? null : wrapper.getName());
+
+		activeRequests.put(thread.getId(), monitored);
+
+		try {
+			getNext().invoke(request, response);
+
+		} finally {
+			activeRequests.remove(thread.getId());
+
+			//ɨ߳жϸ߳ʱȴɣȻжϱǣӰ̳߳еһ
+			if(!monitored.state.compareAndSet(MonitoredRequest.RUNNING, MonitoredRequest.DONE)) {
+				while(monitored.state.get() == MonitoredRequest.INTERRUPTING)
+					Thread.yield();
+				Thread.interrupted();
+			}
+
+			boolean stuck;
+			int count;
+
+			synchronized(monitored) {
+				monitored.completed = true;
+				stuck = monitored.stuck;
+				count = stuck ? stuckCount.decrementAndGet() : 0;
+			}
+
+			if(stuck) {
+				log.warn(sm.getString("StuckThreadDetectionValve.completed", thread.getName(),
+						monitored.uri, String.valueOf(System.currentTimeMillis() - monitored.startTime), count));
+			}
+		}
+	}
+
+	/**
+	 * ɨڴ
+	 */
+	private void scan() {
+
+		long now = System.currentTimeMillis();
+
+		for(MonitoredRequest monitored : activeRequests.values()) {
+
+			long active = now - monitored.startTime;
+
+			if(!monitored.stuck && active >= threshold * 1000L) {
+
+				int count = -1;
+
+				synchronized(monitored) {
+					if(!monitored.completed) {
+						monitored.stuck = true;
+						count = stuckCount.incrementAndGet();
+					}
+				}
+
+				if(count != -1)
+					notifyStuck(monitored, active, count);
+			}
+
+			if(interruptThreshold > 0 && active >= interruptThreshold * 1000L
+					&& monitored.state.compareAndSet(MonitoredRequest.RUNNING, MonitoredRequest.INTERRUPTING)) {
+
+				log.warn(sm.getString("StuckThreadDetectionValve.interrupt", monitored.thread.getName(),
+						monitored.uri, String.valueOf(active)));
+
+				monitored.thread.interrupt();
+				monitored.state.set(MonitoredRequest.INTERRUPTED);
+				interruptedCount.increment();
+			}
+		}
+	}
+
+	private void notifyStuck(MonitoredRequest monitored, long active, int count) {
+
+		StringBuilder sb = new StringBuilder();
+
+		for(StackTraceElement e : monitored.thread.getStackTrace())
+			sb.append("\n\tat ").append(e);
+
+		log.warn(sm.getString("StuckThreadDetectionValve.stuck", monitored.thread.getName(), monitored.method,
+				monitored.uri, monitored.wrapperName, String.valueOf(active), count) + sb);
+	}
+
+	@Override
+	protected void startInternal() throws Exception {
+
+		scanner = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "StuckThreadScanProcesser");
+			t.setDaemon(true);
+			return t;
+		});
+
+		int interval = Math.max(1, scanInterval);
+		scanner.scheduleWithFixedDelay(new ScanProcesser(), interval, interval, TimeUnit.SECONDS);
+	}
+
+	@Override
+	protected void stopInternal() throws Exception {
+
+		if(scanner != null) {
+			scanner.shutdownNow();
+			scanner = null;
+		}
+	}
+
+	/**
+	 * @return ǰ߳
+	 */
+	public int getStuckThreadCount() {
+		return stuckCount.get();
+	}
+
+	/**
+	 * @return ǰ߳
+	 */
+	public String[] getStuckThreadNames() {
+
+		List<String> names = new ArrayList<>();
+
+		for(MonitoredRequest monitored : activeRequests.values()) {
+			if(monitored.stuck)
+				names.add(monitored.thread.getName());
+		}
+
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * @return жϵ߳
+	 */
+	public long getInterruptedThreadCount() {
+		return interruptedCount.sum();
+	}
+
+	/**
+	 * @return ڴ
+	 */
+	public int getActiveRequestCount() {
+		return activeRequests.size();
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @param threshold жΪĴʱ()
+	 */
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	public int getInterruptThreshold() {
+		return interruptThreshold;
+	}
+
+	/**
+	 * @param interruptThreshold жϴ̵߳Ĵʱ()Сڵ0ʱж
+	 */
+	public void setInterruptThreshold(int interruptThreshold) {
+		this.interruptThreshold = interruptThreshold;
+	}
+
+	public int getScanInterval() {
+		return scanInterval;
+	}
+
+	/**
+	 * @param scanInterval ɨ()
+	 */
+	public void setScanInterval(int scanInterval) {
+		this.scanInterval = scanInterval;
+	}
+
+	/**
+	 * ɨڴĺ̨
+	 */
+	private final class ScanProcesser implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				scan();
+			} catch (RuntimeException e) {
+				log.error(sm.getString("StuckThreadDetectionValve.ScanProcesser.e0"), e);
+			}
+		}
+	}
+
+	/**
+	 * һڴ
+	 */
+	private static final class MonitoredRequest {
+
+		static final int RUNNING = 0;
+
+		static final int INTERRUPTING = 1;
+
+		static final int INTERRUPTED = 2;
+
+		static final int DONE = 3;
+
+		final Thread thread;
+
+		final String method;
+
+		final String uri;
+
+		final String wrapperName;
+
+		final long startTime = System.currentTimeMillis();
+
+		final AtomicInteger state = new AtomicInteger(RUNNING);
+
+		//ǷѱжΪcompletedһڸö޸ģ֤̼߳׼ȷ
+		volatile boolean stuck = false;
+
+		//ǷѾ
+		boolean completed = false;
+
+		MonitoredRequest(Thread thread, String method, String uri, String wrapperName) {
+			this.thread = thread;
+			this.method = method;
+			this.uri = uri;
+			this.wrapperName = wrapperName;
+		}
+	}
+}